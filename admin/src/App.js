@@ -6,6 +6,8 @@ import SellersPage from './pages/SellersPage';
 import ReportsPage from './pages/ReportsPage';
 import AdminUsersPage from './pages/AdminUsersPage';
 import DisputesPage from './pages/DisputesPage';
+import SchedulerPage from './pages/SchedulerPage';
+import WebhookReplayPage from './pages/WebhookReplayPage';
 import Layout from './components/Layout';
 
 function App() {
@@ -31,6 +33,8 @@ function App() {
                   <Route path="/reports" element={<ReportsPage />} />
                   <Route path="/admin-users" element={<AdminUsersPage />} />
                   <Route path="/disputes" element={<DisputesPage />} />
+                  <Route path="/scheduler" element={<SchedulerPage />} />
+                  <Route path="/webhook-replay" element={<WebhookReplayPage />} />
                   <Route path="/" element={<Navigate to="/dashboard" />} />
                 </Routes>
               </Layout>
@@ -23,6 +23,8 @@ const Layout = ({ children }) => {
             <li><Link to="/reports">Reports</Link></li>
             <li><Link to="/admin-users">Manage Admins</Link></li>
             <li><Link to="/disputes">Disputes</Link></li>
+            <li><Link to="/scheduler">Scheduled Jobs</Link></li>
+            <li><Link to="/webhook-replay">Webhook Replay</Link></li>
           </ul>
         </nav>
 
@@ -0,0 +1,81 @@
+import React, { useState, useEffect, useCallback } from 'react';
+import api from '../services/api';
+
+const SchedulerPage = () => {
+  const [data, setData] = useState({ instance: '', serverTime: null, locks: [] });
+  const [loading, setLoading] = useState(true);
+  const [error, setError] = useState('');
+
+  const load = useCallback(async () => {
+    setLoading(true);
+    setError('');
+    try {
+      const res = await api.get('/admin/scheduler/locks');
+      setData(res.data || { instance: '', serverTime: null, locks: [] });
+    } catch {
+      setError('Failed to load scheduled job locks.');
+    } finally {
+      setLoading(false);
+    }
+  }, []);
+
+  useEffect(() => { load(); }, [load]);
+
+  const formatDate = (s) => s ? new Date(s).toLocaleString('en-ZA') : '—';
+
+  return (
+    <div style={{ padding: '24px' }}>
+      <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center', marginBottom: '8px' }}>
+        <h2 style={{ margin: 0 }}>Scheduled Jobs</h2>
+        <button onClick={load} style={{ padding: '8px 16px', cursor: 'pointer' }}>Refresh</button>
+      </div>
+      <p style={{ color: '#666', fontSize: '14px', marginTop: 0, marginBottom: '24px' }}>
+        Each job runs on one server at a time. A job is locked while it runs and for a short while afterwards,
+        so other servers skip that run. Answered by <strong>{data.instance || '—'}</strong> at {formatDate(data.serverTime)}.
+      </p>
+
+      {error && <p style={{ color: 'red' }}>{error}</p>}
+
+      {loading ? (
+        <p>Loading...</p>
+      ) : data.locks.length === 0 ? (
+        <div style={{ textAlign: 'center', padding: '60px', color: '#666', backgroundColor: '#f9f9f9', borderRadius: '8px' }}>
+          <p style={{ fontSize: '18px' }}>No scheduled jobs have run yet</p>
+        </div>
+      ) : (
+        <table style={{ width: '100%', borderCollapse: 'collapse', fontSize: '14px' }}>
+          <thead>
+            <tr style={{ backgroundColor: '#f5f5f5' }}>
+              <th style={th}>Job</th>
+              <th style={th}>Status</th>
+              <th style={th}>Server</th>
+              <th style={th}>Last Started</th>
+              <th style={th}>Locked Until</th>
+            </tr>
+          </thead>
+          <tbody>
+            {data.locks.map((l) => (
+              <tr key={l.name} style={{ borderBottom: '1px solid #eee' }}>
+                <td style={td}><strong>{l.name}</strong></td>
+                <td style={td}>
+                  <span style={{ ...badge, backgroundColor: l.held ? '#fff3cd' : '#d4edda', color: l.held ? '#856404' : '#155724' }}>
+                    {l.held ? 'Locked' : 'Free'}
+                  </span>
+                </td>
+                <td style={td}>{l.lockedBy}</td>
+                <td style={td}>{formatDate(l.lockedAt)}</td>
+                <td style={td}>{formatDate(l.lockUntil)}</td>
+              </tr>
+            ))}
+          </tbody>
+        </table>
+      )}
+    </div>
+  );
+};
+
+const th = { padding: '10px 12px', textAlign: 'left', fontWeight: '600', borderBottom: '2px solid #ddd' };
+const td = { padding: '10px 12px', verticalAlign: 'top' };
+const badge = { padding: '3px 10px', borderRadius: '12px', fontSize: '12px', fontWeight: '600' };
+
+export default SchedulerPage;
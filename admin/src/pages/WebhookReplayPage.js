@@ -0,0 +1,181 @@
+import React, { useState, useEffect, useCallback } from 'react';
+import api from '../services/api';
+
+const PROVIDERS = ['TRADESAFE', 'PUDO', 'SHIPLOGIC'];
+
+const WebhookReplayPage = () => {
+  const [run, setRun] = useState(null);
+  const [form, setForm] = useState({
+    provider: '', from: '', to: '', dryRun: true, ratePerSecond: 20, concurrency: '', limit: '',
+  });
+  const [loading, setLoading] = useState(true);
+  const [submitting, setSubmitting] = useState(false);
+  const [error, setError] = useState('');
+
+  const load = useCallback(async () => {
+    try {
+      const res = await api.get('/admin/webhooks/replay');
+      setRun(res.data && res.data.status ? res.data : null);
+      setError('');
+    } catch {
+      setError('Failed to load webhook replay status.');
+    } finally {
+      setLoading(false);
+    }
+  }, []);
+
+  useEffect(() => { load(); }, [load]);
+
+  // Poll while a run is in progress
+  const running = run && run.status === 'RUNNING';
+  useEffect(() => {
+    if (!running) return undefined;
+    const timer = setInterval(load, 2000);
+    return () => clearInterval(timer);
+  }, [running, load]);
+
+  const start = async () => {
+    setSubmitting(true);
+    setError('');
+    try {
+      const res = await api.post('/admin/webhooks/replay', form);
+      setRun(res.data);
+    } catch (err) {
+      setError(err.response?.data?.error || 'Failed to start webhook replay.');
+    } finally {
+      setSubmitting(false);
+    }
+  };
+
+  const cancel = async () => {
+    try {
+      await api.post('/admin/webhooks/replay/cancel');
+      load();
+    } catch (err) {
+      setError(err.response?.data?.error || 'Failed to cancel webhook replay.');
+    }
+  };
+
+  const set = (field) => (e) =>
+    setForm({ ...form, [field]: e.target.type === 'checkbox' ? e.target.checked : e.target.value });
+
+  const formatDate = (s) => s ? new Date(s).toLocaleString('en-ZA') : '—';
+
+  return (
+    <div style={{ padding: '24px' }}>
+      <div style={{ display: 'flex', justifyContent: 'space-between', alignItems: 'center', marginBottom: '8px' }}>
+        <h2 style={{ margin: 0 }}>Webhook Replay</h2>
+        <button onClick={load} style={{ padding: '8px 16px', cursor: 'pointer' }}>Refresh</button>
+      </div>
+      <p style={{ color: '#666', fontSize: '14px', marginTop: 0, marginBottom: '24px' }}>
+        Re-runs TradeSafe and courier webhooks that were verified but never processed. Webhooks already
+        applied are skipped. Do a dry run first to see what would happen.
+      </p>
+
+      {error && <p style={{ color: 'red' }}>{error}</p>}
+
+      <div style={{ display: 'flex', flexWrap: 'wrap', gap: '16px', alignItems: 'flex-end', marginBottom: '24px' }}>
+        <label style={label}>Provider
+          <select value={form.provider} onChange={set('provider')} style={input}>
+            <option value="">All</option>
+            {PROVIDERS.map((p) => <option key={p} value={p}>{p}</option>)}
+          </select>
+        </label>
+        <label style={label}>Received from
+          <input type="date" value={form.from} onChange={set('from')} style={input} />
+        </label>
+        <label style={label}>Received to
+          <input type="date" value={form.to} onChange={set('to')} style={input} />
+        </label>
+        <label style={label}>Per second
+          <input type="number" min="1" max="500" value={form.ratePerSecond} onChange={set('ratePerSecond')} style={{ ...input, width: '80px' }} />
+        </label>
+        <label style={label}>In flight
+          <input type="number" min="1" max="64" placeholder="auto" value={form.concurrency} onChange={set('concurrency')} style={{ ...input, width: '80px' }} />
+        </label>
+        <label style={label}>Max rows
+          <input type="number" min="1" placeholder="all" value={form.limit} onChange={set('limit')} style={{ ...input, width: '90px' }} />
+        </label>
+        <label style={{ ...label, flexDirection: 'row', alignItems: 'center', gap: '6px' }}>
+          <input type="checkbox" checked={form.dryRun} onChange={set('dryRun')} /> Dry run
+        </label>
+        <button onClick={start} disabled={submitting || running} style={{ padding: '8px 16px', cursor: 'pointer' }}>
+          {form.dryRun ? 'Start dry run' : 'Start replay'}
+        </button>
+        {running && (
+          <button onClick={cancel} style={{ padding: '8px 16px', cursor: 'pointer' }}>Cancel</button>
+        )}
+      </div>
+
+      {loading ? (
+        <p>Loading...</p>
+      ) : !run ? (
+        <div style={{ textAlign: 'center', padding: '60px', color: '#666', backgroundColor: '#f9f9f9', borderRadius: '8px' }}>
+          <p style={{ fontSize: '18px' }}>No replay has run since the server started</p>
+        </div>
+      ) : (
+        <>
+          <h3 style={{ marginBottom: '8px' }}>
+            {run.dryRun ? 'Dry run' : 'Replay'} {run.id}{' '}
+            <span style={{ ...badge, ...statusColors[run.status] }}>{run.status}</span>
+          </h3>
+          <p style={{ color: '#666', fontSize: '14px', marginTop: 0 }}>
+            {run.provider || 'All providers'}, received {formatDate(run.from)} – {formatDate(run.to)}.
+            Started {formatDate(run.startedAt)}{run.finishedAt && `, finished ${formatDate(run.finishedAt)}`}.
+          </p>
+          <table style={{ borderCollapse: 'collapse', fontSize: '14px', marginBottom: '24px' }}>
+            <tbody>
+              <tr><td style={td}>Rows scanned</td><td style={td}><strong>{run.scanned}</strong></td></tr>
+              <tr><td style={td}>{run.dryRun ? 'Would process' : 'Processed'}</td><td style={td}>{run.outcomes.processed}</td></tr>
+              <tr><td style={td}>Already applied</td><td style={td}>{run.outcomes.duplicate}</td></tr>
+              <tr><td style={td}>Failed</td><td style={td}>{run.outcomes.failed}</td></tr>
+              <tr><td style={td}>Unsupported provider</td><td style={td}>{run.outcomes.unsupported}</td></tr>
+              <tr><td style={td}>Throughput</td><td style={td}>{run.perSecond}/s over {run.elapsedSeconds}s</td></tr>
+            </tbody>
+          </table>
+          {run.error && <p style={{ color: 'red' }}>{run.error}</p>}
+
+          {run.failures.length > 0 && (
+            <table style={{ width: '100%', borderCollapse: 'collapse', fontSize: '14px' }}>
+              <thead>
+                <tr style={{ backgroundColor: '#f5f5f5' }}>
+                  <th style={th}>Log</th>
+                  <th style={th}>Provider</th>
+                  <th style={th}>Order</th>
+                  <th style={th}>Received</th>
+                  <th style={th}>Reason</th>
+                </tr>
+              </thead>
+              <tbody>
+                {run.failures.map((f) => (
+                  <tr key={f.logId} style={{ borderBottom: '1px solid #eee' }}>
+                    <td style={td}>{f.logId}</td>
+                    <td style={td}>{f.provider}</td>
+                    <td style={td}>{f.orderNumber || '—'}</td>
+                    <td style={td}>{formatDate(f.receivedAt)}</td>
+                    <td style={td}>{f.reason}</td>
+                  </tr>
+                ))}
+              </tbody>
+            </table>
+          )}
+        </>
+      )}
+    </div>
+  );
+};
+
+const statusColors = {
+  RUNNING:   { backgroundColor: '#fff3cd', color: '#856404' },
+  COMPLETED: { backgroundColor: '#d4edda', color: '#155724' },
+  CANCELLED: { backgroundColor: '#e2e3e5', color: '#383d41' },
+  FAILED:    { backgroundColor: '#f8d7da', color: '#721c24' },
+};
+
+const th = { padding: '10px 12px', textAlign: 'left', fontWeight: '600', borderBottom: '2px solid #ddd' };
+const td = { padding: '10px 12px', verticalAlign: 'top' };
+const badge = { padding: '3px 10px', borderRadius: '12px', fontSize: '12px', fontWeight: '600' };
+const label = { display: 'flex', flexDirection: 'column', fontSize: '13px', color: '#444', gap: '4px' };
+const input = { padding: '6px 8px' };
+
+export default WebhookReplayPage;
@@ -7,8 +7,10 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import za.co.thrift.eduthrift.entity.User;
+import za.co.thrift.eduthrift.repository.ItemRepository;
 import za.co.thrift.eduthrift.repository.UserRepository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -21,6 +23,7 @@ import java.util.UUID;
  *   <li>Creates {@code admin@eduthrift.co.za} using the password from
  *       {@code ADMIN_INITIAL_PASSWORD} env var. If the env var is not set, a random
  *       UUID password is generated and logged ONCE at startup — change it immediately.</li>
+ *   <li>Gives listings without a {@code created_at} one, so catalog paging can reach them.</li>
  * </ul>
  *
  * <h2>What only runs in dev/test ({@code CREATE_TEST_DATA=true})</h2>
@@ -38,6 +41,7 @@ public class DataInitializer implements CommandLineRunner {
     private static final Logger log = LoggerFactory.getLogger(DataInitializer.class);
 
     private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
     private final PasswordEncoder passwordEncoder;
 
     /**
@@ -56,8 +60,10 @@ public class DataInitializer implements CommandLineRunner {
     @Value("${CREATE_TEST_DATA:false}")
     private boolean createTestData;
 
-    public DataInitializer(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public DataInitializer(UserRepository userRepository, ItemRepository itemRepository,
+                           PasswordEncoder passwordEncoder) {
         this.userRepository  = userRepository;
+        this.itemRepository  = itemRepository;
         this.passwordEncoder = passwordEncoder;
     }
 
@@ -65,6 +71,7 @@ public class DataInitializer implements CommandLineRunner {
     public void run(String... args) {
         promoteOwnerToAdmin();
         ensureAdminAccount();
+        backfillListingDates();
 
         if (createTestData) {
             log.warn("CREATE_TEST_DATA=true — creating test accounts. DO NOT use in production.");
@@ -74,6 +81,12 @@ public class DataInitializer implements CommandLineRunner {
 
     // ─────────────────────────────────────────────────────────────────────────
 
+    /** Listings inserted outside the app may lack created_at, which keyset paging needs. */
+    private void backfillListingDates() {
+        int dated = itemRepository.backfillCreatedAt(LocalDateTime.now());
+        if (dated > 0) log.info("Set created_at on {} listing(s) that had none", dated);
+    }
+
     /** Promote the owner account to ADMIN if it exists and isn't already. */
     private void promoteOwnerToAdmin() {
         userRepository.findByEmail("antons@eduthrift.co.za").ifPresent(user -> {
@@ -13,6 +13,7 @@ import java.util.Map;
  * Example application.properties:
  * <pre>
  * payment.default-provider=TRADESAFE
+ * payment.providers.tradesafe.max-concurrent-payouts=2
  * </pre>
  *
  * {@link za.co.thrift.eduthrift.service.payment.PaymentService} reads
@@ -37,5 +38,8 @@ public class PaymentConfig {
     @Data
     public static class ProviderConfig {
         private boolean enabled = false;
+
+        /** Payout retries in flight against this provider at once. */
+        private int maxConcurrentPayouts = 2;
     }
 }
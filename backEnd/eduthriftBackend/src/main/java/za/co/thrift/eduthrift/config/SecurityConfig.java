@@ -112,6 +112,8 @@ public class SecurityConfig {
                         .requestMatchers("/shipping/pickup-points").permitAll()
                         .requestMatchers("/upload/**").authenticated()
                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/error").permitAll()
                         .anyRequest().authenticated()
                 )
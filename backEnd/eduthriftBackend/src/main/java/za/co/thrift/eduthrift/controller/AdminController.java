@@ -8,14 +8,18 @@ import org.springframework.web.bind.annotation.*;
 import za.co.thrift.eduthrift.entity.LedgerEntry;
 import za.co.thrift.eduthrift.entity.Order;
 import za.co.thrift.eduthrift.entity.PaymentTransaction;
+import za.co.thrift.eduthrift.entity.SchedulerLock;
 import za.co.thrift.eduthrift.entity.User;
 import za.co.thrift.eduthrift.repository.LedgerEntryRepository;
 import za.co.thrift.eduthrift.repository.OrderRepository;
 import za.co.thrift.eduthrift.repository.PaymentTransactionRepository;
+import za.co.thrift.eduthrift.repository.SchedulerLockRepository;
 import za.co.thrift.eduthrift.repository.UserRepository;
 import za.co.thrift.eduthrift.service.EmailService;
 import za.co.thrift.eduthrift.service.EscrowService;
 import za.co.thrift.eduthrift.service.TradeSafeService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+import za.co.thrift.eduthrift.service.webhook.WebhookReplayService;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -23,6 +27,7 @@ import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.Objects;
@@ -42,6 +47,9 @@ public class AdminController {
     private final EmailService emailService;
 
     private final TradeSafeService tradeSafeService;
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final WebhookReplayService webhookReplayService;
 
     public AdminController(UserRepository userRepository,
                            OrderRepository orderRepository,
@@ -50,7 +58,10 @@ public class AdminController {
                            PasswordEncoder passwordEncoder,
                            EscrowService escrowService,
                            EmailService emailService,
-                           TradeSafeService tradeSafeService) {
+                           TradeSafeService tradeSafeService,
+                           SchedulerLockRepository schedulerLockRepository,
+                           SchedulerLockService schedulerLockService,
+                           WebhookReplayService webhookReplayService) {
         this.userRepository = userRepository;
         this.orderRepository = orderRepository;
         this.ledgerEntryRepository = ledgerEntryRepository;
@@ -59,6 +70,9 @@ public class AdminController {
         this.escrowService = escrowService;
         this.emailService = emailService;
         this.tradeSafeService = tradeSafeService;
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.webhookReplayService = webhookReplayService;
     }
 
     @GetMapping("/tradesafe/profile")
@@ -667,6 +681,90 @@ public class AdminController {
         }
     }
 
+    // ── Scheduled jobs ────────────────────────────────────────────────────────
+
+    /** Which instance holds (or last held) each scheduled job's lock, and until when. */
+    @GetMapping("/scheduler/locks")
+    public ResponseEntity<?> getSchedulerLocks() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Map<String, Object>> locks = new ArrayList<>();
+        for (SchedulerLock lock : schedulerLockRepository.findAllByOrderByNameAsc()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", lock.getName());
+            m.put("lockedBy", lock.getLockedBy());
+            m.put("lockedAt", lock.getLockedAt());
+            m.put("lockUntil", lock.getLockUntil());
+            m.put("held", lock.getLockUntil().isAfter(now));
+            locks.add(m);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("instance", schedulerLockService.getHolder());
+        response.put("serverTime", now);
+        response.put("locks", locks);
+        return ResponseEntity.ok(response);
+    }
+
+    // ── Webhook replay ────────────────────────────────────────────────────────
+
+    /** Progress and outcomes of the running or most recent webhook replay; {} if none. */
+    @GetMapping("/webhooks/replay")
+    public ResponseEntity<?> getWebhookReplay() {
+        Map<String, Object> run = webhookReplayService.latest();
+        return ResponseEntity.ok(run != null ? run : Map.of());
+    }
+
+    /**
+     * Replays verified webhooks that were never processed. All body fields are optional:
+     * provider (TRADESAFE, PUDO, SHIPLOGIC), from / to (yyyy-MM-dd, inclusive), dryRun,
+     * ratePerSecond, concurrency and limit (rows).
+     */
+    @PostMapping("/webhooks/replay")
+    public ResponseEntity<?> startWebhookReplay(@RequestBody(required = false) Map<String, Object> body) {
+        Map<String, Object> params = body != null ? body : Map.of();
+        try {
+            String from = text(params, "from");
+            String to = text(params, "to");
+            WebhookReplayService.Options options = new WebhookReplayService.Options(
+                    text(params, "provider"),
+                    from != null ? LocalDate.parse(from).atStartOfDay() : null,
+                    to != null ? LocalDate.parse(to).plusDays(1).atStartOfDay() : null,
+                    Boolean.parseBoolean(String.valueOf(params.get("dryRun"))),
+                    integer(params, "ratePerSecond"),
+                    integer(params, "concurrency"),
+                    integer(params, "limit"));
+            return ResponseEntity.status(202).body(webhookReplayService.start(options));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Dates must be yyyy-MM-dd"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/webhooks/replay/cancel")
+    public ResponseEntity<?> cancelWebhookReplay() {
+        if (!webhookReplayService.cancel()) {
+            return ResponseEntity.status(409).body(Map.of("error", "No webhook replay is running"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Replay will stop once the webhooks in flight finish"));
+    }
+
+    private static String text(Map<String, Object> params, String key) {
+        Object value = params.get(key);
+        return value != null && !value.toString().isBlank() ? value.toString().trim() : null;
+    }
+
+    private static Integer integer(Map<String, Object> params, String key) {
+        String value = text(params, key);
+        if (value == null) return null;
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a whole number");
+        }
+    }
+
     private String generateTempPassword() {
         String chars = "ABCDEFGHJKLMNPQRSTUVWXYZabcdefghjkmnpqrstuvwxyz23456789";
         SecureRandom random = new SecureRandom();
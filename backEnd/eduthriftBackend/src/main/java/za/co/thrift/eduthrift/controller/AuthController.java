@@ -1,6 +1,7 @@
 package za.co.thrift.eduthrift.controller;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,6 +16,8 @@ import za.co.thrift.eduthrift.repository.ItemRepository;
 import za.co.thrift.eduthrift.repository.UserRepository;
 import za.co.thrift.eduthrift.security.JwtUtil;
 import za.co.thrift.eduthrift.service.EmailService;
+import za.co.thrift.eduthrift.service.catalog.ItemChangedEvent;
+import za.co.thrift.eduthrift.service.catalog.SellerChangedEvent;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -37,6 +40,7 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${file.upload.dir:/app/uploads}")
     private String uploadDir;
@@ -46,13 +50,15 @@ public class AuthController {
                           PasswordEncoder passwordEncoder,
                           AuthenticationManager authenticationManager,
                           JwtUtil jwtUtil,
-                          EmailService emailService) {
+                          EmailService emailService,
+                          ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.itemRepository = itemRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
     }
 
     @PostMapping("/login")
@@ -194,6 +200,9 @@ public class AuthController {
             if (updates.containsKey("bankBranchCode")) user.setBankBranchCode((String) updates.get("bankBranchCode"));
             
             userRepository.save(user);
+            if (updates.containsKey("town") || updates.containsKey("province")) {
+                eventPublisher.publishEvent(new SellerChangedEvent(user.getId()));
+            }
             return ResponseEntity.ok(new ProfileResponse(user));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(new ErrorResponse("Failed to update profile. Please try again."));
@@ -262,10 +271,13 @@ public class AuthController {
         }
         // Delist all active items so they no longer appear to buyers
         List<Item> userItems = itemRepository.findByUserOrderByCreatedAtDesc(user);
-        userItems.stream()
+        List<Item> delisted = userItems.stream()
                 .filter(item -> item.getStatus() == Item.ItemStatus.AVAILABLE)
-                .forEach(item -> item.setStatus(Item.ItemStatus.SOLD));
+                .toList();
+        delisted.forEach(item -> item.setStatus(Item.ItemStatus.SOLD));
         itemRepository.saveAll(userItems);
+        userItems.forEach(item -> eventPublisher.publishEvent(ItemChangedEvent.saved(item,
+                delisted.contains(item) ? Item.ItemStatus.AVAILABLE : item.getStatus())));
 
         // Soft-delete: anonymise PII so the record survives for compliance,
         // but free the email so the user can re-register in future.
@@ -293,6 +305,7 @@ public class AuthController {
         user.setFcmToken(null);
         user.setStatus("deleted");
         userRepository.save(user);
+        eventPublisher.publishEvent(new SellerChangedEvent(user.getId()));
 
         return ResponseEntity.ok(Map.of("message", "Account deleted successfully"));
     }
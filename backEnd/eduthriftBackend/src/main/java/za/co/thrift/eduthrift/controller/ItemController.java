@@ -1,17 +1,35 @@
 package za.co.thrift.eduthrift.controller;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import za.co.thrift.eduthrift.entity.Item;
 import za.co.thrift.eduthrift.entity.ItemType;
 import za.co.thrift.eduthrift.entity.User;
 import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.repository.ItemSummary;
 import za.co.thrift.eduthrift.repository.ItemTypeRepository;
 import za.co.thrift.eduthrift.repository.UserRepository;
+import za.co.thrift.eduthrift.service.catalog.CatalogFacetIndex;
+import za.co.thrift.eduthrift.service.catalog.CatalogResponseCache;
+import za.co.thrift.eduthrift.service.catalog.CatalogSuggestionTrie;
+import za.co.thrift.eduthrift.service.catalog.ItemChangedEvent;
+import za.co.thrift.eduthrift.service.catalog.ItemSearchIndex;
+import za.co.thrift.eduthrift.service.catalog.ItemStatusCounter;
+import za.co.thrift.eduthrift.service.catalog.ListingFilter;
+import za.co.thrift.eduthrift.service.catalog.SellerProximityIndex;
+import za.co.thrift.eduthrift.util.ETags;
+import za.co.thrift.eduthrift.util.GeoPoint;
+import za.co.thrift.eduthrift.util.KeysetCursor;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -20,14 +38,48 @@ import java.util.*;
 @RequestMapping("/items")
 public class ItemController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    /** Paged keyword and distance searches never return more than this many listings in total. */
+    private static final int MAX_SEARCH_RESULTS = 500;
+    /** Upper bound on IDs per {@code IN (...)} when loading ranked listings. */
+    private static final int ID_BATCH_SIZE = 1000;
+    private static final String RANKED_CURSOR_PREFIX = "rank:";
+    private static final int MAX_BATCH_SIZE = 50;
+
+    /**
+     * When true, {@code GET /items} without {@code limit}/{@code cursor} returns the full
+     * result as a bare JSON array (the shape older app builds expect). Set to false once
+     * those builds are retired so every request is served a bounded page.
+     */
+    @Value("${catalog.pagination.legacy-unpaged:true}")
+    private boolean legacyUnpaged;
+
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
     private final ItemTypeRepository itemTypeRepository;
-
-    public ItemController(ItemRepository itemRepository, UserRepository userRepository, ItemTypeRepository itemTypeRepository) {
+    private final ItemSearchIndex searchIndex;
+    private final CatalogFacetIndex facetIndex;
+    private final CatalogSuggestionTrie suggestionTrie;
+    private final SellerProximityIndex proximityIndex;
+    private final CatalogResponseCache responseCache;
+    private final ItemStatusCounter itemStatusCounter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ItemController(ItemRepository itemRepository, UserRepository userRepository, ItemTypeRepository itemTypeRepository,
+                          ItemSearchIndex searchIndex, CatalogFacetIndex facetIndex, CatalogSuggestionTrie suggestionTrie,
+                          SellerProximityIndex proximityIndex, CatalogResponseCache responseCache,
+                          ItemStatusCounter itemStatusCounter, ApplicationEventPublisher eventPublisher) {
         this.itemRepository = itemRepository;
         this.userRepository = userRepository;
         this.itemTypeRepository = itemTypeRepository;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.suggestionTrie = suggestionTrie;
+        this.proximityIndex = proximityIndex;
+        this.responseCache = responseCache;
+        this.itemStatusCounter = itemStatusCounter;
+        this.eventPublisher = eventPublisher;
     }
 
     @PostMapping
@@ -113,50 +165,389 @@ public class ItemController {
             }
 
             Item saved = itemRepository.save(item);
+            eventPublisher.publishEvent(ItemChangedEvent.created(saved));
             return ResponseEntity.ok(toResponse(saved, user));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to create item. Please try again."));
         }
     }
 
+    /**
+     * Browse the catalog.
+     *
+     * <p>Paged mode (any of {@code limit}/{@code cursor} supplied) returns
+     * {@code {"items": [...], "next_cursor": "...", "has_more": true}}, newest first.
+     * Pass {@code next_cursor} back as {@code cursor} to fetch the following page;
+     * it is null on the last page.
+     *
+     * <p>Without paging parameters the legacy bare-array response is returned while
+     * {@code catalog.pagination.legacy-unpaged} is enabled.
+     *
+     * <p>{@code near=lat,lng} switches to distance ranking: AVAILABLE listings ordered by
+     * how far the seller is from that point, each with a {@code distance_km} field
+     * (null when the seller's location is unknown). Always returned in paged form.
+     */
     @GetMapping
     public ResponseEntity<?> getAllItems(
             @RequestParam(required = false) Long itemTypeId,
             @RequestParam(required = false) String schoolName,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String near,
+            WebRequest webRequest) {
+        Item.ItemStatus itemStatus;
+        try {
+            itemStatus = status != null ? Item.ItemStatus.valueOf(status.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid status: " + status));
+        }
+        String keyword = (search != null && !search.isBlank()) ? search.trim() : null;
+        boolean ranked = keyword != null && searchIndex.isReady();
+
+        GeoPoint origin = null;
+        if (near != null && !near.isBlank()) {
+            try {
+                // ~1 km precision is plenty for courier distances and lets nearby buyers share cache entries
+                origin = GeoPoint.parse(near).rounded(2);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid near, expected lat,lng"));
+            }
+            if (!proximityIndex.isReady()) {
+                return ResponseEntity.status(503).body(Map.of("error", "Location index is still loading, please retry shortly"));
+            }
+        }
+
+        // Result sets depend on the index states too: SQL fallbacks differ from ranked results
+        String etag = catalogETag("items", searchIndex.isReady(), proximityIndex.isReady());
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        // Unranked keyword search only happens while the index is loading; not worth caching
+        String cacheKey = keyword == null || ranked
+                ? listCacheKey(itemTypeId, schoolName, itemStatus, keyword, limit, cursor, origin)
+                : null;
+        if (cacheKey != null) {
+            byte[] cached = responseCache.getList(cacheKey, etag);
+            if (cached != null) return json(cached);
+        }
+        long generation = responseCache.generation();
+
+        ResponseEntity<?> response;
+        if (origin != null) {
+            response = nearItems(origin, itemTypeId, schoolName, itemStatus, keyword, ranked, limit, cursor);
+        } else if (ranked) {
+            response = searchItems(itemTypeId, schoolName, itemStatus, keyword, limit, cursor);
+        } else {
+            response = browseItems(itemTypeId, schoolName, itemStatus, keyword, limit, cursor);
+        }
+        if (cacheKey == null || !response.getStatusCode().is2xxSuccessful()) return response;
+        return json(responseCache.putList(cacheKey, generation, etag, response.getBody()));
+    }
+
+    private ResponseEntity<?> browseItems(Long itemTypeId, String schoolName, Item.ItemStatus itemStatus,
+                                          String keyword, Integer limit, String cursor) {
+        if (limit == null && cursor == null && legacyUnpaged) {
+            try {
+                List<ItemSummary> items = itemRepository.findByFilters(itemTypeId, schoolName, itemStatus, keyword);
+                List<Map<String, Object>> response = new ArrayList<>(items.size());
+                for (ItemSummary item : items) {
+                    response.add(toResponse(item));
+                }
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch items"));
+            }
+        }
+
+        KeysetCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+            }
+        }
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+
+        try {
+            // Fetch one extra row to find out whether another page follows
+            List<ItemSummary> rows = itemRepository.findPageByFilters(itemTypeId, schoolName, itemStatus, keyword,
+                    after != null ? after.createdAt() : null,
+                    after != null ? after.id() : null,
+                    PageRequest.of(0, pageSize + 1));
+            boolean hasMore = rows.size() > pageSize;
+            List<ItemSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+            List<Map<String, Object>> items = new ArrayList<>(page.size());
+            for (ItemSummary item : page) {
+                items.add(toResponse(item));
+            }
+            ItemSummary last = page.isEmpty() ? null : page.get(page.size() - 1);
+            // The page query only returns rows with a createdAt, so a following page always has a cursor
+            String nextCursor = hasMore ? new KeysetCursor(last.createdAt(), last.id()).encode() : null;
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("items", items);
+            response.put("next_cursor", nextCursor);
+            response.put("has_more", hasMore);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch items"));
+        }
+    }
+
+    /**
+     * Keyword search served from {@link ItemSearchIndex}: the index filters and ranks
+     * matching IDs, and the listings are loaded in batches. Filtering happens before the
+     * cap, so inactive listings never crowd out matches. Paged mode slices the ranked
+     * list; its cursor encodes the position. Legacy unpaged mode returns every match.
+     */
+    private ResponseEntity<?> searchItems(Long itemTypeId, String schoolName, Item.ItemStatus status,
+                                          String keyword, Integer limit, String cursor) {
+        int offset;
+        try {
+            offset = decodeOffsetCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+
+        try {
+            boolean unpaged = limit == null && cursor == null && legacyUnpaged;
+            List<Long> rankedIds = searchIndex.search(keyword, unpaged ? Integer.MAX_VALUE : MAX_SEARCH_RESULTS,
+                    new ListingFilter(status, itemTypeId, schoolName));
+            Map<Long, ItemSummary> byId = loadSummaries(rankedIds);
+            List<ItemSummary> matches = new ArrayList<>(rankedIds.size());
+            for (Long id : rankedIds) {
+                ItemSummary item = byId.get(id);
+                if (item == null) continue;
+                // The index may briefly lag a commit; the loaded row is the source of truth
+                if (itemTypeId != null && !itemTypeId.equals(item.itemTypeId())) continue;
+                if (schoolName != null && !schoolName.equals(item.schoolName())) continue;
+                if (status != null && item.status() != status) continue;
+                matches.add(item);
+            }
+
+            if (unpaged) {
+                List<Map<String, Object>> response = new ArrayList<>(matches.size());
+                for (ItemSummary item : matches) {
+                    response.add(toResponse(item));
+                }
+                return ResponseEntity.ok(response);
+            }
+
+            int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+            int from = Math.min(offset, matches.size());
+            int to = Math.min(from + pageSize, matches.size());
+            List<Map<String, Object>> items = new ArrayList<>(to - from);
+            for (ItemSummary item : matches.subList(from, to)) {
+                items.add(toResponse(item));
+            }
+            String nextCursor = to < matches.size() ? encodeOffsetCursor(to) : null;
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("items", items);
+            response.put("next_cursor", nextCursor);
+            response.put("has_more", nextCursor != null);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch items"));
+        }
+    }
+
+    /**
+     * Distance-ranked listings from {@link SellerProximityIndex}. The filters and, when
+     * given, the keyword matches from the search index are applied inside the proximity
+     * walk, so the nearest {@code MAX_SEARCH_RESULTS} are taken from matching listings only.
+     */
+    private ResponseEntity<?> nearItems(GeoPoint origin, Long itemTypeId, String schoolName, Item.ItemStatus status,
+                                        String keyword, boolean ranked, Integer limit, String cursor) {
+        int offset;
+        try {
+            offset = decodeOffsetCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+
         try {
-            Item.ItemStatus itemStatus = status != null ? Item.ItemStatus.valueOf(status.toUpperCase()) : null;
-            String keyword = (search != null && !search.isBlank()) ? search.trim() : null;
-            List<Item> items = itemRepository.findByFilters(itemTypeId, schoolName, itemStatus, keyword);
-            List<Map<String, Object>> response = new ArrayList<>();
-            for (Item item : items) {
-                response.add(toResponse(item, item.getUser()));
+            ListingFilter filter = new ListingFilter(status, itemTypeId, schoolName);
+            Set<Long> keywordMatches = ranked ? searchIndex.matchingIds(keyword, filter) : null;
+            List<SellerProximityIndex.Ranked> nearest = proximityIndex.nearest(origin, MAX_SEARCH_RESULTS, filter,
+                    keywordMatches != null ? keywordMatches::contains : id -> true);
+            List<Long> ids = new ArrayList<>(nearest.size());
+            for (SellerProximityIndex.Ranked r : nearest) {
+                ids.add(r.itemId());
+            }
+            Map<Long, ItemSummary> byId = loadSummaries(ids);
+            List<Map<String, Object>> matches = new ArrayList<>();
+            for (SellerProximityIndex.Ranked r : nearest) {
+                ItemSummary item = byId.get(r.itemId());
+                if (item == null) continue;
+                if (itemTypeId != null && !itemTypeId.equals(item.itemTypeId())) continue;
+                if (schoolName != null && !schoolName.equals(item.schoolName())) continue;
+                if (status != null && item.status() != status) continue;
+                if (keyword != null && !ranked && !matchesKeyword(item, keyword)) continue;
+                Map<String, Object> map = toResponse(item);
+                map.put("distance_km", r.distanceKm() != null ? Math.round(r.distanceKm() * 10) / 10.0 : null);
+                matches.add(map);
             }
+
+            int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+            int from = Math.min(offset, matches.size());
+            int to = Math.min(from + pageSize, matches.size());
+            String nextCursor = to < matches.size() ? encodeOffsetCursor(to) : null;
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("items", new ArrayList<>(matches.subList(from, to)));
+            response.put("next_cursor", nextCursor);
+            response.put("has_more", nextCursor != null);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch items"));
         }
     }
 
+    /** Loads listings by ID in bounded IN-list batches, keyed by ID. */
+    private Map<Long, ItemSummary> loadSummaries(List<Long> ids) {
+        Map<Long, ItemSummary> byId = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i += ID_BATCH_SIZE) {
+            for (ItemSummary item : itemRepository.findSummariesByIdIn(ids.subList(i, Math.min(i + ID_BATCH_SIZE, ids.size())))) {
+                byId.put(item.id(), item);
+            }
+        }
+        return byId;
+    }
+
+    /** Same match rule as the SQL keyword filter, for use while the search index is loading. */
+    private static boolean matchesKeyword(ItemSummary item, String keyword) {
+        String kw = keyword.toLowerCase(Locale.ROOT);
+        return (item.itemName() != null && item.itemName().toLowerCase(Locale.ROOT).contains(kw))
+                || (item.category() != null && item.category().toLowerCase(Locale.ROOT).contains(kw))
+                || (item.schoolName() != null && item.schoolName().toLowerCase(Locale.ROOT).contains(kw));
+    }
+
+    /** Position in a ranked result list; 0 when no cursor is given. */
+    private static int decodeOffsetCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0;
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (!raw.startsWith(RANKED_CURSOR_PREFIX)) throw new IllegalArgumentException("Not a ranked cursor");
+        int offset = Integer.parseInt(raw.substring(RANKED_CURSOR_PREFIX.length()));
+        if (offset < 0) throw new IllegalArgumentException("Negative offset");
+        return offset;
+    }
+
+    private static String encodeOffsetCursor(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((RANKED_CURSOR_PREFIX + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<?> getItemById(@PathVariable Long id) {
-        Optional<Item> itemOpt = itemRepository.findById(id);
+    public ResponseEntity<?> getItemById(@PathVariable Long id, WebRequest webRequest) {
+        // The version row is one indexed lookup; it also tells a cached entry from another node's write
+        String cacheKey = CatalogResponseCache.itemKey(id);
+        long generation = responseCache.generation();
+        Optional<ItemRepository.DetailVersion> version = itemRepository.findDetailVersionById(id);
+        if (version.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Item not found"));
+        }
+        String etag = ETags.strong("item", id, version.get().getUpdatedAt(),
+                version.get().getSellerTown(), version.get().getSellerProvince(), LocalDate.now());
+        if (webRequest.checkNotModified(etag)) return null;
+        byte[] cached = responseCache.getListing(cacheKey, etag);
+        if (cached != null) return json(cached);
+
+        Optional<ItemSummary> itemOpt = itemRepository.findSummaryById(id);
         if (itemOpt.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("error", "Item not found"));
         }
-        Item item = itemOpt.get();
-        return ResponseEntity.ok(toResponse(item, item.getUser()));
+        ItemSummary item = itemOpt.get();
+        return json(responseCache.putListing(cacheKey, item.sellerId(), generation, etag, toResponse(item)));
+    }
+
+    /**
+     * Facet counts for AVAILABLE listings. Any of {@code school_name}, {@code category},
+     * {@code subcategory}, {@code sport}, {@code size}, {@code gender} and
+     * {@code condition_grade} may be passed as filters. Returns the number of matching
+     * listings, their IDs (newest first, up to {@code limit}) and, for every facet,
+     * the count per value with the other filters applied.
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<?> getFacets(@RequestParam Map<String, String> params,
+                                       @RequestParam(required = false) Integer limit) {
+        if (!facetIndex.isReady()) {
+            return ResponseEntity.status(503).body(Map.of("error", "Facet index is still loading, please retry shortly"));
+        }
+        Map<CatalogFacetIndex.Facet, String> filters = new EnumMap<>(CatalogFacetIndex.Facet.class);
+        for (CatalogFacetIndex.Facet facet : CatalogFacetIndex.Facet.values()) {
+            String value = params.get(facet.param());
+            if (value != null && !value.isBlank()) filters.put(facet, value);
+        }
+        int maxIds = Math.max(0, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_SEARCH_RESULTS));
+
+        CatalogFacetIndex.Result result = facetIndex.query(filters, maxIds);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", result.total());
+        response.put("item_ids", result.itemIds());
+        response.put("facets", result.facets());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Several listings in one round trip, for carts and bundles: {@code GET /items/batch?ids=1,2,3}.
+     * Listings are returned in the order requested; IDs that do not exist are listed in
+     * {@code missing_ids} so the app can drop them from the cart.
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<?> getItemsBatch(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Provide between 1 and " + MAX_BATCH_SIZE + " ids"));
+        }
+        Map<Long, ItemSummary> byId = new HashMap<>();
+        for (ItemSummary item : itemRepository.findSummariesByIdIn(new LinkedHashSet<>(ids))) {
+            byId.put(item.id(), item);
+        }
+        List<Map<String, Object>> items = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            ItemSummary item = byId.get(id);
+            if (item != null) items.add(toResponse(item));
+            else missing.add(id);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("items", items);
+        response.put("missing_ids", missing);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Autocomplete for the search box. Served entirely from memory, so the app can call
+     * it on every keystroke instead of running a full {@code GET /items?search=}.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(@RequestParam(required = false) String q,
+                                     @RequestParam(required = false) Integer limit) {
+        int max = Math.max(1, Math.min(limit != null ? limit : 8, 10));
+        List<Map<String, Object>> response = new ArrayList<>();
+        for (CatalogSuggestionTrie.Suggestion s : suggestionTrie.suggest(q, max)) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("text", s.text());
+            map.put("type", s.kind().label());
+            map.put("count", s.count());
+            response.add(map);
+        }
+        return ResponseEntity.ok(response);
     }
 
     @GetMapping("/count")
     public ResponseEntity<?> getItemCount() {
-        long count = itemRepository.countByStatus(Item.ItemStatus.AVAILABLE);
+        long count = itemStatusCounter.count(Item.ItemStatus.AVAILABLE);
         return ResponseEntity.ok(Map.of("count", count, "minimumActive", count >= 100));
     }
 
     @GetMapping("/mine")
-    public ResponseEntity<?> getMyItems(Authentication authentication) {
+    public ResponseEntity<?> getMyItems(Authentication authentication, WebRequest webRequest) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
@@ -167,24 +558,33 @@ public class ItemController {
             return ResponseEntity.status(404).body(Map.of("error", "User not found"));
         }
 
-        List<Item> items = itemRepository.findByUserOrderByCreatedAtDesc(userOpt.get());
-        User user = userOpt.get();
-        List<Map<String, Object>> response = new ArrayList<>();
-        for (Item item : items) {
-            response.add(toResponse(item, user));
+        if (webRequest.checkNotModified(catalogETag("mine", userOpt.get().getId()))) return null;
+
+        List<ItemSummary> items = itemRepository.findSummariesBySeller(userOpt.get().getId());
+        List<Map<String, Object>> response = new ArrayList<>(items.size());
+        for (ItemSummary item : items) {
+            response.add(toResponse(item));
         }
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/{id}/seller-items")
-    public ResponseEntity<?> getSellerItems(@PathVariable Long id) {
-        Optional<Item> itemOpt = itemRepository.findById(id);
+    public ResponseEntity<?> getSellerItems(@PathVariable Long id, WebRequest webRequest) {
+        String etag = catalogETag("seller-items", id);
+        if (webRequest.checkNotModified(etag)) return null;
+
+        String cacheKey = CatalogResponseCache.sellerItemsKey(id);
+        byte[] cached = responseCache.getListing(cacheKey, etag);
+        if (cached != null) return json(cached);
+        long generation = responseCache.generation();
+
+        Optional<ItemSummary> itemOpt = itemRepository.findSummaryById(id);
         if (itemOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Item not found"));
-        Item item = itemOpt.get();
-        List<Item> sellerItems = itemRepository.findOtherItemsBySeller(item.getUser().getId(), id);
-        List<Map<String, Object>> response = new ArrayList<>();
-        for (Item si : sellerItems) response.add(toResponse(si, si.getUser()));
-        return ResponseEntity.ok(response);
+        Long sellerId = itemOpt.get().sellerId();
+        List<ItemSummary> sellerItems = itemRepository.findOtherItemsBySeller(sellerId, id);
+        List<Map<String, Object>> response = new ArrayList<>(sellerItems.size());
+        for (ItemSummary si : sellerItems) response.add(toResponse(si));
+        return json(responseCache.putListing(cacheKey, sellerId, generation, etag, response));
     }
 
     @PutMapping("/{id}")
@@ -209,6 +609,7 @@ public class ItemController {
             return ResponseEntity.status(403).body(Map.of("error", "Not authorized to update this item"));
         }
 
+        Item.ItemStatus previousStatus = item.getStatus();
         if (updates.containsKey("item_name")) item.setItemName((String) updates.get("item_name"));
         if (updates.containsKey("school_name")) item.setSchoolName((String) updates.get("school_name"));
         if (updates.containsKey("description")) item.setDescription((String) updates.get("description"));
@@ -240,6 +641,7 @@ public class ItemController {
         if (updates.containsKey("back_photo")) item.setBackPhoto((String) updates.get("back_photo"));
 
         Item saved = itemRepository.save(item);
+        eventPublisher.publishEvent(ItemChangedEvent.saved(saved, previousStatus));
         return ResponseEntity.ok(toResponse(saved, userOpt.get()));
     }
 
@@ -260,11 +662,13 @@ public class ItemController {
             return ResponseEntity.status(403).body(Map.of("error", "Not authorized"));
         }
 
+        Item.ItemStatus previousStatus = item.getStatus();
         item.setStatus(Item.ItemStatus.AVAILABLE);
         item.setExpiryDate(LocalDate.now().plusDays(60));
         item.setRelistCount(item.getRelistCount() != null ? item.getRelistCount() + 1 : 1);
         item.setExpiryReminderSent(false);
         Item saved = itemRepository.save(item);
+        eventPublisher.publishEvent(ItemChangedEvent.saved(saved, previousStatus));
         return ResponseEntity.ok(toResponse(saved, userOpt.get()));
     }
 
@@ -291,40 +695,76 @@ public class ItemController {
         }
 
         itemRepository.delete(item);
+        eventPublisher.publishEvent(ItemChangedEvent.deleted(item));
         return ResponseEntity.ok(Map.of("message", "Item deleted successfully"));
     }
 
+    /**
+     * Cache key for a {@code GET /items} request. Parameters are normalized the way the
+     * handlers interpret them, so requests that produce the same response share an entry.
+     */
+    private String listCacheKey(Long itemTypeId, String schoolName, Item.ItemStatus status,
+                                String keyword, Integer limit, String cursor, GeoPoint origin) {
+        String page = origin == null && limit == null && cursor == null && legacyUnpaged
+                ? "all"
+                : String.valueOf(Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE)));
+        return String.join("\u001f", "items",
+                String.valueOf(itemTypeId),
+                String.valueOf(schoolName),
+                String.valueOf(status),
+                keyword != null ? keyword.toLowerCase(Locale.ROOT) : "null",
+                page,
+                cursor != null && !cursor.isBlank() ? cursor : "",
+                origin != null ? origin.latitude() + "," + origin.longitude() : "");
+    }
+
+    /**
+     * ETag for catalog collections, from {@link CatalogResponseCache#version()} so every
+     * instance agrees on it. The date covers {@code days_until_expiry}.
+     */
+    private String catalogETag(Object... parts) {
+        return ETags.strong("catalog", responseCache.version(), LocalDate.now(), Arrays.deepToString(parts));
+    }
+
+    private static ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     private Map<String, Object> toResponse(Item item, User user) {
+        return toResponse(ItemSummary.of(item, user));
+    }
+
+    private Map<String, Object> toResponse(ItemSummary item) {
         Map<String, Object> map = new LinkedHashMap<>();
-        map.put("id", item.getId());
-        map.put("item_name", item.getItemName());
-        map.put("name", item.getItemName());
-        map.put("category", item.getCategory());
-        map.put("subcategory", item.getSubcategory());
-        map.put("sport", item.getSport());
-        map.put("school_name", item.getSchoolName());
-        map.put("club_name", item.getClubName());
-        map.put("size", item.getSize());
-        map.put("gender", item.getGender() != null ? item.getGender().name() : null);
-        map.put("condition_grade", item.getConditionGrade());
-        map.put("price", item.getPrice());
-        map.put("front_photo", item.getFrontPhoto());
-        map.put("back_photo", item.getBackPhoto());
-        map.put("description", item.getDescription());
-        map.put("quantity", item.getQuantity());
-        map.put("status", item.getStatus() != null ? item.getStatus().name().toLowerCase() : "available");
-        map.put("sold_out", item.getQuantity() != null && item.getQuantity() == 0);
-        map.put("is_expired", item.getStatus() == Item.ItemStatus.EXPIRED);
-        map.put("created_at", item.getCreatedAt() != null ? item.getCreatedAt().toString() : null);
-        map.put("updated_at", item.getUpdatedAt() != null ? item.getUpdatedAt().toString() : null);
-        map.put("large_item", item.getLargeItem() != null && item.getLargeItem());
-        map.put("expiry_date", item.getExpiryDate() != null ? item.getExpiryDate().toString() : null);
-        map.put("days_until_expiry", item.getExpiryDate() != null ? (int) ChronoUnit.DAYS.between(LocalDate.now(), item.getExpiryDate()) : null);
-        map.put("relist_count", item.getRelistCount() != null ? item.getRelistCount() : 0);
-        map.put("seller_id", user.getId());
-        map.put("seller_alias", "Seller #" + Long.toHexString(user.getId()).toUpperCase());
-        map.put("seller_town", user.getTown());
-        map.put("seller_province", user.getProvince());
+        map.put("id", item.id());
+        map.put("item_name", item.itemName());
+        map.put("name", item.itemName());
+        map.put("category", item.category());
+        map.put("subcategory", item.subcategory());
+        map.put("sport", item.sport());
+        map.put("school_name", item.schoolName());
+        map.put("club_name", item.clubName());
+        map.put("size", item.size());
+        map.put("gender", item.gender() != null ? item.gender().name() : null);
+        map.put("condition_grade", item.conditionGrade());
+        map.put("price", item.price());
+        map.put("front_photo", item.frontPhoto());
+        map.put("back_photo", item.backPhoto());
+        map.put("description", item.description());
+        map.put("quantity", item.quantity());
+        map.put("status", item.status() != null ? item.status().name().toLowerCase() : "available");
+        map.put("sold_out", item.quantity() != null && item.quantity() == 0);
+        map.put("is_expired", item.status() == Item.ItemStatus.EXPIRED);
+        map.put("created_at", item.createdAt() != null ? item.createdAt().toString() : null);
+        map.put("updated_at", item.updatedAt() != null ? item.updatedAt().toString() : null);
+        map.put("large_item", item.largeItem() != null && item.largeItem());
+        map.put("expiry_date", item.expiryDate() != null ? item.expiryDate().toString() : null);
+        map.put("days_until_expiry", item.expiryDate() != null ? (int) ChronoUnit.DAYS.between(LocalDate.now(), item.expiryDate()) : null);
+        map.put("relist_count", item.relistCount() != null ? item.relistCount() : 0);
+        map.put("seller_id", item.sellerId());
+        map.put("seller_alias", "Seller #" + Long.toHexString(item.sellerId()).toUpperCase());
+        map.put("seller_town", item.sellerTown());
+        map.put("seller_province", item.sellerProvince());
         return map;
     }
 
@@ -3,10 +3,13 @@ package za.co.thrift.eduthrift.controller;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import za.co.thrift.eduthrift.entity.Notification;
 import za.co.thrift.eduthrift.entity.User;
+import za.co.thrift.eduthrift.repository.NotificationRepository;
 import za.co.thrift.eduthrift.repository.UserRepository;
 import za.co.thrift.eduthrift.service.NotificationService;
+import za.co.thrift.eduthrift.util.ETags;
 
 import java.util.HashMap;
 import java.util.List;
@@ -26,10 +29,14 @@ public class NotificationController {
     }
 
     @GetMapping
-    public ResponseEntity<?> getNotifications(Authentication authentication) {
+    public ResponseEntity<?> getNotifications(Authentication authentication, WebRequest webRequest) {
         User user = resolveUser(authentication);
         if (user == null) return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
 
+        NotificationRepository.InboxVersion version = notificationService.getInboxVersion(user);
+        String etag = ETags.strong("notifications", user.getId(), version.getCount(), version.getMaxId(), version.getReadCount());
+        if (webRequest.checkNotModified(etag)) return null;
+
         List<Map<String, Object>> result = notificationService.getForUser(user)
                 .stream()
                 .map(this::toResponse)
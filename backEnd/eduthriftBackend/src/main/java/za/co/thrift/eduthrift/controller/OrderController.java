@@ -1,46 +1,78 @@
 package za.co.thrift.eduthrift.controller;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import za.co.thrift.eduthrift.entity.Item;
 import za.co.thrift.eduthrift.entity.Order;
 import za.co.thrift.eduthrift.entity.User;
 import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.repository.ItemSummary;
 import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.repository.OrderSummary;
 import za.co.thrift.eduthrift.repository.UserRepository;
 import za.co.thrift.eduthrift.service.EscrowService;
-import za.co.thrift.eduthrift.service.EmailService;
-import za.co.thrift.eduthrift.service.FCMNotificationService;
+import za.co.thrift.eduthrift.service.ItemReservationService;
+import za.co.thrift.eduthrift.service.OrderExpiryService;
+import za.co.thrift.eduthrift.service.OrderNumberGenerator;
+import za.co.thrift.eduthrift.service.catalog.ItemStatusCounter;
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.outbox.OrderEmail;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+import za.co.thrift.eduthrift.util.ETags;
+import za.co.thrift.eduthrift.util.KeysetCursor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
     private final EscrowService escrowService;
-    private final FCMNotificationService fcmNotificationService;
-    private final EmailService emailService;
+    private final OutboxService outboxService;
+    private final ItemStatusCounter itemStatusCounter;
+    private final ItemReservationService itemReservationService;
+    private final OrderExpiryService orderExpiryService;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final OrderStateMachine orderStateMachine;
 
     public OrderController(OrderRepository orderRepository, UserRepository userRepository,
                            ItemRepository itemRepository, EscrowService escrowService,
-                           FCMNotificationService fcmNotificationService,
-                           EmailService emailService) {
+                           OutboxService outboxService,
+                           ItemStatusCounter itemStatusCounter,
+                           ItemReservationService itemReservationService,
+                           OrderExpiryService orderExpiryService,
+                           OrderNumberGenerator orderNumberGenerator,
+                           OrderStateMachine orderStateMachine) {
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
         this.itemRepository = itemRepository;
         this.escrowService = escrowService;
-        this.fcmNotificationService = fcmNotificationService;
-        this.emailService = emailService;
+        this.outboxService = outboxService;
+        this.itemStatusCounter = itemStatusCounter;
+        this.itemReservationService = itemReservationService;
+        this.orderExpiryService = orderExpiryService;
+        this.orderNumberGenerator = orderNumberGenerator;
+        this.orderStateMachine = orderStateMachine;
     }
 
+    // One transaction: stock, order and the outbox messages announcing it commit together
     @PostMapping
+    @Transactional
     public ResponseEntity<?> createOrder(@RequestBody CreateOrderRequest request, Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
@@ -60,44 +92,38 @@ public class OrderController {
             return ResponseEntity.badRequest().body(Map.of("error", "itemId or itemIds required"));
         }
 
-        // Validate all items exist and belong to the same seller
-        List<Item> items = new ArrayList<>();
-        for (Long itemId : itemIds) {
-            Optional<Item> itemOpt = itemRepository.findById(itemId);
-            if (itemOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Item not found: " + itemId));
-            items.add(itemOpt.get());
+        // Validate all items exist and belong to the same seller — one projection query for the whole bundle
+        Map<Long, ItemSummary> summaries = new HashMap<>();
+        for (ItemSummary summary : itemRepository.findSummariesByIdIn(itemIds)) {
+            summaries.put(summary.id(), summary);
         }
-
-        User seller = items.get(0).getUser();
-        for (Item item : items) {
-            if (!item.getUser().getId().equals(seller.getId())) {
+        BigDecimal itemTotal = BigDecimal.ZERO;
+        Long sellerId = null;
+        for (Long itemId : itemIds) {
+            ItemSummary summary = summaries.get(itemId);
+            if (summary == null) return ResponseEntity.status(404).body(Map.of("error", "Item not found: " + itemId));
+            if (sellerId == null) {
+                sellerId = summary.sellerId();
+            } else if (!sellerId.equals(summary.sellerId())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "All items in a bundle must be from the same seller"));
             }
+            itemTotal = itemTotal.add(summary.price());
         }
 
         User buyer = buyerOpt.get();
 
-        // Calculate bundle total
-        BigDecimal itemTotal = items.stream()
-                .map(Item::getPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
         // Enforce minimum bundle value of R500 only once platform has 100+ listings
-        long totalListings = itemRepository.countByStatus(Item.ItemStatus.AVAILABLE);
+        long totalListings = itemStatusCounter.count(Item.ItemStatus.AVAILABLE);
         if (totalListings >= 100 && itemTotal.compareTo(BigDecimal.valueOf(500)) < 0) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "Minimum bundle value is R500. Current total: R" + itemTotal.toPlainString()
             ));
         }
 
-        // Use first item as the primary item for the order entity
-        Item primaryItem = items.get(0);
-
         Order order = new Order();
+        order.setOrderNumber(orderNumberGenerator.next());
         order.setBuyer(buyer);
-        order.setSeller(seller);
-        order.setItem(primaryItem);
-        order.setQuantity(items.size());
+        order.setQuantity(itemIds.size());
         order.setItemPrice(itemTotal); // store bundle total as item price
         order.setShippingCost(BigDecimal.valueOf(request.shippingCost != null ? request.shippingCost : 0));
         order.setTotalAmount(itemTotal.add(BigDecimal.valueOf(request.shippingCost != null ? request.shippingCost : 0)));
@@ -105,40 +131,68 @@ public class OrderController {
         order.setDeliveryLockerId(request.deliveryLockerId);
         order.setServiceLevelCode(request.serviceLevelCode);
 
-        Order saved = orderRepository.save(order);
-
-        // Mark all items as RESERVED
-        for (Item item : items) {
-            item.setStatus(Item.ItemStatus.RESERVED);
-            itemRepository.save(item);
+        // Claim every unit and save the order atomically; a buyer who loses the race gets 409
+        Order saved;
+        try {
+            saved = itemReservationService.reserveAndPlace(order, itemIds);
+        } catch (ItemReservationService.ItemUnavailableException e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return ResponseEntity.status(409).body(Map.of("error", "Item is no longer available: " + e.getItemId()));
         }
+        orderExpiryService.schedulePaymentTimeout(saved);
+        User seller = saved.getSeller();
 
-        fcmNotificationService.sendAndPersist(
+        outboxService.pushAndPersist(
                 seller,
                 "New Bundle Order!",
-                "You have a new bundle order of " + items.size() + " item(s) totalling R" + itemTotal.toPlainString() + " (" + saved.getOrderNumber() + ")",
+                "You have a new bundle order of " + itemIds.size() + " item(s) totalling R" + itemTotal.toPlainString() + " (" + saved.getOrderNumber() + ")",
                 saved.getOrderNumber()
         );
-        fcmNotificationService.sendAndPersist(
+        outboxService.pushAndPersist(
                 buyer,
                 "Order Placed Successfully",
                 "Your order " + saved.getOrderNumber() + " has been placed. Complete payment to confirm.",
                 saved.getOrderNumber()
         );
 
-        emailService.sendBuyerOrderConfirmation(saved);
-        emailService.sendSellerOrderNotification(saved);
+        outboxService.email(OrderEmail.BUYER_ORDER_CONFIRMATION, saved);
+        outboxService.email(OrderEmail.SELLER_ORDER_NOTIFICATION, saved);
 
         return ResponseEntity.ok(toResponse(saved));
     }
 
+    /**
+     * The signed-in user's orders, newest first.
+     *
+     * <p>With {@code role=buyer|seller} returns one side as
+     * {@code {"orders": [...], "next_cursor": "...", "has_more": true}}, one query per page;
+     * pass {@code next_cursor} back as {@code cursor} for the following page.
+     *
+     * <p>Without {@code role} the legacy {@code {"buyerOrders": [...], "sellerOrders": [...]}}
+     * response is returned in full, for app builds that predate paging.
+     */
     @GetMapping
-    @Transactional(readOnly = true)
-    public ResponseEntity<?> getMyOrders(Authentication authentication) {
+    public ResponseEntity<?> getMyOrders(@RequestParam(required = false) String role,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String cursor,
+                                         Authentication authentication, WebRequest webRequest) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
 
+        boolean asBuyer = "buyer".equalsIgnoreCase(role);
+        if (role != null && !asBuyer && !"seller".equalsIgnoreCase(role)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid role, expected buyer or seller"));
+        }
+        KeysetCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+            }
+        }
+
         String email = authentication.getName();
         Optional<User> userOpt = userRepository.findByEmail(email);
         if (userOpt.isEmpty()) {
@@ -146,22 +200,56 @@ public class OrderController {
         }
 
         User user = userOpt.get();
-        List<Order> buyerOrders = orderRepository.findByBuyerOrderByCreatedAtDesc(user);
-        List<Order> sellerOrders = orderRepository.findBySellerOrderByCreatedAtDesc(user);
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("buyerOrders", buyerOrders.stream().map(this::toResponse).toList());
-        response.put("sellerOrders", sellerOrders.stream().map(this::toResponse).toList());
+        OrderRepository.ListVersion version = orderRepository.findListVersionByUserId(user.getId());
+        String etag = ETags.strong("orders", user.getId(), version.getCount(), version.getLastUpdated(),
+                version.getLastItemUpdated(), role, limit, cursor);
+        if (webRequest.checkNotModified(etag)) return null;
+
+        if (role == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("buyerOrders", toResponses(
+                    orderRepository.findPageByBuyer(user.getId(), null, null, Pageable.unpaged())));
+            response.put("sellerOrders", toResponses(
+                    orderRepository.findPageBySeller(user.getId(), null, null, Pageable.unpaged())));
+            return ResponseEntity.ok(response);
+        }
 
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+        // Fetch one extra row to find out whether another page follows
+        Pageable page = PageRequest.of(0, pageSize + 1);
+        LocalDateTime afterCreatedAt = after != null ? after.createdAt() : null;
+        Long afterId = after != null ? after.id() : null;
+        List<OrderSummary> rows = asBuyer
+                ? orderRepository.findPageByBuyer(user.getId(), afterCreatedAt, afterId, page)
+                : orderRepository.findPageBySeller(user.getId(), afterCreatedAt, afterId, page);
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderSummary> orders = hasMore ? rows.subList(0, pageSize) : rows;
+
+        OrderSummary last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        String nextCursor = hasMore && last.createdAt() != null
+                ? new KeysetCursor(last.createdAt(), last.id()).encode()
+                : null;
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("orders", toResponses(orders));
+        response.put("next_cursor", nextCursor);
+        response.put("has_more", nextCursor != null);
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/{orderNumber}")
-    public ResponseEntity<?> getOrderByNumber(@PathVariable String orderNumber, Authentication authentication) {
+    public ResponseEntity<?> getOrderByNumber(@PathVariable String orderNumber, Authentication authentication,
+                                              WebRequest webRequest) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
         String email = authentication.getName();
+        Optional<OrderRepository.OrderVersion> version = orderRepository.findVersionByOrderNumber(orderNumber)
+                .filter(v -> email.equals(v.getBuyerEmail()) || email.equals(v.getSellerEmail()));
+        if (version.isEmpty()) return ResponseEntity.status(404).body(null);
+        String etag = ETags.strong("order", orderNumber, email, version.get().getUpdatedAt(), version.get().getItemUpdatedAt());
+        if (webRequest.checkNotModified(etag)) return null;
+
         return orderRepository.findByOrderNumber(orderNumber)
             .filter(o -> o.getBuyer().getEmail().equals(email) || o.getSeller().getEmail().equals(email))
             .map(o -> ResponseEntity.ok(toResponse(o)))
@@ -169,6 +257,7 @@ public class OrderController {
     }
 
     @PutMapping("/{orderNumber}/status")
+    @Transactional
     public ResponseEntity<?> updateOrderStatus(@PathVariable String orderNumber,
                                                @RequestBody Map<String, String> body,
                                                Authentication authentication) {
@@ -179,53 +268,65 @@ public class OrderController {
         if (status == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "status is required"));
         }
+        // Only these statuses are set by hand; payment, escrow and payout statuses follow their own events
+        OrderEvent event = switch (status.toUpperCase()) {
+            case "SHIPPED"   -> OrderEvent.SHIPPED;
+            case "DELIVERED" -> OrderEvent.ARRIVED;
+            case "CANCELLED" -> OrderEvent.CANCELLED;
+            default -> null;
+        };
+        if (event == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid status: " + status));
+        }
         return orderRepository.findByOrderNumber(orderNumber).map(order -> {
             try {
-                Order.OrderStatus newStatus = Order.OrderStatus.valueOf(status.toUpperCase());
-                order.setOrderStatus(newStatus);
-                orderRepository.save(order);
+                if (!orderStateMachine.apply(order, event)) {
+                    return ResponseEntity.ok(toResponse(order));
+                }
 
                 // Notify the relevant party based on the new status
-                switch (newStatus) {
+                switch (event) {
                     case SHIPPED -> {
-                        fcmNotificationService.sendAndPersist(
+                        outboxService.pushAndPersist(
                                 order.getBuyer(),
                                 "Your Order is On Its Way",
                                 "Order " + orderNumber + " has been shipped. Check your orders for tracking details.",
                                 orderNumber
                         );
-                        emailService.sendOrderShippedEmail(order);
+                        outboxService.email(OrderEmail.ORDER_SHIPPED, order);
                     }
-                    case DELIVERED -> {
-                        fcmNotificationService.sendAndPersist(
+                    case ARRIVED -> {
+                        outboxService.pushAndPersist(
                                 order.getBuyer(),
                                 "Order Delivered",
                                 "Order " + orderNumber + " has been delivered. Please confirm receipt in the app.",
                                 orderNumber
                         );
-                        emailService.sendOrderArrivedEmail(order);
+                        outboxService.email(OrderEmail.ORDER_ARRIVED, order);
                     }
                     case CANCELLED -> {
-                        fcmNotificationService.sendAndPersist(
+                        outboxService.pushAndPersist(
                                 order.getBuyer(),
                                 "Order Cancelled",
                                 "Order " + orderNumber + " has been cancelled.",
                                 orderNumber
                         );
-                        fcmNotificationService.sendAndPersist(
+                        outboxService.pushAndPersist(
                                 order.getSeller(),
                                 "Order Cancelled",
                                 "Order " + orderNumber + " has been cancelled.",
                                 orderNumber
                         );
-                        emailService.sendOrderCancellationEmail(order, "Order was cancelled");
+                        outboxService.email(OrderEmail.ORDER_CANCELLATION, order, "Order was cancelled");
                     }
                     default -> { /* no notification for other transitions */ }
                 }
 
                 return ResponseEntity.ok(toResponse(order));
-            } catch (IllegalArgumentException e) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Invalid status: " + status));
+            } catch (OrderStateMachine.IllegalTransitionException e) {
+                return ResponseEntity.status(409).body(Map.of("error",
+                        "Order " + orderNumber + " cannot be marked " + status.toUpperCase()
+                                + " while it is " + order.getOrderStatus()));
             }
         }).orElse(ResponseEntity.status(404).body(null));
     }
@@ -272,29 +373,40 @@ public class OrderController {
     }
 
     private Map<String, Object> toResponse(Order order) {
+        return toResponse(OrderSummary.of(order));
+    }
+
+    private List<Map<String, Object>> toResponses(List<OrderSummary> orders) {
+        List<Map<String, Object>> response = new ArrayList<>(orders.size());
+        for (OrderSummary order : orders) {
+            response.add(toResponse(order));
+        }
+        return response;
+    }
+
+    private Map<String, Object> toResponse(OrderSummary order) {
         Map<String, Object> map = new HashMap<>();
-        map.put("orderNumber", order.getOrderNumber());
-        Item item = order.getItem();
-        map.put("itemName", item != null ? item.getItemName() : "Unknown item");
-        map.put("itemImage", item != null ? item.getFrontPhoto() : null);
-        map.put("itemPrice", order.getItemPrice());
-        map.put("shippingCost", order.getShippingCost());
-        map.put("buyerProtectionFee", order.getBuyerProtectionFee());
-        map.put("quantity", order.getQuantity());
-        map.put("totalAmount", order.getTotalAmount());
-        map.put("orderStatus", order.getOrderStatus() != null ? order.getOrderStatus().name() : Order.OrderStatus.PENDING_PAYMENT.name());
-        map.put("paymentStatus", order.getPaymentStatus() != null ? order.getPaymentStatus().name() : Order.PaymentStatus.PENDING.name());
-        map.put("escrowStatus", order.getEscrowStatus() != null ? order.getEscrowStatus().name() : Order.EscrowStatus.PENDING.name());
-        map.put("sellerPayout", order.getSellerPayout());
-        map.put("platformFee", order.getPlatformFee());
-        map.put("deliveryConfirmed", order.getDeliveryConfirmed());
-        map.put("disputeStatus", order.getDisputeStatus() != null ? order.getDisputeStatus().name() : Order.DisputeStatus.NONE.name());
-        map.put("disputeReason", order.getDisputeReason());
-        map.put("pickupPoint", order.getPickupPoint());
-        map.put("trackingNumber", order.getTrackingNumber());
-        map.put("sellerAlias", "Seller #" + Long.toHexString(order.getSeller().getId()).toUpperCase());
-        map.put("buyerAlias", "Buyer #" + Long.toHexString(order.getBuyer().getId()).toUpperCase());
-        map.put("createdAt", order.getCreatedAt().toString());
+        map.put("orderNumber", order.orderNumber());
+        map.put("itemName", order.itemName() != null ? order.itemName() : "Unknown item");
+        map.put("itemImage", order.itemImage());
+        map.put("itemPrice", order.itemPrice());
+        map.put("shippingCost", order.shippingCost());
+        map.put("buyerProtectionFee", order.buyerProtectionFee());
+        map.put("quantity", order.quantity());
+        map.put("totalAmount", order.totalAmount());
+        map.put("orderStatus", order.orderStatus() != null ? order.orderStatus().name() : Order.OrderStatus.PENDING_PAYMENT.name());
+        map.put("paymentStatus", order.paymentStatus() != null ? order.paymentStatus().name() : Order.PaymentStatus.PENDING.name());
+        map.put("escrowStatus", order.escrowStatus() != null ? order.escrowStatus().name() : Order.EscrowStatus.PENDING.name());
+        map.put("sellerPayout", order.sellerPayout());
+        map.put("platformFee", order.platformFee());
+        map.put("deliveryConfirmed", order.deliveryConfirmed());
+        map.put("disputeStatus", order.disputeStatus() != null ? order.disputeStatus().name() : Order.DisputeStatus.NONE.name());
+        map.put("disputeReason", order.disputeReason());
+        map.put("pickupPoint", order.pickupPoint());
+        map.put("trackingNumber", order.trackingNumber());
+        map.put("sellerAlias", "Seller #" + Long.toHexString(order.sellerId()).toUpperCase());
+        map.put("buyerAlias", "Buyer #" + Long.toHexString(order.buyerId()).toUpperCase());
+        map.put("createdAt", order.createdAt().toString());
         return map;
     }
 
@@ -2,28 +2,31 @@ package za.co.thrift.eduthrift.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import za.co.thrift.eduthrift.entity.Order;
-import za.co.thrift.eduthrift.repository.OrderRepository;
-import za.co.thrift.eduthrift.service.EscrowService;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.service.WebhookLogService;
+import za.co.thrift.eduthrift.service.payment.WebhookRequest;
+import za.co.thrift.eduthrift.service.webhook.PudoEventProcessor;
+import za.co.thrift.eduthrift.service.webhook.WebhookInbox;
 
 import jakarta.servlet.http.HttpServletRequest;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.HexFormat;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Receives delivery status webhooks from PUDO.
  *
  * When a buyer opens the locker and collects their item, PUDO posts a webhook here.
- * We call TradeSafe allocationAcceptDelivery which releases funds to the seller automatically.
+ * Verified events are queued and acknowledged straight away; {@link PudoEventProcessor}
+ * applies them afterwards (calling TradeSafe allocationAcceptDelivery on collection).
  *
  * One-time setup (once PUDO approves your API access):
  *   1. Generate a random secret and set PUDO_WEBHOOK_SECRET in your .env
@@ -34,30 +37,36 @@ import java.util.Optional;
 @RequestMapping("/webhooks")
 public class PudoWebhookController {
 
+    private static final Logger log = LoggerFactory.getLogger(PudoWebhookController.class);
+
     @Value("${pudo.webhook.secret:}")
     private String webhookSecret;
 
-    private final OrderRepository orderRepository;
-    private final EscrowService escrowService;
+    private final WebhookInbox webhookInbox;
+    private final WebhookLogService webhookLogService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public PudoWebhookController(OrderRepository orderRepository, EscrowService escrowService) {
-        this.orderRepository = orderRepository;
-        this.escrowService = escrowService;
+    public PudoWebhookController(WebhookInbox webhookInbox, WebhookLogService webhookLogService) {
+        this.webhookInbox = webhookInbox;
+        this.webhookLogService = webhookLogService;
     }
 
     @PostMapping("/pudo")
     public ResponseEntity<?> handlePudoWebhook(
             @RequestHeader(value = "X-Pudo-Signature", required = false) String signature,
+            @RequestHeader Map<String, String> headers,
             HttpServletRequest request) throws IOException {
 
         // Read raw body once so we can both verify the signature and parse the JSON
         byte[] bodyBytes = request.getInputStream().readAllBytes();
         String rawBody = new String(bodyBytes, StandardCharsets.UTF_8);
+        String auditId = webhookLogService.logIncoming(InboundWebhookEvent.Source.PUDO.name(), "/webhooks/pudo",
+                WebhookRequest.ofJson(rawBody, headers));
 
         // Verify HMAC-SHA256 signature when a secret is configured
         if (webhookSecret != null && !webhookSecret.isBlank()) {
             if (!isSignatureValid(rawBody, signature)) {
+                webhookLogService.markFailed(auditId, "Invalid signature");
                 return ResponseEntity.status(401).body(Map.of("error", "Invalid signature"));
             }
         }
@@ -66,85 +75,36 @@ public class PudoWebhookController {
         try {
             payload = objectMapper.readValue(rawBody, new TypeReference<>() {});
         } catch (Exception e) {
+            webhookLogService.markFailed(auditId, "Invalid JSON payload");
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid JSON payload"));
         }
 
         // PUDO may nest data differently across API versions — probe both top-level and nested
-        String trackingNumber = extractField(payload, "waybill_number", "tracking_number", "parcel_number", "reference");
-        if (trackingNumber == null) {
+        if (PudoEventProcessor.trackingNumber(payload) == null) {
+            webhookLogService.markFailed(auditId, "No tracking number in payload");
             return ResponseEntity.badRequest().body(Map.of("error", "No tracking number in payload"));
         }
 
-        String status = extractField(payload, "status", "event", "event_type", "parcel_status");
-        if (status == null) {
+        if (PudoEventProcessor.status(payload) == null) {
+            webhookLogService.markVerified(auditId, null);
+            webhookLogService.markProcessed(auditId);
             return ResponseEntity.ok(Map.of("received", true, "action", "ignored_no_status"));
         }
 
-        Optional<Order> orderOpt = orderRepository.findByTrackingNumber(trackingNumber);
-        if (orderOpt.isEmpty()) {
-            // Unknown tracking number — acknowledge so PUDO doesn't keep retrying
-            return ResponseEntity.ok(Map.of("received", true, "action", "order_not_found"));
-        }
-
-        Order order = orderOpt.get();
-
-        return switch (status.toUpperCase()) {
-            case "COLLECTED", "DELIVERED", "PARCEL_COLLECTED", "COLLECTION_COMPLETED" -> {
-                // Buyer collected from locker — run the full escrow release state machine
-                try {
-                    escrowService.confirmDelivery(order.getOrderNumber());
-                } catch (Exception e) {
-                    // Delivery may already be confirmed (idempotent re-delivery from PUDO)
-                    yield ResponseEntity.ok(Map.of(
-                        "received", true,
-                        "action", "delivery_already_processed",
-                        "orderNumber", order.getOrderNumber()
-                    ));
-                }
-                yield ResponseEntity.ok(Map.of(
-                    "received", true,
-                    "action", "funds_released",
-                    "orderNumber", order.getOrderNumber()
-                ));
-            }
-            case "AT_LOCKER", "READY_FOR_COLLECTION" -> {
-                // Item arrived at locker — update status, reset the 72h window from now,
-                // and email the buyer so they know to collect.
-                order.setOrderStatus(Order.OrderStatus.DELIVERED);
-                order.setPayoutScheduledAt(LocalDateTime.now().plusHours(72));
-                orderRepository.save(order);
-                escrowService.sendItemReadyForCollectionEmail(order);
-                yield ResponseEntity.ok(Map.of("received", true, "action", "buyer_notified_ready_for_collection"));
-            }
-            case "IN_TRANSIT", "PARCEL_RECEIVED" -> {
-                // Item en route — update status, leave timer unchanged
-                order.setOrderStatus(Order.OrderStatus.SHIPPED);
-                orderRepository.save(order);
-                yield ResponseEntity.ok(Map.of("received", true, "action", "status_updated"));
-            }
-            default ->
-                // Unrecognised event — acknowledge without taking action
-                ResponseEntity.ok(Map.of("received", true, "action", "ignored", "status", status));
-        };
-    }
-
-    /**
-     * Tries each key in order on both the top-level payload and a nested "data" object.
-     */
-    @SuppressWarnings("unchecked")
-    private String extractField(Map<String, Object> payload, String... keys) {
-        for (String key : keys) {
-            Object val = payload.get(key);
-            if (val instanceof String s && !s.isBlank()) return s;
-        }
-        Object nested = payload.get("data");
-        if (nested instanceof Map<?, ?> dataMap) {
-            for (String key : keys) {
-                Object val = ((Map<String, Object>) dataMap).get(key);
-                if (val instanceof String s && !s.isBlank()) return s;
+        try {
+            if (webhookInbox.isDuplicate(InboundWebhookEvent.Source.PUDO, payload)) {
+                webhookLogService.markVerified(auditId, null);
+                webhookLogService.markProcessed(auditId);
+                return ResponseEntity.ok(Map.of("received", true, "action", "duplicate"));
             }
+            webhookInbox.accept(InboundWebhookEvent.Source.PUDO, rawBody, auditId);
+        } catch (Exception e) {
+            log.error("Failed to queue PUDO webhook: {}", e.getMessage(), e);
+            webhookLogService.markFailed(auditId, "Could not queue: " + e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("error", "Callback processing failed"));
         }
-        return null;
+        webhookLogService.markVerified(auditId, null);
+        return ResponseEntity.ok(Map.of("received", true));
     }
 
     /**
@@ -2,12 +2,16 @@ package za.co.thrift.eduthrift.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import za.co.thrift.eduthrift.entity.Order;
-import za.co.thrift.eduthrift.repository.OrderRepository;
-import za.co.thrift.eduthrift.service.EscrowService;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.service.WebhookLogService;
+import za.co.thrift.eduthrift.service.payment.WebhookRequest;
+import za.co.thrift.eduthrift.service.webhook.ShipLogicEventProcessor;
+import za.co.thrift.eduthrift.service.webhook.WebhookInbox;
 
 import jakarta.servlet.http.HttpServletRequest;
 import javax.crypto.Mac;
@@ -16,14 +20,14 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HexFormat;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Receives delivery status webhooks from ShipLogic (TCG/CourierGuy).
  *
  * When a courier delivers a large item to the buyer's address, ShipLogic posts a tracking
- * event here. On delivery confirmation we call TradeSafe allocationAcceptDelivery to release
- * funds to the seller — mirroring what PudoWebhookController does for locker orders.
+ * event here. Verified events are queued and acknowledged straight away;
+ * {@link ShipLogicEventProcessor} applies them afterwards, releasing funds to the seller
+ * on delivery confirmation — mirroring what PudoWebhookController does for locker orders.
  *
  * One-time setup (ShipLogic developer portal):
  *   1. Generate a random secret and set SHIPLOGIC_WEBHOOK_SECRET in your .env
@@ -33,28 +37,34 @@ import java.util.Optional;
 @RequestMapping("/webhooks")
 public class ShipLogicWebhookController {
 
+    private static final Logger log = LoggerFactory.getLogger(ShipLogicWebhookController.class);
+
     @Value("${shiplogic.webhook.secret:}")
     private String webhookSecret;
 
-    private final OrderRepository orderRepository;
-    private final EscrowService escrowService;
+    private final WebhookInbox webhookInbox;
+    private final WebhookLogService webhookLogService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public ShipLogicWebhookController(OrderRepository orderRepository, EscrowService escrowService) {
-        this.orderRepository = orderRepository;
-        this.escrowService = escrowService;
+    public ShipLogicWebhookController(WebhookInbox webhookInbox, WebhookLogService webhookLogService) {
+        this.webhookInbox = webhookInbox;
+        this.webhookLogService = webhookLogService;
     }
 
     @PostMapping("/shiplogic")
     public ResponseEntity<?> handleShipLogicWebhook(
             @RequestHeader(value = "X-ShipLogic-Signature", required = false) String signature,
+            @RequestHeader Map<String, String> headers,
             HttpServletRequest request) throws IOException {
 
         byte[] bodyBytes = request.getInputStream().readAllBytes();
         String rawBody = new String(bodyBytes, StandardCharsets.UTF_8);
+        String auditId = webhookLogService.logIncoming(InboundWebhookEvent.Source.SHIPLOGIC.name(), "/webhooks/shiplogic",
+                WebhookRequest.ofJson(rawBody, headers));
 
         if (webhookSecret != null && !webhookSecret.isBlank()) {
             if (!isSignatureValid(rawBody, signature)) {
+                webhookLogService.markFailed(auditId, "Invalid signature");
                 return ResponseEntity.status(401).body(Map.of("error", "Invalid signature"));
             }
         }
@@ -63,82 +73,30 @@ public class ShipLogicWebhookController {
         try {
             payload = objectMapper.readValue(rawBody, new TypeReference<>() {});
         } catch (Exception e) {
+            webhookLogService.markFailed(auditId, "Invalid JSON payload");
             return ResponseEntity.badRequest().body(Map.of("error", "Invalid JSON payload"));
         }
 
-        // ShipLogic webhook events include the shipment ID and a status/event field
-        String shipmentId = extractField(payload, "id", "shipment_id");
-        String trackingRef = extractField(payload, "short_tracking_reference", "tracking_reference", "customer_reference");
-        String status = extractField(payload, "status", "event", "event_type");
-
-        if (status == null) {
+        if (ShipLogicEventProcessor.status(payload) == null) {
+            webhookLogService.markVerified(auditId, null);
+            webhookLogService.markProcessed(auditId);
             return ResponseEntity.ok(Map.of("received", true, "action", "ignored_no_status"));
         }
 
-        // Locate the order by TCG shipment ID first, then by tracking number or order number
-        Optional<Order> orderOpt = Optional.empty();
-        if (shipmentId != null) {
-            orderOpt = orderRepository.findByTcgShipmentId(shipmentId);
-        }
-        if (orderOpt.isEmpty() && trackingRef != null) {
-            orderOpt = orderRepository.findByTrackingNumber(trackingRef);
-            if (orderOpt.isEmpty()) {
-                orderOpt = orderRepository.findByOrderNumber(trackingRef);
-            }
-        }
-
-        if (orderOpt.isEmpty()) {
-            return ResponseEntity.ok(Map.of("received", true, "action", "order_not_found"));
-        }
-
-        Order order = orderOpt.get();
-
-        return switch (status.toLowerCase()) {
-            case "delivered", "delivery-confirmed" -> {
-                try {
-                    escrowService.confirmDelivery(order.getOrderNumber());
-                } catch (Exception e) {
-                    yield ResponseEntity.ok(Map.of(
-                        "received", true,
-                        "action", "delivery_already_processed",
-                        "orderNumber", order.getOrderNumber()
-                    ));
-                }
-                yield ResponseEntity.ok(Map.of(
-                    "received", true,
-                    "action", "funds_released",
-                    "orderNumber", order.getOrderNumber()
-                ));
-            }
-            case "in-transit", "out-for-delivery", "collected", "collection-assigned" -> {
-                order.setOrderStatus(Order.OrderStatus.SHIPPED);
-                orderRepository.save(order);
-                yield ResponseEntity.ok(Map.of("received", true, "action", "status_updated", "status", status));
-            }
-            case "ready-for-pickup" -> {
-                order.setOrderStatus(Order.OrderStatus.DELIVERED);
-                orderRepository.save(order);
-                yield ResponseEntity.ok(Map.of("received", true, "action", "status_updated", "status", status));
-            }
-            default ->
-                ResponseEntity.ok(Map.of("received", true, "action", "ignored", "status", status));
-        };
-    }
-
-    @SuppressWarnings("unchecked")
-    private String extractField(Map<String, Object> payload, String... keys) {
-        for (String key : keys) {
-            Object val = payload.get(key);
-            if (val instanceof String s && !s.isBlank()) return s;
-        }
-        Object nested = payload.get("data");
-        if (nested instanceof Map<?, ?> dataMap) {
-            for (String key : keys) {
-                Object val = ((Map<String, Object>) dataMap).get(key);
-                if (val instanceof String s && !s.isBlank()) return s;
+        try {
+            if (webhookInbox.isDuplicate(InboundWebhookEvent.Source.SHIPLOGIC, payload)) {
+                webhookLogService.markVerified(auditId, null);
+                webhookLogService.markProcessed(auditId);
+                return ResponseEntity.ok(Map.of("received", true, "action", "duplicate"));
             }
+            webhookInbox.accept(InboundWebhookEvent.Source.SHIPLOGIC, rawBody, auditId);
+        } catch (Exception e) {
+            log.error("Failed to queue ShipLogic webhook: {}", e.getMessage(), e);
+            webhookLogService.markFailed(auditId, "Could not queue: " + e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("error", "Callback processing failed"));
         }
-        return null;
+        webhookLogService.markVerified(auditId, null);
+        return ResponseEntity.ok(Map.of("received", true));
     }
 
     private boolean isSignatureValid(String body, String receivedSignature) {
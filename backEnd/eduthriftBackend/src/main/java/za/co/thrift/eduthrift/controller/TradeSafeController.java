@@ -1,19 +1,22 @@
 package za.co.thrift.eduthrift.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
 import za.co.thrift.eduthrift.entity.Order;
 import za.co.thrift.eduthrift.entity.User;
 import za.co.thrift.eduthrift.repository.OrderRepository;
 import za.co.thrift.eduthrift.repository.UserRepository;
-import za.co.thrift.eduthrift.service.EmailService;
-import za.co.thrift.eduthrift.service.FCMNotificationService;
-import za.co.thrift.eduthrift.service.OrderExpiryService;
-import za.co.thrift.eduthrift.service.TCGShippingService;
 import za.co.thrift.eduthrift.service.TradeSafeService;
+import za.co.thrift.eduthrift.service.WebhookLogService;
+import za.co.thrift.eduthrift.service.payment.WebhookRequest;
+import za.co.thrift.eduthrift.service.webhook.TradeSafeCallbackProcessor;
+import za.co.thrift.eduthrift.service.webhook.WebhookInbox;
 
 import java.util.Map;
 import java.util.Optional;
@@ -24,176 +27,67 @@ public class TradeSafeController {
     private static final Logger log = LoggerFactory.getLogger(TradeSafeController.class);
 
     private final TradeSafeService tradeSafeService;
-    private final TCGShippingService tcgShippingService;
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
-    private final FCMNotificationService fcmNotificationService;
-    private final OrderExpiryService orderExpiryService;
-    private final EmailService emailService;
+    private final WebhookInbox webhookInbox;
+    private final WebhookLogService webhookLogService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     public TradeSafeController(TradeSafeService tradeSafeService,
-                                TCGShippingService tcgShippingService,
                                 OrderRepository orderRepository,
                                 UserRepository userRepository,
-                                FCMNotificationService fcmNotificationService,
-                                OrderExpiryService orderExpiryService,
-                                EmailService emailService) {
+                                WebhookInbox webhookInbox,
+                                WebhookLogService webhookLogService) {
         this.tradeSafeService = tradeSafeService;
-        this.tcgShippingService = tcgShippingService;
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
-        this.fcmNotificationService = fcmNotificationService;
-        this.orderExpiryService = orderExpiryService;
-        this.emailService = emailService;
+        this.webhookInbox = webhookInbox;
+        this.webhookLogService = webhookLogService;
     }
 
     /**
      * Called by TradeSafe when a transaction state changes (e.g. funds received, delivery accepted).
      * This endpoint must be publicly accessible — TradeSafe calls it from their servers.
      * Registered in TradeSafe developer portal as: https://www.eduthrift.co.za/tradesafe/callback
+     * The callback is queued and answered straight away; {@link TradeSafeCallbackProcessor}
+     * applies it to the order afterwards.
      */
     @PostMapping("/tradesafe/callback")
-    public ResponseEntity<?> handleCallback(@RequestBody Map<String, Object> payload) {
-        try {
-            // TradeSafe wraps the transaction data under a "data" key:
-            // { "url": "...", "data": { "id": "...", "state": "...", "reference": "..." } }
-            @SuppressWarnings("unchecked")
-            Map<String, Object> data = payload.get("data") instanceof Map
-                    ? (Map<String, Object>) payload.get("data")
-                    : payload; // fall back to top-level for forward-compatibility
-
-            String transactionId = (String) data.get("id");
-            String state = (String) data.get("state");
-            String reference = (String) data.get("reference");
-
-            if (transactionId == null || state == null) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Missing id or state"));
-            }
-
-            // Look up order by TradeSafe transaction ID first, then fall back to reference
-            Optional<Order> orderOpt = orderRepository.findByTradeSafeTransactionId(transactionId);
-            if (orderOpt.isEmpty() && reference != null) {
-                orderOpt = orderRepository.findByOrderNumber(reference);
-            }
+    public ResponseEntity<?> handleCallback(@RequestBody String rawBody,
+                                            @RequestHeader Map<String, String> headers) {
+        String auditId = webhookLogService.logIncoming(InboundWebhookEvent.Source.TRADESAFE.name(),
+                "/tradesafe/callback", WebhookRequest.ofJson(rawBody, headers));
 
-            if (orderOpt.isEmpty()) {
-                // Unknown transaction — acknowledge to prevent retries
-                return ResponseEntity.ok(Map.of("received", true));
-            }
-
-            Order order = orderOpt.get();
-
-            switch (state) {
-                case "FUNDS_RECEIVED" -> {
-                    order.setPaymentStatus(Order.PaymentStatus.CAPTURED);
-                    order.setOrderStatus(Order.OrderStatus.PAYMENT_CONFIRMED);
-                    order.setEscrowStatus(Order.EscrowStatus.HELD);
-                    fcmNotificationService.send(
-                            order.getBuyer().getFcmToken(),
-                            "Payment Received",
-                            "Your payment for order " + order.getOrderNumber() + " is held in escrow. The seller will ship your item shortly."
-                    );
+        Map<String, Object> payload;
+        try {
+            payload = objectMapper.readValue(rawBody, new TypeReference<>() {});
+        } catch (Exception e) {
+            webhookLogService.markFailed(auditId, "Invalid JSON payload");
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid JSON payload"));
+        }
 
-                    // Create TCG shipment now that funds are secured in escrow
-                    String trackingRef = null;
-                    if (order.getDeliveryLockerId() != null && order.getServiceLevelCode() != null) {
-                        try {
-                            Map<String, Object> shipment = tcgShippingService.createShipment(
-                                    order, order.getSeller(), order.getBuyer());
-                            Object tRef = shipment.get("short_tracking_reference");
-                            if (tRef == null) tRef = shipment.get("tracking_reference");
-                            if (tRef != null) {
-                                trackingRef = tRef.toString();
-                                order.setTrackingNumber(trackingRef);
-                            }
-                            Object shipmentId = shipment.get("id");
-                            if (shipmentId != null) {
-                                order.setTcgShipmentId(shipmentId.toString());
-                            }
-                            // Advance TradeSafe allocation to INITIATED now that shipment is booked
-                            if (order.getTradeSafeAllocationId() != null) {
-                                try {
-                                    tradeSafeService.startDelivery(order.getTradeSafeAllocationId());
-                                } catch (Exception e) {
-                                    log.warn("TradeSafe startDelivery failed for order {}: {}",
-                                            order.getOrderNumber(), e.getMessage());
-                                }
-                            }
-                        } catch (Exception ignored) {}
-                    }
+        Map<String, Object> data = TradeSafeCallbackProcessor.transactionData(payload);
+        if (!(data.get("id") instanceof String) || !(data.get("state") instanceof String)) {
+            webhookLogService.markFailed(auditId, "Missing id or state");
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing id or state"));
+        }
 
-                    // Notify seller with Pudo drop-off instructions including the waybill
-                    String sellerMsg = "Funds for order " + order.getOrderNumber()
-                            + " are secured in escrow. Please drop off the item at your nearest Pudo locker.";
-                    if (trackingRef != null) {
-                        sellerMsg += " Waybill: " + trackingRef + ". Buyer's locker: "
-                                + (order.getPickupPoint() != null ? order.getPickupPoint() : "see order details") + ".";
-                    } else {
-                        sellerMsg += " Open your orders in the app for the waybill and drop-off instructions.";
-                    }
-                    fcmNotificationService.send(
-                            order.getSeller().getFcmToken(),
-                            "Action Required: Drop Off Item",
-                            sellerMsg
-                    );
-                    // Send seller email with waybill now that shipment is created
-                    emailService.sendSellerShipNowEmail(order);
-                }
-                case "DELIVERY_ACCEPTED" -> {
-                    order.setOrderStatus(Order.OrderStatus.DELIVERED);
-                    order.setDeliveryConfirmed(true);
-                    fcmNotificationService.send(
-                            order.getSeller().getFcmToken(),
-                            "Delivery Confirmed",
-                            "The buyer has confirmed receipt of order " + order.getOrderNumber() + ". Funds will be released to you shortly."
-                    );
-                }
-                case "COMPLETED" -> {
-                    order.setOrderStatus(Order.OrderStatus.COMPLETED);
-                    order.setEscrowStatus(Order.EscrowStatus.RELEASED_TO_SELLER);
-                    order.setPayoutStatus(Order.PayoutStatus.COMPLETED);
-                    fcmNotificationService.send(
-                            order.getSeller().getFcmToken(),
-                            "Payment Released",
-                            "Funds for order " + order.getOrderNumber() + " have been released to your account."
-                    );
-                }
-                case "DISPUTED" -> {
-                    order.setDisputeStatus(Order.DisputeStatus.OPEN);
-                    fcmNotificationService.send(
-                            order.getBuyer().getFcmToken(),
-                            "Dispute Opened",
-                            "A dispute has been opened for order " + order.getOrderNumber() + ". Our team will review within 24 hours."
-                    );
-                    fcmNotificationService.send(
-                            order.getSeller().getFcmToken(),
-                            "Dispute Opened",
-                            "A dispute has been opened for order " + order.getOrderNumber() + ". Funds remain frozen until resolved."
-                    );
-                }
-                case "CANCELLED", "DECLINED" -> {
-                    orderExpiryService.cancelOrderAndRestoreItem(order, "Payment was cancelled or declined via TradeSafe");
-                }
-                case "REFUNDED" -> {
-                    order.setPaymentStatus(Order.PaymentStatus.REFUNDED);
-                    order.setOrderStatus(Order.OrderStatus.REFUNDED);
-                    order.setEscrowStatus(Order.EscrowStatus.REFUNDED_TO_BUYER);
-                    fcmNotificationService.send(
-                            order.getBuyer().getFcmToken(),
-                            "Refund Processed",
-                            "Your refund for order " + order.getOrderNumber() + " has been processed."
-                    );
-                }
-                default -> { /* Unknown state — log and ignore */ }
+        String reference = data.get("reference") instanceof String ref ? ref : null;
+        try {
+            // TradeSafe retries until it gets a 200, so repeats of a processed state are common
+            if (webhookInbox.isDuplicate(InboundWebhookEvent.Source.TRADESAFE, payload)) {
+                webhookLogService.markVerified(auditId, reference);
+                webhookLogService.markProcessed(auditId);
+                return ResponseEntity.ok(Map.of("received", true, "action", "duplicate"));
             }
-
-            orderRepository.save(order);
-            return ResponseEntity.ok(Map.of("received", true));
-
+            webhookInbox.accept(InboundWebhookEvent.Source.TRADESAFE, rawBody, auditId);
         } catch (Exception e) {
-            log.error("TradeSafe callback processing failed: {}", e.getMessage(), e);
+            log.error("Failed to queue TradeSafe callback: {}", e.getMessage(), e);
+            webhookLogService.markFailed(auditId, "Could not queue: " + e.getMessage());
             return ResponseEntity.status(500).body(Map.of("error", "Callback processing failed"));
         }
+        webhookLogService.markVerified(auditId, reference);
+        return ResponseEntity.ok(Map.of("received", true));
     }
 
     /**
@@ -0,0 +1,72 @@
+package za.co.thrift.eduthrift.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * A verified webhook from TradeSafe or a courier, stored as received and processed
+ * afterwards by {@code WebhookDispatcher}. The controller only answers the sender once
+ * this row is committed.
+ */
+@Entity
+@Table(name = "inbound_webhook_events",
+        indexes = {
+                // The dispatcher's claim query: WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY next_attempt_at, id
+                @Index(name = "idx_inbound_webhooks_status_next_attempt", columnList = "status, next_attempt_at"),
+                // Webhook replay skips logs whose event is still queued
+                @Index(name = "idx_inbound_webhooks_audit_request", columnList = "audit_request_id")
+        })
+@Data
+public class InboundWebhookEvent {
+
+    public enum Source {
+        TRADESAFE, PUDO, SHIPLOGIC
+    }
+
+    public enum Status {
+        PENDING, PROCESSED, DEAD
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // VARCHAR rather than a native ENUM so new sources don't need a column change
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(20)")
+    private Source source;
+
+    // WebhookLog.requestId of the request that carried it
+    @Column(name = "audit_request_id", length = 36)
+    private String auditRequestId;
+
+    // Raw JSON body as the sender posted it
+    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(20)")
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        receivedAt = LocalDateTime.now();
+        if (nextAttemptAt == null) nextAttemptAt = receivedAt;
+    }
+}
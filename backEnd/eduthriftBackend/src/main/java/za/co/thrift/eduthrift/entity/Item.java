@@ -7,7 +7,17 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "items")
+@Table(
+        name = "items",
+        indexes = {
+                // Supports keyset pagination of the catalog: WHERE status = ? ORDER BY created_at DESC, id DESC
+                @Index(name = "idx_items_status_created", columnList = "status, created_at, id"),
+                // The expiry job's chunk queries: WHERE status = 'AVAILABLE' AND expiry_date <= ? / BETWEEN ? AND ?
+                @Index(name = "idx_items_status_expiry", columnList = "status, expiry_date"),
+                // MAX(updated_at) for the catalog ETag
+                @Index(name = "idx_items_updated", columnList = "updated_at")
+        }
+)
 @Data
 public class Item {
     @Id
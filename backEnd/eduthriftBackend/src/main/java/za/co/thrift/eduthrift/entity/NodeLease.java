@@ -0,0 +1,25 @@
+package za.co.thrift.eduthrift.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Time-limited claim on an order-number node ID, so every running instance stamps
+ * its order numbers with a different node. See {@code OrderNumberGenerator}.
+ */
+@Entity
+@Table(name = "node_leases")
+@Data
+public class NodeLease {
+
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    @Column(nullable = false, length = 200)
+    private String holder;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -1,12 +1,30 @@
 package za.co.thrift.eduthrift.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(
+        name = "orders",
+        indexes = {
+                // Keyset pages of GET /orders?role=buyer|seller: WHERE buyer_id = ? ORDER BY created_at DESC, id DESC
+                @Index(name = "idx_orders_buyer_created", columnList = "buyer_id, created_at, id"),
+                @Index(name = "idx_orders_seller_created", columnList = "seller_id, created_at, id"),
+                // Payout retry queue: WHERE payout_status = 'FAILED' AND next_payout_retry_at <= ? ORDER BY next_payout_retry_at
+                @Index(name = "idx_orders_payout_retry", columnList = "payout_status, next_payout_retry_at"),
+                // Webhook lookups: TradeSafe callbacks, PUDO and ShipLogic tracking events
+                @Index(name = "idx_orders_tradesafe_txn", columnList = "tradesafe_transaction_id"),
+                @Index(name = "idx_orders_tracking", columnList = "tracking_number"),
+                @Index(name = "idx_orders_tcg_shipment", columnList = "tcg_shipment_id")
+        }
+)
 @Data
 public class Order {
     @Id
@@ -31,6 +49,16 @@ public class Order {
     @Column(nullable = false)
     private Integer quantity;
 
+    // Every unit checkout reserved, one entry per unit; item above is only the first of a bundle.
+    // Read with OrderRepository.findReservedItemIds so cancelling can return them all.
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ElementCollection
+    @CollectionTable(name = "order_reserved_items", joinColumns = @JoinColumn(name = "order_id"))
+    @Column(name = "item_id", nullable = false)
+    private List<Long> reservedItemIds = new ArrayList<>();
+
     @Column(name = "item_price", nullable = false)
     private BigDecimal itemPrice;
 
@@ -78,10 +106,14 @@ public class Order {
     @Column(name = "payout_attempts", nullable = false)
     private int payoutAttempts = 0;
 
-    /** Timestamp of the most recent payout attempt — used to enforce retry backoff. */
+    /** Timestamp of the most recent payout attempt. */
     @Column(name = "last_payout_attempt_at")
     private LocalDateTime lastPayoutAttemptAt;
 
+    /** When PayoutRetryService tries a FAILED payout again; null when no retry is due. */
+    @Column(name = "next_payout_retry_at")
+    private LocalDateTime nextPayoutRetryAt;
+
     /** Human-readable reason for the last payout failure — shown in admin panel. */
     @Column(name = "payout_failure_reason", length = 500)
     private String payoutFailureReason;
@@ -143,6 +175,7 @@ public class Order {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        // Fallback only — checkout assigns collision-free numbers from OrderNumberGenerator
         if (orderNumber == null) {
             orderNumber = "ORD-" + System.currentTimeMillis();
         }
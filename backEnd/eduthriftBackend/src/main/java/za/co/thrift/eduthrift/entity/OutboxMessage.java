@@ -0,0 +1,65 @@
+package za.co.thrift.eduthrift.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * A side effect (push notification, email) recorded in the same transaction as the
+ * change that caused it and delivered afterwards by {@code OutboxDispatcher}.
+ */
+@Entity
+@Table(name = "outbox_messages",
+        indexes = {
+                // The dispatcher's claim query: WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY next_attempt_at
+                @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+        })
+@Data
+public class OutboxMessage {
+
+    public enum Type {
+        PUSH, EMAIL, LISTING_EMAIL
+    }
+
+    public enum Status {
+        PENDING, SENT, DEAD
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // VARCHAR rather than a native ENUM so new types don't need a column change
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(20)")
+    private Type type;
+
+    // JSON; shape depends on type
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(20)")
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) nextAttemptAt = createdAt;
+    }
+}
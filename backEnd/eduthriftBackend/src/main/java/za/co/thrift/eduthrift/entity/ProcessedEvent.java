@@ -0,0 +1,38 @@
+package za.co.thrift.eduthrift.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * An external event (webhook, payment notification) that has been applied, keyed by
+ * where it came from and an identity the sender repeats on redelivery. The unique
+ * constraint is what makes {@code IdempotencyService} authoritative across instances.
+ */
+@Entity
+@Table(name = "processed_events",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_processed_events_source_key", columnNames = {"source", "event_key"})
+        },
+        indexes = {
+                // Retention purge: WHERE processed_at < ?
+                @Index(name = "idx_processed_events_processed_at", columnList = "processed_at")
+        })
+@Data
+public class ProcessedEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Webhook source or payment provider name, e.g. TRADESAFE, PUDO
+    @Column(nullable = false, length = 30)
+    private String source;
+
+    // e.g. "<transaction id>:<state>"; keys longer than the column are stored as their SHA-256
+    @Column(name = "event_key", nullable = false, length = 191)
+    private String eventKey;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,60 @@
+package za.co.thrift.eduthrift.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Something to do to an order at a given time, run by {@code ScheduledActionDispatcher}.
+ * There is at most one action of each kind per order; rescheduling moves its due time.
+ */
+@Entity
+@Table(name = "scheduled_actions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_scheduled_actions_kind_order", columnNames = {"kind", "order_id"}),
+        indexes = {
+                // The dispatcher's claim query: WHERE due_at <= ? ... ORDER BY due_at
+                @Index(name = "idx_scheduled_actions_due", columnList = "due_at, kind, order_id")
+        })
+@Data
+public class ScheduledAction {
+
+    public enum Kind {
+        /** Release escrow once the buyer's 72 h window ({@code Order.payoutScheduledAt}) runs out. */
+        ESCROW_AUTO_RELEASE,
+        /** Book the TCG shipment of a locker order whose funds TradeSafe now holds. */
+        BOOK_SHIPMENT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // VARCHAR rather than a native ENUM so new kinds don't need a column change
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "VARCHAR(40)")
+    private Kind kind;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "due_at", nullable = false)
+    private LocalDateTime dueAt;
+
+    // Set while a dispatcher is running the action; a crashed dispatcher's claim simply lapses
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,29 @@
+package za.co.thrift.eduthrift.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Time-limited claim on a scheduled job, so only one instance runs each tick of it.
+ * See {@code SchedulerLockService}.
+ */
+@Entity
+@Table(name = "scheduler_locks")
+@Data
+public class SchedulerLock {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    // Free once this has passed, whether or not the holder released it
+    @Column(name = "lock_until", nullable = false)
+    private LocalDateTime lockUntil;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by", nullable = false, length = 200)
+    private String lockedBy;
+}
@@ -7,7 +7,13 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(
+        name = "users",
+        indexes = {
+                // MAX(updated_at) for the catalog ETag
+                @Index(name = "idx_users_updated", columnList = "updated_at")
+        }
+)
 @Data
 public class User {
     @Id
@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
  * verification and were never processed.
  *
  * <p>Records are mutable: {@link #verified} and {@link #processed} are updated
- * as the request moves through the pipeline.
+ * as the request moves through the pipeline. Rows are written in batches by
+ * {@code WebhookLogService} and addressed by {@link #requestId}, which is assigned
+ * before the row exists.
  */
 @Entity
 @Table(
@@ -25,7 +27,10 @@ import java.time.LocalDateTime;
                 @Index(name = "idx_wl_provider",     columnList = "provider"),
                 @Index(name = "idx_wl_order_number", columnList = "order_number"),
                 @Index(name = "idx_wl_created_at",   columnList = "created_at"),
-                @Index(name = "idx_wl_verified",     columnList = "verified")
+                @Index(name = "idx_wl_verified",     columnList = "verified"),
+                // Replay scan: WHERE verified AND NOT processed AND id > ? ORDER BY id
+                @Index(name = "idx_wl_verified_processed", columnList = "verified, processed"),
+                @Index(name = "idx_wl_request_id",   columnList = "request_id", unique = true)
         }
 )
 public class WebhookLog {
@@ -34,6 +39,10 @@ public class WebhookLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /** Random UUID given to the request on arrival; null for rows written before it existed. */
+    @Column(name = "request_id", length = 36)
+    private String requestId;
+
     /** Payment provider that sent this webhook (e.g. PAYSTACK, OZOW). */
     @Column(nullable = false, length = 20)
     private String provider;
@@ -99,6 +108,7 @@ public class WebhookLog {
     // ─────────────────────────────────────────────────────────────────────────
 
     public Long getId()              { return id; }
+    public String getRequestId()     { return requestId; }
     public String getProvider()      { return provider; }
     public String getEndpointPath()  { return endpointPath; }
     public String getRawPayload()    { return rawPayload; }
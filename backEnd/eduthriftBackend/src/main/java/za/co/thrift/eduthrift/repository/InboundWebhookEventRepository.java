@@ -0,0 +1,57 @@
+package za.co.thrift.eduthrift.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface InboundWebhookEventRepository extends JpaRepository<InboundWebhookEvent, Long> {
+
+    /**
+     * Due events in arrival order, row-locked with {@code FOR UPDATE SKIP LOCKED} (lock
+     * timeout -2) so dispatchers on other instances each get a disjoint batch. Must run
+     * inside a transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM InboundWebhookEvent e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now " +
+           "ORDER BY e.nextAttemptAt, e.id")
+    List<InboundWebhookEvent> findDueForUpdate(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboundWebhookEvent e SET e.status = 'PROCESSED', e.processedAt = :now, e.lastError = NULL " +
+           "WHERE e.id = :id")
+    int markProcessed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboundWebhookEvent e SET e.nextAttemptAt = :nextAttemptAt, e.lastError = :error WHERE e.id = :id")
+    int markForRetry(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                     @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboundWebhookEvent e SET e.status = 'DEAD', e.lastError = :error WHERE e.id = :id")
+    int markDead(@Param("id") Long id, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InboundWebhookEvent e WHERE e.status = 'PROCESSED' AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+
+    /** Closes a DEAD event once its webhook has been replayed successfully. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboundWebhookEvent e SET e.status = 'PROCESSED', e.processedAt = :now " +
+           "WHERE e.auditRequestId = :auditRequestId AND e.status = 'DEAD'")
+    int markDeadProcessed(@Param("auditRequestId") String auditRequestId, @Param("now") LocalDateTime now);
+
+    long countByStatus(InboundWebhookEvent.Status status);
+}
@@ -1,16 +1,125 @@
 package za.co.thrift.eduthrift.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import za.co.thrift.eduthrift.entity.Item;
 import za.co.thrift.eduthrift.entity.User;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Long> {
+
+    /**
+     * The columns keyword search matches on, plus the ones it filters on — used to build
+     * the in-memory search index.
+     */
+    interface SearchText {
+        Long getId();
+        String getItemName();
+        String getCategory();
+        String getSchoolName();
+        Item.ItemStatus getStatus();
+        Long getItemTypeId();
+    }
+
+    @Query("SELECT i.id AS id, i.itemName AS itemName, i.category AS category, i.schoolName AS schoolName, " +
+           "i.status AS status, t.id AS itemTypeId FROM Item i LEFT JOIN i.itemType t")
+    List<SearchText> findAllSearchTextBy();
+
+    /** The columns buyers can facet on — used to build the in-memory facet bitmaps. */
+    interface FacetValues {
+        Long getId();
+        String getSchoolName();
+        String getCategory();
+        String getSubcategory();
+        String getSport();
+        String getSize();
+        Item.Gender getGender();
+        Integer getConditionGrade();
+    }
+
+    List<FacetValues> findFacetValuesByStatus(Item.ItemStatus status);
+
+    /** The columns offered as autocomplete suggestions — used to build the suggestion trie. */
+    interface SuggestionText {
+        Long getId();
+        String getItemName();
+        String getSchoolName();
+        String getClubName();
+        String getCategory();
+    }
+
+    List<SuggestionText> findSuggestionTextByStatus(Item.ItemStatus status);
+
+    /** Each listing with its seller's address — used to build the seller proximity index. */
+    interface ListingLocation {
+        Long getId();
+        Long getSellerId();
+        String getTown();
+        String getPostalCode();
+        String getProvince();
+        Long getItemTypeId();
+        String getSchoolName();
+    }
+
+    @Query("SELECT i.id AS id, u.id AS sellerId, u.town AS town, u.postalCode AS postalCode, u.province AS province, " +
+           "t.id AS itemTypeId, i.schoolName AS schoolName " +
+           "FROM Item i JOIN i.user u LEFT JOIN i.itemType t WHERE i.status = :status")
+    List<ListingLocation> findListingLocationsByStatus(@Param("status") Item.ItemStatus status);
+
+    /** Listings per status — seeds and reconciles the in-memory status counter. */
+    interface StatusCount {
+        Item.ItemStatus getStatus();
+        Long getCount();
+    }
+
+    @Query("SELECT i.status AS status, COUNT(i) AS count FROM Item i GROUP BY i.status")
+    List<StatusCount> countGroupedByStatus();
+
+    /** A listing's status — lets the status counter correct rows that changed while it loaded. */
+    interface IdStatus {
+        Long getId();
+        Item.ItemStatus getStatus();
+    }
+
+    @Query("SELECT i.id AS id, i.status AS status FROM Item i WHERE i.id IN :ids")
+    List<IdStatus> findStatusesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /** Everything besides the date that can change a listing's detail response — used for its ETag. */
+    interface DetailVersion {
+        LocalDateTime getUpdatedAt();
+        String getSellerTown();
+        String getSellerProvince();
+    }
+
+    @Query("SELECT i.updatedAt AS updatedAt, u.town AS sellerTown, u.province AS sellerProvince " +
+           "FROM Item i JOIN i.user u WHERE i.id = :id")
+    Optional<DetailVersion> findDetailVersionById(@Param("id") Long id);
+
+    /** Inputs of the catalog ETag; see {@code CatalogResponseCache.version()}. */
+    interface CatalogVersion {
+        LocalDateTime getItemsUpdatedAt();
+        Long getItemCount();
+        LocalDateTime getSellersUpdatedAt();
+    }
+
+    @Query("SELECT MAX(i.updatedAt) AS itemsUpdatedAt, COUNT(i) AS itemCount, " +
+           "(SELECT MAX(u.updatedAt) FROM User u) AS sellersUpdatedAt FROM Item i")
+    CatalogVersion findCatalogVersion();
+
     List<Item> findByItemTypeId(Long itemTypeId);
     List<Item> findBySchoolName(String schoolName);
     List<Item> findByStatus(Item.ItemStatus status);
@@ -18,23 +127,135 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
     long countByStatus(Item.ItemStatus status);
     List<Item> findByUserAndStatusAndIdNotOrderByCreatedAtDesc(User user, Item.ItemStatus status, Long excludeId);
 
-    @Query("SELECT i FROM Item i WHERE i.user.id = :sellerId AND i.status = 'AVAILABLE' AND i.id != :excludeId ORDER BY i.createdAt DESC")
-    List<Item> findOtherItemsBySeller(@Param("sellerId") Long sellerId, @Param("excludeId") Long excludeId);
+    @Query(ItemSummary.SELECT + "WHERE i.id = :id")
+    Optional<ItemSummary> findSummaryById(@Param("id") Long id);
 
-    List<Item> findByStatusAndExpiryDateLessThanEqual(Item.ItemStatus status, LocalDate date);
+    @Query(ItemSummary.SELECT + "WHERE i.id IN :ids")
+    List<ItemSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
 
-    @Query("SELECT i FROM Item i WHERE i.status = :status AND i.expiryDate BETWEEN :from AND :to AND (i.expiryReminderSent = false OR i.expiryReminderSent IS NULL)")
-    List<Item> findItemsExpiringBetweenWithoutReminder(@Param("status") Item.ItemStatus status, @Param("from") LocalDate from, @Param("to") LocalDate to);
+    @Query(ItemSummary.SELECT + "WHERE u.id = :sellerId ORDER BY i.createdAt DESC")
+    List<ItemSummary> findSummariesBySeller(@Param("sellerId") Long sellerId);
 
-    @Query("SELECT i FROM Item i WHERE " +
+    @Query(ItemSummary.SELECT + "WHERE u.id = :sellerId AND i.status = 'AVAILABLE' AND i.id != :excludeId ORDER BY i.createdAt DESC")
+    List<ItemSummary> findOtherItemsBySeller(@Param("sellerId") Long sellerId, @Param("excludeId") Long excludeId);
+
+    /**
+     * Atomically takes one unit of an AVAILABLE listing for checkout. A multi-quantity
+     * listing gives up a unit and stays AVAILABLE; the last unit flips it to RESERVED
+     * (its quantity stays 1, meaning "held by an order"). The row lock taken by the
+     * UPDATE serializes concurrent buyers of the same listing only.
+     *
+     * <p>Status is assigned before quantity: MySQL evaluates single-table assignments
+     * left to right, so both CASEs must read the original quantity.
+     *
+     * @return 1 if a unit was taken, 0 if the listing is no longer available
+     */
+    @Modifying
+    @Query("UPDATE Item i SET " +
+           "i.status = CASE WHEN i.quantity > 1 THEN i.status ELSE 'RESERVED' END, " +
+           "i.quantity = CASE WHEN i.quantity > 1 THEN i.quantity - 1 ELSE i.quantity END, " +
+           "i.updatedAt = :now " +
+           "WHERE i.id = :id AND i.status = 'AVAILABLE'")
+    int reserveUnit(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Reverses the {@link #reserveUnit} that took a listing's last unit: a RESERVED
+     * listing becomes AVAILABLE again. Split from {@link #returnUnit} so the caller
+     * knows which status the listing left.
+     *
+     * @return 1 if the listing was RESERVED and is now AVAILABLE, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE Item i SET i.status = 'AVAILABLE', i.updatedAt = :now WHERE i.id = :id AND i.status = 'RESERVED'")
+    int restoreReserved(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Reverses a {@link #reserveUnit} that left units behind: an AVAILABLE listing gets
+     * its unit back. Listings that have since been sold or removed are left alone.
+     *
+     * @return 1 if the unit was returned, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE Item i SET i.quantity = i.quantity + 1, i.updatedAt = :now WHERE i.id = :id AND i.status = 'AVAILABLE'")
+    int returnUnit(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /** One chunk of AVAILABLE listings past their expiry date, for {@link #expireAll}. */
+    @Query("SELECT i.id FROM Item i WHERE i.status = 'AVAILABLE' AND i.expiryDate <= :today ORDER BY i.id")
+    List<Long> findIdsDueToExpire(@Param("today") LocalDate today, Pageable pageable);
+
+    /**
+     * Marks the given listings EXPIRED in one statement. The WHERE clause repeats the
+     * selection so a listing sold or relisted since the IDs were read is left alone.
+     *
+     * @return the number of listings expired
+     */
+    @Modifying
+    @Query("UPDATE Item i SET i.status = 'EXPIRED', i.updatedAt = :now " +
+           "WHERE i.id IN :ids AND i.status = 'AVAILABLE' AND i.expiryDate <= :today")
+    int expireAll(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today, @Param("now") LocalDateTime now);
+
+    /**
+     * One chunk of AVAILABLE listings expiring between the two dates that haven't had a
+     * reminder, row-locked with {@code FOR UPDATE SKIP LOCKED} (lock timeout -2) so
+     * {@link #markExpiryReminderSent} in the same transaction marks every one of them.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT i.id FROM Item i WHERE i.status = 'AVAILABLE' AND i.expiryDate BETWEEN :from AND :to " +
+           "AND (i.expiryReminderSent = false OR i.expiryReminderSent IS NULL) ORDER BY i.id")
+    List<Long> findIdsDueForExpiryReminder(@Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Item i SET i.expiryReminderSent = true " +
+           "WHERE i.id IN :ids AND (i.expiryReminderSent = false OR i.expiryReminderSent IS NULL)")
+    int markExpiryReminderSent(@Param("ids") Collection<Long> ids);
+
+    /** Loads listings with their seller and type in one query, for catalog change events. */
+    @Query("SELECT i FROM Item i JOIN FETCH i.user LEFT JOIN FETCH i.itemType WHERE i.id IN :ids")
+    List<Item> findAllWithSellerByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(ItemSummary.SELECT + "WHERE " +
            "(:itemTypeId IS NULL OR i.itemType.id = :itemTypeId) AND " +
            "(:schoolName IS NULL OR i.schoolName = :schoolName) AND " +
            "(:status IS NULL OR i.status = :status) AND " +
            "(:keyword IS NULL OR LOWER(i.itemName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(i.category) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(i.schoolName) LIKE LOWER(CONCAT('%', :keyword, '%')))")
-    List<Item> findByFilters(@Param("itemTypeId") Long itemTypeId,
+    List<ItemSummary> findByFilters(@Param("itemTypeId") Long itemTypeId,
                             @Param("schoolName") String schoolName,
                             @Param("status") Item.ItemStatus status,
                             @Param("keyword") String keyword);
+
+    /**
+     * Keyset-paginated variant of {@link #findByFilters}. Rows are ordered by
+     * {@code (createdAt DESC, id DESC)}; pass the last row of the previous page as
+     * {@code afterCreatedAt}/{@code afterId} (both null for the first page).
+     * Request one more row than the page size to learn whether a next page exists.
+     * Rows without a {@code createdAt} cannot be placed in that order, so they are left
+     * out; see {@link #backfillCreatedAt}.
+     */
+    @Query(ItemSummary.SELECT + "WHERE " +
+           "(:itemTypeId IS NULL OR i.itemType.id = :itemTypeId) AND " +
+           "(:schoolName IS NULL OR i.schoolName = :schoolName) AND " +
+           "(:status IS NULL OR i.status = :status) AND " +
+           "(:keyword IS NULL OR LOWER(i.itemName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(i.category) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(i.schoolName) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+           "i.createdAt IS NOT NULL AND " +
+           "(:afterCreatedAt IS NULL OR i.createdAt < :afterCreatedAt OR " +
+           "(i.createdAt = :afterCreatedAt AND i.id < :afterId)) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<ItemSummary> findPageByFilters(@Param("itemTypeId") Long itemTypeId,
+                                 @Param("schoolName") String schoolName,
+                                 @Param("status") Item.ItemStatus status,
+                                 @Param("keyword") String keyword,
+                                 @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                 @Param("afterId") Long afterId,
+                                 Pageable pageable);
+
+    /** Dates listings inserted without a {@code createdAt} (e.g. by hand) so keyset paging can reach them. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Item i SET i.createdAt = COALESCE(i.updatedAt, :now) WHERE i.createdAt IS NULL")
+    int backfillCreatedAt(@Param("now") LocalDateTime now);
 }
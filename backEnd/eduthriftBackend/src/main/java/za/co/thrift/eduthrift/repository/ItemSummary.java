@@ -0,0 +1,83 @@
+package za.co.thrift.eduthrift.repository;
+
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a listing for catalog responses: the listing's own columns plus
+ * the three seller fields the catalog shows.
+ *
+ * <p>{@link ItemRepository} fills it with a single {@code items JOIN users} query via a
+ * JPQL constructor expression. {@code Item.user} and {@code Item.itemType} are EAGER, so
+ * loading {@link Item} entities would also load the whole seller row (bank details, FCM
+ * token, document URLs) and the item type for every listing.
+ */
+public record ItemSummary(
+        Long id,
+        Long itemTypeId,
+        String itemName,
+        String category,
+        String subcategory,
+        String sport,
+        String schoolName,
+        String clubName,
+        String size,
+        Item.Gender gender,
+        Integer conditionGrade,
+        BigDecimal price,
+        String frontPhoto,
+        String backPhoto,
+        String description,
+        Integer quantity,
+        Boolean largeItem,
+        Item.ItemStatus status,
+        LocalDate expiryDate,
+        Integer relistCount,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Long sellerId,
+        String sellerTown,
+        String sellerProvince) {
+
+    /** JPQL select list matching the constructor; {@code i} is the item, {@code u} its seller. */
+    static final String SELECT = "SELECT new za.co.thrift.eduthrift.repository.ItemSummary(" +
+            "i.id, i.itemType.id, i.itemName, i.category, i.subcategory, i.sport, i.schoolName, i.clubName, " +
+            "i.size, i.gender, i.conditionGrade, i.price, i.frontPhoto, i.backPhoto, i.description, " +
+            "i.quantity, i.largeItem, i.status, i.expiryDate, i.relistCount, i.createdAt, i.updatedAt, " +
+            "u.id, u.town, u.province) " +
+            "FROM Item i JOIN i.user u ";
+
+    /** For write paths that already hold the entity. */
+    public static ItemSummary of(Item item, User seller) {
+        return new ItemSummary(
+                item.getId(),
+                item.getItemType() != null ? item.getItemType().getId() : null,
+                item.getItemName(),
+                item.getCategory(),
+                item.getSubcategory(),
+                item.getSport(),
+                item.getSchoolName(),
+                item.getClubName(),
+                item.getSize(),
+                item.getGender(),
+                item.getConditionGrade(),
+                item.getPrice(),
+                item.getFrontPhoto(),
+                item.getBackPhoto(),
+                item.getDescription(),
+                item.getQuantity(),
+                item.getLargeItem(),
+                item.getStatus(),
+                item.getExpiryDate(),
+                item.getRelistCount(),
+                item.getCreatedAt(),
+                item.getUpdatedAt(),
+                seller.getId(),
+                seller.getTown(),
+                seller.getProvince());
+    }
+}
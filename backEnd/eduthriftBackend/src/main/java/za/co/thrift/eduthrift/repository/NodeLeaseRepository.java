@@ -0,0 +1,43 @@
+package za.co.thrift.eduthrift.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.NodeLease;
+
+import java.time.LocalDateTime;
+
+public interface NodeLeaseRepository extends JpaRepository<NodeLease, Integer> {
+
+    /**
+     * Creates the lease for a node ID nobody has held yet. A plain INSERT rather than
+     * {@code save}, which would merge over a row another instance created meanwhile.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the row already exists
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO node_leases (node_id, holder, expires_at) VALUES (:nodeId, :holder, :expiresAt)",
+           nativeQuery = true)
+    void insert(@Param("nodeId") Integer nodeId, @Param("holder") String holder,
+                @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Takes over an expired lease, or extends one already held by {@code holder}.
+     *
+     * @return 1 if {@code holder} now holds the lease until {@code expiresAt}, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE NodeLease l SET l.holder = :holder, l.expiresAt = :expiresAt " +
+           "WHERE l.nodeId = :nodeId AND (l.holder = :holder OR l.expiresAt < :now)")
+    int claim(@Param("nodeId") Integer nodeId, @Param("holder") String holder,
+              @Param("expiresAt") LocalDateTime expiresAt, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE NodeLease l SET l.expiresAt = :now WHERE l.nodeId = :nodeId AND l.holder = :holder")
+    int release(@Param("nodeId") Integer nodeId, @Param("holder") String holder, @Param("now") LocalDateTime now);
+}
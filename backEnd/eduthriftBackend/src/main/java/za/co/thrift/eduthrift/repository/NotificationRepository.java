@@ -3,6 +3,7 @@ package za.co.thrift.eduthrift.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import za.co.thrift.eduthrift.entity.Notification;
 import za.co.thrift.eduthrift.entity.User;
@@ -15,6 +16,17 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
 
     long countByUserAndReadFalse(User user);
 
+    /** Change markers for a user's inbox — used for its ETag without loading the notifications. */
+    interface InboxVersion {
+        Long getCount();
+        Long getMaxId();
+        Long getReadCount();
+    }
+
+    @Query("SELECT COUNT(n) AS count, MAX(n.id) AS maxId, SUM(CASE WHEN n.read = true THEN 1 ELSE 0 END) AS readCount " +
+           "FROM Notification n WHERE n.user = :user")
+    InboxVersion findInboxVersion(@Param("user") User user);
+
     @Modifying
     @Transactional
     @Query("UPDATE Notification n SET n.read = true WHERE n.user = :user AND n.read = false")
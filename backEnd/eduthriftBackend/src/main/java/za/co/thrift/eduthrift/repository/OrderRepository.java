@@ -1,45 +1,170 @@
 package za.co.thrift.eduthrift.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import za.co.thrift.eduthrift.entity.Order;
-import za.co.thrift.eduthrift.entity.User;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Optional<Order> findByOrderNumber(String orderNumber);
-    List<Order> findByBuyerOrderByCreatedAtDesc(User buyer);
-    List<Order> findBySellerOrderByCreatedAtDesc(User seller);
+
+    /** Every unit the order reserved at checkout, one entry per unit. */
+    @Query("SELECT r FROM Order o JOIN o.reservedItemIds r WHERE o.id = :orderId")
+    List<Long> findReservedItemIds(@Param("orderId") Long orderId);
+
+    /** Change markers for a user's order list — used for its ETag without loading the orders. */
+    interface ListVersion {
+        Long getCount();
+        LocalDateTime getLastUpdated();
+        LocalDateTime getLastItemUpdated();
+    }
+
+    @Query("SELECT COUNT(o) AS count, MAX(o.updatedAt) AS lastUpdated, MAX(i.updatedAt) AS lastItemUpdated " +
+           "FROM Order o LEFT JOIN o.item i WHERE o.buyer.id = :userId OR o.seller.id = :userId")
+    ListVersion findListVersionByUserId(@Param("userId") Long userId);
+
+    /** Change markers and parties of a single order — used for its ETag and access check. */
+    interface OrderVersion {
+        LocalDateTime getUpdatedAt();
+        LocalDateTime getItemUpdatedAt();
+        String getBuyerEmail();
+        String getSellerEmail();
+    }
+
+    @Query("SELECT o.updatedAt AS updatedAt, i.updatedAt AS itemUpdatedAt, b.email AS buyerEmail, s.email AS sellerEmail " +
+           "FROM Order o JOIN o.buyer b JOIN o.seller s LEFT JOIN o.item i WHERE o.orderNumber = :orderNumber")
+    Optional<OrderVersion> findVersionByOrderNumber(@Param("orderNumber") String orderNumber);
+
+    /**
+     * A buyer's orders newest first, starting strictly after the keyset cursor
+     * {@code (afterCreatedAt, afterId)} when given. Served by {@code idx_orders_buyer_created}.
+     */
+    @Query(OrderSummary.SELECT +
+           "WHERE o.buyer.id = :buyerId AND " +
+           "(:afterCreatedAt IS NULL OR o.createdAt < :afterCreatedAt OR " +
+           "(o.createdAt = :afterCreatedAt AND o.id < :afterId)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummary> findPageByBuyer(@Param("buyerId") Long buyerId,
+                                       @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
+
+    /** Seller-side counterpart of {@link #findPageByBuyer}. Served by {@code idx_orders_seller_created}. */
+    @Query(OrderSummary.SELECT +
+           "WHERE o.seller.id = :sellerId AND " +
+           "(:afterCreatedAt IS NULL OR o.createdAt < :afterCreatedAt OR " +
+           "(o.createdAt = :afterCreatedAt AND o.id < :afterId)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummary> findPageBySeller(@Param("sellerId") Long sellerId,
+                                        @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                        @Param("afterId") Long afterId,
+                                        Pageable pageable);
+
     Optional<Order> findByTradeSafeTransactionId(String tradeSafeTransactionId);
     Optional<Order> findByTrackingNumber(String trackingNumber);
     Optional<Order> findByTcgShipmentId(String tcgShipmentId);
+
+    // Order numbers only, for routing webhook events to their order's lane before processing
+    @Query("SELECT o.orderNumber FROM Order o WHERE o.tradeSafeTransactionId = :transactionId")
+    Optional<String> findOrderNumberByTradeSafeTransactionId(@Param("transactionId") String transactionId);
+
+    @Query("SELECT o.orderNumber FROM Order o WHERE o.trackingNumber = :trackingNumber")
+    Optional<String> findOrderNumberByTrackingNumber(@Param("trackingNumber") String trackingNumber);
+
+    @Query("SELECT o.orderNumber FROM Order o WHERE o.tcgShipmentId = :shipmentId")
+    Optional<String> findOrderNumberByTcgShipmentId(@Param("shipmentId") String shipmentId);
     List<Order> findByOrderStatusAndCreatedAtBefore(Order.OrderStatus status, LocalDateTime cutoff);
-    List<Order> findByOrderStatusAndPayoutScheduledAtBefore(Order.OrderStatus status, LocalDateTime cutoff);
+
+    /** Unpaid order and when it was placed — enough to (re)schedule its payment timeout. */
+    interface PendingPayment {
+        Long getId();
+        LocalDateTime getCreatedAt();
+    }
+
+    @Query("SELECT o.id AS id, o.createdAt AS createdAt FROM Order o " +
+           "WHERE o.orderStatus = 'PENDING_PAYMENT' AND o.createdAt < :before")
+    List<PendingPayment> findPendingPaymentsCreatedBefore(@Param("before") LocalDateTime before);
 
     /**
-     * Find orders eligible for payout retry:
-     * {@code payout_status = FAILED} AND {@code payout_attempts < maxAttempts}.
-     * The caller is responsible for checking the per-order backoff window.
+     * Cancels an order only if it is still unpaid and was placed before {@code cutoff}.
+     * The condition makes the claim race-free against a payment arriving at the same
+     * moment and against other instances expiring the same order.
+     *
+     * @return 1 if this call cancelled the order, 0 otherwise
      */
-    List<Order> findByPayoutStatusAndPayoutAttemptsLessThan(
-            Order.PayoutStatus payoutStatus, int maxAttempts);
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.orderStatus = 'CANCELLED', o.paymentStatus = 'FAILED', o.updatedAt = :now " +
+           "WHERE o.id = :id AND o.orderStatus = 'PENDING_PAYMENT' AND o.createdAt < :cutoff")
+    int cancelIfUnpaid(@Param("id") Long id, @Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
 
-    List<Order> findByDisputeStatus(Order.DisputeStatus disputeStatus);
+    List<Order> findByOrderStatusAndPayoutScheduledAtBefore(Order.OrderStatus status, LocalDateTime cutoff);
+
+    interface PayoutRetry {
+        Long getId();
+        Order.PaymentMethod getPaymentMethod();
+    }
+
+    /** Failed payouts with attempts left whose retry time has come, earliest first. */
+    @Query("SELECT o.id AS id, o.paymentMethod AS paymentMethod FROM Order o " +
+           "WHERE o.payoutStatus = 'FAILED' AND o.nextPayoutRetryAt <= :now AND o.paymentMethod IS NOT NULL " +
+           "AND o.payoutAttempts < :maxAttempts " +
+           "ORDER BY o.nextPayoutRetryAt")
+    List<PayoutRetry> findDuePayoutRetries(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                                           Pageable pageable);
 
     /**
-     * Orders eligible for auto-release: payment confirmed, timer expired, no open dispute.
+     * Counts a retry that threw before {@code payoutSeller} could record it (its
+     * transaction rolled back) and moves the retry time on, or clears it once the
+     * attempts are used up. Only touches the order if it is still due.
      */
-    @Query("SELECT o FROM Order o WHERE o.orderStatus = :status AND o.payoutScheduledAt IS NOT NULL AND o.payoutScheduledAt < :cutoff AND o.disputeStatus = :noDispute")
-    List<Order> findEligibleForAutoRelease(@Param("status") Order.OrderStatus status,
-                                           @Param("cutoff") LocalDateTime cutoff,
-                                           @Param("noDispute") Order.DisputeStatus noDispute);
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.payoutAttempts = o.payoutAttempts + 1, o.lastPayoutAttemptAt = :now, " +
+           "o.nextPayoutRetryAt = :retryAt, o.payoutFailureReason = :reason " +
+           "WHERE o.id = :id AND o.payoutStatus = 'FAILED' AND o.nextPayoutRetryAt <= :now")
+    int recordAbortedPayoutRetry(@Param("id") Long id, @Param("now") LocalDateTime now,
+                                 @Param("retryAt") LocalDateTime retryAt, @Param("reason") String reason);
+
+    interface PayoutAttempt {
+        Long getId();
+        int getPayoutAttempts();
+        LocalDateTime getLastPayoutAttemptAt();
+    }
+
+    /** Released payouts that failed with attempts left but have no retry time — from before it was stored. */
+    @Query("SELECT o.id AS id, o.payoutAttempts AS payoutAttempts, o.lastPayoutAttemptAt AS lastPayoutAttemptAt " +
+           "FROM Order o WHERE o.payoutStatus = 'FAILED' AND o.escrowStatus = 'RELEASED_TO_SELLER' " +
+           "AND o.payoutAttempts > 0 AND o.payoutAttempts < :maxAttempts AND o.nextPayoutRetryAt IS NULL")
+    List<PayoutAttempt> findUnscheduledPayoutRetries(@Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.nextPayoutRetryAt = :retryAt WHERE o.id = :id AND o.nextPayoutRetryAt IS NULL")
+    int schedulePayoutRetry(@Param("id") Long id, @Param("retryAt") LocalDateTime retryAt);
+
+    List<Order> findByDisputeStatus(Order.DisputeStatus disputeStatus);
+
+    interface AutoReleaseTimer {
+        Long getId();
+        LocalDateTime getPayoutScheduledAt();
+    }
+
+    /** Orders with a running auto-release timer and no open dispute. */
+    @Query("SELECT o.id AS id, o.payoutScheduledAt AS payoutScheduledAt FROM Order o " +
+           "WHERE o.orderStatus IN :statuses AND o.payoutScheduledAt IS NOT NULL AND o.disputeStatus = 'NONE'")
+    List<AutoReleaseTimer> findAutoReleaseTimers(@Param("statuses") Collection<Order.OrderStatus> statuses);
 
     long countByOrderStatus(Order.OrderStatus status);
 
@@ -0,0 +1,76 @@
+package za.co.thrift.eduthrift.repository;
+
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of an order for the buyer/seller order lists: the order's own columns,
+ * the listing's name and photo, and the two party IDs used for the aliases.
+ *
+ * <p>{@link OrderRepository} fills it with a single {@code orders LEFT JOIN items} query
+ * via a JPQL constructor expression. Loading {@link Order} entities instead would pull
+ * the EAGER buyer, seller and item rows (and each item's seller and type) for every order.
+ */
+public record OrderSummary(
+        Long id,
+        String orderNumber,
+        String itemName,
+        String itemImage,
+        BigDecimal itemPrice,
+        BigDecimal shippingCost,
+        BigDecimal buyerProtectionFee,
+        Integer quantity,
+        BigDecimal totalAmount,
+        Order.OrderStatus orderStatus,
+        Order.PaymentStatus paymentStatus,
+        Order.EscrowStatus escrowStatus,
+        BigDecimal sellerPayout,
+        BigDecimal platformFee,
+        Boolean deliveryConfirmed,
+        Order.DisputeStatus disputeStatus,
+        String disputeReason,
+        String pickupPoint,
+        String trackingNumber,
+        Long sellerId,
+        Long buyerId,
+        LocalDateTime createdAt) {
+
+    /** JPQL select list matching the constructor; {@code o} is the order, {@code i} its listing. */
+    static final String SELECT = "SELECT new za.co.thrift.eduthrift.repository.OrderSummary(" +
+            "o.id, o.orderNumber, i.itemName, i.frontPhoto, o.itemPrice, o.shippingCost, o.buyerProtectionFee, " +
+            "o.quantity, o.totalAmount, o.orderStatus, o.paymentStatus, o.escrowStatus, o.sellerPayout, " +
+            "o.platformFee, o.deliveryConfirmed, o.disputeStatus, o.disputeReason, o.pickupPoint, " +
+            "o.trackingNumber, o.seller.id, o.buyer.id, o.createdAt) " +
+            "FROM Order o LEFT JOIN o.item i ";
+
+    /** For write paths that already hold the entity. */
+    public static OrderSummary of(Order order) {
+        Item item = order.getItem();
+        return new OrderSummary(
+                order.getId(),
+                order.getOrderNumber(),
+                item != null ? item.getItemName() : null,
+                item != null ? item.getFrontPhoto() : null,
+                order.getItemPrice(),
+                order.getShippingCost(),
+                order.getBuyerProtectionFee(),
+                order.getQuantity(),
+                order.getTotalAmount(),
+                order.getOrderStatus(),
+                order.getPaymentStatus(),
+                order.getEscrowStatus(),
+                order.getSellerPayout(),
+                order.getPlatformFee(),
+                order.getDeliveryConfirmed(),
+                order.getDisputeStatus(),
+                order.getDisputeReason(),
+                order.getPickupPoint(),
+                order.getTrackingNumber(),
+                order.getSeller().getId(),
+                order.getBuyer().getId(),
+                order.getCreatedAt());
+    }
+}
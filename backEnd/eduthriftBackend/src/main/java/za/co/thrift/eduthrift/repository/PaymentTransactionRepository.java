@@ -18,13 +18,6 @@ public interface PaymentTransactionRepository extends JpaRepository<PaymentTrans
     Optional<PaymentTransaction> findByProviderAndProviderTransactionId(
             String provider, String providerTransactionId);
 
-    /**
-     * Idempotency check: returns {@code true} if the exact same event has already
-     * been recorded for this provider transaction.
-     */
-    boolean existsByProviderAndProviderTransactionIdAndEventType(
-            String provider, String providerTransactionId, String eventType);
-
     /** All payment events in a date range, with Order eagerly fetched — used for audit trail reports. */
     @Query("SELECT pt FROM PaymentTransaction pt JOIN FETCH pt.order o WHERE pt.createdAt >= :from AND pt.createdAt < :to ORDER BY pt.createdAt ASC")
     List<PaymentTransaction> findWithOrderByDateRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
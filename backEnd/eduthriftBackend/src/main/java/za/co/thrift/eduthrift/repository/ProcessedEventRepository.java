@@ -0,0 +1,44 @@
+package za.co.thrift.eduthrift.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.ProcessedEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, Long> {
+
+    boolean existsBySourceAndEventKey(String source, String eventKey);
+
+    /**
+     * Records an event unless it is already there. {@code INSERT IGNORE} rather than
+     * catching a constraint violation, which would mark the caller's transaction
+     * rollback-only. A concurrent insert of the same key waits for the other
+     * transaction and then returns 0.
+     *
+     * <p>{@code INSERT IGNORE} is MySQL syntax (H2 accepts it in MySQL mode); another
+     * database needs its own form, e.g. {@code ON CONFLICT DO NOTHING} on PostgreSQL.
+     *
+     * @return 1 if the event was recorded, 0 if it already had been
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO processed_events (source, event_key, processed_at) " +
+                   "VALUES (:source, :eventKey, :processedAt)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("source") String source, @Param("eventKey") String eventKey,
+                       @Param("processedAt") LocalDateTime processedAt);
+
+    /** Keyset page for loading the Bloom filter: rows after {@code afterId}, in id order. */
+    List<ProcessedEvent> findByIdGreaterThanOrderById(Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedEvent e WHERE e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
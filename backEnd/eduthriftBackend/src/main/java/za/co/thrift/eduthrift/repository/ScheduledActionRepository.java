@@ -0,0 +1,61 @@
+package za.co.thrift.eduthrift.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ScheduledActionRepository extends JpaRepository<ScheduledAction, Long> {
+
+    /**
+     * Due, unclaimed actions, row-locked with {@code FOR UPDATE SKIP LOCKED} (lock
+     * timeout -2) so dispatchers on other instances each get a disjoint batch. Must run
+     * inside a transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT a FROM ScheduledAction a WHERE a.dueAt <= :now " +
+           "AND (a.claimedUntil IS NULL OR a.claimedUntil < :now) ORDER BY a.dueAt")
+    List<ScheduledAction> findDueForUpdate(@Param("now") LocalDateTime now, Pageable pageable);
+
+    Optional<ScheduledAction> findByKindAndOrderId(ScheduledAction.Kind kind, Long orderId);
+
+    /** When the dispatcher next has something to do, ignoring actions being run right now. */
+    @Query("SELECT MIN(a.dueAt) FROM ScheduledAction a WHERE a.claimedUntil IS NULL")
+    Optional<LocalDateTime> findNextDueAt();
+
+    /**
+     * Deletes a finished action, unless it was rescheduled while it ran.
+     *
+     * @return 1 if deleted, 0 if its due time has moved
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ScheduledAction a WHERE a.id = :id AND a.dueAt = :dueAt")
+    int deleteIfDueAt(@Param("id") Long id, @Param("dueAt") LocalDateTime dueAt);
+
+    /**
+     * Releases the claim on an action. Moves it to {@code retryAt} unless it was
+     * rescheduled while it ran, in which case the new due time wins.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ScheduledAction a SET " +
+           "a.dueAt = CASE WHEN a.dueAt = :dueAt THEN :retryAt ELSE a.dueAt END, " +
+           "a.claimedUntil = NULL, a.lastError = :error " +
+           "WHERE a.id = :id")
+    int unclaim(@Param("id") Long id, @Param("dueAt") LocalDateTime dueAt,
+                @Param("retryAt") LocalDateTime retryAt, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ScheduledAction a WHERE a.kind = :kind AND a.orderId = :orderId")
+    int deleteByKindAndOrderId(@Param("kind") ScheduledAction.Kind kind, @Param("orderId") Long orderId);
+}
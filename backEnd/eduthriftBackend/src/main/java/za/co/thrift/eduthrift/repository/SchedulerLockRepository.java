@@ -0,0 +1,47 @@
+package za.co.thrift.eduthrift.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.SchedulerLock;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Creates the lock for a job that has never run. A plain INSERT rather than
+     * {@code save}, which would merge over a row another instance created meanwhile.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the row already exists
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO scheduler_locks (name, lock_until, locked_at, locked_by) " +
+                   "VALUES (:name, :lockUntil, :now, :holder)",
+           nativeQuery = true)
+    void insert(@Param("name") String name, @Param("holder") String holder,
+                @Param("lockUntil") LocalDateTime lockUntil, @Param("now") LocalDateTime now);
+
+    /**
+     * Takes the lock if it is free.
+     *
+     * @return 1 if {@code holder} now holds the lock until {@code lockUntil}, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockUntil = :lockUntil, l.lockedAt = :now, l.lockedBy = :holder " +
+           "WHERE l.name = :name AND l.lockUntil <= :now")
+    int claim(@Param("name") String name, @Param("holder") String holder,
+              @Param("lockUntil") LocalDateTime lockUntil, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockUntil = :unlockAt WHERE l.name = :name AND l.lockedBy = :holder")
+    int release(@Param("name") String name, @Param("holder") String holder, @Param("unlockAt") LocalDateTime unlockAt);
+
+    List<SchedulerLock> findAllByOrderByNameAsc();
+}
@@ -1,6 +1,11 @@
 package za.co.thrift.eduthrift.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import za.co.thrift.eduthrift.entity.WebhookLog;
 
 import java.time.LocalDateTime;
@@ -17,4 +22,28 @@ public interface WebhookLogRepository extends JpaRepository<WebhookLog, Long> {
 
     /** Unprocessed but verified webhooks — use to find events that were received but not acted on. */
     List<WebhookLog> findByVerifiedTrueAndProcessedFalseAndCreatedAtBefore(LocalDateTime cutoff);
+
+    /**
+     * Keyset page of the same for replay: verified, unprocessed rows after {@code afterId}
+     * received in [from, to), optionally from one provider, in id order. Rows whose
+     * inbound event is still queued for a retry are left to the dispatcher.
+     */
+    @Query("SELECT w FROM WebhookLog w WHERE w.verified = true AND w.processed = false AND w.id > :afterId " +
+           "AND w.createdAt >= :from AND w.createdAt < :to AND (:provider IS NULL OR w.provider = :provider) " +
+           "AND NOT EXISTS (SELECT e.id FROM InboundWebhookEvent e " +
+           "                WHERE e.auditRequestId = w.requestId AND e.status = 'PENDING') " +
+           "ORDER BY w.id")
+    List<WebhookLog> findStuckAfter(@Param("afterId") Long afterId, @Param("provider") String provider,
+                                    @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                    Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookLog w SET w.processed = true, w.resolvedAt = :now WHERE w.id = :id")
+    int markReplayed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookLog w SET w.failureReason = :reason, w.resolvedAt = :now WHERE w.id = :id")
+    int markReplayFailed(@Param("id") Long id, @Param("reason") String reason, @Param("now") LocalDateTime now);
 }
@@ -3,6 +3,7 @@ package za.co.thrift.eduthrift.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -14,6 +15,13 @@ import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.util.Locale;
 
+/**
+ * Renders and sends transactional email over SMTP.
+ *
+ * <p>Order emails and listing expiry reminders are delivered through the outbox
+ * ({@code OutboxService}) and throw {@link MailSendException} on failure so the delivery
+ * can be retried; account emails (welcome, password reset, …) log the failure and carry on.
+ */
 @Service
 public class EmailService {
 
@@ -212,7 +220,7 @@ public class EmailService {
             );
             send(order.getBuyer().getEmail(), "Order Confirmed — " + order.getOrderNumber(), html);
         } catch (Exception e) {
-            log.warn("Failed to send buyer confirmation email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send buyer confirmation email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -276,7 +284,7 @@ public class EmailService {
             );
             send(order.getSeller().getEmail(), "You Have a Sale! — " + order.getOrderNumber(), html);
         } catch (Exception e) {
-            log.warn("Failed to send seller notification email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send seller notification email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -321,7 +329,7 @@ public class EmailService {
             );
             send(order.getBuyer().getEmail(), "Payment Confirmed — " + order.getOrderNumber(), buyerHtml);
         } catch (Exception e) {
-            log.warn("Failed to send payment confirmed buyer email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send payment confirmed buyer email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -382,7 +390,7 @@ public class EmailService {
             );
             send(order.getSeller().getEmail(), "Drop Off Now — Waybill Ready: " + order.getOrderNumber(), sellerHtml);
         } catch (Exception e) {
-            log.warn("Failed to send seller ship-now email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send seller ship-now email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -432,7 +440,7 @@ public class EmailService {
             );
             send(order.getBuyer().getEmail(), "Your Order Has Been Shipped — " + order.getOrderNumber(), html);
         } catch (Exception e) {
-            log.warn("Failed to send order shipped email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send order shipped email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -483,7 +491,7 @@ public class EmailService {
             );
             send(order.getBuyer().getEmail(), "Your Order Has Arrived — Collect Now: " + order.getOrderNumber(), html);
         } catch (Exception e) {
-            log.warn("Failed to send order arrived email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send order arrived email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -557,7 +565,7 @@ public class EmailService {
             );
             send(order.getSeller().getEmail(), "Delivery Confirmed — Payout Processing: " + order.getOrderNumber(), sellerHtml);
         } catch (Exception e) {
-            log.warn("Failed to send delivery confirmed emails for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send delivery confirmed emails for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -623,7 +631,7 @@ public class EmailService {
             );
             send(order.getSeller().getEmail(), "Escrow Auto-Released — Payout Processing: " + order.getOrderNumber(), sellerHtml);
         } catch (Exception e) {
-            log.warn("Failed to send auto-release emails for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send auto-release emails for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -640,7 +648,7 @@ public class EmailService {
                 default             -> { /* no email for PENDING/PROCESSING */ }
             }
         } catch (Exception e) {
-            log.warn("Failed to send payout status email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send payout status email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -839,7 +847,7 @@ public class EmailService {
             );
             send(order.getSeller().getEmail(), "Order Cancelled — Payment Failed: " + order.getOrderNumber(), sellerHtml);
         } catch (Exception e) {
-            log.warn("Failed to send payment failed emails for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send payment failed emails for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -885,7 +893,7 @@ public class EmailService {
             );
             send(order.getBuyer().getEmail(), "Refund Processed — " + order.getOrderNumber(), html);
         } catch (Exception e) {
-            log.warn("Failed to send refund email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send refund email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -936,7 +944,7 @@ public class EmailService {
                     "Your listing \"" + item.getItemName() + "\" expires in " + daysLeft + " days — Relist now",
                     html);
         } catch (Exception e) {
-            log.warn("Failed to send expiry reminder for item {}: {}", item.getId(), e.getMessage());
+            throw new MailSendException("Failed to send expiry reminder for item " + item.getId(), e);
         }
     }
 
@@ -975,7 +983,7 @@ public class EmailService {
             );
             send(order.getBuyer().getEmail(), "Order Cancelled — " + order.getOrderNumber(), html);
         } catch (Exception e) {
-            log.warn("Failed to send cancellation email for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send cancellation email for order " + order.getOrderNumber(), e);
         }
     }
 
@@ -1047,7 +1055,7 @@ public class EmailService {
                             "A buyer has raised a dispute. Funds are frozen. Review and resolve via the admin panel.",
                             adminDetails));
         } catch (Exception e) {
-            log.warn("Failed to send dispute emails for order {}: {}", order.getOrderNumber(), e.getMessage());
+            throw new MailSendException("Failed to send dispute emails for order " + order.getOrderNumber(), e);
         }
     }
 
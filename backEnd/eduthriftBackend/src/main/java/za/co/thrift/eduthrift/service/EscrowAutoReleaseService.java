@@ -2,10 +2,15 @@ package za.co.thrift.eduthrift.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
 import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+import za.co.thrift.eduthrift.service.scheduling.ScheduledActionService;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,15 +18,16 @@ import java.util.List;
 /**
  * Automatically releases escrowed funds to sellers after the buyer's dispute window expires.
  *
- * The timer is set at the point the item is confirmed at the buyer's locker/door:
- *   - PUDO: payoutScheduledAt = now+72h (set by PudoWebhookController on AT_LOCKER event)
- *   - ShipLogic/TCG: payoutScheduledAt = now+48h (set by ShipLogicWebhookController on DELIVERED event)
+ * The timer (payoutScheduledAt) is started by {@link OrderStateMachine}:
+ *   - on payment: 72h hold for buyers who never confirm delivery (EscrowService.releaseExpiredHold)
+ *   - on PUDO AT_LOCKER: 72h from arrival at the locker
  *
- * If the buyer raises a dispute before the timer expires, payoutScheduledAt is nulled
- * by EscrowService.raiseDispute() — freezing the timer until admin resolves.
+ * Each running timer has an ESCROW_AUTO_RELEASE {@link ScheduledAction}, run by
+ * ScheduledActionDispatcher when it falls due. If the buyer raises a dispute before
+ * then, the timer is nulled and the action cancelled — freezing it until admin resolves.
  *
- * Runs every 30 minutes. Idempotent — releaseToSeller() guards against double-release
- * by checking escrowStatus == HELD.
+ * Idempotent — the order is re-read and re-checked when the action runs, and
+ * releaseToSeller() guards against double-release by checking escrowStatus == HELD.
  */
 @Service
 public class EscrowAutoReleaseService {
@@ -30,47 +36,71 @@ public class EscrowAutoReleaseService {
 
     private final OrderRepository orderRepository;
     private final EscrowService escrowService;
-    private final FCMNotificationService fcmNotificationService;
+    private final OutboxService outboxService;
+    private final ScheduledActionService scheduledActionService;
 
     public EscrowAutoReleaseService(OrderRepository orderRepository,
                                     EscrowService escrowService,
-                                    FCMNotificationService fcmNotificationService) {
+                                    OutboxService outboxService,
+                                    ScheduledActionService scheduledActionService) {
         this.orderRepository = orderRepository;
         this.escrowService = escrowService;
-        this.fcmNotificationService = fcmNotificationService;
+        this.outboxService = outboxService;
+        this.scheduledActionService = scheduledActionService;
     }
 
-    @Scheduled(fixedDelay = 30 * 60 * 1000)
-    public void releaseExpiredEscrows() {
-        List<Order> eligible = orderRepository.findEligibleForAutoRelease(
-                Order.OrderStatus.DELIVERED,
-                LocalDateTime.now(),
-                Order.DisputeStatus.NONE
-        );
+    /** Schedules any running timer that has no action yet, e.g. from before actions existed. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRunningTimers() {
+        List<OrderRepository.AutoReleaseTimer> timers =
+                orderRepository.findAutoReleaseTimers(OrderStateMachine.AUTO_RELEASE_STATUSES);
+        for (OrderRepository.AutoReleaseTimer timer : timers) {
+            scheduledActionService.schedule(
+                    ScheduledAction.Kind.ESCROW_AUTO_RELEASE, timer.getId(), timer.getPayoutScheduledAt());
+        }
+        if (!timers.isEmpty()) log.info("Scheduled auto-release for {} order(s) on startup", timers.size());
+    }
 
-        if (eligible.isEmpty()) return;
+    /**
+     * Runs an order's ESCROW_AUTO_RELEASE action. Does nothing if the order has moved on
+     * since it was scheduled; exceptions propagate so the action is retried.
+     */
+    public void autoRelease(Long orderId) {
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order == null
+                || order.getPayoutScheduledAt() == null
+                || order.getDisputeStatus() != Order.DisputeStatus.NONE) {
+            return;
+        }
+        if (order.getPayoutScheduledAt().isAfter(LocalDateTime.now())) {
+            // Timer was restarted without the action following it — catch up
+            scheduledActionService.schedule(
+                    ScheduledAction.Kind.ESCROW_AUTO_RELEASE, orderId, order.getPayoutScheduledAt());
+            return;
+        }
 
-        log.info("Auto-release scan: {} order(s) past dispute window", eligible.size());
+        switch (order.getOrderStatus()) {
+            case PAYMENT_CONFIRMED -> escrowService.releaseExpiredHold(order);
+            case DELIVERED -> releaseDelivered(order);
+            // In transit: the arrival transition schedules the release again
+            default -> { }
+        }
+    }
 
-        for (Order order : eligible) {
-            try {
-                escrowService.releaseToSeller(order);
+    private void releaseDelivered(Order order) {
+        escrowService.releaseToSeller(order);
 
-                fcmNotificationService.send(
-                        order.getSeller().getFcmToken(),
-                        "Payment Released",
-                        "Funds for order " + order.getOrderNumber() + " have been released to your account."
-                );
-                fcmNotificationService.send(
-                        order.getBuyer().getFcmToken(),
-                        "Order Complete",
-                        "Order " + order.getOrderNumber() + " is now complete. Thanks for using Eduthrift!"
-                );
+        outboxService.push(
+                order.getSeller().getFcmToken(),
+                "Payment Released",
+                "Funds for order " + order.getOrderNumber() + " have been released to your account."
+        );
+        outboxService.push(
+                order.getBuyer().getFcmToken(),
+                "Order Complete",
+                "Order " + order.getOrderNumber() + " is now complete. Thanks for using Eduthrift!"
+        );
 
-                log.info("Auto-released escrow for order {}", order.getOrderNumber());
-            } catch (Exception e) {
-                log.error("Auto-release failed for order {}: {}", order.getOrderNumber(), e.getMessage());
-            }
-        }
+        log.info("Auto-released escrow for order {}", order.getOrderNumber());
     }
 }
@@ -2,16 +2,16 @@ package za.co.thrift.eduthrift.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import za.co.thrift.eduthrift.entity.Order;
 import za.co.thrift.eduthrift.repository.OrderRepository;
 import za.co.thrift.eduthrift.service.payment.PaymentService;
 import za.co.thrift.eduthrift.service.LedgerService;
-
-import java.time.LocalDateTime;
-import java.util.List;
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.outbox.OrderEmail;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
 
 /**
  * Manages the escrow lifecycle for Eduthrift orders.
@@ -23,6 +23,9 @@ import java.util.List;
  *   HELD     ──refundToBuyer()─────► REFUNDED_TO_BUYER
  * </pre>
  *
+ * <p>Status changes go through {@link OrderStateMachine}, which rejects a release or
+ * refund unless escrow is HELD.
+ *
  * <p>Payout is delegated to {@link PaymentService#payoutSeller(Order)}, which
  * routes to the correct provider adapter. This service has no direct dependency
  * on any specific payment provider (Paystack, Ozow, etc.).
@@ -38,27 +41,30 @@ public class EscrowService {
     private final OrderRepository orderRepository;
     private final PaymentService paymentService;
     private final LedgerService ledgerService;
-    private final EmailService emailService;
+    private final OutboxService outboxService;
     private final TradeSafeService tradeSafeService;
+    private final OrderStateMachine orderStateMachine;
 
     public EscrowService(OrderRepository orderRepository,
                           PaymentService paymentService,
                           LedgerService ledgerService,
-                          EmailService emailService,
-                          TradeSafeService tradeSafeService) {
-        this.orderRepository  = orderRepository;
-        this.paymentService   = paymentService;
-        this.ledgerService    = ledgerService;
-        this.emailService     = emailService;
-        this.tradeSafeService = tradeSafeService;
+                          OutboxService outboxService,
+                          TradeSafeService tradeSafeService,
+                          OrderStateMachine orderStateMachine) {
+        this.orderRepository   = orderRepository;
+        this.paymentService    = paymentService;
+        this.ledgerService     = ledgerService;
+        this.outboxService     = outboxService;
+        this.tradeSafeService  = tradeSafeService;
+        this.orderStateMachine = orderStateMachine;
     }
 
     /**
-     * Notifies the buyer by email that their item has arrived at the Pudo locker and is ready to collect.
+     * Queues an email telling the buyer that their item has arrived at the Pudo locker and is ready to collect.
      * Called by PudoWebhookController on AT_LOCKER / READY_FOR_COLLECTION events.
      */
     public void sendItemReadyForCollectionEmail(Order order) {
-        emailService.sendOrderArrivedEmail(order);
+        outboxService.email(OrderEmail.ORDER_ARRIVED, order);
     }
 
     /**
@@ -69,13 +75,9 @@ public class EscrowService {
      */
     @Transactional
     public void holdFunds(Order order) {
-        order.setEscrowStatus(Order.EscrowStatus.HELD);
-        order.setPaymentStatus(Order.PaymentStatus.CAPTURED);
-        order.setOrderStatus(Order.OrderStatus.PAYMENT_CONFIRMED);
-        order.setPayoutScheduledAt(LocalDateTime.now().plusHours(72));
-        orderRepository.save(order);
+        if (!orderStateMachine.apply(order, OrderEvent.FUNDS_HELD)) return; // already held
         ledgerService.postPaymentReceived(order);
-        emailService.sendPaymentConfirmedEmails(order);
+        outboxService.email(OrderEmail.PAYMENT_CONFIRMED, order);
         log.info("Funds held for order {} via {}", order.getOrderNumber(), order.getPaymentMethod());
     }
 
@@ -84,17 +86,33 @@ public class EscrowService {
      *
      * Called either by the buyer via {@code POST /orders/{orderNumber}/confirm-delivery},
      * or by a shipping provider webhook (PUDO, ShipLogic) confirming physical delivery.
+     * Confirming again is a no-op: the email and release only go out the first time.
      */
     @Transactional
     public void confirmDelivery(String orderNumber) {
         Order order = orderRepository.findByOrderNumber(orderNumber)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderNumber));
 
-        order.setDeliveryConfirmed(true);
-        order.setDeliveryConfirmedDate(LocalDateTime.now());
-        order.setOrderStatus(Order.OrderStatus.DELIVERED);
-        orderRepository.save(order);
-        emailService.sendDeliveryConfirmedEmails(order);
+        if (orderStateMachine.apply(order, OrderEvent.DELIVERY_CONFIRMED)) {
+            afterDeliveryConfirmed(order);
+        }
+    }
+
+    /**
+     * Like {@link #confirmDelivery(String)}, for courier webhooks that run inside the
+     * dispatcher's transaction: a confirmation the order cannot take is reported rather
+     * than thrown, since an exception crossing this proxy would mark the shared
+     * transaction rollback-only even if the caller caught it.
+     */
+    @Transactional
+    public OrderStateMachine.Result tryConfirmDelivery(Order order) {
+        OrderStateMachine.Result result = orderStateMachine.tryApply(order, OrderEvent.DELIVERY_CONFIRMED);
+        if (result == OrderStateMachine.Result.APPLIED) afterDeliveryConfirmed(order);
+        return result;
+    }
+
+    private void afterDeliveryConfirmed(Order order) {
+        outboxService.email(OrderEmail.DELIVERY_CONFIRMED, order);
 
         // For TradeSafe orders, notify TradeSafe that delivery is accepted.
         // Their COMPLETED webhook then triggers the actual escrow release to the seller —
@@ -103,10 +121,10 @@ public class EscrowService {
             if (order.getTradeSafeAllocationId() != null) {
                 try {
                     tradeSafeService.acceptDelivery(order.getTradeSafeAllocationId());
-                    log.info("TradeSafe acceptDelivery called for order {}", orderNumber);
+                    log.info("TradeSafe acceptDelivery called for order {}", order.getOrderNumber());
                 } catch (Exception e) {
                     log.warn("TradeSafe acceptDelivery failed for order {} — delivery still confirmed locally: {}",
-                            orderNumber, e.getMessage());
+                            order.getOrderNumber(), e.getMessage());
                 }
             }
             return;
@@ -129,19 +147,11 @@ public class EscrowService {
      */
     @Transactional
     public void releaseToSeller(Order order) {
-        if (order.getEscrowStatus() != Order.EscrowStatus.HELD) {
-            throw new RuntimeException(
-                    "Cannot release — escrow is not HELD for order: " + order.getOrderNumber()
-                            + " (current state: " + order.getEscrowStatus() + ")");
+        if (!orderStateMachine.apply(order, OrderEvent.ESCROW_RELEASED)) {
+            log.info("Escrow for order {} already released — skipping payout", order.getOrderNumber());
+            return;
         }
-
-        order.setEscrowStatus(Order.EscrowStatus.RELEASED_TO_SELLER);
-        order.setOrderStatus(Order.OrderStatus.COMPLETED);
-        orderRepository.save(order);
-        ledgerService.postEscrowRelease(order);
-
-        // Provider-agnostic payout — PaymentService routes to the correct adapter
-        paymentService.payoutSeller(order);
+        payOutReleasedEscrow(order);
     }
 
     /**
@@ -155,19 +165,16 @@ public class EscrowService {
         Order order = orderRepository.findByOrderNumber(orderNumber)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderNumber));
 
-        if (order.getEscrowStatus() != Order.EscrowStatus.HELD) {
+        boolean opened;
+        try {
+            opened = orderStateMachine.apply(order, OrderEvent.DISPUTE_OPENED, o -> o.setDisputeReason(reason));
+        } catch (OrderStateMachine.IllegalTransitionException e) {
             throw new RuntimeException("Cannot raise dispute — funds are not currently held for order: " + orderNumber);
         }
-        if (order.getDisputeStatus() == Order.DisputeStatus.OPEN) {
+        if (!opened) {
             throw new RuntimeException("Dispute already open for order: " + orderNumber);
         }
-
-        order.setDisputeStatus(Order.DisputeStatus.OPEN);
-        order.setDisputeReason(reason);
-        order.setDisputeRaisedAt(LocalDateTime.now());
-        order.setPayoutScheduledAt(null);
-        orderRepository.save(order);
-        emailService.sendDisputeRaisedEmails(order);
+        outboxService.email(OrderEmail.DISPUTE_RAISED, order);
         log.info("Dispute raised for order {} — auto-release frozen", orderNumber);
     }
 
@@ -176,9 +183,8 @@ public class EscrowService {
     public void resolveDisputeAsRefund(String orderNumber) {
         Order order = orderRepository.findByOrderNumber(orderNumber)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderNumber));
-        order.setDisputeStatus(Order.DisputeStatus.RESOLVED_REFUND);
-        orderRepository.save(order);
-        refundToBuyer(orderNumber);
+        orderStateMachine.apply(order, OrderEvent.DISPUTE_REFUNDED);
+        recordRefund(order);
         log.info("Dispute for order {} resolved as REFUND", orderNumber);
     }
 
@@ -187,9 +193,8 @@ public class EscrowService {
     public void resolveDisputeAsRelease(String orderNumber) {
         Order order = orderRepository.findByOrderNumber(orderNumber)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderNumber));
-        order.setDisputeStatus(Order.DisputeStatus.RESOLVED_RELEASE);
-        orderRepository.save(order);
-        releaseToSeller(order);
+        orderStateMachine.apply(order, OrderEvent.DISPUTE_RELEASED);
+        payOutReleasedEscrow(order);
         log.info("Dispute for order {} resolved as RELEASE to seller", orderNumber);
     }
 
@@ -205,53 +210,41 @@ public class EscrowService {
         Order order = orderRepository.findByOrderNumber(orderNumber)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderNumber));
 
-        order.setEscrowStatus(Order.EscrowStatus.REFUNDED_TO_BUYER);
-        order.setPaymentStatus(Order.PaymentStatus.REFUNDED);
-        order.setOrderStatus(Order.OrderStatus.REFUNDED);
-        order.setPayoutStatus(Order.PayoutStatus.FAILED);
-        orderRepository.save(order);
+        orderStateMachine.apply(order, OrderEvent.REFUNDED);
+        recordRefund(order);
+    }
+
+    private void payOutReleasedEscrow(Order order) {
+        ledgerService.postEscrowRelease(order);
+
+        // Provider-agnostic payout — PaymentService routes to the correct adapter
+        paymentService.payoutSeller(order);
+    }
+
+    private void recordRefund(Order order) {
         ledgerService.postRefund(order);
-        emailService.sendRefundEmail(order);
+        outboxService.email(OrderEmail.REFUND, order);
         log.info("Refund state set for order {} (payment method: {})",
                 order.getOrderNumber(), order.getPaymentMethod());
     }
 
     /**
-     * Scheduled safety net: auto-release escrow after the 72-hour hold window.
-     *
-     * Runs every hour. Handles buyers who collected from a PUDO locker without
-     * opening the app to confirm delivery.
+     * Auto-releases escrow after the 72-hour hold window, for buyers who collected
+     * from a PUDO locker without opening the app to confirm delivery. Run by
+     * {@link EscrowAutoReleaseService} when the order's timer expires while it is
+     * still PAYMENT_CONFIRMED.
      */
-    @Scheduled(fixedRate = 3_600_000)
-    public void processExpiredHolds() {
-        List<Order> expired = orderRepository.findEligibleForAutoRelease(
-                Order.OrderStatus.PAYMENT_CONFIRMED,
-                LocalDateTime.now(),
-                Order.DisputeStatus.NONE
-        );
-
-        if (expired.isEmpty()) return;
-        log.info("Auto-releasing {} orders with expired 72h escrow hold", expired.size());
-
-        for (Order order : expired) {
-            // TradeSafe manages its own inspection/release timeline — skip these orders entirely.
-            // TradeSafe's daysToInspect window handles the auto-release on their side.
-            if (order.getPaymentMethod() == Order.PaymentMethod.TRADESAFE) {
-                log.debug("Skipping auto-release for TradeSafe order {} — managed by TradeSafe escrow",
-                        order.getOrderNumber());
-                continue;
-            }
-            try {
-                log.info("Auto-releasing order {} (72h hold expired)", order.getOrderNumber());
-                order.setDeliveryConfirmed(true);
-                order.setDeliveryConfirmedDate(LocalDateTime.now());
-                order.setOrderStatus(Order.OrderStatus.DELIVERED);
-                orderRepository.save(order);
-                emailService.sendAutoReleaseEmails(order);
-                releaseToSeller(order);
-            } catch (Exception e) {
-                log.error("Auto-release failed for order {}: {}", order.getOrderNumber(), e.getMessage(), e);
-            }
+    public void releaseExpiredHold(Order order) {
+        // TradeSafe manages its own inspection/release timeline — skip these orders entirely.
+        // TradeSafe's daysToInspect window handles the auto-release on their side.
+        if (order.getPaymentMethod() == Order.PaymentMethod.TRADESAFE) {
+            log.debug("Skipping auto-release for TradeSafe order {} — managed by TradeSafe escrow",
+                    order.getOrderNumber());
+            return;
         }
+        log.info("Auto-releasing order {} (72h hold expired)", order.getOrderNumber());
+        orderStateMachine.apply(order, OrderEvent.DELIVERY_CONFIRMED);
+        outboxService.email(OrderEmail.AUTO_RELEASE, order);
+        releaseToSeller(order);
     }
 }
@@ -4,7 +4,9 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
 import com.google.firebase.messaging.Notification;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
@@ -62,18 +64,36 @@ public class FCMNotificationService {
      * have a User entity available or manage persistence themselves.
      */
     public void send(String fcmToken, String title, String body) {
-        if (messaging == null || fcmToken == null || fcmToken.isBlank()) return;
         try {
-            Message message = Message.builder()
-                    .setToken(fcmToken)
-                    .setNotification(Notification.builder()
-                            .setTitle(title)
-                            .setBody(body)
-                            .build())
-                    .build();
-            messaging.send(message);
+            deliver(fcmToken, title, body);
         } catch (Exception e) {
             // Non-fatal — never break order flow for a push notification failure
         }
     }
+
+    /**
+     * Push for the outbox: throws only for failures worth retrying (Firebase
+     * unavailable, quota, network). Pushes that can never succeed — FCM not
+     * configured, no token, token unregistered or rejected — are dropped quietly.
+     */
+    public void deliver(String fcmToken, String title, String body) throws FirebaseMessagingException {
+        if (messaging == null || fcmToken == null || fcmToken.isBlank()) return;
+        Message message = Message.builder()
+                .setToken(fcmToken)
+                .setNotification(Notification.builder()
+                        .setTitle(title)
+                        .setBody(body)
+                        .build())
+                .build();
+        try {
+            messaging.send(message);
+        } catch (FirebaseMessagingException e) {
+            MessagingErrorCode code = e.getMessagingErrorCode();
+            boolean retryable = code == null
+                    || code == MessagingErrorCode.INTERNAL
+                    || code == MessagingErrorCode.UNAVAILABLE
+                    || code == MessagingErrorCode.QUOTA_EXCEEDED;
+            if (retryable) throw e;
+        }
+    }
 }
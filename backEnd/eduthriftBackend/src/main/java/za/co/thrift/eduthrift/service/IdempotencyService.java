@@ -0,0 +1,163 @@
+package za.co.thrift.eduthrift.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.entity.ProcessedEvent;
+import za.co.thrift.eduthrift.repository.ProcessedEventRepository;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+import za.co.thrift.eduthrift.util.BloomFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Remembers which external events (webhooks, payment notifications) have already been
+ * applied, so redeliveries can be acknowledged without doing anything.
+ *
+ * <p>Most events are new, so {@link #isDuplicate} asks an in-memory {@link BloomFilter}
+ * first: a miss means "definitely new" and costs no query. A hit, which is either a
+ * real duplicate or a ~1 % false positive, is confirmed against the
+ * {@code processed_events} table. The filter is loaded from the table at startup and
+ * topped up every few seconds with events recorded by other instances; until the first
+ * load finishes every check goes to the table.
+ *
+ * <p>{@link #markProcessed} is the authoritative check: its insert is guarded by the
+ * table's unique key, so when it runs inside the transaction that applies the event,
+ * exactly one of two concurrent deliveries gets to commit it. Counts are published as
+ * {@code idempotency.checks{result=new|false_positive|duplicate}}.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 191;
+    private static final int LOAD_PAGE = 10_000;
+    // Re-read this many ids behind the last one loaded, for inserts that committed out of id order
+    private static final long REFRESH_OVERLAP = 1_000;
+    // Providers stop redelivering within days; older keys only cost filter space
+    private static final Duration RETENTION = Duration.ofDays(90);
+
+    private final ProcessedEventRepository repository;
+    private final SchedulerLockService schedulerLock;
+    private final BloomFilter filter;
+
+    private volatile boolean loaded;
+    private long lastLoadedId; // guarded by this
+
+    private final Counter newEvents;
+    private final Counter falsePositives;
+    private final Counter duplicates;
+
+    public IdempotencyService(ProcessedEventRepository repository,
+                              SchedulerLockService schedulerLock,
+                              MeterRegistry meterRegistry,
+                              @Value("${idempotency.expected-events:2000000}") long expectedEvents,
+                              @Value("${idempotency.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.repository = repository;
+        this.schedulerLock = schedulerLock;
+        this.filter = new BloomFilter(expectedEvents, falsePositiveRate);
+        this.newEvents = checks(meterRegistry, "new");
+        this.falsePositives = checks(meterRegistry, "false_positive");
+        this.duplicates = checks(meterRegistry, "duplicate");
+    }
+
+    /** Whether {@code eventKey} from {@code source} has already been {@linkplain #markProcessed processed}. */
+    public boolean isDuplicate(String source, String eventKey) {
+        String key = storedKey(eventKey);
+        if (loaded && !filter.mightContain(filterKey(source, key))) {
+            newEvents.increment();
+            return false;
+        }
+        boolean duplicate = repository.existsBySourceAndEventKey(source, key);
+        (duplicate ? duplicates : falsePositives).increment();
+        return duplicate;
+    }
+
+    /**
+     * Records the event as processed. Call it in the transaction that applies the event
+     * so a rollback forgets it again; a concurrent caller with the same key blocks until
+     * that transaction finishes.
+     *
+     * @return false if the event had already been recorded
+     */
+    public boolean markProcessed(String source, String eventKey) {
+        String key = storedKey(eventKey);
+        filter.put(filterKey(source, key));
+        return repository.insertIfAbsent(source, key, LocalDateTime.now()) == 1;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        int count = load();
+        loaded = true;
+        log.info("Idempotency filter loaded {} processed events in {} ms ({} bits, {} hashes)",
+                count, System.currentTimeMillis() - started, filter.bitCount(), filter.hashCount());
+    }
+
+    // Picks up events recorded by other instances
+    @Scheduled(fixedDelay = 5000)
+    public void refresh() {
+        if (loaded) load();
+    }
+
+    // Daily at 03:50
+    @Scheduled(cron = "0 50 3 * * *")
+    public void purgeExpired() {
+        schedulerLock.runExclusively("processed-events-purge", Duration.ofMinutes(10), Duration.ofMinutes(5), () -> {
+            int deleted = repository.deleteProcessedBefore(LocalDateTime.now().minus(RETENTION));
+            if (deleted > 0) log.info("Purged {} processed event keys", deleted);
+        });
+    }
+
+    private synchronized int load() {
+        int count = 0;
+        long afterId = Math.max(0, lastLoadedId - REFRESH_OVERLAP);
+        List<ProcessedEvent> page;
+        do {
+            page = repository.findByIdGreaterThanOrderById(afterId, PageRequest.of(0, LOAD_PAGE));
+            for (ProcessedEvent event : page) {
+                filter.put(filterKey(event.getSource(), event.getEventKey()));
+                afterId = event.getId();
+            }
+            count += page.size();
+        } while (page.size() == LOAD_PAGE);
+        lastLoadedId = Math.max(lastLoadedId, afterId);
+        return count;
+    }
+
+    private static String filterKey(String source, String storedKey) {
+        return source + '|' + storedKey;
+    }
+
+    private static String storedKey(String eventKey) {
+        if (eventKey.length() <= MAX_KEY_LENGTH) return eventKey;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(eventKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("idempotency.checks")
+                .tag("result", result)
+                .description("Idempotency checks by outcome")
+                .register(meterRegistry);
+    }
+}
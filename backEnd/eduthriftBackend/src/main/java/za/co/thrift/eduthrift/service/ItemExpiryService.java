@@ -1,71 +1,151 @@
 package za.co.thrift.eduthrift.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import za.co.thrift.eduthrift.entity.Item;
 import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.service.catalog.ItemChangedEvent;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends 14-day expiry reminders and expires listings whose expiry date has passed.
+ *
+ * <p>Both steps work in chunks of {@value #CHUNK_SIZE} listings, each in its own short
+ * transaction: read a page of IDs, update them with a single statement, and move on. A
+ * chunk's rows no longer match the query once it commits, so the next page is always
+ * the first one. Reminder emails are queued on the outbox in the chunk's transaction
+ * and sent by {@code OutboxDispatcher} afterwards.
+ *
+ * <p>Each run is timed as {@code items.expiry.run}; rows touched are counted as
+ * {@code items.expiry.rows{step=reminded|expired}}.
+ */
 @Service
 public class ItemExpiryService {
 
     private static final Logger log = LoggerFactory.getLogger(ItemExpiryService.class);
 
+    static final int CHUNK_SIZE = 500;
+    private static final int REMINDER_DAYS = 14;
+
     private final ItemRepository itemRepository;
-    private final EmailService emailService;
+    private final OutboxService outboxService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final SchedulerLockService schedulerLock;
+
+    private final Timer runTimer;
+    private final Counter remindedCounter;
+    private final Counter expiredCounter;
+
+    /** Rows a chunk read (drives the loop) and rows it actually changed (reported). */
+    private record Chunk(int read, int changed) {}
 
-    public ItemExpiryService(ItemRepository itemRepository, EmailService emailService) {
+    public ItemExpiryService(ItemRepository itemRepository,
+                             OutboxService outboxService,
+                             ApplicationEventPublisher eventPublisher,
+                             TransactionTemplate transactionTemplate,
+                             SchedulerLockService schedulerLock,
+                             MeterRegistry meterRegistry) {
         this.itemRepository = itemRepository;
-        this.emailService = emailService;
+        this.outboxService = outboxService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.schedulerLock = schedulerLock;
+        this.runTimer = Timer.builder("items.expiry.run")
+                .description("Duration of the daily listing expiry job")
+                .register(meterRegistry);
+        this.remindedCounter = rows(meterRegistry, "reminded");
+        this.expiredCounter = rows(meterRegistry, "expired");
     }
 
     /**
      * Runs daily at 08:00.
-     * 1. Sends a 14-day expiry reminder for listings that haven't had one yet.
+     * 1. Queues a 14-day expiry reminder for listings that haven't had one yet.
      * 2. Marks listings whose expiry date has passed as EXPIRED.
      */
     @Scheduled(cron = "0 0 8 * * *")
-    @Transactional
     public void processExpiringListings() {
-        LocalDate today = LocalDate.now();
-
-        // ── Expiry reminders ──────────────────────────────────────────────────
-        List<Item> toRemind = itemRepository.findItemsExpiringBetweenWithoutReminder(
-                Item.ItemStatus.AVAILABLE, today.plusDays(13), today.plusDays(14));
+        schedulerLock.runExclusively("item-expiry", Duration.ofHours(1), Duration.ofMinutes(5), this::run);
+    }
 
-        for (Item item : toRemind) {
-            try {
-                emailService.sendListingExpiryReminderEmail(item, 14);
-                item.setExpiryReminderSent(true);
-                itemRepository.save(item);
-                log.info("Expiry reminder sent for item {} (seller: {})", item.getId(), item.getUser().getEmail());
-            } catch (Exception e) {
-                log.error("Failed to send expiry reminder for item {}: {}", item.getId(), e.getMessage());
-            }
+    private void run() {
+        long started = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        int reminded = 0;
+        int expired = 0;
+        try {
+            reminded = queueReminders(today);
+            expired = expireOverdue(today);
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Expiry job complete — reminders queued: {}, listings expired: {}, took {} ms",
+                    reminded, expired, TimeUnit.NANOSECONDS.toMillis(elapsed));
         }
+    }
 
-        // ── Expire overdue listings ───────────────────────────────────────────
-        List<Item> toExpire = itemRepository.findByStatusAndExpiryDateLessThanEqual(
-                Item.ItemStatus.AVAILABLE, today);
+    private int queueReminders(LocalDate today) {
+        LocalDate from = today.plusDays(REMINDER_DAYS - 1);
+        LocalDate to = today.plusDays(REMINDER_DAYS);
+        int total = 0;
+        Chunk chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = itemRepository.findIdsDueForExpiryReminder(from, to, PageRequest.of(0, CHUNK_SIZE));
+                if (ids.isEmpty()) return new Chunk(0, 0);
+                // The read locked these rows, so nothing can mark or change them before the UPDATE:
+                // every id is one this chunk marked, and each listing gets exactly one reminder
+                int marked = itemRepository.markExpiryReminderSent(ids);
+                outboxService.expiryReminders(ids, REMINDER_DAYS);
+                return new Chunk(ids.size(), marked);
+            });
+            total += chunk.changed();
+            remindedCounter.increment(chunk.changed());
+        } while (chunk.read() == CHUNK_SIZE);
+        return total;
+    }
 
-        for (Item item : toExpire) {
-            try {
-                item.setStatus(Item.ItemStatus.EXPIRED);
-                itemRepository.save(item);
-                log.info("Listing expired: item {} (seller: {})", item.getId(), item.getUser().getEmail());
-            } catch (Exception e) {
-                log.error("Failed to expire item {}: {}", item.getId(), e.getMessage());
-            }
-        }
+    private int expireOverdue(LocalDate today) {
+        int total = 0;
+        Chunk chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = itemRepository.findIdsDueToExpire(today, PageRequest.of(0, CHUNK_SIZE));
+                if (ids.isEmpty()) return new Chunk(0, 0);
+                int expired = itemRepository.expireAll(ids, today, LocalDateTime.now());
+                // Catalog indexes and caches update after commit; they need the full rows
+                for (Item item : itemRepository.findAllWithSellerByIdIn(ids)) {
+                    if (item.getStatus() == Item.ItemStatus.EXPIRED) {
+                        eventPublisher.publishEvent(ItemChangedEvent.saved(item, Item.ItemStatus.AVAILABLE));
+                    }
+                }
+                return new Chunk(ids.size(), expired);
+            });
+            total += chunk.changed();
+            expiredCounter.increment(chunk.changed());
+        } while (chunk.read() == CHUNK_SIZE);
+        return total;
+    }
 
-        if (!toRemind.isEmpty() || !toExpire.isEmpty()) {
-            log.info("Expiry job complete — reminders sent: {}, listings expired: {}",
-                    toRemind.size(), toExpire.size());
-        }
+    private static Counter rows(MeterRegistry meterRegistry, String step) {
+        return Counter.builder("items.expiry.rows")
+                .tag("step", step)
+                .description("Listings touched by the expiry job")
+                .register(meterRegistry);
     }
 }
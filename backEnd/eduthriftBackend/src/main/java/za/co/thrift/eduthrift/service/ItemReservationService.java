@@ -0,0 +1,139 @@
+package za.co.thrift.eduthrift.service;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.catalog.ItemChangedEvent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes listings out of stock for checkout and puts them back when an order falls through.
+ *
+ * <p>Each unit is claimed with a single conditional UPDATE
+ * ({@link ItemRepository#reserveUnit}) rather than read–check–save, so two buyers racing
+ * for the same listing can never both get it, and no lock is held on anything but the
+ * listing rows themselves — checkouts of different listings never wait on each other.
+ * A bundle is all-or-nothing: if any unit is gone the transaction rolls back and the
+ * units already claimed are returned.
+ */
+@Service
+public class ItemReservationService {
+
+    private final ItemRepository itemRepository;
+    private final OrderRepository orderRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+
+    public ItemReservationService(ItemRepository itemRepository,
+                                  OrderRepository orderRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  EntityManager entityManager) {
+        this.itemRepository = itemRepository;
+        this.orderRepository = orderRepository;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+    }
+
+    /** Thrown when a listing in the request has already been taken by another buyer. */
+    public static class ItemUnavailableException extends RuntimeException {
+        private final Long itemId;
+
+        public ItemUnavailableException(Long itemId) {
+            super("Item is no longer available: " + itemId);
+            this.itemId = itemId;
+        }
+
+        public Long getItemId() {
+            return itemId;
+        }
+    }
+
+    /**
+     * Claims one unit per entry of {@code itemIds} (an ID listed twice claims two units)
+     * and returns the distinct listings, freshly loaded, in request order.
+     *
+     * @throws ItemUnavailableException if any unit could not be claimed; nothing is changed
+     */
+    @Transactional
+    public List<Item> reserve(List<Long> itemIds) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long itemId : itemIds) {
+            if (itemRepository.reserveUnit(itemId, now) == 0) {
+                throw new ItemUnavailableException(itemId);
+            }
+        }
+        List<Item> items = new ArrayList<>();
+        for (Long itemId : new LinkedHashSet<>(itemIds)) {
+            Item item = reload(itemId);
+            items.add(item);
+            // reserveUnit only takes units from AVAILABLE listings
+            eventPublisher.publishEvent(ItemChangedEvent.saved(item, Item.ItemStatus.AVAILABLE));
+        }
+        return items;
+    }
+
+    /**
+     * Reserves the bundle and saves {@code order} against it in one transaction, so an
+     * order never exists without its stock and stock is never held without an order.
+     * The first listing becomes the order's primary item and its owner the seller.
+     *
+     * @throws ItemUnavailableException if any unit could not be claimed; nothing is saved
+     */
+    @Transactional
+    public Order reserveAndPlace(Order order, List<Long> itemIds) {
+        List<Item> items = reserve(itemIds);
+        Item primaryItem = items.get(0);
+        order.setItem(primaryItem);
+        order.setSeller(primaryItem.getUser());
+        order.setReservedItemIds(new ArrayList<>(itemIds));
+        return orderRepository.save(order);
+    }
+
+    /**
+     * Returns every unit {@code order} reserved. Orders placed before the reserved units
+     * were recorded only know their primary item, so that is returned instead.
+     *
+     * @return the listings that got a unit back, as they now stand; listings sold or
+     *         removed meanwhile are left out
+     */
+    @Transactional
+    public List<Item> release(Order order) {
+        List<Long> itemIds = orderRepository.findReservedItemIds(order.getId());
+        if (itemIds.isEmpty() && order.getItem() != null) itemIds = List.of(order.getItem().getId());
+        LocalDateTime now = LocalDateTime.now();
+        // listing → the status it had before its first unit came back
+        Map<Long, Item.ItemStatus> returned = new LinkedHashMap<>();
+        for (Long itemId : itemIds) {
+            if (itemRepository.restoreReserved(itemId, now) > 0) {
+                returned.putIfAbsent(itemId, Item.ItemStatus.RESERVED);
+            } else if (itemRepository.returnUnit(itemId, now) > 0) {
+                returned.putIfAbsent(itemId, Item.ItemStatus.AVAILABLE);
+            }
+        }
+        List<Item> restored = new ArrayList<>();
+        for (Map.Entry<Long, Item.ItemStatus> e : returned.entrySet()) {
+            Item item = reload(e.getKey());
+            restored.add(item);
+            eventPublisher.publishEvent(ItemChangedEvent.saved(item, e.getValue()));
+        }
+        return restored;
+    }
+
+    /** The bulk UPDATE bypasses the persistence context, so re-read the row over any cached copy. */
+    private Item reload(Long itemId) {
+        Item item = entityManager.find(Item.class, itemId);
+        entityManager.refresh(item);
+        return item;
+    }
+}
@@ -25,6 +25,10 @@ public class NotificationService {
         return notificationRepository.save(n);
     }
 
+    public NotificationRepository.InboxVersion getInboxVersion(User user) {
+        return notificationRepository.findInboxVersion(user);
+    }
+
     public List<Notification> getForUser(User user) {
         return notificationRepository.findByUserOrderByCreatedAtDesc(user);
     }
@@ -1,89 +1,212 @@
 package za.co.thrift.eduthrift.service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 import za.co.thrift.eduthrift.entity.Item;
 import za.co.thrift.eduthrift.entity.Order;
-import za.co.thrift.eduthrift.repository.ItemRepository;
 import za.co.thrift.eduthrift.repository.OrderRepository;
-
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.order.PaymentSettledEvent;
+import za.co.thrift.eduthrift.service.outbox.OrderEmail;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+import za.co.thrift.eduthrift.util.HashedWheelTimer;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cancels orders whose payment has not arrived within {@link #PAYMENT_TIMEOUT} and
+ * returns their stock to the catalog.
+ *
+ * <p>Each order's deadline is put on a {@link HashedWheelTimer} when it is placed (and
+ * for every unpaid order on startup), so reserved listings come back within about a
+ * second of the timeout rather than on the next poll. Expiry claims the order with a
+ * conditional UPDATE, so a payment landing at the deadline, a second instance or the
+ * sweep can never cancel it twice; timers of orders that were paid simply find
+ * nothing to do. A slow sweep catches anything the wheel missed, e.g. across a restart.
+ *
+ * <p>A timer is cancelled as soon as its order is paid or cancelled (see
+ * {@link PaymentSettledEvent}), so {@code orders.payment_timeouts.pending} counts only
+ * orders still waiting on payment. Orders settled on another instance keep their timer
+ * here until it fires and finds nothing to do.
+ *
+ * <p>Cancelling, releasing the reserved units and queueing the buyer's notifications
+ * commit together, so a failure part-way leaves the order unpaid and its units
+ * reserved for the next timer or sweep to retry, never cancelled with stock held.
+ */
 @Service
 public class OrderExpiryService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderExpiryService.class);
 
     // How long a PENDING_PAYMENT order is held before auto-cancellation
-    private static final int PAYMENT_TIMEOUT_HOURS = 2;
+    static final Duration PAYMENT_TIMEOUT = Duration.ofHours(2);
+
+    private static final Duration TICK = Duration.ofSeconds(1);
+    // One turn of the wheel covers the whole timeout
+    private static final int WHEEL_SIZE = (int) (PAYMENT_TIMEOUT.toSeconds() / TICK.toSeconds());
 
     private final OrderRepository orderRepository;
-    private final ItemRepository itemRepository;
-    private final FCMNotificationService fcmNotificationService;
-    private final EmailService emailService;
+    private final ItemReservationService itemReservationService;
+    private final OutboxService outboxService;
+    private final OrderStateMachine orderStateMachine;
+    private final TransactionTemplate transactionTemplate;
+    private final SchedulerLockService schedulerLock;
+
+    // Cancellation hits the database, so it runs off the wheel's tick thread
+    private final ExecutorService expiryWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "payment-timeout-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HashedWheelTimer wheel = new HashedWheelTimer("payment-timeout-wheel", TICK, WHEEL_SIZE, expiryWorker);
+    /** order id → its armed timeout; an entry lives only while the order is unpaid. */
+    private final Map<Long, HashedWheelTimer.Timeout> paymentTimeouts = new ConcurrentHashMap<>();
 
     public OrderExpiryService(OrderRepository orderRepository,
-                               ItemRepository itemRepository,
-                               FCMNotificationService fcmNotificationService,
-                               EmailService emailService) {
+                               ItemReservationService itemReservationService,
+                               OutboxService outboxService,
+                               OrderStateMachine orderStateMachine,
+                               TransactionTemplate transactionTemplate,
+                               SchedulerLockService schedulerLock,
+                               MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
-        this.itemRepository = itemRepository;
-        this.fcmNotificationService = fcmNotificationService;
-        this.emailService = emailService;
+        this.itemReservationService = itemReservationService;
+        this.outboxService = outboxService;
+        this.orderStateMachine = orderStateMachine;
+        this.transactionTemplate = transactionTemplate;
+        this.schedulerLock = schedulerLock;
+        Gauge.builder("orders.payment_timeouts.pending", wheel, HashedWheelTimer::size)
+                .description("Unpaid orders with a payment timeout scheduled")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePendingOrders() {
+        List<OrderRepository.PendingPayment> pending =
+                orderRepository.findPendingPaymentsCreatedBefore(LocalDateTime.now());
+        for (OrderRepository.PendingPayment order : pending) {
+            schedulePaymentTimeout(order.getId(), order.getCreatedAt());
+        }
+        log.info("Scheduled payment timeouts for {} unpaid orders", pending.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+        expiryWorker.shutdown();
+    }
+
+    /** Arms the payment timeout of a newly placed order. */
+    public void schedulePaymentTimeout(Order order) {
+        schedulePaymentTimeout(order.getId(), order.getCreatedAt());
     }
 
-    // Runs every 15 minutes
-    @Scheduled(fixedDelay = 15 * 60 * 1000)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentSettled(PaymentSettledEvent event) {
+        cancelPaymentTimeout(event.orderId());
+    }
+
+    // Safety net for timeouts the wheel did not fire, e.g. orders placed on another instance
+    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 10 * 60 * 1000)
     public void cancelExpiredOrders() {
-        LocalDateTime cutoff = LocalDateTime.now().minusHours(PAYMENT_TIMEOUT_HOURS);
+        schedulerLock.runExclusively("order-expiry-sweep", Duration.ofMinutes(55), Duration.ofMinutes(50), this::sweep);
+    }
 
-        List<Order> expiredOrders = orderRepository
-                .findByOrderStatusAndCreatedAtBefore(Order.OrderStatus.PENDING_PAYMENT, cutoff);
+    private void sweep() {
+        List<OrderRepository.PendingPayment> expired =
+                orderRepository.findPendingPaymentsCreatedBefore(LocalDateTime.now().minus(PAYMENT_TIMEOUT));
 
-        if (expiredOrders.isEmpty()) return;
+        if (expired.isEmpty()) return;
 
-        log.info("Cancelling {} expired unpaid orders", expiredOrders.size());
+        log.info("Sweep found {} expired unpaid orders", expired.size());
 
-        for (Order order : expiredOrders) {
-            try {
-                cancelOrderAndRestoreItem(order, "Payment not received within " + PAYMENT_TIMEOUT_HOURS + " hours");
-            } catch (Exception e) {
-                log.error("Failed to cancel expired order {}: {}", order.getOrderNumber(), e.getMessage());
-            }
+        for (OrderRepository.PendingPayment order : expired) {
+            expireUnpaidOrder(order.getId());
         }
     }
 
-    public void cancelOrderAndRestoreItem(Order order, String reason) {
-        // Cancel the order
-        order.setOrderStatus(Order.OrderStatus.CANCELLED);
-        order.setPaymentStatus(Order.PaymentStatus.FAILED);
-        orderRepository.save(order);
-
-        // Restore item back to AVAILABLE
-        Item item = order.getItem();
-        if (item != null && item.getStatus() == Item.ItemStatus.RESERVED) {
-            item.setStatus(Item.ItemStatus.AVAILABLE);
-            itemRepository.save(item);
-            log.info("Item {} restored to AVAILABLE after order {} cancelled ({})",
-                    item.getId(), order.getOrderNumber(), reason);
+    /**
+     * Cancels the order if it is still unpaid and past its deadline, then restores its
+     * items and tells the buyer.
+     *
+     * @return true if this call cancelled the order
+     */
+    public boolean expireUnpaidOrder(Long orderId) {
+        try {
+            boolean cancelled = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                if (orderRepository.cancelIfUnpaid(orderId, now.minus(PAYMENT_TIMEOUT), now) == 0) {
+                    return false;
+                }
+                Order order = orderRepository.findById(orderId).orElseThrow();
+                String reason = "Payment not received within " + PAYMENT_TIMEOUT.toHours() + " hours";
+                // The conditional UPDATE bypasses the state machine, so return the stock here
+                for (Item item : itemReservationService.release(order)) {
+                    log.info("Item {} restored to AVAILABLE after order {} cancelled ({})",
+                            item.getId(), order.getOrderNumber(), reason);
+                }
+                notifyCancelled(order, reason);
+                return true;
+            }));
+            // The conditional UPDATE bypasses the state machine, so drop the timer here
+            if (cancelled) cancelPaymentTimeout(orderId);
+            return cancelled;
+        } catch (Exception e) {
+            log.error("Failed to cancel expired order {}: {}", orderId, e.getMessage());
+            return false;
         }
+    }
 
-        // Notify buyer
-        fcmNotificationService.send(
+    public void cancelOrderAndRestoreItem(Order order, String reason) {
+        // Joins the caller's transaction if there is one, e.g. the webhook dispatcher's
+        transactionTemplate.executeWithoutResult(status -> {
+            // The transition returns the stock; a redelivered webhook, or one for an order
+            // that was paid meanwhile, leaves both the units and the buyer alone
+            if (orderStateMachine.tryApply(order, OrderEvent.PAYMENT_FAILED) != OrderStateMachine.Result.APPLIED) return;
+            notifyCancelled(order, reason);
+        });
+    }
+
+    private void schedulePaymentTimeout(Long orderId, LocalDateTime createdAt) {
+        Duration delay = Duration.between(LocalDateTime.now(), createdAt.plus(PAYMENT_TIMEOUT));
+        HashedWheelTimer.Timeout timeout = wheel.schedule(() -> {
+            paymentTimeouts.remove(orderId);
+            expireUnpaidOrder(orderId);
+        }, delay);
+        HashedWheelTimer.Timeout previous = paymentTimeouts.put(orderId, timeout);
+        if (previous != null) previous.cancel();
+    }
+
+    private void cancelPaymentTimeout(Long orderId) {
+        HashedWheelTimer.Timeout timeout = paymentTimeouts.remove(orderId);
+        if (timeout != null) timeout.cancel();
+    }
+
+    private void notifyCancelled(Order order, String reason) {
+        outboxService.push(
                 order.getBuyer().getFcmToken(),
                 "Order Cancelled",
                 "Your order " + order.getOrderNumber() + " was cancelled — " + reason +
                 ". The item has been returned to listings."
         );
 
-        // Send cancellation email to buyer
-        try {
-            emailService.sendOrderCancellationEmail(order, reason);
-        } catch (Exception e) {
-            log.warn("Failed to send cancellation email for order {}", order.getOrderNumber());
-        }
+        outboxService.email(OrderEmail.ORDER_CANCELLATION, order, reason);
     }
 }
@@ -0,0 +1,112 @@
+package za.co.thrift.eduthrift.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.entity.NodeLease;
+import za.co.thrift.eduthrift.repository.NodeLeaseRepository;
+import za.co.thrift.eduthrift.util.SnowflakeIdGenerator;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Issues order numbers of the form {@code ORD-<snowflake id>}, e.g.
+ * {@code ORD-1234567890123456789}: unique across instances, roughly time-ordered,
+ * and cheap enough to call on every checkout without touching the database.
+ *
+ * <p>Each instance needs its own node ID. {@code orders.node-id} pins it explicitly;
+ * otherwise the instance leases a free one from {@code node_leases} on first use,
+ * renews the lease every minute and hands it back on shutdown. A lease that lapsed
+ * (e.g. the instance was paused) is replaced by a fresh one.
+ */
+@Service
+public class OrderNumberGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderNumberGenerator.class);
+
+    static final String PREFIX = "ORD-";
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    private final NodeLeaseRepository leaseRepository;
+    private final boolean leased;
+    private final String holder = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+    private final SnowflakeIdGenerator ids;
+    private volatile boolean nodeAssigned;
+
+    public OrderNumberGenerator(NodeLeaseRepository leaseRepository,
+                                @Value("${orders.node-id:-1}") int configuredNodeId) {
+        this.leaseRepository = leaseRepository;
+        this.leased = configuredNodeId < 0;
+        this.ids = new SnowflakeIdGenerator(leased ? 0 : configuredNodeId);
+        this.nodeAssigned = !leased;
+    }
+
+    public String next() {
+        if (!nodeAssigned) assignNode();
+        return PREFIX + ids.nextId();
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void renewLease() {
+        if (!leased || !nodeAssigned) return;
+        LocalDateTime now = LocalDateTime.now();
+        if (leaseRepository.claim(ids.getNodeId(), holder, now.plus(LEASE), now) == 0) {
+            log.warn("Lost order-number lease on node {}; acquiring a new one", ids.getNodeId());
+            ids.setNodeId(acquireLease());
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (!leased || !nodeAssigned) return;
+        try {
+            leaseRepository.release(ids.getNodeId(), holder, LocalDateTime.now());
+        } catch (Exception e) {
+            log.warn("Failed to release order-number lease on node {}: {}", ids.getNodeId(), e.getMessage());
+        }
+    }
+
+    private synchronized void assignNode() {
+        if (nodeAssigned) return;
+        ids.setNodeId(acquireLease());
+        nodeAssigned = true;
+    }
+
+    private int acquireLease() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(LEASE);
+        Set<Integer> known = new HashSet<>();
+        for (NodeLease lease : leaseRepository.findAll()) {
+            known.add(lease.getNodeId());
+            if (lease.getExpiresAt().isBefore(now)
+                    && leaseRepository.claim(lease.getNodeId(), holder, expiresAt, now) == 1) {
+                return leased(lease.getNodeId());
+            }
+        }
+        for (int nodeId = 0; nodeId <= SnowflakeIdGenerator.MAX_NODE_ID; nodeId++) {
+            if (known.contains(nodeId)) continue;
+            try {
+                leaseRepository.insert(nodeId, holder, expiresAt);
+                return leased(nodeId);
+            } catch (DataIntegrityViolationException e) {
+                // Another instance created it first
+            }
+        }
+        throw new IllegalStateException("No free order-number node id: all " +
+                (SnowflakeIdGenerator.MAX_NODE_ID + 1) + " leases are held");
+    }
+
+    private int leased(int nodeId) {
+        log.info("Leased order-number node {}", nodeId);
+        return nodeId;
+    }
+}
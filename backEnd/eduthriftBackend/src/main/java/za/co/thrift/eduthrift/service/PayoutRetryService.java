@@ -1,41 +1,46 @@
 package za.co.thrift.eduthrift.service;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.config.PaymentConfig;
 import za.co.thrift.eduthrift.entity.Order;
 import za.co.thrift.eduthrift.repository.OrderRepository;
 import za.co.thrift.eduthrift.service.payment.PaymentService;
+import za.co.thrift.eduthrift.service.payment.PayoutRetryPolicy;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Scheduled retry engine for failed seller payouts.
  *
  * <h2>Retry policy</h2>
- * <ul>
- *   <li>Maximum 3 total attempts per order.</li>
- *   <li>Exponential backoff:
- *       <ul>
- *         <li>After attempt 1: retry after 1 hour</li>
- *         <li>After attempt 2: retry after 4 hours</li>
- *         <li>After attempt 3: no further automatic retries — stays {@code FAILED},
- *             requires admin intervention</li>
- *       </ul>
- *   </li>
- * </ul>
+ * See {@link PayoutRetryPolicy}: at most 3 attempts, retried after about 1 hour and
+ * then about 4 hours. {@code PaymentService.payoutSeller} stores the next retry time
+ * ({@code next_payout_retry_at}) on the order when an attempt fails, and clears it when
+ * the payout completes, needs manual processing or has used up its attempts. A retry
+ * that throws instead is counted and rescheduled here, and the queue only returns
+ * orders with attempts left.
  *
- * <h2>Order eligibility</h2>
- * An order is eligible for retry if:
- * <ul>
- *   <li>{@code payout_status = FAILED}</li>
- *   <li>{@code payout_attempts < 3}</li>
- *   <li>{@code last_payout_attempt_at < (now - backoff)}</li>
- *   <li>Payment method has a provider that supports payouts (not Ozow/MANUAL_REQUIRED)</li>
- * </ul>
+ * <h2>Draining the queue</h2>
+ * Every minute one instance reads the due payouts with an indexed range scan and
+ * retries them on a pool of {@code payouts.retry-workers} threads. Each provider also
+ * has its own limit ({@code payment.providers.<name>.max-concurrent-payouts}), so a
+ * slow provider cannot take every thread. A batch is split into one queue per provider,
+ * drained by as many workers as that provider has permits free; the drain never waits
+ * for a permit, so one provider's backlog does not hold up the others, and a provider
+ * with none free has its payouts deferred to the next pass.
  *
  * <h2>What happens after 3 failed attempts</h2>
  * The order remains in {@code FAILED} state and will not be retried automatically.
@@ -46,50 +51,59 @@ import java.util.List;
 public class PayoutRetryService {
 
     private static final Logger log = LoggerFactory.getLogger(PayoutRetryService.class);
-    private static final int MAX_ATTEMPTS = 3;
-
-    /** Backoff by attempt number (1-indexed). */
-    private static final Duration[] BACKOFF = {
-            Duration.ZERO,           // placeholder for index 0
-            Duration.ofHours(1),     // after attempt 1 → wait 1h
-            Duration.ofHours(4),     // after attempt 2 → wait 4h
-    };
+    private static final int BATCH_SIZE = 50;
 
     private final OrderRepository orderRepository;
     private final PaymentService paymentService;
+    private final PaymentConfig paymentConfig;
+    private final SchedulerLockService schedulerLock;
+
+    private final ExecutorService workers;
+    private final Map<String, Semaphore> providerLimits = new ConcurrentHashMap<>();
 
-    public PayoutRetryService(OrderRepository orderRepository, PaymentService paymentService) {
+    public PayoutRetryService(OrderRepository orderRepository,
+                              PaymentService paymentService,
+                              PaymentConfig paymentConfig,
+                              SchedulerLockService schedulerLock,
+                              @Value("${payouts.retry-workers:4}") int workerCount) {
         this.orderRepository = orderRepository;
         this.paymentService  = paymentService;
+        this.paymentConfig   = paymentConfig;
+        this.schedulerLock   = schedulerLock;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread thread = new Thread(r, "payout-retry-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Gives failed payouts from before retry times were stored a retry time. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleUnscheduledRetries() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderRepository.PayoutAttempt> unscheduled =
+                orderRepository.findUnscheduledPayoutRetries(PayoutRetryPolicy.MAX_ATTEMPTS);
+        for (OrderRepository.PayoutAttempt payout : unscheduled) {
+            LocalDateTime lastAttempt = payout.getLastPayoutAttemptAt() != null ? payout.getLastPayoutAttemptAt() : now;
+            orderRepository.schedulePayoutRetry(payout.getId(),
+                    PayoutRetryPolicy.nextRetryAt(payout.getPayoutAttempts(), lastAttempt));
+        }
+        if (!unscheduled.isEmpty()) log.info("Scheduled retry times for {} failed payout(s)", unscheduled.size());
     }
 
     /**
-     * Runs every 30 minutes. Finds eligible failed payouts and retries them
-     * if their backoff window has expired.
+     * Runs every minute on one instance. Retries every failed payout whose retry time
+     * has passed.
      */
-    @Scheduled(fixedDelay = 30 * 60 * 1000)
+    @Scheduled(fixedDelay = 60 * 1000)
     public void retryFailedPayouts() {
-        List<Order> candidates = orderRepository.findByPayoutStatusAndPayoutAttemptsLessThan(
-                Order.PayoutStatus.FAILED, MAX_ATTEMPTS);
-
-        if (candidates.isEmpty()) return;
-
-        log.info("Payout retry scan: {} candidate order(s) found", candidates.size());
+        schedulerLock.runExclusively("payout-retry", Duration.ofMinutes(30), Duration.ofSeconds(50), this::drain);
+    }
 
-        for (Order order : candidates) {
-            try {
-                if (isEligibleForRetry(order)) {
-                    log.info("Retrying payout for order {} (attempt {}/{})",
-                            order.getOrderNumber(), order.getPayoutAttempts() + 1, MAX_ATTEMPTS);
-                    paymentService.payoutSeller(order);
-                }
-            } catch (Exception e) {
-                // paymentService.payoutSeller() already handles exceptions internally and
-                // updates payoutStatus. This catch is a safety net only.
-                log.error("Unexpected error during payout retry for order {}: {}",
-                        order.getOrderNumber(), e.getMessage(), e);
-            }
-        }
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
     }
 
     /**
@@ -110,18 +124,101 @@ public class PayoutRetryService {
     // Helpers
     // ─────────────────────────────────────────────────────────────────────────
 
-    private boolean isEligibleForRetry(Order order) {
-        // MANUAL_REQUIRED orders are not auto-retried (Ozow and similar)
-        if (order.getPaymentMethod() == null) return false;
+    private void drain() {
+        Set<Long> attempted = new HashSet<>();
+        List<OrderRepository.PayoutRetry> due;
+        List<Future<?>> running;
+        boolean deferred;
+        try {
+            do {
+                due = orderRepository.findDuePayoutRetries(LocalDateTime.now(), PayoutRetryPolicy.MAX_ATTEMPTS,
+                        PageRequest.of(0, BATCH_SIZE));
+                running = new ArrayList<>();
+                deferred = false;
+                for (Map.Entry<String, Queue<Long>> provider : queueByProvider(due, attempted).entrySet()) {
+                    Queue<Long> queue = provider.getValue();
+                    Semaphore limit = providerLimit(provider.getKey());
+                    int lanes = 0;
+                    // Never wait for a permit: the other providers' queues are still to be started
+                    while (lanes < queue.size() && limit.tryAcquire()) {
+                        try {
+                            running.add(workers.submit(() -> {
+                                try {
+                                    for (Long orderId; (orderId = queue.poll()) != null; ) {
+                                        retry(orderId);
+                                    }
+                                } finally {
+                                    limit.release();
+                                }
+                            }));
+                        } catch (RejectedExecutionException e) {
+                            limit.release();
+                            throw e;
+                        }
+                        lanes++;
+                    }
+                    if (lanes == 0) {
+                        // Still due, so the next pass reads them again
+                        attempted.removeAll(queue);
+                        deferred = true;
+                    }
+                }
+                for (Future<?> retry : running) {
+                    retry.get();
+                }
+            } while ((due.size() == BATCH_SIZE || deferred) && !running.isEmpty());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Payout retry drain failed: {}", e.getMessage());
+        }
+        if (!attempted.isEmpty()) log.info("Payout retry: {} payout(s) retried", attempted.size());
+    }
 
-        int attempts = order.getPayoutAttempts();
-        if (attempts >= MAX_ATTEMPTS) return false;
+    private void retry(Long orderId) {
+        int attempts = 0;
+        try {
+            Order order = orderRepository.findById(orderId).orElse(null);
+            // Completed or handled by an admin since the scan
+            if (order == null || order.getPayoutStatus() != Order.PayoutStatus.FAILED) return;
+            attempts = order.getPayoutAttempts();
+            log.info("Retrying payout for order {} (attempt {}/{})",
+                    order.getOrderNumber(), attempts + 1, PayoutRetryPolicy.MAX_ATTEMPTS);
+            paymentService.payoutSeller(order);
+        } catch (Exception e) {
+            // paymentService.payoutSeller() already handles provider failures and
+            // updates payoutStatus. Anything thrown rolled that back, leaving the order
+            // due; count the attempt here so it is not retried every minute forever.
+            log.error("Unexpected error during payout retry for order {}: {}", orderId, e.getMessage(), e);
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                String reason = "Retry failed: " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                orderRepository.recordAbortedPayoutRetry(orderId, now,
+                        PayoutRetryPolicy.nextRetryAt(attempts + 1, now),
+                        reason.length() > 500 ? reason.substring(0, 500) : reason);
+            } catch (Exception recordFailure) {
+                log.error("Could not reschedule payout retry for order {}: {}", orderId, recordFailure.getMessage());
+            }
+        }
+    }
 
-        // Check backoff window
-        LocalDateTime lastAttempt = order.getLastPayoutAttemptAt();
-        if (lastAttempt == null) return true;
+    /** Splits the batch into one queue of order IDs per provider, skipping payouts already tried this drain. */
+    private Map<String, Queue<Long>> queueByProvider(List<OrderRepository.PayoutRetry> due, Set<Long> attempted) {
+        Map<String, Queue<Long>> byProvider = new LinkedHashMap<>();
+        for (OrderRepository.PayoutRetry payout : due) {
+            // Still due after we tried it: the retry threw before recording the attempt
+            if (!attempted.add(payout.getId())) continue;
+            byProvider.computeIfAbsent(paymentService.providerNameFor(payout.getPaymentMethod()),
+                    k -> new ConcurrentLinkedQueue<>()).add(payout.getId());
+        }
+        return byProvider;
+    }
 
-        Duration required = attempts < BACKOFF.length ? BACKOFF[attempts] : Duration.ofHours(24);
-        return LocalDateTime.now().isAfter(lastAttempt.plus(required));
+    private Semaphore providerLimit(String providerName) {
+        return providerLimits.computeIfAbsent(providerName, name -> {
+            PaymentConfig.ProviderConfig config = paymentConfig.getProviders()
+                    .getOrDefault(name.toLowerCase(), new PaymentConfig.ProviderConfig());
+            return new Semaphore(Math.max(1, config.getMaxConcurrentPayouts()));
+        });
     }
 }
@@ -0,0 +1,120 @@
+package za.co.thrift.eduthrift.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.outbox.OrderEmail;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Books the TCG shipment for a locker order once TradeSafe holds the buyer's funds.
+ *
+ * The FUNDS_RECEIVED callback only records the transition and schedules a
+ * BOOK_SHIPMENT {@link ScheduledAction} in the same transaction; the remote calls run
+ * here, outside the webhook dispatcher's retried transaction, so a redelivered or
+ * retried callback can never book a second shipment.
+ *
+ * Idempotent — the order is re-read when the action runs and nothing is booked once it
+ * has a tcgShipmentId. The shipment is saved, and the seller told where to drop off,
+ * in one transaction right after TCG accepts it. A TCG failure propagates so the
+ * action is retried with backoff; a failed TradeSafe startDelivery is only logged, as
+ * the shipment itself is already booked.
+ */
+@Service
+public class ShipmentBookingService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShipmentBookingService.class);
+
+    /** Paid orders that have not left the seller yet. */
+    private static final Set<Order.OrderStatus> AWAITING_SHIPMENT =
+            EnumSet.of(Order.OrderStatus.PAYMENT_CONFIRMED, Order.OrderStatus.PROCESSING);
+
+    private final OrderRepository orderRepository;
+    private final TCGShippingService tcgShippingService;
+    private final TradeSafeService tradeSafeService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    public ShipmentBookingService(OrderRepository orderRepository,
+                                  TCGShippingService tcgShippingService,
+                                  TradeSafeService tradeSafeService,
+                                  OutboxService outboxService,
+                                  TransactionTemplate transactionTemplate) {
+        this.orderRepository = orderRepository;
+        this.tcgShippingService = tcgShippingService;
+        this.tradeSafeService = tradeSafeService;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /** Whether the order is delivered to a TCG locker, and so needs a BOOK_SHIPMENT action. */
+    public static boolean needsShipment(Order order) {
+        return order.getDeliveryLockerId() != null && order.getServiceLevelCode() != null;
+    }
+
+    /**
+     * Runs an order's BOOK_SHIPMENT action. Does nothing if the order is already booked
+     * or has been cancelled since; exceptions propagate so the action is retried.
+     */
+    public void bookShipment(Long orderId) {
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order == null
+                || order.getTcgShipmentId() != null
+                || !AWAITING_SHIPMENT.contains(order.getOrderStatus())
+                || !needsShipment(order)) {
+            return;
+        }
+
+        Map<String, Object> shipment = tcgShippingService.createShipment(order, order.getSeller(), order.getBuyer());
+        Object tRef = shipment.get("short_tracking_reference");
+        if (tRef == null) tRef = shipment.get("tracking_reference");
+        String trackingRef = tRef != null ? tRef.toString() : null;
+        Object shipmentId = shipment.get("id");
+
+        Order booked = transactionTemplate.execute(status -> {
+            Order current = orderRepository.findById(orderId).orElseThrow();
+            if (trackingRef != null) current.setTrackingNumber(trackingRef);
+            if (shipmentId != null) current.setTcgShipmentId(shipmentId.toString());
+            orderRepository.save(current);
+            notifySeller(current, trackingRef);
+            return current;
+        });
+        log.info("TCG shipment {} booked for order {}", shipmentId, booked.getOrderNumber());
+
+        // Advance TradeSafe allocation to INITIATED now that shipment is booked
+        if (booked.getTradeSafeAllocationId() != null) {
+            try {
+                tradeSafeService.startDelivery(booked.getTradeSafeAllocationId());
+            } catch (Exception e) {
+                log.warn("TradeSafe startDelivery failed for order {}: {}", booked.getOrderNumber(), e.getMessage());
+            }
+        }
+    }
+
+    /** Tells the seller to drop the item off, with the waybill once there is one. */
+    public void notifySeller(Order order, String trackingRef) {
+        String sellerMsg = "Funds for order " + order.getOrderNumber()
+                + " are secured in escrow. Please drop off the item at your nearest Pudo locker.";
+        if (trackingRef != null) {
+            sellerMsg += " Waybill: " + trackingRef + ". Buyer's locker: "
+                    + (order.getPickupPoint() != null ? order.getPickupPoint() : "see order details") + ".";
+        } else {
+            sellerMsg += " Open your orders in the app for the waybill and drop-off instructions.";
+        }
+        outboxService.push(
+                order.getSeller().getFcmToken(),
+                "Action Required: Drop Off Item",
+                sellerMsg
+        );
+        // Send seller email with waybill now that shipment is created
+        outboxService.email(OrderEmail.SELLER_SHIP_NOW, order);
+    }
+}
@@ -1,19 +1,33 @@
 package za.co.thrift.eduthrift.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-import za.co.thrift.eduthrift.entity.WebhookLog;
-import za.co.thrift.eduthrift.repository.WebhookLogRepository;
+import org.springframework.transaction.support.TransactionTemplate;
 import za.co.thrift.eduthrift.service.payment.WebhookRequest;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Persists audit records for every inbound webhook request.
@@ -22,9 +36,30 @@ import java.util.stream.Collectors;
  * replayed, or malformed requests are captured. This is the primary defence
  * record in the event of a payment dispute.
  *
- * <p>All methods use {@code REQUIRES_NEW} propagation so log writes are
- * committed independently of the caller's transaction. A rollback in the
- * payment processing flow will not remove the webhook log entry.
+ * <h2>Buffered writes</h2>
+ * <p>A request is given a {@code requestId} on arrival and its lifecycle
+ * (verified, processed, failed) is kept in memory. Every second the buffer is written
+ * with one JDBC batch of inserts and one of updates in a single transaction, so a
+ * webhook that is verified and resolved within the interval costs one insert, and one
+ * resolved later costs one more update. Writes are independent of the caller's
+ * transaction: a rollback in the processing flow will not remove the log entry.
+ *
+ * <h2>Journal</h2>
+ * <p>Each change is also appended, once, to a journal file before the call returns.
+ * The journal is switched to a new segment at every flush; closed segments are kept
+ * until every entry in them is in the database, then deleted. Segments left behind
+ * by a crash are replayed on the next startup. The journal is flushed to the OS, not
+ * fsynced, so it survives a process crash but not a power loss.
+ *
+ * <p>Each instance journals under {@code webhooks.audit.journal-dir/<instance-id>} and
+ * only ever replays or deletes its own segments, so the directory may be shared. The
+ * instance id must stay the same across restarts for a crashed instance's segments to
+ * be replayed; a lock file keeps two live processes from using the same one.
+ *
+ * <h2>Bounded buffer</h2>
+ * <p>While the database is down, records are carried from flush to flush. At most
+ * {@code webhooks.audit.max-buffered} are kept in memory; older ones are dropped from
+ * the buffer but stay in the journal, which is replayed once writes succeed again.
  *
  * <h2>Sensitive header filtering</h2>
  * <p>Only non-sensitive headers are stored. Authorization, Cookie, and other
@@ -40,76 +75,377 @@ public class WebhookLogService {
             "x-auth-token", "proxy-authorization"
     );
 
-    private final WebhookLogRepository repo;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /** How many flushes an update that matched no row is retried for; its insert may still be buffered on another instance. */
+    private static final int MAX_UPDATE_MISSES = 30;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO webhook_logs (request_id, provider, endpoint_path, raw_payload, raw_headers, order_number, " +
+            "verified, processed, failure_reason, created_at, resolved_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Only ever moves a row forward, so replaying an update is harmless
+    private static final String UPDATE_SQL =
+            "UPDATE webhook_logs SET verified = (verified OR ?), order_number = COALESCE(?, order_number), " +
+            "processed = (processed OR ?), failure_reason = COALESCE(?, failure_reason), " +
+            "resolved_at = COALESCE(?, resolved_at) WHERE request_id = ?";
+
+    /**
+     * One journal line. {@code provider} is set only on the line that logs the request;
+     * the other lines carry just the fields a lifecycle step changed.
+     */
+    record Change(String requestId, String provider, String endpointPath, String rawPayload, String rawHeaders,
+                  String orderNumber, Boolean verified, Boolean processed, String failureReason,
+                  LocalDateTime createdAt, LocalDateTime resolvedAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path journalDir;
+    private final int maxBuffered;
+    /** Held for the life of the process; null if the journal is disabled. */
+    private final FileLock journalLock;
 
-    public WebhookLogService(WebhookLogRepository repo) {
-        this.repo = repo;
+    private final Object lock = new Object();
+    private final Map<String, Entry> buffer = new LinkedHashMap<>(); // guarded by lock
+    private BufferedWriter journal;                                  // guarded by lock
+    private Path journalSegment;                                     // guarded by lock
+    private final AtomicLong segmentSequence = new AtomicLong();
+
+    /** Closed segments with entries not yet in the database; only touched by flush. */
+    private final List<Path> retainedSegments = new ArrayList<>();
+    /** Entries were dropped from the buffer and must be replayed from the retained segments. */
+    private boolean spilled;
+
+    public WebhookLogService(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             ObjectMapper objectMapper,
+                             @Value("${webhooks.audit.journal-dir:/app/data/webhook-audit}") String journalDir,
+                             @Value("${webhooks.audit.instance-id:${HOSTNAME:local}}") String instanceId,
+                             @Value("${webhooks.audit.max-buffered:10000}") int maxBuffered) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.journalDir = Path.of(journalDir, instanceId.replaceAll("[^A-Za-z0-9._-]", "_"));
+        this.maxBuffered = maxBuffered;
+        this.journalLock = lockJournalDir();
+        synchronized (lock) {
+            if (journalLock != null) rotateJournal();
+        }
     }
 
     /**
-     * Persist an incoming webhook request before any processing.
+     * Record an incoming webhook request before any processing.
      *
-     * @return the saved log entry's ID — pass to subsequent update methods
+     * @return the request's ID — pass to subsequent update methods
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public Long logIncoming(String provider, String endpointPath, WebhookRequest request) {
-        String rawHeaders = serializeHeaders(request.headers());
+    public String logIncoming(String provider, String endpointPath, WebhookRequest request) {
         String rawPayload = request.formParams().isEmpty()
                 ? request.rawBody()
                 : request.formParams().toString();
-
-        WebhookLog entry = WebhookLog.incoming(provider, endpointPath, rawPayload, rawHeaders);
-        repo.save(entry);
-        log.debug("Webhook logged: provider={}, logId={}, endpoint={}", provider, entry.getId(), endpointPath);
-        return entry.getId();
+        String requestId = UUID.randomUUID().toString();
+        record(new Change(requestId, provider, endpointPath, rawPayload, serializeHeaders(request.headers()),
+                null, null, null, null, LocalDateTime.now(), null));
+        log.debug("Webhook logged: provider={}, requestId={}, endpoint={}", provider, requestId, endpointPath);
+        return requestId;
     }
 
     /**
-     * Mark the webhook as signature-verified and record the associated order number.
+     * Mark the webhook as signature-verified and record the associated order number, if known.
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markVerified(Long logId, String orderNumber) {
-        repo.findById(logId).ifPresent(entry -> {
-            entry.setVerified(true);
-            entry.setOrderNumber(orderNumber);
-            repo.save(entry);
-        });
+    public void markVerified(String requestId, String orderNumber) {
+        if (requestId == null) return;
+        record(new Change(requestId, null, null, null, null, orderNumber, true, null, null, null, null));
     }
 
     /**
      * Mark the webhook as successfully processed.
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markProcessed(Long logId) {
-        repo.findById(logId).ifPresent(entry -> {
-            entry.setProcessed(true);
-            entry.setResolvedAt(LocalDateTime.now());
-            repo.save(entry);
-        });
+    public void markProcessed(String requestId) {
+        if (requestId == null) return;
+        record(new Change(requestId, null, null, null, null, null, null, true, null, null, LocalDateTime.now()));
     }
 
     /**
      * Mark the webhook as failed (signature invalid, processing error, order not found, etc.)
      * and record the reason.
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markFailed(Long logId, String reason) {
-        repo.findById(logId).ifPresent(entry -> {
-            // Truncate to fit column length
-            String truncated = reason != null && reason.length() > 490
-                    ? reason.substring(0, 490) + "..."
-                    : reason;
-            entry.setFailureReason(truncated);
-            entry.setResolvedAt(LocalDateTime.now());
-            repo.save(entry);
-        });
+    public void markFailed(String requestId, String reason) {
+        if (requestId == null) return;
+        // Truncate to fit column length
+        String truncated = reason != null && reason.length() > 490
+                ? reason.substring(0, 490) + "..."
+                : reason;
+        record(new Change(requestId, null, null, null, null, null, null, null, truncated, null, LocalDateTime.now()));
+    }
+
+    /** Writes segments a crashed run of this instance left behind. */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void replayJournal() {
+        List<Path> segments = closedSegments();
+        if (segments.isEmpty()) return;
+        if (replay(segments)) {
+            for (Path segment : segments) deleteSegment(segment);
+        } else {
+            log.error("Webhook audit journal replay failed, will retry on next startup");
+        }
+    }
+
+    /** Writes everything buffered since the last flush. */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void flush() {
+        List<Entry> entries;
+        Path closedSegment;
+        synchronized (lock) {
+            if (buffer.isEmpty() && !spilled) return;
+            entries = new ArrayList<>(buffer.values());
+            buffer.clear();
+            closedSegment = rotateJournal();
+        }
+        if (closedSegment != null) retainedSegments.add(closedSegment);
+
+        List<Entry> inserts = entries.stream().filter(e -> e.provider != null).toList();
+        List<Entry> updates = entries.stream().filter(e -> e.provider == null).toList();
+        List<Entry> carried = new ArrayList<>();
+        boolean written = true;
+        try {
+            int[] updated = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, insertArgs(inserts));
+                return jdbcTemplate.batchUpdate(UPDATE_SQL, updateArgs(updates));
+            });
+            for (int i = 0; i < updates.size(); i++) {
+                if (updated[i] == 0) carryMissedUpdate(updates.get(i), carried);
+            }
+        } catch (NonTransientDataAccessException e) {
+            // One bad record must not hold back the rest: write them one at a time
+            log.warn("Webhook audit batch rejected, writing {} record(s) individually: {}", entries.size(), e.getMessage());
+            for (Entry entry : entries) {
+                writeIndividually(entry, carried);
+            }
+        } catch (Exception e) {
+            log.warn("Webhook audit flush of {} record(s) failed, retrying: {}", entries.size(), e.getMessage());
+            carried.addAll(entries);
+            written = false;
+        }
+
+        // The database is back: pick up what was dropped from the buffer while it was down
+        boolean replayed = written && spilled && replay(retainedSegments);
+        if (replayed) {
+            spilled = false;
+            retainedSegments.forEach(this::deleteSegment);
+            retainedSegments.clear();
+        }
+
+        synchronized (lock) {
+            for (Entry entry : carried) {
+                // Its segment was just deleted; this rare path journals it again
+                if (replayed) appendToJournal(entry.asChange());
+                // Changes that arrived during the flush are newer; fold them on top
+                Entry newer = buffer.remove(entry.requestId);
+                if (newer != null) entry.merge(newer);
+                buffer.put(entry.requestId, entry);
+            }
+            int excess = buffer.size() - maxBuffered;
+            if (excess > 0) {
+                // Oldest first; their changes are still in the retained segments
+                Iterator<Entry> oldest = buffer.values().iterator();
+                for (int i = 0; i < excess; i++) {
+                    oldest.next();
+                    oldest.remove();
+                }
+                if (journal != null) {
+                    spilled = true;
+                    log.warn("Webhook audit buffer full, {} record(s) left to the journal until the database recovers", excess);
+                } else {
+                    log.error("Webhook audit buffer full and no journal, dropped {} record(s)", excess);
+                }
+            }
+        }
+        // Entries carried over still live in the retained segments, so those stay until they are written
+        if (carried.isEmpty() && !spilled) {
+            retainedSegments.forEach(this::deleteSegment);
+            retainedSegments.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        synchronized (lock) {
+            closeJournal();
+        }
+        try {
+            if (journalLock != null) journalLock.channel().close();
+        } catch (IOException ignored) {
+        }
     }
 
     // ─────────────────────────────────────────────────────────────────────────
     // Helpers
     // ─────────────────────────────────────────────────────────────────────────
 
+    /** Writes every change in {@code segments}; true if they are all in the database now. */
+    private boolean replay(List<Path> segments) {
+        Map<String, Entry> replayed = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            try (BufferedReader reader = Files.newBufferedReader(segment)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    Change change = objectMapper.readValue(line, Change.class);
+                    Entry entry = replayed.computeIfAbsent(change.requestId(), Entry::new);
+                    entry.apply(change);
+                }
+            } catch (IOException e) {
+                // A torn last line from the crash; everything before it is still good
+                log.warn("Webhook audit journal {} partly unreadable: {}", segment, e.getMessage());
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Entry> entries = new ArrayList<>(replayed.values());
+                // The crash may have come after the batch committed but before the segment was deleted
+                int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updateArgs(entries));
+                List<Entry> missing = new ArrayList<>();
+                for (int i = 0; i < entries.size(); i++) {
+                    if (updated[i] == 0 && entries.get(i).provider != null) missing.add(entries.get(i));
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, insertArgs(missing));
+            });
+            log.info("Replayed {} webhook audit record(s) from {} journal segment(s)", replayed.size(), segments.size());
+            return true;
+        } catch (Exception e) {
+            log.warn("Webhook audit journal replay of {} segment(s) failed: {}", segments.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void record(Change change) {
+        synchronized (lock) {
+            appendToJournal(change);
+            buffer.computeIfAbsent(change.requestId(), Entry::new).apply(change);
+        }
+    }
+
+    private void writeIndividually(Entry entry, List<Entry> carried) {
+        try {
+            if (entry.provider != null) {
+                jdbcTemplate.update(INSERT_SQL, insertArgs(List.of(entry)).get(0));
+            } else if (jdbcTemplate.update(UPDATE_SQL, updateArgs(List.of(entry)).get(0)) == 0) {
+                carryMissedUpdate(entry, carried);
+            }
+        } catch (NonTransientDataAccessException e) {
+            log.error("Dropping webhook audit record {}: {}", entry.requestId, e.getMessage());
+        } catch (Exception e) {
+            carried.add(entry);
+        }
+    }
+
+    private void carryMissedUpdate(Entry entry, List<Entry> carried) {
+        if (++entry.misses < MAX_UPDATE_MISSES) {
+            carried.add(entry);
+        } else {
+            log.warn("Dropping webhook audit update for unknown request {}", entry.requestId);
+        }
+    }
+
+    private void appendToJournal(Change change) {
+        if (journal == null) return;
+        try {
+            journal.write(objectMapper.writeValueAsString(change));
+            journal.newLine();
+            journal.flush();
+        } catch (IOException e) {
+            log.warn("Webhook audit journal write failed, continuing without it: {}", e.getMessage());
+            closeJournal();
+        }
+    }
+
+    /**
+     * Creates this instance's journal directory and locks it, so a second process
+     * configured with the same instance id cannot replay or delete its segments.
+     */
+    private FileLock lockJournalDir() {
+        try {
+            Files.createDirectories(journalDir);
+            FileChannel channel = FileChannel.open(journalDir.resolve(".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock;
+            try {
+                fileLock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                fileLock = null; // held by this JVM already
+            }
+            if (fileLock == null) {
+                channel.close();
+                log.error("Webhook audit journal {} is in use by another process, logging without it", journalDir);
+            }
+            return fileLock;
+        } catch (IOException e) {
+            log.warn("Webhook audit journal directory {} unavailable, logging without it: {}", journalDir, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Starts a new journal segment and returns the one it replaces. */
+    private Path rotateJournal() {
+        Path previous = journalSegment;
+        closeJournal();
+        journalSegment = journalDir.resolve(String.format("webhook-audit-%d-%05d.log",
+                System.currentTimeMillis(), segmentSequence.incrementAndGet()));
+        try {
+            journal = Files.newBufferedWriter(journalSegment, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            journal = null;
+            journalSegment = null;
+        }
+        return previous;
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+        }
+        journal = null;
+    }
+
+    private List<Path> closedSegments() {
+        if (journalLock == null) return List.of();
+        Path current;
+        synchronized (lock) {
+            current = journalSegment;
+        }
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("webhook-audit-"))
+                    .filter(p -> !p.equals(current) && !retainedSegments.contains(p))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private void deleteSegment(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            log.warn("Could not delete webhook audit journal {}: {}", segment, e.getMessage());
+        }
+    }
+
+    private static List<Object[]> insertArgs(List<Entry> entries) {
+        return entries.stream().map(e -> new Object[]{
+                e.requestId, e.provider, e.endpointPath, e.rawPayload, e.rawHeaders, e.orderNumber,
+                e.verified, e.processed, e.failureReason, e.createdAt, e.resolvedAt
+        }).toList();
+    }
+
+    private static List<Object[]> updateArgs(List<Entry> entries) {
+        return entries.stream().map(e -> new Object[]{
+                e.verified, e.orderNumber, e.processed, e.failureReason, e.resolvedAt, e.requestId
+        }).toList();
+    }
+
     private String serializeHeaders(Map<String, String> headers) {
         if (headers == null || headers.isEmpty()) return "{}";
         Map<String, String> safe = headers.entrySet().stream()
@@ -121,4 +457,51 @@ public class WebhookLogService {
             return "{\"error\":\"could not serialize headers\"}";
         }
     }
+
+    /**
+     * A request's state since the last flush. With a {@code provider} it becomes an
+     * insert; without one it is an update to a row written earlier.
+     */
+    private static final class Entry {
+        final String requestId;
+        String provider;
+        String endpointPath;
+        String rawPayload;
+        String rawHeaders;
+        String orderNumber;
+        boolean verified;
+        boolean processed;
+        String failureReason;
+        LocalDateTime createdAt;
+        LocalDateTime resolvedAt;
+        int misses;
+
+        Entry(String requestId) {
+            this.requestId = requestId;
+        }
+
+        void apply(Change change) {
+            if (change.provider() != null) {
+                provider = change.provider();
+                endpointPath = change.endpointPath();
+                rawPayload = change.rawPayload();
+                rawHeaders = change.rawHeaders();
+                createdAt = change.createdAt();
+            }
+            if (change.orderNumber() != null) orderNumber = change.orderNumber();
+            if (Boolean.TRUE.equals(change.verified())) verified = true;
+            if (Boolean.TRUE.equals(change.processed())) processed = true;
+            if (change.failureReason() != null) failureReason = change.failureReason();
+            if (change.resolvedAt() != null) resolvedAt = change.resolvedAt();
+        }
+
+        void merge(Entry newer) {
+            apply(newer.asChange());
+        }
+
+        Change asChange() {
+            return new Change(requestId, provider, endpointPath, rawPayload, rawHeaders, orderNumber,
+                    verified, processed, failureReason, createdAt, resolvedAt);
+        }
+    }
 }
@@ -0,0 +1,246 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bitmap facet engine over AVAILABLE listings.
+ *
+ * <p>Keeps one compressed (Roaring) bitmap of item IDs per facet value — e.g. one
+ * bitmap for {@code school_name = "Grey College"}, one for {@code size = "32"}.
+ * Answering a filter combination is a bitmap intersection, and every facet count
+ * is an intersection cardinality, so a full facet response costs microseconds
+ * and never touches MySQL.
+ *
+ * <h2>Count semantics</h2>
+ * Counts for a facet are computed with every <em>other</em> active filter applied
+ * but not the facet's own filter. A buyer who picked size 32 therefore still sees
+ * how many listings exist in size 34, which is what a filter sidebar needs.
+ *
+ * <p>Values are matched case-insensitively; the label returned is the first
+ * spelling seen for that value.
+ */
+@Service
+public class CatalogFacetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogFacetIndex.class);
+
+    /** Facets a buyer can filter on, keyed by the JSON field name used in item responses. */
+    public enum Facet {
+        SCHOOL("school_name", Item::getSchoolName),
+        CATEGORY("category", Item::getCategory),
+        SUBCATEGORY("subcategory", Item::getSubcategory),
+        SPORT("sport", Item::getSport),
+        SIZE("size", Item::getSize),
+        GENDER("gender", i -> i.getGender() != null ? i.getGender().name() : null),
+        CONDITION("condition_grade", i -> i.getConditionGrade() != null ? i.getConditionGrade().toString() : null);
+
+        private final String param;
+        private final Function<Item, String> extractor;
+
+        Facet(String param, Function<Item, String> extractor) {
+            this.param = param;
+            this.extractor = extractor;
+        }
+
+        public String param() {
+            return param;
+        }
+    }
+
+    public record FacetValue(String value, int count) {}
+
+    public record Result(int total, List<Long> itemIds, Map<String, List<FacetValue>> facets) {}
+
+    private static final Facet[] FACETS = Facet.values();
+
+    private final ItemRepository itemRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EnumMap<Facet, Map<String, RoaringBitmap>> bitmaps = new EnumMap<>(Facet.class);
+    private final EnumMap<Facet, Map<String, String>> labels = new EnumMap<>(Facet.class);
+    private final RoaringBitmap available = new RoaringBitmap();
+    /** item id → normalized value per facet (by ordinal), needed to remove an item's old bits. */
+    private final Map<Integer, String[]> itemValues = new HashMap<>();
+    /** Changes seen while a rebuild is reading the database; null when none is. */
+    private List<ItemChangedEvent> changesDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    public CatalogFacetIndex(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+        for (Facet f : FACETS) {
+            bitmaps.put(f, new HashMap<>());
+            labels.put(f, new HashMap<>());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<ItemRepository.FacetValues> rows = itemRepository.findFacetValuesByStatus(Item.ItemStatus.AVAILABLE);
+        lock.writeLock().lock();
+        try {
+            for (Facet f : FACETS) {
+                bitmaps.get(f).clear();
+                labels.get(f).clear();
+            }
+            available.clear();
+            itemValues.clear();
+            for (ItemRepository.FacetValues row : rows) {
+                add(row.getId(), new String[] {
+                        row.getSchoolName(), row.getCategory(), row.getSubcategory(), row.getSport(), row.getSize(),
+                        row.getGender() != null ? row.getGender().name() : null,
+                        row.getConditionGrade() != null ? row.getConditionGrade().toString() : null
+                });
+            }
+            // The snapshot may predate these; replaying them in order leaves the latest state
+            for (ItemChangedEvent change : changesDuringRebuild) {
+                apply(change);
+            }
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Catalog facet index built — {} available listings in {} ms",
+                rows.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changesDuringRebuild != null) changesDuringRebuild.add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @param filters    facet → requested value (case-insensitive); facets not present are unfiltered
+     * @param maxItemIds cap on the number of matching IDs returned (newest first)
+     */
+    public Result query(Map<Facet, String> filters, int maxItemIds) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap[] filterBitmaps = new RoaringBitmap[FACETS.length];
+            for (Map.Entry<Facet, String> e : filters.entrySet()) {
+                RoaringBitmap bm = bitmaps.get(e.getKey()).get(normalize(e.getValue()));
+                filterBitmaps[e.getKey().ordinal()] = bm != null ? bm : new RoaringBitmap();
+            }
+
+            RoaringBitmap matching = intersect(filterBitmaps, null);
+
+            Map<String, List<FacetValue>> facets = new LinkedHashMap<>();
+            for (Facet f : FACETS) {
+                // Disjunctive counting: apply all filters except this facet's own
+                RoaringBitmap base = filterBitmaps[f.ordinal()] == null ? matching : intersect(filterBitmaps, f);
+                List<FacetValue> values = new ArrayList<>();
+                for (Map.Entry<String, RoaringBitmap> v : bitmaps.get(f).entrySet()) {
+                    int count = RoaringBitmap.andCardinality(base, v.getValue());
+                    if (count > 0) values.add(new FacetValue(labels.get(f).get(v.getKey()), count));
+                }
+                values.sort(Comparator.comparingInt(FacetValue::count).reversed().thenComparing(FacetValue::value));
+                facets.put(f.param(), values);
+            }
+
+            List<Long> ids = new ArrayList<>(Math.min(maxItemIds, matching.getCardinality()));
+            var it = matching.getReverseIntIterator();
+            while (it.hasNext() && ids.size() < maxItemIds) {
+                ids.add((long) it.next());
+            }
+            return new Result(matching.getCardinality(), ids, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Helpers — callers must hold the appropriate lock
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void apply(ItemChangedEvent event) {
+        remove(event.itemId());
+        Item item = event.item();
+        if (item != null && item.getStatus() == Item.ItemStatus.AVAILABLE) {
+            String[] raw = new String[FACETS.length];
+            for (Facet f : FACETS) raw[f.ordinal()] = f.extractor.apply(item);
+            add(item.getId(), raw);
+        }
+    }
+
+    private RoaringBitmap intersect(RoaringBitmap[] filterBitmaps, Facet skip) {
+        RoaringBitmap result = available.clone();
+        for (Facet f : FACETS) {
+            RoaringBitmap bm = filterBitmaps[f.ordinal()];
+            if (bm != null && f != skip) result.and(bm);
+        }
+        return result;
+    }
+
+    private void add(Long itemId, String[] rawValues) {
+        if (itemId == null || itemId > Integer.MAX_VALUE) {
+            log.warn("Item id {} does not fit the facet bitmaps — skipped", itemId);
+            return;
+        }
+        int id = itemId.intValue();
+        String[] normalized = new String[FACETS.length];
+        for (Facet f : FACETS) {
+            String raw = rawValues[f.ordinal()];
+            if (raw == null || raw.isBlank()) continue;
+            String key = normalize(raw);
+            normalized[f.ordinal()] = key;
+            bitmaps.get(f).computeIfAbsent(key, k -> new RoaringBitmap()).add(id);
+            labels.get(f).putIfAbsent(key, raw.trim());
+        }
+        available.add(id);
+        itemValues.put(id, normalized);
+    }
+
+    private void remove(Long itemId) {
+        if (itemId == null || itemId > Integer.MAX_VALUE) return;
+        int id = itemId.intValue();
+        String[] normalized = itemValues.remove(id);
+        if (normalized == null) return;
+        available.remove(id);
+        for (Facet f : FACETS) {
+            String key = normalized[f.ordinal()];
+            if (key == null) continue;
+            RoaringBitmap bm = bitmaps.get(f).get(key);
+            if (bm == null) continue;
+            bm.remove(id);
+            if (bm.isEmpty()) {
+                bitmaps.get(f).remove(key);
+                labels.get(f).remove(key);
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
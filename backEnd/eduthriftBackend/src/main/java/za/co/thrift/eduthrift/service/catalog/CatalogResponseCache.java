@@ -0,0 +1,226 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of serialized JSON for the public catalog endpoints
+ * ({@code GET /items}, {@code GET /items/{id}}, {@code GET /items/{id}/seller-items}).
+ *
+ * <h2>Storage</h2>
+ * Two Caffeine caches (W-TinyLFU eviction), bounded by total bytes rather than entry
+ * count: one for list/search results, one for single listings and seller listings.
+ * Values are the response bytes exactly as they go on the wire, so a hit skips the
+ * database, {@code toResponse} and Jackson entirely.
+ *
+ * <h2>Invalidation</h2>
+ * Driven by {@link ItemChangedEvent} and {@link SellerChangedEvent}:
+ * <ul>
+ *   <li>any listing change clears all list results — a single edit can move a listing
+ *       into or out of any filter combination;</li>
+ *   <li>the listing's own detail entry is evicted, along with every cached entry that
+ *       embeds the same seller's data (their other listings' seller-items lists).</li>
+ * </ul>
+ * Entries also expire after {@code catalog.cache.ttl-seconds} so day-relative fields
+ * such as {@code days_until_expiry} never drift far.
+ *
+ * <h2>Races</h2>
+ * A reader captures {@link #generation()} before querying the database. Every
+ * invalidation bumps the generation first, and {@code put*} refuses — or immediately
+ * undoes — a store whose generation is no longer current, so a response loaded
+ * before a write can never outlive that write's invalidation.
+ *
+ * <h2>Versions</h2>
+ * The generation only sees this node's writes, so ETags use {@link #version()}
+ * instead (or, for a single listing, the row's own version), which is read from the
+ * rows themselves and agrees across instances. Every entry is stored with the ETag it
+ * was served under, and a lookup must present the current ETag: an entry cached before
+ * a write made through another instance is a miss rather than old bytes under a new tag.
+ *
+ * <p>Hit rates are published to Micrometer as {@code cache.gets{cache=catalog.lists|catalog.listings}}.
+ */
+@Service
+public class CatalogResponseCache {
+
+    public static final String LISTS = "catalog.lists";
+    public static final String LISTINGS = "catalog.listings";
+
+    /** Re-read the catalog version at most this often while this node sees no writes. */
+    private static final long VERSION_TTL_NANOS = Duration.ofSeconds(1).toNanos();
+
+    /** Cached bytes, the seller whose data they embed (null for multi-seller lists) and their ETag. */
+    private record Entry(byte[] bytes, Long sellerId, String etag) {}
+
+    private record VersionStamp(long generation, long readAt, String value) {}
+
+    private final ItemRepository itemRepository;
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Entry> lists;
+    private final Cache<String, Entry> listings;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile VersionStamp version;
+    /** seller id → keys in {@link #listings} whose response embeds that seller's data. */
+    private final Map<Long, Set<String>> sellerKeys = new ConcurrentHashMap<>();
+
+    public CatalogResponseCache(ObjectMapper objectMapper, ItemRepository itemRepository, MeterRegistry meterRegistry,
+                                @Value("${catalog.cache.max-bytes:67108864}") long maxBytes,
+                                @Value("${catalog.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.objectMapper = objectMapper;
+        this.itemRepository = itemRepository;
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.lists = Caffeine.newBuilder()
+                .maximumWeight(maxBytes / 2)
+                .weigher((String key, Entry entry) -> weight(key, entry))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.listings = Caffeine.newBuilder()
+                .maximumWeight(maxBytes / 2)
+                .weigher((String key, Entry entry) -> weight(key, entry))
+                .expireAfterWrite(ttl)
+                // Synchronous, so the index never loses a key that was re-cached meanwhile
+                .evictionListener((String key, Entry entry, RemovalCause cause) -> {
+                    if (key != null && entry != null) unindex(entry.sellerId(), key);
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, lists, LISTS);
+        CaffeineCacheMetrics.monitor(meterRegistry, listings, LISTINGS);
+    }
+
+    public static String itemKey(Long itemId) {
+        return "item:" + itemId;
+    }
+
+    public static String sellerItemsKey(Long itemId) {
+        return "seller-items:" + itemId;
+    }
+
+    /** Capture before loading from the database; pass to {@code put*}. */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Catalog-wide change marker, suitable for ETags: the latest listing and seller
+     * update and the listing count, so every instance derives the same value. Read
+     * again after any change on this node, otherwise at most once a second, which also
+     * bounds how long a write made through another instance goes unnoticed.
+     */
+    public String version() {
+        long gen = generation.get();
+        VersionStamp stamp = version;
+        if (stamp == null || stamp.generation() != gen || System.nanoTime() - stamp.readAt() > VERSION_TTL_NANOS) {
+            ItemRepository.CatalogVersion v = itemRepository.findCatalogVersion();
+            stamp = new VersionStamp(gen, System.nanoTime(),
+                    v.getItemsUpdatedAt() + ":" + v.getItemCount() + ":" + v.getSellersUpdatedAt());
+            version = stamp;
+        }
+        return stamp.value();
+    }
+
+    /** The cached list response for {@code key} if it was stored under {@code etag}, else null. */
+    public byte[] getList(String key, String etag) {
+        return bytesIfCurrent(lists.getIfPresent(key), etag);
+    }
+
+    /** As {@link #getList}, for single listings and seller listings. */
+    public byte[] getListing(String key, String etag) {
+        return bytesIfCurrent(listings.getIfPresent(key), etag);
+    }
+
+    /**
+     * Serializes {@code body}, caches it under {@code etag} if nothing changed on this
+     * node since {@code loadedAt}, and returns the bytes.
+     */
+    public byte[] putList(String key, long loadedAt, String etag, Object body) {
+        byte[] bytes = serialize(body);
+        store(lists, key, new Entry(bytes, null, etag), loadedAt);
+        return bytes;
+    }
+
+    /** As {@link #putList}, for a response that embeds the data of exactly one seller. */
+    public byte[] putListing(String key, Long sellerId, long loadedAt, String etag, Object body) {
+        byte[] bytes = serialize(body);
+        if (sellerId != null) {
+            sellerKeys.computeIfAbsent(sellerId, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        store(listings, key, new Entry(bytes, sellerId, etag), loadedAt);
+        return bytes;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        generation.incrementAndGet();
+        lists.invalidateAll();
+        listings.invalidate(itemKey(event.itemId()));
+        listings.invalidate(sellerItemsKey(event.itemId()));
+        evictSeller(event.sellerId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSellerChanged(SellerChangedEvent event) {
+        generation.incrementAndGet();
+        lists.invalidateAll();
+        evictSeller(event.sellerId());
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Helpers
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static byte[] bytesIfCurrent(Entry entry, String etag) {
+        return entry != null && entry.etag().equals(etag) ? entry.bytes() : null;
+    }
+
+    private void store(Cache<String, Entry> cache, String key, Entry entry, long loadedAt) {
+        if (generation.get() != loadedAt) return;
+        cache.put(key, entry);
+        // An invalidation may have run between the check and the put; it bumped the
+        // generation first, so re-checking here catches it
+        if (generation.get() != loadedAt) cache.invalidate(key);
+    }
+
+    private void evictSeller(Long sellerId) {
+        if (sellerId == null) return;
+        Set<String> keys = sellerKeys.remove(sellerId);
+        if (keys != null) listings.invalidateAll(keys);
+    }
+
+    private void unindex(Long sellerId, String key) {
+        if (sellerId == null) return;
+        sellerKeys.computeIfPresent(sellerId, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int weight(String key, Entry entry) {
+        return key.length() * 2 + entry.bytes().length + 64;
+    }
+}
@@ -0,0 +1,275 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+
+import java.util.*;
+
+/**
+ * Search-as-you-type suggestions served from an in-memory prefix trie.
+ *
+ * <h2>Terms</h2>
+ * Item names, school names, club names and categories of AVAILABLE listings. Each
+ * term's weight is the number of available listings carrying it, so popular schools
+ * and items rank first. A term is reachable from the start of every word it
+ * contains: "Grey College" is suggested for both "gre" and "col".
+ *
+ * <h2>Latency</h2>
+ * Every trie node caches its top {@value #TOP_K} suggestions. A lookup walks one
+ * node per typed character and returns that node's cache, so the cost is
+ * independent of catalog size. When a term's weight changes only the nodes on its
+ * paths are marked dirty; they are recomputed lazily from their children's caches
+ * on the next lookup that reaches them.
+ *
+ * <p>All access is synchronized: lookups may refresh caches, and both lookups and
+ * updates are a few microseconds.
+ */
+@Service
+public class CatalogSuggestionTrie {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSuggestionTrie.class);
+
+    static final int TOP_K = 10;
+
+    public enum Kind {
+        ITEM("item"), SCHOOL("school"), CLUB("club"), CATEGORY("category");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public record Suggestion(String text, Kind kind, int count) {}
+
+    /** Identity of a suggestion: the same text may legitimately be both a category and an item name. */
+    private record TermKey(Kind kind, String normalized) {}
+
+    private static final class Term {
+        final TermKey key;
+        String display;
+        int count;
+
+        Term(TermKey key, String display) {
+            this.key = key;
+            this.display = display;
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        /** Terms whose text (or one of its word suffixes) ends exactly at this node. */
+        final Set<TermKey> terminals = new HashSet<>();
+        List<Term> top = List.of();
+        boolean dirty = true;
+    }
+
+    private static final Comparator<Term> BY_COUNT =
+            Comparator.comparingInt((Term t) -> t.count).reversed().thenComparing(t -> t.display);
+
+    private final ItemRepository itemRepository;
+
+    private final Node root = new Node();
+    private final Map<TermKey, Term> terms = new HashMap<>();
+    /** item id → the terms it currently contributes a count to. */
+    private final Map<Long, List<TermKey>> itemTerms = new HashMap<>();
+    /** Changes seen while a rebuild is reading the database; null when none is. */
+    private List<ItemChangedEvent> changesDuringRebuild;
+
+    public CatalogSuggestionTrie(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        List<ItemRepository.SuggestionText> rows = itemRepository.findSuggestionTextByStatus(Item.ItemStatus.AVAILABLE);
+        synchronized (this) {
+            root.children.clear();
+            root.terminals.clear();
+            root.dirty = true;
+            terms.clear();
+            itemTerms.clear();
+            for (ItemRepository.SuggestionText row : rows) {
+                addItem(row.getId(), row.getItemName(), row.getSchoolName(), row.getClubName(), row.getCategory());
+            }
+            // The snapshot may predate these; replaying them in order leaves the latest state
+            for (ItemChangedEvent change : changesDuringRebuild) {
+                apply(change);
+            }
+            changesDuringRebuild = null;
+        }
+        log.info("Suggestion trie built — {} terms from {} listings in {} ms",
+                terms.size(), rows.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onItemChanged(ItemChangedEvent event) {
+        apply(event);
+        if (changesDuringRebuild != null) changesDuringRebuild.add(event);
+    }
+
+    /** Up to {@code limit} suggestions for the typed prefix, most listings first. */
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalizeQuery(prefix);
+        if (key.isEmpty()) return List.of();
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null) return List.of();
+        List<Suggestion> out = new ArrayList<>(Math.min(limit, TOP_K));
+        for (Term term : refresh(node)) {
+            if (out.size() >= limit) break;
+            out.add(new Suggestion(term.display, term.key.kind(), term.count));
+        }
+        return out;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Helpers — callers must hold the monitor
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void apply(ItemChangedEvent event) {
+        removeItem(event.itemId());
+        Item item = event.item();
+        if (item != null && item.getStatus() == Item.ItemStatus.AVAILABLE) {
+            addItem(item.getId(), item.getItemName(), item.getSchoolName(), item.getClubName(), item.getCategory());
+        }
+    }
+
+    private void addItem(Long itemId, String itemName, String schoolName, String clubName, String category) {
+        List<TermKey> keys = new ArrayList<>(4);
+        addTerm(keys, Kind.ITEM, itemName);
+        addTerm(keys, Kind.SCHOOL, schoolName);
+        addTerm(keys, Kind.CLUB, clubName);
+        addTerm(keys, Kind.CATEGORY, category);
+        if (!keys.isEmpty()) itemTerms.put(itemId, keys);
+    }
+
+    private void addTerm(List<TermKey> keys, Kind kind, String display) {
+        if (display == null || display.isBlank()) return;
+        String normalized = normalizeTerm(display);
+        if (normalized.isEmpty()) return;
+        TermKey key = new TermKey(kind, normalized);
+        if (keys.contains(key)) return;
+        keys.add(key);
+
+        Term term = terms.get(key);
+        if (term == null) {
+            term = new Term(key, display.trim());
+            terms.put(key, term);
+            for (String path : wordSuffixes(normalized)) {
+                insertPath(path).terminals.add(key);
+            }
+        }
+        term.count++;
+        markDirty(normalized);
+    }
+
+    private void removeItem(Long itemId) {
+        List<TermKey> keys = itemTerms.remove(itemId);
+        if (keys == null) return;
+        for (TermKey key : keys) {
+            Term term = terms.get(key);
+            if (term == null) continue;
+            markDirty(key.normalized());
+            if (--term.count <= 0) {
+                terms.remove(key);
+                for (String path : wordSuffixes(key.normalized())) {
+                    removePath(path, key);
+                }
+            }
+        }
+    }
+
+    private Node insertPath(String path) {
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.children.computeIfAbsent(path.charAt(i), c -> new Node());
+        }
+        return node;
+    }
+
+    /** Drops {@code key} from the node at {@code path} and prunes nodes left empty. */
+    private void removePath(String path, TermKey key) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        for (int i = 0; i < path.length() && node != null; i++) {
+            stack.push(node);
+            node = node.children.get(path.charAt(i));
+        }
+        if (node == null) return;
+        node.terminals.remove(key);
+        for (int i = path.length() - 1; i >= 0; i--) {
+            Node parent = stack.pop();
+            if (!node.terminals.isEmpty() || !node.children.isEmpty()) break;
+            parent.children.remove(path.charAt(i));
+            node = parent;
+        }
+    }
+
+    private void markDirty(String normalized) {
+        root.dirty = true;
+        for (String path : wordSuffixes(normalized)) {
+            Node node = root;
+            for (int i = 0; i < path.length() && node != null; i++) {
+                node = node.children.get(path.charAt(i));
+                if (node != null) node.dirty = true;
+            }
+        }
+    }
+
+    private List<Term> refresh(Node node) {
+        if (!node.dirty) return node.top;
+        // A term reachable via several word suffixes below this node must only be listed once
+        Set<Term> candidates = new HashSet<>();
+        for (TermKey key : node.terminals) {
+            Term term = terms.get(key);
+            if (term != null) candidates.add(term);
+        }
+        for (Node child : node.children.values()) {
+            candidates.addAll(refresh(child));
+        }
+        List<Term> top = new ArrayList<>(candidates);
+        top.sort(BY_COUNT);
+        node.top = top.size() > TOP_K ? List.copyOf(top.subList(0, TOP_K)) : List.copyOf(top);
+        node.dirty = false;
+        return node.top;
+    }
+
+    /** The term itself plus the remainder starting at each later word, e.g. "grey college", "college". */
+    private static List<String> wordSuffixes(String normalized) {
+        List<String> out = new ArrayList<>();
+        out.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            out.add(normalized.substring(i + 1));
+        }
+        return out;
+    }
+
+    private static String normalizeTerm(String text) {
+        return CatalogTextAnalyzer.normalize(text).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /** Like {@link #normalizeTerm} but keeps one trailing space, which signals "word finished". */
+    private static String normalizeQuery(String text) {
+        if (text == null) return "";
+        String collapsed = CatalogTextAnalyzer.normalize(text).replaceAll("[^\\p{L}\\p{N}]+", " ");
+        return collapsed.stripLeading();
+    }
+}
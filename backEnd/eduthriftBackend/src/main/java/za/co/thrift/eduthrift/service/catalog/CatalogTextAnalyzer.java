@@ -0,0 +1,58 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns listing text and search queries into normalized terms.
+ *
+ * <p>Both sides of a search must go through the same analysis, otherwise
+ * "Blazers" in a query would never meet "blazer" in a listing name.
+ * Steps: strip accents, lower-case, split on anything that is not a letter or
+ * digit, drop a handful of stop words, then apply a light English stemmer.
+ *
+ * <p>The stemmer is deliberately conservative (plural and -ing/-ed suffixes only):
+ * listing names are short and full Porter stemming conflates too much
+ * (e.g. "general" / "generous").
+ */
+public final class CatalogTextAnalyzer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "the", "of", "for", "in", "with", "to");
+
+    private CatalogTextAnalyzer() {}
+
+    /** Normalized, stemmed terms in input order. Duplicates are kept (they carry term frequency). */
+    public static List<String> terms(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isBlank()) return out;
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (token.isEmpty() || STOP_WORDS.contains(token)) continue;
+            out.add(stem(token));
+        }
+        return out;
+    }
+
+    /** Accent-free lower-case form of {@code text}, without tokenizing. */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static String stem(String t) {
+        int n = t.length();
+        if (n > 4 && t.endsWith("ies")) return t.substring(0, n - 3) + "y";
+        if (n > 4 && (t.endsWith("ches") || t.endsWith("shes") || t.endsWith("sses") || t.endsWith("xes"))) {
+            return t.substring(0, n - 2);
+        }
+        if (n > 5 && t.endsWith("ing")) return t.substring(0, n - 3);
+        if (n > 4 && t.endsWith("ed") && !t.endsWith("eed")) return t.substring(0, n - 2);
+        if (n > 3 && t.endsWith("s") && !t.endsWith("ss") && !t.endsWith("us")) return t.substring(0, n - 1);
+        return t;
+    }
+}
@@ -0,0 +1,47 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import za.co.thrift.eduthrift.entity.Item;
+
+/**
+ * Published whenever a listing is created, edited, changes status or is deleted.
+ *
+ * <p>In-memory catalog structures (search index, facets, suggestions, caches)
+ * subscribe to this event instead of being called directly from every write path,
+ * so a new write path only has to publish once to keep all of them current.
+ * Listeners use {@code @TransactionalEventListener(fallbackExecution = true)} so
+ * they observe the change only after it has committed.
+ *
+ * @param itemId         the listing's ID
+ * @param sellerId       the seller's user ID, or {@code null} if unknown
+ * @param item           the listing as saved, or {@code null} when it was deleted
+ * @param previousStatus the listing's status before the change, or {@code null} when it
+ *                       was just created; lets {@link ItemStatusCounter} apply the
+ *                       transition without remembering every listing's status
+ */
+public record ItemChangedEvent(Long itemId, Long sellerId, Item item, Item.ItemStatus previousStatus) {
+
+    public static ItemChangedEvent created(Item item) {
+        return new ItemChangedEvent(item.getId(), sellerIdOf(item), item, null);
+    }
+
+    public static ItemChangedEvent saved(Item item, Item.ItemStatus previousStatus) {
+        return new ItemChangedEvent(item.getId(), sellerIdOf(item), item, previousStatus);
+    }
+
+    public static ItemChangedEvent deleted(Item item) {
+        return new ItemChangedEvent(item.getId(), sellerIdOf(item), null, item.getStatus());
+    }
+
+    public boolean isDeleted() {
+        return item == null;
+    }
+
+    /** The listing's status after the change, or {@code null} when it was deleted. */
+    public Item.ItemStatus status() {
+        return item != null ? item.getStatus() : null;
+    }
+
+    private static Long sellerIdOf(Item item) {
+        return item.getUser() != null ? item.getUser().getId() : null;
+    }
+}
@@ -0,0 +1,232 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over listing text, replacing
+ * {@code LOWER(col) LIKE '%kw%'} scans of the {@code items} table for keyword search.
+ *
+ * <h2>What is indexed</h2>
+ * {@code item_name}, {@code category} and {@code school_name} — the same columns the
+ * SQL search matched — analyzed by {@link CatalogTextAnalyzer}. Matches in the item
+ * name count more than matches in the category, which count more than the school.
+ * All statuses are indexed. Each listing's status, item type and school are kept
+ * alongside its terms, so a {@link ListingFilter} is applied before results are
+ * capped rather than after.
+ *
+ * <h2>Query semantics</h2>
+ * Every query term must match (AND). A term matches a listing either exactly or as
+ * a prefix of one of its terms, so partially typed words still find results; prefix
+ * hits score lower than exact hits. Scores are weighted term frequency × IDF.
+ *
+ * <h2>Lifecycle</h2>
+ * Built from the database once the application is ready, then kept current from
+ * {@link ItemChangedEvent}s. Until the initial build finishes {@link #isReady()}
+ * is false and callers should fall back to the SQL search. Changes that arrive while
+ * a rebuild reads the database are replayed over its snapshot, so they are not lost.
+ */
+@Service
+public class ItemSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemSearchIndex.class);
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float SCHOOL_WEIGHT = 1.5f;
+    private static final float PREFIX_PENALTY = 0.5f;
+    /** Upper bound on dictionary terms a single prefix may expand to. */
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ItemRepository itemRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** term → (item id → weighted term frequency). Sorted so prefixes are a range scan. */
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    /** item id → its term weights (so an update can remove the old postings) and filter fields. */
+    private final Map<Long, Document> documents = new HashMap<>();
+    /** Changes seen while a rebuild is reading the database; null when none is. */
+    private List<ItemChangedEvent> changesDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    private record Document(Map<String, Float> weights, Item.ItemStatus status, Long itemTypeId, String schoolName) {}
+
+    public ItemSearchIndex(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<ItemRepository.SearchText> rows = itemRepository.findAllSearchTextBy();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            for (ItemRepository.SearchText row : rows) {
+                addDocument(row.getId(), row.getItemName(), row.getCategory(), row.getSchoolName(),
+                        row.getStatus(), row.getItemTypeId());
+            }
+            // The snapshot may predate these; replaying them in order leaves the latest state
+            for (ItemChangedEvent change : changesDuringRebuild) {
+                apply(change);
+            }
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Item search index built — {} listings, {} terms in {} ms",
+                rows.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changesDuringRebuild != null) changesDuringRebuild.add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Rank listings matching {@code filter} against {@code query}.
+     *
+     * @return up to {@code maxResults} item IDs, best match first (newer listings win ties)
+     */
+    public List<Long> search(String query, int maxResults, ListingFilter filter) {
+        lock.readLock().lock();
+        try {
+            return scores(query, filter).entrySet().stream()
+                    .sorted(Map.Entry.<Long, Float>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.<Long, Float>comparingByKey().reversed()))
+                    .limit(maxResults)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Every listing matching {@code filter} and {@code query}, unranked. */
+    public Set<Long> matchingIds(String query, ListingFilter filter) {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(scores(query, filter).keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Helpers — callers must hold the appropriate lock
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private Map<Long, Float> scores(String query, ListingFilter filter) {
+        List<String> queryTerms = CatalogTextAnalyzer.terms(query);
+        if (queryTerms.isEmpty()) return Map.of();
+
+        int docCount = Math.max(documents.size(), 1);
+        Map<Long, Float> scores = null;
+        for (String term : new LinkedHashSet<>(queryTerms)) {
+            Map<Long, Float> termScores = scoreTerm(term, docCount);
+            if (scores == null) {
+                scores = termScores;
+                // Filter once up front; later terms only ever narrow this set
+                scores.keySet().removeIf(id -> {
+                    Document doc = documents.get(id);
+                    return !filter.matches(doc.status(), doc.itemTypeId(), doc.schoolName());
+                });
+            } else {
+                // AND semantics: keep only listings matching every term so far
+                Map<Long, Float> merged = new HashMap<>();
+                for (Map.Entry<Long, Float> e : scores.entrySet()) {
+                    Float s = termScores.get(e.getKey());
+                    if (s != null) merged.put(e.getKey(), e.getValue() + s);
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) return Map.of();
+        }
+        return scores;
+    }
+
+    private Map<Long, Float> scoreTerm(String term, int docCount) {
+        Map<Long, Float> out = new HashMap<>();
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Float>> entry : postings.tailMap(term, true).entrySet()) {
+            String candidate = entry.getKey();
+            if (!candidate.startsWith(term) || expansions++ >= MAX_PREFIX_EXPANSIONS) break;
+            Map<Long, Float> docs = entry.getValue();
+            float idf = (float) Math.log(1.0 + (double) docCount / docs.size());
+            float factor = candidate.equals(term) ? idf : idf * PREFIX_PENALTY;
+            for (Map.Entry<Long, Float> d : docs.entrySet()) {
+                // A listing matching both exactly and by prefix keeps its best score for this term
+                out.merge(d.getKey(), d.getValue() * factor, Math::max);
+            }
+        }
+        return out;
+    }
+
+    private void apply(ItemChangedEvent event) {
+        removeDocument(event.itemId());
+        if (!event.isDeleted()) {
+            Item item = event.item();
+            addDocument(item.getId(), item.getItemName(), item.getCategory(), item.getSchoolName(),
+                    item.getStatus(), item.getItemType() != null ? item.getItemType().getId() : null);
+        }
+    }
+
+    private void addDocument(Long id, String itemName, String category, String schoolName,
+                             Item.ItemStatus status, Long itemTypeId) {
+        Map<String, Float> weights = new HashMap<>();
+        accumulate(weights, itemName, NAME_WEIGHT);
+        accumulate(weights, category, CATEGORY_WEIGHT);
+        accumulate(weights, schoolName, SCHOOL_WEIGHT);
+        if (weights.isEmpty()) return;
+        documents.put(id, new Document(weights, status, itemTypeId, schoolName));
+        for (Map.Entry<String, Float> e : weights.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(id, e.getValue());
+        }
+    }
+
+    private void removeDocument(Long id) {
+        Document doc = documents.remove(id);
+        if (doc == null) return;
+        for (String term : doc.weights().keySet()) {
+            Map<Long, Float> docs = postings.get(term);
+            if (docs == null) continue;
+            docs.remove(id);
+            if (docs.isEmpty()) postings.remove(term);
+        }
+    }
+
+    private static void accumulate(Map<String, Float> weights, String text, float fieldWeight) {
+        for (String term : CatalogTextAnalyzer.terms(text)) {
+            weights.merge(term, fieldWeight, Float::sum);
+        }
+    }
+}
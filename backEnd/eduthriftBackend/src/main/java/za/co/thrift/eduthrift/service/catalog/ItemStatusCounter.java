@@ -0,0 +1,166 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of listings per {@link Item.ItemStatus}, kept in memory so checkout and
+ * {@code GET /items/count} never run {@code COUNT(*)}.
+ *
+ * <p>Loaded with a {@code GROUP BY}, then driven by {@link ItemChangedEvent}: each event
+ * carries the status the listing left, so every transition (create, reserve, sell,
+ * expire, relist, delete, cancel-restore) is applied as a −1/+1 on the two counts.
+ * Memory is one number per status however large the catalog grows.
+ *
+ * <h2>Loading</h2>
+ * A listing that changes while the {@code GROUP BY} runs may or may not be in its
+ * result, so replaying its event could count it twice. The load therefore remembers
+ * which listings changed meanwhile, reads their statuses in the same database snapshot
+ * as the counts, and swaps each one's snapshot status for the status its latest event
+ * left it in. A periodic reconcile compares against the {@code GROUP BY} and reloads
+ * if anything drifted, e.g. after a manual database edit.
+ *
+ * <p>Published as the gauge {@code catalog.items{status=...}}.
+ */
+@Service
+public class ItemStatusCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemStatusCounter.class);
+
+    private final ItemRepository itemRepository;
+
+    /** One consistent snapshot for the counts and the statuses of listings that changed during the load. */
+    private final TransactionTemplate snapshotRead;
+
+    private final EnumMap<Item.ItemStatus, AtomicLong> counts = new EnumMap<>(Item.ItemStatus.class);
+    /**
+     * item id → its status after the latest change seen while a rebuild is reading the
+     * database (null once deleted); null when no rebuild is.
+     */
+    private Map<Long, Item.ItemStatus> changesDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    public ItemStatusCounter(ItemRepository itemRepository, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this.itemRepository = itemRepository;
+        this.snapshotRead = new TransactionTemplate(transactionManager);
+        snapshotRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotRead.setReadOnly(true);
+        for (Item.ItemStatus status : Item.ItemStatus.values()) {
+            AtomicLong count = new AtomicLong();
+            counts.put(status, count);
+            Gauge.builder("catalog.items", count, AtomicLong::get)
+                    .tag("status", status.name().toLowerCase())
+                    .description("Listings per status")
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (this) {
+            changesDuringRebuild = new HashMap<>();
+        }
+        snapshotRead.executeWithoutResult(tx -> {
+            // The first read fixes the snapshot the rest of the transaction sees
+            List<ItemRepository.StatusCount> rows = itemRepository.countGroupedByStatus();
+            Map<Long, Item.ItemStatus> inSnapshot = new HashMap<>();
+            Set<Long> read = changedSoFar();
+            readStatuses(read, inSnapshot);
+            synchronized (this) {
+                // Listings that changed after the first batch was read; a short query, so hold the monitor
+                Set<Long> late = new HashSet<>(changesDuringRebuild.keySet());
+                late.removeAll(read);
+                readStatuses(late, inSnapshot);
+
+                EnumMap<Item.ItemStatus, Long> loaded = new EnumMap<>(Item.ItemStatus.class);
+                for (ItemRepository.StatusCount row : rows) {
+                    if (row.getStatus() != null) loaded.put(row.getStatus(), row.getCount());
+                }
+                // Whether or not the snapshot saw a change, it now counts each of these where its latest event put it
+                for (Map.Entry<Long, Item.ItemStatus> change : changesDuringRebuild.entrySet()) {
+                    Item.ItemStatus before = inSnapshot.get(change.getKey());
+                    if (before != null) loaded.merge(before, -1L, Long::sum);
+                    if (change.getValue() != null) loaded.merge(change.getValue(), 1L, Long::sum);
+                }
+                for (Item.ItemStatus status : Item.ItemStatus.values()) {
+                    counts.get(status).set(loaded.getOrDefault(status, 0L));
+                }
+                changesDuringRebuild = null;
+            }
+        });
+        ready = true;
+        log.info("Item status counts loaded: {}", counts);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onItemChanged(ItemChangedEvent event) {
+        apply(event);
+        if (changesDuringRebuild != null) changesDuringRebuild.put(event.itemId(), event.status());
+    }
+
+    private synchronized Set<Long> changedSoFar() {
+        return new HashSet<>(changesDuringRebuild.keySet());
+    }
+
+    /** Adds each listing's status to {@code into}; listings that did not exist are left out. */
+    private void readStatuses(Set<Long> ids, Map<Long, Item.ItemStatus> into) {
+        if (ids.isEmpty()) return;
+        for (ItemRepository.IdStatus row : itemRepository.findStatusesByIdIn(ids)) {
+            into.put(row.getId(), row.getStatus());
+        }
+    }
+
+    private void apply(ItemChangedEvent event) {
+        Item.ItemStatus previous = event.previousStatus();
+        Item.ItemStatus current = event.status();
+        if (previous == current) return;
+        if (previous != null) counts.get(previous).decrementAndGet();
+        if (current != null) counts.get(current).incrementAndGet();
+    }
+
+    /** Listings currently in {@code status}; falls back to the database until the first load. */
+    public long count(Item.ItemStatus status) {
+        return ready ? counts.get(status).get() : itemRepository.countByStatus(status);
+    }
+
+    /** Every 15 minutes: compare with the database and reload on any difference. */
+    @Scheduled(fixedDelay = 15 * 60 * 1000, initialDelay = 15 * 60 * 1000)
+    public void reconcile() {
+        if (!ready) return;
+        Map<Item.ItemStatus, Long> actual = new EnumMap<>(Item.ItemStatus.class);
+        for (ItemRepository.StatusCount row : itemRepository.countGroupedByStatus()) {
+            if (row.getStatus() != null) actual.put(row.getStatus(), row.getCount());
+        }
+        for (Item.ItemStatus status : Item.ItemStatus.values()) {
+            long expected = actual.getOrDefault(status, 0L);
+            long counted = counts.get(status).get();
+            if (expected != counted) {
+                log.warn("Item status count drift for {}: counted {}, database {} — reloading", status, counted, expected);
+                rebuild();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import za.co.thrift.eduthrift.entity.Item;
+
+import java.util.Objects;
+
+/**
+ * The structured filters of a catalog query, applied inside {@link ItemSearchIndex} and
+ * {@link SellerProximityIndex} before results are truncated, so a cap never cuts off
+ * matches in favour of listings the filter would drop. A null field matches anything.
+ */
+public record ListingFilter(Item.ItemStatus status, Long itemTypeId, String schoolName) {
+
+    public static final ListingFilter ANY = new ListingFilter(null, null, null);
+
+    public boolean matches(Item.ItemStatus status, Long itemTypeId, String schoolName) {
+        return (this.status == null || this.status == status)
+                && (this.itemTypeId == null || this.itemTypeId.equals(itemTypeId))
+                && (this.schoolName == null || this.schoolName.equals(schoolName));
+    }
+
+    /** True when no listing in the given status can match. */
+    public boolean excludesStatus(Item.ItemStatus status) {
+        return this.status != null && !Objects.equals(this.status, status);
+    }
+}
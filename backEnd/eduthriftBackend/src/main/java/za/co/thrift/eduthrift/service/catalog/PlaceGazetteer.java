@@ -0,0 +1,81 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import za.co.thrift.eduthrift.util.GeoPoint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Offline geocoder for seller addresses, backed by {@code geo/za-places.csv}.
+ *
+ * <p>Sellers only give us a town, province and postal code, and the catalog only
+ * needs distances accurate to a few tens of kilometres (courier pricing bands), so
+ * a table of town, postal-range and province centroids is enough and avoids calling
+ * a geocoding API per seller.
+ */
+@Component
+public class PlaceGazetteer {
+
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    private record PostalRange(int from, int to, GeoPoint point) {}
+
+    private final Map<String, GeoPoint> towns = new HashMap<>();
+    private final Map<String, GeoPoint> provinces = new HashMap<>();
+    private final List<PostalRange> postalRanges = new ArrayList<>();
+
+    public PlaceGazetteer() {
+        ClassPathResource resource = new ClassPathResource("geo/za-places.csv");
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] f = line.split(",");
+                GeoPoint point = new GeoPoint(Double.parseDouble(f[2]), Double.parseDouble(f[3]));
+                switch (f[0]) {
+                    case "town" -> towns.put(f[1], point);
+                    case "province" -> provinces.put(f[1], point);
+                    case "postal" -> {
+                        String[] range = f[1].split("-");
+                        postalRanges.add(new PostalRange(Integer.parseInt(range[0]), Integer.parseInt(range[1]), point));
+                    }
+                    default -> throw new IllegalStateException("Unknown place kind: " + f[0]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load geo/za-places.csv", e);
+        }
+    }
+
+    /** Best-known location for an address, or {@code null} if none of the parts is recognised. */
+    public GeoPoint locate(String town, String postalCode, String province) {
+        GeoPoint point = town != null ? towns.get(normalize(town)) : null;
+        if (point == null && postalCode != null) point = byPostalCode(postalCode.trim());
+        if (point == null && province != null) point = provinces.get(normalize(province));
+        return point;
+    }
+
+    private GeoPoint byPostalCode(String postalCode) {
+        if (postalCode.length() != 4 || !postalCode.chars().allMatch(Character::isDigit)) return null;
+        int code = Integer.parseInt(postalCode);
+        for (PostalRange range : postalRanges) {
+            if (code >= range.from() && code <= range.to()) return range.point();
+        }
+        return null;
+    }
+
+    private static String normalize(String name) {
+        return NON_ALNUM.matcher(CatalogTextAnalyzer.normalize(name)).replaceAll(" ").trim();
+    }
+}
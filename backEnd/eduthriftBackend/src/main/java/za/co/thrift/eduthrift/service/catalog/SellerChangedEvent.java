@@ -0,0 +1,11 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+/**
+ * Published when a seller's profile fields that appear on their listings
+ * ({@code seller_town}, {@code seller_province}) may have changed, so cached
+ * listing responses for that seller can be dropped.
+ *
+ * @param sellerId the seller's user ID
+ */
+public record SellerChangedEvent(Long sellerId) {
+}
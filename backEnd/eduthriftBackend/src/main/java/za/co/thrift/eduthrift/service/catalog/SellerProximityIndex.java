@@ -0,0 +1,293 @@
+package za.co.thrift.eduthrift.service.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.User;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.repository.UserRepository;
+import za.co.thrift.eduthrift.util.GeoPoint;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Orders AVAILABLE listings by the distance from a buyer to the seller.
+ *
+ * <h2>Locations</h2>
+ * A seller's town / postal code / province is resolved to coordinates once via
+ * {@link PlaceGazetteer} and kept until a {@link SellerChangedEvent} says the address
+ * may have changed. Listings whose seller cannot be placed are ranked last.
+ *
+ * <h2>Search</h2>
+ * Located sellers are bucketed into a uniform grid of {@value #CELL_DEGREES}° cells
+ * (roughly 50 km). A query scans rings of cells outward from the buyer and stops as
+ * soon as it holds enough listings that are provably closer than anything in the
+ * unscanned cells, so only the neighbourhood of the buyer is ever visited. Only listings
+ * that pass the query's filters count towards "enough", so filtering never truncates
+ * the result early.
+ *
+ * <p>Changes that arrive while a rebuild reads the database are replayed over its
+ * snapshot, so they are not lost.
+ */
+@Service
+public class SellerProximityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SellerProximityIndex.class);
+
+    static final double CELL_DEGREES = 0.5;
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final int MAX_RING = (int) Math.ceil(180 / CELL_DEGREES);
+
+    /** A listing and its distance from the query point; {@code distanceKm} is null if the seller is unplaced. */
+    public record Ranked(Long itemId, Double distanceKm) {}
+
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final PlaceGazetteer gazetteer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, GeoPoint> sellerLocations = new HashMap<>();
+    /** seller id → their available listings, newest (highest id) first. */
+    private final Map<Long, NavigableSet<Long>> sellerItems = new HashMap<>();
+    private final Map<Long, Long> itemSellers = new HashMap<>();
+    /** item id → the fields {@link ListingFilter} checks. */
+    private final Map<Long, Listing> listings = new HashMap<>();
+    /** grid cell → located sellers with at least one available listing. */
+    private final Map<Long, Set<Long>> cells = new HashMap<>();
+    private int locatedSellers = 0;
+    /** Changes seen while a rebuild is reading the database; null when none is. */
+    private List<Runnable> changesDuringRebuild;
+
+    private record Listing(Long itemTypeId, String schoolName) {}
+
+    private volatile boolean ready = false;
+
+    public SellerProximityIndex(ItemRepository itemRepository, UserRepository userRepository, PlaceGazetteer gazetteer) {
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.gazetteer = gazetteer;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<ItemRepository.ListingLocation> rows = itemRepository.findListingLocationsByStatus(Item.ItemStatus.AVAILABLE);
+        lock.writeLock().lock();
+        try {
+            sellerLocations.clear();
+            sellerItems.clear();
+            itemSellers.clear();
+            listings.clear();
+            cells.clear();
+            locatedSellers = 0;
+            for (ItemRepository.ListingLocation row : rows) {
+                if (!sellerLocations.containsKey(row.getSellerId())) {
+                    GeoPoint point = gazetteer.locate(row.getTown(), row.getPostalCode(), row.getProvince());
+                    if (point != null) sellerLocations.put(row.getSellerId(), point);
+                }
+                addItem(row.getId(), row.getSellerId(), new Listing(row.getItemTypeId(), row.getSchoolName()));
+            }
+            // The snapshot may predate these; replaying them in order leaves the latest state
+            for (Runnable change : changesDuringRebuild) {
+                change.run();
+            }
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Seller proximity index built — {} listings, {} of {} sellers placed in {} ms",
+                rows.size(), locatedSellers, sellerItems.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        applyChange(() -> {
+            removeItem(event.itemId());
+            Item item = event.item();
+            if (item != null && item.getStatus() == Item.ItemStatus.AVAILABLE && item.getUser() != null) {
+                User seller = item.getUser();
+                if (!sellerLocations.containsKey(seller.getId())) {
+                    GeoPoint point = gazetteer.locate(seller.getTown(), seller.getPostalCode(), seller.getProvince());
+                    if (point != null) sellerLocations.put(seller.getId(), point);
+                }
+                addItem(item.getId(), seller.getId(), new Listing(
+                        item.getItemType() != null ? item.getItemType().getId() : null, item.getSchoolName()));
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSellerChanged(SellerChangedEvent event) {
+        GeoPoint point = userRepository.findById(event.sellerId())
+                .map(u -> gazetteer.locate(u.getTown(), u.getPostalCode(), u.getProvince()))
+                .orElse(null);
+        Long sellerId = event.sellerId();
+        applyChange(() -> {
+            boolean listed = sellerItems.containsKey(sellerId);
+            if (listed) removeFromGrid(sellerId);
+            if (point != null) sellerLocations.put(sellerId, point);
+            else sellerLocations.remove(sellerId);
+            if (listed) addToGrid(sellerId);
+        });
+    }
+
+    private void applyChange(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringRebuild != null) changesDuringRebuild.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Up to {@code maxItems} available listings matching {@code filter} and accepted by
+     * {@code also}, nearest seller first (a seller's own listings newest first), followed
+     * by listings whose seller could not be placed.
+     */
+    public List<Ranked> nearest(GeoPoint origin, int maxItems, ListingFilter filter, LongPredicate also) {
+        if (filter.excludesStatus(Item.ItemStatus.AVAILABLE)) return List.of();
+        lock.readLock().lock();
+        try {
+            LongPredicate accepted = itemId -> {
+                Listing listing = listings.get(itemId);
+                return filter.matches(Item.ItemStatus.AVAILABLE, listing.itemTypeId(), listing.schoolName())
+                        && also.test(itemId);
+            };
+            record SellerDistance(Long sellerId, double km, List<Long> items) {}
+            List<SellerDistance> found = new ArrayList<>();
+            int row0 = row(origin.latitude());
+            int col0 = col(origin.longitude());
+            int seen = 0;
+
+            for (int ring = 0; ring <= MAX_RING && seen < locatedSellers; ring++) {
+                for (int r = row0 - ring; r <= row0 + ring; r++) {
+                    // Only the boundary of the ring: full rows at the top and bottom, two cells otherwise
+                    int step = (r == row0 - ring || r == row0 + ring) ? 1 : Math.max(1, 2 * ring);
+                    for (int c = col0 - ring; c <= col0 + ring; c += step) {
+                        Set<Long> sellers = cells.get(cellKey(r, c));
+                        if (sellers == null) continue;
+                        for (Long sellerId : sellers) {
+                            List<Long> items = matching(sellerItems.get(sellerId), accepted);
+                            if (items.isEmpty()) continue;
+                            found.add(new SellerDistance(sellerId, origin.distanceKm(sellerLocations.get(sellerId)), items));
+                        }
+                        seen += sellers.size();
+                    }
+                }
+                // Everything in unscanned cells is at least this far away
+                double band = Math.min(89.9, Math.abs(origin.latitude()) + (ring + 1) * CELL_DEGREES);
+                double safeKm = ring * CELL_DEGREES * KM_PER_DEGREE * Math.cos(Math.toRadians(band));
+                int settled = 0;
+                for (SellerDistance s : found) {
+                    if (s.km() <= safeKm) settled += s.items().size();
+                }
+                if (settled >= maxItems) break;
+            }
+
+            found.sort(Comparator.comparingDouble(SellerDistance::km));
+            List<Ranked> out = new ArrayList<>(maxItems);
+            for (SellerDistance s : found) {
+                for (Long itemId : s.items()) {
+                    if (out.size() >= maxItems) return out;
+                    out.add(new Ranked(itemId, s.km()));
+                }
+            }
+            for (Map.Entry<Long, NavigableSet<Long>> e : sellerItems.entrySet()) {
+                if (sellerLocations.containsKey(e.getKey())) continue;
+                for (Long itemId : matching(e.getValue(), accepted)) {
+                    if (out.size() >= maxItems) return out;
+                    out.add(new Ranked(itemId, null));
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Helpers — callers must hold the appropriate lock
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static List<Long> matching(NavigableSet<Long> items, LongPredicate accepted) {
+        List<Long> out = new ArrayList<>();
+        for (Long itemId : items) {
+            if (accepted.test(itemId)) out.add(itemId);
+        }
+        return out;
+    }
+
+    private void addItem(Long itemId, Long sellerId, Listing listing) {
+        NavigableSet<Long> items = sellerItems.get(sellerId);
+        if (items == null) {
+            items = new TreeSet<>(Comparator.reverseOrder());
+            sellerItems.put(sellerId, items);
+            addToGrid(sellerId);
+        }
+        items.add(itemId);
+        itemSellers.put(itemId, sellerId);
+        listings.put(itemId, listing);
+    }
+
+    private void removeItem(Long itemId) {
+        Long sellerId = itemSellers.remove(itemId);
+        if (sellerId == null) return;
+        listings.remove(itemId);
+        NavigableSet<Long> items = sellerItems.get(sellerId);
+        items.remove(itemId);
+        if (items.isEmpty()) {
+            removeFromGrid(sellerId);
+            sellerItems.remove(sellerId);
+        }
+    }
+
+    private void addToGrid(Long sellerId) {
+        GeoPoint point = sellerLocations.get(sellerId);
+        if (point == null) return;
+        cells.computeIfAbsent(cellKey(row(point.latitude()), col(point.longitude())), k -> new HashSet<>()).add(sellerId);
+        locatedSellers++;
+    }
+
+    private void removeFromGrid(Long sellerId) {
+        GeoPoint point = sellerLocations.get(sellerId);
+        if (point == null) return;
+        long key = cellKey(row(point.latitude()), col(point.longitude()));
+        Set<Long> sellers = cells.get(key);
+        if (sellers != null && sellers.remove(sellerId)) {
+            locatedSellers--;
+            if (sellers.isEmpty()) cells.remove(key);
+        }
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor((latitude + 90) / CELL_DEGREES);
+    }
+
+    private static int col(double longitude) {
+        return (int) Math.floor((longitude + 180) / CELL_DEGREES);
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
@@ -0,0 +1,46 @@
+package za.co.thrift.eduthrift.service.order;
+
+/**
+ * Everything that can happen to an order. {@link OrderStateMachine} maps each event to
+ * the states it may fire in and the states it leads to.
+ */
+public enum OrderEvent {
+    /** Provider confirmed the buyer's payment (payment webhook). */
+    PAYMENT_CAPTURED,
+    /** Payment confirmed and funds held in Eduthrift escrow; starts the 72 h auto-release timer. */
+    FUNDS_HELD,
+    /** Payment confirmed and funds held by the provider's own escrow (TradeSafe). */
+    PROVIDER_FUNDS_HELD,
+    /** Payment failed, was cancelled or was declined before it was captured. */
+    PAYMENT_FAILED,
+    /** Order cancelled before it shipped. */
+    CANCELLED,
+    /** Parcel handed to the courier or in transit. */
+    SHIPPED,
+    /** Parcel arrived at the buyer's door or collection point. */
+    ARRIVED,
+    /** Parcel arrived at a Pudo locker; restarts the 72 h auto-release timer for collection. */
+    ARRIVED_AT_LOCKER,
+    /** Buyer, courier or the auto-release timer confirmed delivery. */
+    DELIVERY_CONFIRMED,
+    /** Escrow released to the seller. */
+    ESCROW_RELEASED,
+    /** Provider released its escrow and paid the seller (TradeSafe). */
+    PROVIDER_RELEASED,
+    /** Escrow refunded to the buyer. */
+    REFUNDED,
+    /** Provider confirmed a refund to the buyer. */
+    PROVIDER_REFUNDED,
+    /** Buyer opened a dispute; freezes the auto-release timer. */
+    DISPUTE_OPENED,
+    /** Admin resolved a dispute for the buyer, refunding the escrow. */
+    DISPUTE_REFUNDED,
+    /** Admin resolved a dispute for the seller, releasing the escrow. */
+    DISPUTE_RELEASED,
+    /** Seller payout accepted by the provider. */
+    PAYOUT_COMPLETED,
+    /** Seller payout rejected by the provider. */
+    PAYOUT_FAILED,
+    /** Provider cannot pay out automatically; an admin has to EFT the seller. */
+    PAYOUT_MANUAL_REQUIRED
+}
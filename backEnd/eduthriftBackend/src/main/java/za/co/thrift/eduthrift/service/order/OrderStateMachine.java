@@ -0,0 +1,397 @@
+package za.co.thrift.eduthrift.service.order;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.Order.DisputeStatus;
+import za.co.thrift.eduthrift.entity.Order.EscrowStatus;
+import za.co.thrift.eduthrift.entity.Order.OrderStatus;
+import za.co.thrift.eduthrift.entity.Order.PaymentStatus;
+import za.co.thrift.eduthrift.entity.Order.PayoutStatus;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.ItemReservationService;
+import za.co.thrift.eduthrift.service.scheduling.ScheduledActionService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The single place order, payment, escrow, payout and dispute statuses change.
+ *
+ * <p>Every {@link OrderEvent} has one row in a transition table built once at class
+ * load: the states it may fire in, the five statuses it leads to and the field side
+ * effects that go with it (timers, delivery and payout stamps). Applying an event
+ * checks the row with a handful of {@link EnumSet} lookups, sets the statuses, runs
+ * the side effects plus any caller-supplied changes and saves the order once.
+ *
+ * <p>An event that fires again after it already took effect — a redelivered webhook,
+ * a second tap on "confirm delivery" — finds the order in its target state and is
+ * reported as {@link Result#UNCHANGED} without a write. Where the target statuses alone
+ * cannot tell (confirming delivery of an order a courier already marked DELIVERED), the
+ * row also names the field that records the event having happened. Anything else
+ * outside the table is rejected before the order is touched.
+ *
+ * <p>The one exception is the payment timeout, which claims orders with the
+ * conditional UPDATE {@code OrderRepository.cancelIfUnpaid} so it can race a payment
+ * without locking.
+ *
+ * <p>The auto-release timer ({@code payoutScheduledAt}) is mirrored into a
+ * {@link ScheduledAction} whenever a transition leaves an order waiting on it, so
+ * escrow is released on time without scanning the orders table. A transition that takes
+ * an order out of PENDING_PAYMENT publishes a {@link PaymentSettledEvent} so its payment
+ * timeout is dropped, and one that cancels an unpaid or unshipped order returns every
+ * unit it reserved to the catalog in the same transaction.
+ *
+ * <p>Outcomes are counted as {@code orders.transitions{event, result}}.
+ */
+@Service
+public class OrderStateMachine {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStateMachine.class);
+
+    /** How long after payment or locker arrival escrow is released if the buyer stays silent. */
+    static final Duration AUTO_RELEASE_WINDOW = Duration.ofHours(72);
+
+    /** Order statuses in which a running auto-release timer releases escrow when it expires. */
+    public static final Set<OrderStatus> AUTO_RELEASE_STATUSES =
+            Set.copyOf(EnumSet.of(OrderStatus.PAYMENT_CONFIRMED, OrderStatus.DELIVERED));
+
+    public enum Result {
+        APPLIED, UNCHANGED, REJECTED
+    }
+
+    public static class IllegalTransitionException extends RuntimeException {
+        private final OrderEvent event;
+
+        IllegalTransitionException(Order order, OrderEvent event) {
+            super("Order " + order.getOrderNumber() + " cannot take " + event + " while " + describe(order));
+            this.event = event;
+        }
+
+        public OrderEvent getEvent() {
+            return event;
+        }
+    }
+
+    /** Field changes that travel with a transition. */
+    private enum Effect {
+        SCHEDULE_AUTO_RELEASE,
+        FREEZE_AUTO_RELEASE,
+        CONFIRM_DELIVERY,
+        STAMP_DISPUTE_RAISED,
+        STAMP_PAYOUT_DATE,
+        CLEAR_PAYOUT_FAILURE,
+        /** Returns the order's reserved units; done by {@link #tryApply} once the order is saved. */
+        RELEASE_STOCK;
+
+        void applyTo(Order order, LocalDateTime now) {
+            switch (this) {
+                case SCHEDULE_AUTO_RELEASE -> order.setPayoutScheduledAt(now.plus(AUTO_RELEASE_WINDOW));
+                case FREEZE_AUTO_RELEASE   -> order.setPayoutScheduledAt(null);
+                case CONFIRM_DELIVERY      -> {
+                    order.setDeliveryConfirmed(true);
+                    order.setDeliveryConfirmedDate(now);
+                }
+                case STAMP_DISPUTE_RAISED  -> order.setDisputeRaisedAt(now);
+                case STAMP_PAYOUT_DATE     -> order.setPayoutDate(now);
+                case CLEAR_PAYOUT_FAILURE  -> {
+                    order.setPayoutFailureReason(null);
+                    order.setNextPayoutRetryAt(null);
+                }
+                case RELEASE_STOCK         -> { /* no field changes */ }
+            }
+        }
+    }
+
+    private static final EnumMap<OrderEvent, Rule> TABLE = new EnumMap<>(OrderEvent.class);
+
+    static {
+        EnumSet<OrderStatus> active = EnumSet.of(
+                OrderStatus.PAYMENT_CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED, OrderStatus.DELIVERED);
+        EnumSet<OrderStatus> notShipped = EnumSet.of(OrderStatus.PAYMENT_CONFIRMED, OrderStatus.PROCESSING);
+        EnumSet<OrderStatus> activeOrCompleted = EnumSet.copyOf(active);
+        activeOrCompleted.add(OrderStatus.COMPLETED);
+        EnumSet<OrderStatus> activeOrCancelled = EnumSet.copyOf(active);
+        activeOrCancelled.add(OrderStatus.CANCELLED);
+        EnumSet<PayoutStatus> payoutOpen = EnumSet.of(
+                PayoutStatus.PENDING, PayoutStatus.PROCESSING, PayoutStatus.FAILED, PayoutStatus.MANUAL_REQUIRED);
+
+        // Payment
+        define(OrderEvent.PAYMENT_CAPTURED, new Rule()
+                .when(OrderStatus.PENDING_PAYMENT).whenPayment(PaymentStatus.PENDING, PaymentStatus.AUTHORIZED)
+                .payment(PaymentStatus.CAPTURED));
+        define(OrderEvent.FUNDS_HELD, new Rule()
+                .when(OrderStatus.PENDING_PAYMENT)
+                .order(OrderStatus.PAYMENT_CONFIRMED).payment(PaymentStatus.CAPTURED).escrow(EscrowStatus.HELD)
+                .effects(Effect.SCHEDULE_AUTO_RELEASE));
+        define(OrderEvent.PROVIDER_FUNDS_HELD, new Rule()
+                .when(OrderStatus.PENDING_PAYMENT)
+                .order(OrderStatus.PAYMENT_CONFIRMED).payment(PaymentStatus.CAPTURED).escrow(EscrowStatus.HELD));
+        define(OrderEvent.PAYMENT_FAILED, new Rule()
+                .when(OrderStatus.PENDING_PAYMENT)
+                .order(OrderStatus.CANCELLED).payment(PaymentStatus.FAILED)
+                .effects(Effect.RELEASE_STOCK));
+        define(OrderEvent.CANCELLED, new Rule()
+                .when(OrderStatus.PENDING_PAYMENT, OrderStatus.PROCESSING).whenEscrow(EscrowStatus.PENDING)
+                .order(OrderStatus.CANCELLED)
+                .effects(Effect.RELEASE_STOCK));
+
+        // Delivery
+        define(OrderEvent.SHIPPED, new Rule()
+                .when(notShipped)
+                .order(OrderStatus.SHIPPED));
+        define(OrderEvent.ARRIVED, new Rule()
+                .when(OrderStatus.PAYMENT_CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED)
+                .order(OrderStatus.DELIVERED));
+        define(OrderEvent.ARRIVED_AT_LOCKER, new Rule()
+                .when(OrderStatus.PAYMENT_CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED)
+                .order(OrderStatus.DELIVERED)
+                .effects(Effect.SCHEDULE_AUTO_RELEASE));
+        define(OrderEvent.DELIVERY_CONFIRMED, new Rule()
+                .when(active).unlessDone(o -> Boolean.TRUE.equals(o.getDeliveryConfirmed()))
+                .order(OrderStatus.DELIVERED)
+                .effects(Effect.CONFIRM_DELIVERY));
+
+        // Escrow
+        define(OrderEvent.ESCROW_RELEASED, new Rule()
+                .when(active).whenEscrow(EscrowStatus.HELD)
+                .order(OrderStatus.COMPLETED).escrow(EscrowStatus.RELEASED_TO_SELLER));
+        define(OrderEvent.PROVIDER_RELEASED, new Rule()
+                .when(activeOrCompleted)
+                .whenEscrow(EscrowStatus.HELD, EscrowStatus.RELEASED_TO_SELLER).whenPayout(payoutOpen)
+                .order(OrderStatus.COMPLETED).escrow(EscrowStatus.RELEASED_TO_SELLER).payout(PayoutStatus.COMPLETED)
+                .effects(Effect.STAMP_PAYOUT_DATE, Effect.CLEAR_PAYOUT_FAILURE));
+        define(OrderEvent.REFUNDED, new Rule()
+                .when(active).whenEscrow(EscrowStatus.HELD)
+                .order(OrderStatus.REFUNDED).payment(PaymentStatus.REFUNDED)
+                .escrow(EscrowStatus.REFUNDED_TO_BUYER).payout(PayoutStatus.FAILED));
+        define(OrderEvent.PROVIDER_REFUNDED, new Rule()
+                .when(activeOrCancelled)
+                .order(OrderStatus.REFUNDED).payment(PaymentStatus.REFUNDED).escrow(EscrowStatus.REFUNDED_TO_BUYER));
+
+        // Disputes
+        define(OrderEvent.DISPUTE_OPENED, new Rule()
+                .when(active).whenEscrow(EscrowStatus.HELD).whenDispute(DisputeStatus.NONE)
+                .dispute(DisputeStatus.OPEN)
+                .effects(Effect.FREEZE_AUTO_RELEASE, Effect.STAMP_DISPUTE_RAISED));
+        define(OrderEvent.DISPUTE_REFUNDED, new Rule()
+                .when(active).whenEscrow(EscrowStatus.HELD).whenDispute(DisputeStatus.OPEN)
+                .dispute(DisputeStatus.RESOLVED_REFUND).order(OrderStatus.REFUNDED).payment(PaymentStatus.REFUNDED)
+                .escrow(EscrowStatus.REFUNDED_TO_BUYER).payout(PayoutStatus.FAILED));
+        define(OrderEvent.DISPUTE_RELEASED, new Rule()
+                .when(active).whenEscrow(EscrowStatus.HELD).whenDispute(DisputeStatus.OPEN)
+                .dispute(DisputeStatus.RESOLVED_RELEASE).order(OrderStatus.COMPLETED)
+                .escrow(EscrowStatus.RELEASED_TO_SELLER));
+
+        // Payouts — FAILED and MANUAL_REQUIRED may repeat so each attempt's reason is recorded
+        define(OrderEvent.PAYOUT_COMPLETED, new Rule()
+                .whenPayout(payoutOpen)
+                .payout(PayoutStatus.COMPLETED)
+                .effects(Effect.STAMP_PAYOUT_DATE, Effect.CLEAR_PAYOUT_FAILURE));
+        define(OrderEvent.PAYOUT_FAILED, new Rule()
+                .whenPayout(payoutOpen)
+                .payout(PayoutStatus.FAILED));
+        define(OrderEvent.PAYOUT_MANUAL_REQUIRED, new Rule()
+                .whenPayout(payoutOpen)
+                .payout(PayoutStatus.MANUAL_REQUIRED));
+
+        for (OrderEvent event : OrderEvent.values()) {
+            if (!TABLE.containsKey(event)) throw new IllegalStateException("No transition defined for " + event);
+        }
+    }
+
+    private final OrderRepository orderRepository;
+    private final ScheduledActionService scheduledActionService;
+    private final ItemReservationService itemReservationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EnumMap<OrderEvent, Counter[]> counters = new EnumMap<>(OrderEvent.class);
+
+    public OrderStateMachine(OrderRepository orderRepository,
+                             ScheduledActionService scheduledActionService,
+                             ItemReservationService itemReservationService,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.scheduledActionService = scheduledActionService;
+        this.itemReservationService = itemReservationService;
+        this.eventPublisher = eventPublisher;
+        for (OrderEvent event : OrderEvent.values()) {
+            Counter[] byResult = new Counter[Result.values().length];
+            for (Result result : Result.values()) {
+                byResult[result.ordinal()] = Counter.builder("orders.transitions")
+                        .tag("event", event.name().toLowerCase())
+                        .tag("result", result.name().toLowerCase())
+                        .description("Order state machine events by outcome")
+                        .register(meterRegistry);
+            }
+            counters.put(event, byResult);
+        }
+    }
+
+    /**
+     * Applies {@code event} and saves the order.
+     *
+     * @return true if the order changed, false if the event had already taken effect
+     * @throws IllegalTransitionException if the event is not allowed in the order's current state
+     */
+    public boolean apply(Order order, OrderEvent event) {
+        return apply(order, event, null);
+    }
+
+    /**
+     * Like {@link #apply(Order, OrderEvent)}, also running {@code changes} (e.g. a failure
+     * reason) so they are saved in the same write. {@code changes} is skipped if the
+     * event is not applied.
+     */
+    public boolean apply(Order order, OrderEvent event, Consumer<Order> changes) {
+        Result result = tryApply(order, event, changes);
+        if (result == Result.REJECTED) throw new IllegalTransitionException(order, event);
+        return result == Result.APPLIED;
+    }
+
+    /** Non-throwing variant for webhooks, which acknowledge events they cannot use. */
+    public Result tryApply(Order order, OrderEvent event) {
+        return tryApply(order, event, null);
+    }
+
+    public Result tryApply(Order order, OrderEvent event, Consumer<Order> changes) {
+        Rule rule = TABLE.get(event);
+        Result result;
+        if (rule.accepts(order)) {
+            boolean awaitingPayment = order.getOrderStatus() == OrderStatus.PENDING_PAYMENT;
+            rule.applyTo(order, LocalDateTime.now());
+            if (changes != null) changes.accept(order);
+            orderRepository.save(order);
+            syncAutoRelease(order, rule);
+            if (rule.has(Effect.RELEASE_STOCK)) {
+                for (Item item : itemReservationService.release(order)) {
+                    log.info("Item {} restored to AVAILABLE after order {} took {}",
+                            item.getId(), order.getOrderNumber(), event);
+                }
+            }
+            if (awaitingPayment && order.getOrderStatus() != OrderStatus.PENDING_PAYMENT) {
+                eventPublisher.publishEvent(new PaymentSettledEvent(order.getId()));
+            }
+            result = Result.APPLIED;
+        } else if (rule.reachedBy(order)) {
+            result = Result.UNCHANGED;
+        } else {
+            log.warn("Rejected {} for order {} ({})", event, order.getOrderNumber(), describe(order));
+            result = Result.REJECTED;
+        }
+        counters.get(event)[result.ordinal()].increment();
+        return result;
+    }
+
+    /**
+     * Schedules the auto-release for the order's timer if it is now waiting on one (an
+     * order can also arrive at DELIVERED with a timer started at payment), and drops it
+     * when a dispute freezes the timer.
+     */
+    private void syncAutoRelease(Order order, Rule rule) {
+        if (order.getPayoutScheduledAt() != null
+                && order.getDisputeStatus() == DisputeStatus.NONE
+                && AUTO_RELEASE_STATUSES.contains(order.getOrderStatus())) {
+            scheduledActionService.schedule(
+                    ScheduledAction.Kind.ESCROW_AUTO_RELEASE, order.getId(), order.getPayoutScheduledAt());
+        } else if (rule.has(Effect.FREEZE_AUTO_RELEASE)) {
+            scheduledActionService.cancel(ScheduledAction.Kind.ESCROW_AUTO_RELEASE, order.getId());
+        }
+    }
+
+    private static void define(OrderEvent event, Rule rule) {
+        TABLE.put(event, rule);
+    }
+
+    private static String describe(Order order) {
+        return "order=" + order.getOrderStatus() + ", payment=" + order.getPaymentStatus()
+                + ", escrow=" + order.getEscrowStatus() + ", payout=" + order.getPayoutStatus()
+                + ", dispute=" + order.getDisputeStatus();
+    }
+
+    /**
+     * One row of the table. A null source set means "any"; a null target means "unchanged".
+     */
+    private static final class Rule {
+        private EnumSet<OrderStatus> orderFrom;
+        private EnumSet<PaymentStatus> paymentFrom;
+        private EnumSet<EscrowStatus> escrowFrom;
+        private EnumSet<PayoutStatus> payoutFrom;
+        private EnumSet<DisputeStatus> disputeFrom;
+        private Predicate<Order> done;
+
+        private OrderStatus order;
+        private PaymentStatus payment;
+        private EscrowStatus escrow;
+        private PayoutStatus payout;
+        private DisputeStatus dispute;
+        private Effect[] effects = new Effect[0];
+
+        Rule when(OrderStatus first, OrderStatus... rest) { orderFrom = EnumSet.of(first, rest); return this; }
+        Rule when(EnumSet<OrderStatus> statuses) { orderFrom = statuses; return this; }
+        Rule whenPayment(PaymentStatus first, PaymentStatus... rest) { paymentFrom = EnumSet.of(first, rest); return this; }
+        Rule whenEscrow(EscrowStatus first, EscrowStatus... rest) { escrowFrom = EnumSet.of(first, rest); return this; }
+        Rule whenPayout(EnumSet<PayoutStatus> statuses) { payoutFrom = statuses; return this; }
+        Rule whenDispute(DisputeStatus first, DisputeStatus... rest) { disputeFrom = EnumSet.of(first, rest); return this; }
+        /** Not taken once {@code test} holds; the event then counts as already applied. */
+        Rule unlessDone(Predicate<Order> test) { done = test; return this; }
+
+        Rule order(OrderStatus status) { order = status; return this; }
+        Rule payment(PaymentStatus status) { payment = status; return this; }
+        Rule escrow(EscrowStatus status) { escrow = status; return this; }
+        Rule payout(PayoutStatus status) { payout = status; return this; }
+        Rule dispute(DisputeStatus status) { dispute = status; return this; }
+        Rule effects(Effect... list) { effects = list; return this; }
+
+        boolean has(Effect effect) {
+            for (Effect e : effects) {
+                if (e == effect) return true;
+            }
+            return false;
+        }
+
+        boolean accepts(Order o) {
+            return allows(orderFrom, o.getOrderStatus())
+                    && allows(paymentFrom, o.getPaymentStatus())
+                    && allows(escrowFrom, o.getEscrowStatus())
+                    && allows(payoutFrom, o.getPayoutStatus())
+                    && allows(disputeFrom, o.getDisputeStatus())
+                    && (done == null || !done.test(o));
+        }
+
+        boolean reachedBy(Order o) {
+            return (order == null || order == o.getOrderStatus())
+                    && (payment == null || payment == o.getPaymentStatus())
+                    && (escrow == null || escrow == o.getEscrowStatus())
+                    && (payout == null || payout == o.getPayoutStatus())
+                    && (dispute == null || dispute == o.getDisputeStatus())
+                    && (done == null || done.test(o));
+        }
+
+        void applyTo(Order o, LocalDateTime now) {
+            if (order != null) o.setOrderStatus(order);
+            if (payment != null) o.setPaymentStatus(payment);
+            if (escrow != null) o.setEscrowStatus(escrow);
+            if (payout != null) o.setPayoutStatus(payout);
+            if (dispute != null) o.setDisputeStatus(dispute);
+            for (Effect effect : effects) {
+                effect.applyTo(o, now);
+            }
+        }
+
+        private static <E extends Enum<E>> boolean allows(EnumSet<E> from, E current) {
+            return from == null || (current != null && from.contains(current));
+        }
+    }
+}
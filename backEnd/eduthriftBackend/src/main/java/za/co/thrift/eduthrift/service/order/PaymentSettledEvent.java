@@ -0,0 +1,11 @@
+package za.co.thrift.eduthrift.service.order;
+
+/**
+ * Published by {@link OrderStateMachine} when an order leaves PENDING_PAYMENT, whether
+ * it was paid or cancelled, so its payment timeout can be dropped. Listeners use
+ * {@code @TransactionalEventListener(fallbackExecution = true)} so they only see it
+ * once the transition has committed.
+ *
+ * @param orderId the order's ID
+ */
+public record PaymentSettledEvent(Long orderId) {}
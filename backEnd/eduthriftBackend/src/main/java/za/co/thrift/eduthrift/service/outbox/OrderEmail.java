@@ -0,0 +1,43 @@
+package za.co.thrift.eduthrift.service.outbox;
+
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.service.EmailService;
+
+/**
+ * Order emails that can be queued on the outbox. Each constant names the
+ * {@link EmailService} method that renders and sends it; the order is re-read when
+ * the message is delivered.
+ */
+public enum OrderEmail {
+    BUYER_ORDER_CONFIRMATION,
+    SELLER_ORDER_NOTIFICATION,
+    PAYMENT_CONFIRMED,
+    SELLER_SHIP_NOW,
+    ORDER_SHIPPED,
+    ORDER_ARRIVED,
+    DELIVERY_CONFIRMED,
+    AUTO_RELEASE,
+    PAYOUT_STATUS,
+    PAYMENT_FAILED,
+    REFUND,
+    ORDER_CANCELLATION,
+    DISPUTE_RAISED;
+
+    void send(EmailService emailService, Order order, String reason) {
+        switch (this) {
+            case BUYER_ORDER_CONFIRMATION  -> emailService.sendBuyerOrderConfirmation(order);
+            case SELLER_ORDER_NOTIFICATION -> emailService.sendSellerOrderNotification(order);
+            case PAYMENT_CONFIRMED         -> emailService.sendPaymentConfirmedEmails(order);
+            case SELLER_SHIP_NOW           -> emailService.sendSellerShipNowEmail(order);
+            case ORDER_SHIPPED             -> emailService.sendOrderShippedEmail(order);
+            case ORDER_ARRIVED             -> emailService.sendOrderArrivedEmail(order);
+            case DELIVERY_CONFIRMED        -> emailService.sendDeliveryConfirmedEmails(order);
+            case AUTO_RELEASE              -> emailService.sendAutoReleaseEmails(order);
+            case PAYOUT_STATUS             -> emailService.sendPayoutStatusEmail(order);
+            case PAYMENT_FAILED            -> emailService.sendPaymentFailedEmail(order);
+            case REFUND                    -> emailService.sendRefundEmail(order);
+            case ORDER_CANCELLATION        -> emailService.sendOrderCancellationEmail(order, reason);
+            case DISPUTE_RAISED            -> emailService.sendDisputeRaisedEmails(order);
+        }
+    }
+}
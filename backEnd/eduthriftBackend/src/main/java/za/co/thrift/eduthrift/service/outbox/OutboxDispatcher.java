@@ -0,0 +1,229 @@
+package za.co.thrift.eduthrift.service.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.OutboxMessage;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.repository.OutboxMessageRepository;
+import za.co.thrift.eduthrift.service.EmailService;
+import za.co.thrift.eduthrift.service.FCMNotificationService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers {@link OutboxMessage}s on a pool of {@code outbox.workers} threads.
+ *
+ * <p>A drain starts as soon as a transaction that enqueued something commits, and
+ * every few seconds to pick up retries and messages written by other instances. Each
+ * drain claims batches with {@code SKIP LOCKED} (see {@link OutboxService#claimDue}),
+ * so any number of instances can run side by side without delivering the same message
+ * concurrently.
+ *
+ * <p>A failed delivery is retried with exponential backoff and jitter; after
+ * {@value #MAX_ATTEMPTS} attempts the message is parked as DEAD for an admin to look
+ * at. Counts are published as {@code outbox.messages{result=sent|retry|dead}}.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    static final int MAX_ATTEMPTS = 10;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(15);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final Duration RETENTION = Duration.ofDays(7);
+
+    private final OutboxService outboxService;
+    private final OutboxMessageRepository outboxRepository;
+    private final OrderRepository orderRepository;
+    private final ItemRepository itemRepository;
+    private final EmailService emailService;
+    private final FCMNotificationService fcmNotificationService;
+    private final SchedulerLockService schedulerLock;
+
+    private final int batchSize;
+    private final ExecutorService workers;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "outbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dead;
+
+    public OutboxDispatcher(OutboxService outboxService,
+                            OutboxMessageRepository outboxRepository,
+                            OrderRepository orderRepository,
+                            ItemRepository itemRepository,
+                            EmailService emailService,
+                            FCMNotificationService fcmNotificationService,
+                            SchedulerLockService schedulerLock,
+                            MeterRegistry meterRegistry,
+                            @Value("${outbox.workers:4}") int workerCount) {
+        this.outboxService = outboxService;
+        this.outboxRepository = outboxRepository;
+        this.orderRepository = orderRepository;
+        this.itemRepository = itemRepository;
+        this.emailService = emailService;
+        this.fcmNotificationService = fcmNotificationService;
+        this.schedulerLock = schedulerLock;
+        this.batchSize = workerCount * 4;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread thread = new Thread(r, "outbox-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sent = counter(meterRegistry, "sent");
+        this.retried = counter(meterRegistry, "retry");
+        this.dead = counter(meterRegistry, "dead");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEnqueued(OutboxService.Enqueued event) {
+        wake();
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    public void poll() {
+        wake();
+    }
+
+    // Daily at 03:30 — delivered messages are only kept for troubleshooting
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeDelivered() {
+        schedulerLock.runExclusively("outbox-purge", Duration.ofMinutes(10), Duration.ofMinutes(5), () -> {
+            int deleted = outboxRepository.deleteSentBefore(LocalDateTime.now().minus(RETENTION));
+            if (deleted > 0) log.info("Purged {} delivered outbox messages", deleted);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown();
+        workers.shutdown();
+    }
+
+    /** Coalesces wake-ups: at most one drain is queued behind the one running. */
+    private void wake() {
+        if (!drainScheduled.compareAndSet(false, true)) return;
+        try {
+            dispatcher.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            drainScheduled.set(false); // shutting down
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        try {
+            List<OutboxMessage> batch;
+            do {
+                batch = outboxService.claimDue(batchSize);
+                List<Future<?>> deliveries = new ArrayList<>(batch.size());
+                for (OutboxMessage message : batch) {
+                    deliveries.add(workers.submit(() -> deliver(message)));
+                }
+                for (Future<?> delivery : deliveries) {
+                    delivery.get();
+                }
+            } while (batch.size() == batchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Outbox drain failed: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(OutboxMessage message) {
+        try {
+            switch (message.getType()) {
+                case PUSH -> {
+                    OutboxService.PushPayload push = outboxService.readPayload(message, OutboxService.PushPayload.class);
+                    fcmNotificationService.deliver(push.token(), push.title(), push.body());
+                }
+                case EMAIL -> {
+                    OutboxService.EmailPayload email = outboxService.readPayload(message, OutboxService.EmailPayload.class);
+                    Order order = orderRepository.findById(email.orderId()).orElse(null);
+                    if (order == null) {
+                        outboxRepository.markDead(message.getId(), "Order " + email.orderId() + " no longer exists");
+                        dead.increment();
+                        return;
+                    }
+                    // Detached copy — render the payout status as it was when the email was queued
+                    order.setPayoutStatus(email.payoutStatus());
+                    email.template().send(emailService, order, email.reason());
+                }
+                case LISTING_EMAIL -> {
+                    OutboxService.ExpiryReminderPayload reminder =
+                            outboxService.readPayload(message, OutboxService.ExpiryReminderPayload.class);
+                    Item item = itemRepository.findById(reminder.itemId()).orElse(null);
+                    if (item == null) {
+                        outboxRepository.markDead(message.getId(), "Item " + reminder.itemId() + " no longer exists");
+                        dead.increment();
+                        return;
+                    }
+                    // Sold, removed or relisted (which clears the flag) since it was queued — nothing to remind about
+                    if (item.getStatus() == Item.ItemStatus.AVAILABLE && Boolean.TRUE.equals(item.getExpiryReminderSent())) {
+                        emailService.sendListingExpiryReminderEmail(item, reminder.daysLeft());
+                    }
+                }
+            }
+            outboxRepository.markSent(message.getId(), LocalDateTime.now());
+            sent.increment();
+        } catch (Exception e) {
+            fail(message, e);
+        }
+    }
+
+    private void fail(OutboxMessage message, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (error.length() > 500) error = error.substring(0, 500);
+        if (message.getAttempts() >= MAX_ATTEMPTS) {
+            outboxRepository.markDead(message.getId(), error);
+            dead.increment();
+            log.error("Outbox message {} ({}) gave up after {} attempts: {}",
+                    message.getId(), message.getType(), message.getAttempts(), error);
+        } else {
+            Duration delay = backoff(message.getAttempts());
+            outboxRepository.markForRetry(message.getId(), LocalDateTime.now().plus(delay), error);
+            retried.increment();
+            log.warn("Outbox message {} ({}) attempt {} failed, retrying in {}s: {}",
+                    message.getId(), message.getType(), message.getAttempts(), delay.toSeconds(), error);
+        }
+    }
+
+    /** 15 s, 30 s, 1 min, … capped at an hour, ±20 % so messages that failed together spread out. */
+    static Duration backoff(int attempts) {
+        long millis = Math.min(BASE_BACKOFF.toMillis() << Math.min(attempts - 1, 20), MAX_BACKOFF.toMillis());
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofMillis((long) (millis * jitter));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("outbox.messages")
+                .tag("result", result)
+                .description("Outbox deliveries by outcome")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,142 @@
+package za.co.thrift.eduthrift.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.OutboxMessage;
+import za.co.thrift.eduthrift.entity.User;
+import za.co.thrift.eduthrift.repository.OutboxMessageRepository;
+import za.co.thrift.eduthrift.service.NotificationService;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records side effects — push notifications, order emails and listing reminders — as
+ * outbox rows.
+ *
+ * <p>Every method joins the caller's transaction, so a message exists exactly when the
+ * order change that caused it commits; {@link OutboxDispatcher} delivers it after the
+ * commit, off the request thread, retrying until it succeeds (at-least-once). Callers
+ * without a transaction get one per call.
+ */
+@Service
+public class OutboxService {
+
+    /** How long a claimed message is hidden from other dispatchers while it is being delivered. */
+    static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+
+    record PushPayload(String token, String title, String body) {}
+
+    record EmailPayload(OrderEmail template, Long orderId, String reason, Order.PayoutStatus payoutStatus) {}
+
+    record ExpiryReminderPayload(Long itemId, int daysLeft) {}
+
+    /** Published on enqueue; the dispatcher starts delivering once the transaction commits. */
+    record Enqueued() {}
+
+    private final OutboxMessageRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public OutboxService(OutboxMessageRepository outboxRepository,
+                         NotificationService notificationService,
+                         ObjectMapper objectMapper,
+                         ApplicationEventPublisher eventPublisher) {
+        this.outboxRepository = outboxRepository;
+        this.notificationService = notificationService;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Saves the notification to the user's inbox and queues the push to their device.
+     * Use this for all order/payment events so they appear in the notification inbox.
+     */
+    @Transactional
+    public void pushAndPersist(User user, String title, String body, String relatedOrderNumber) {
+        notificationService.save(user, title, body, relatedOrderNumber);
+        push(user.getFcmToken(), title, body);
+    }
+
+    /** Queues a push only (no inbox entry). Ignored when the user has no device token. */
+    @Transactional
+    public void push(String fcmToken, String title, String body) {
+        if (fcmToken == null || fcmToken.isBlank()) return;
+        enqueue(OutboxMessage.Type.PUSH, new PushPayload(fcmToken, title, body));
+    }
+
+    @Transactional
+    public void email(OrderEmail template, Order order) {
+        email(template, order, null);
+    }
+
+    /** Queues an order email; {@code reason} is only used by {@link OrderEmail#ORDER_CANCELLATION}. */
+    @Transactional
+    public void email(OrderEmail template, Order order, String reason) {
+        // Payout emails describe the status at the time of the event, not at delivery
+        enqueue(OutboxMessage.Type.EMAIL,
+                new EmailPayload(template, order.getId(), reason, order.getPayoutStatus()));
+    }
+
+    /** Queues a "your listing expires in {@code daysLeft} days" email for each listing. */
+    @Transactional
+    public void expiryReminders(Collection<Long> itemIds, int daysLeft) {
+        if (itemIds.isEmpty()) return;
+        List<OutboxMessage> messages = new ArrayList<>(itemIds.size());
+        for (Long itemId : itemIds) {
+            messages.add(message(OutboxMessage.Type.LISTING_EMAIL, new ExpiryReminderPayload(itemId, daysLeft)));
+        }
+        outboxRepository.saveAll(messages);
+        eventPublisher.publishEvent(new Enqueued());
+    }
+
+    /**
+     * Claims up to {@code limit} due messages for delivery: each is pushed
+     * {@link #CLAIM_LEASE} into the future and its attempt counted, so a dispatcher
+     * that dies mid-delivery only delays the message.
+     */
+    @Transactional
+    public List<OutboxMessage> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> due = outboxRepository.findDueForUpdate(now, PageRequest.of(0, limit));
+        for (OutboxMessage message : due) {
+            message.setAttempts(message.getAttempts() + 1);
+            message.setNextAttemptAt(now.plus(CLAIM_LEASE));
+        }
+        return due;
+    }
+
+    <T> T readPayload(OutboxMessage message, Class<T> type) {
+        try {
+            return objectMapper.readValue(message.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void enqueue(OutboxMessage.Type type, Object payload) {
+        outboxRepository.save(message(type, payload));
+        eventPublisher.publishEvent(new Enqueued());
+    }
+
+    private OutboxMessage message(OutboxMessage.Type type, Object payload) {
+        OutboxMessage message = new OutboxMessage();
+        message.setType(type);
+        try {
+            message.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return message;
+    }
+}
@@ -9,9 +9,12 @@ import za.co.thrift.eduthrift.entity.Order;
 import za.co.thrift.eduthrift.entity.PaymentTransaction;
 import za.co.thrift.eduthrift.repository.OrderRepository;
 import za.co.thrift.eduthrift.repository.PaymentTransactionRepository;
-import za.co.thrift.eduthrift.service.EmailService;
-import za.co.thrift.eduthrift.service.FCMNotificationService;
+import za.co.thrift.eduthrift.service.IdempotencyService;
 import za.co.thrift.eduthrift.service.LedgerService;
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.outbox.OrderEmail;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -30,7 +33,7 @@ import java.util.stream.Collectors;
  *   <li>Initiate payments and record the opening audit event.</li>
  *   <li>Process normalized {@link PaymentEvent}s and advance the order lifecycle.</li>
  *   <li>Trigger seller payouts after escrow release.</li>
- *   <li>Enforce webhook idempotency via the {@code payment_transactions} table.</li>
+ *   <li>Enforce webhook idempotency via {@link IdempotencyService}.</li>
  * </ul>
  *
  * <h2>Dependency design — no circular wiring</h2>
@@ -50,17 +53,19 @@ public class PaymentService {
     private final PaymentConfig paymentConfig;
     private final OrderRepository orderRepository;
     private final PaymentTransactionRepository transactionRepository;
-    private final FCMNotificationService fcmService;
     private final LedgerService ledgerService;
-    private final EmailService emailService;
+    private final OutboxService outboxService;
+    private final OrderStateMachine orderStateMachine;
+    private final IdempotencyService idempotencyService;
 
     public PaymentService(List<PaymentProvider> providers,
                           PaymentConfig paymentConfig,
                           OrderRepository orderRepository,
                           PaymentTransactionRepository transactionRepository,
-                          FCMNotificationService fcmService,
                           LedgerService ledgerService,
-                          EmailService emailService) {
+                          OutboxService outboxService,
+                          OrderStateMachine orderStateMachine,
+                          IdempotencyService idempotencyService) {
         this.providersByName = providers.stream()
                 .collect(Collectors.toMap(
                         p -> p.getProviderName().toUpperCase(),
@@ -69,9 +74,10 @@ public class PaymentService {
         this.paymentConfig        = paymentConfig;
         this.orderRepository      = orderRepository;
         this.transactionRepository = transactionRepository;
-        this.fcmService           = fcmService;
         this.ledgerService        = ledgerService;
-        this.emailService         = emailService;
+        this.outboxService        = outboxService;
+        this.orderStateMachine    = orderStateMachine;
+        this.idempotencyService   = idempotencyService;
         log.info("PaymentService initialized — registered providers: {}", providersByName.keySet());
     }
 
@@ -112,7 +118,9 @@ public class PaymentService {
      * <p><strong>Idempotency:</strong> if the same
      * {@code provider + providerTransactionId + eventType} triple was already
      * processed, the call is a no-op and {@code false} is returned. The caller
-     * should still return HTTP 200 to prevent the provider from retrying.
+     * should still return HTTP 200 to prevent the provider from retrying. New events
+     * are usually told apart in memory; the triple is recorded in this transaction, so
+     * of two concurrent deliveries only one gets past {@link IdempotencyService#markProcessed}.
      *
      * @return {@code true} if the event was newly processed;
      *         {@code false} if it was a duplicate or the order was not found.
@@ -120,8 +128,8 @@ public class PaymentService {
     @Transactional
     public boolean processWebhookEvent(PaymentEvent event) {
         // Idempotency guard
-        if (transactionRepository.existsByProviderAndProviderTransactionIdAndEventType(
-                event.providerName(), event.providerTransactionId(), event.type().name())) {
+        String eventKey = event.providerTransactionId() + ":" + event.type().name();
+        if (idempotencyService.isDuplicate(event.providerName(), eventKey)) {
             log.info("Duplicate webhook event ignored — provider={}, txId={}, type={}",
                     event.providerName(), event.providerTransactionId(), event.type());
             return false;
@@ -148,7 +156,12 @@ public class PaymentService {
             return false;
         }
 
-        // Audit first — then mutate state. Any mutation failure will roll back both.
+        // Claim the event, audit, then mutate state. Any failure rolls back all three.
+        if (!idempotencyService.markProcessed(event.providerName(), eventKey)) {
+            log.info("Duplicate webhook event ignored — provider={}, txId={}, type={} (concurrent delivery)",
+                    event.providerName(), event.providerTransactionId(), event.type());
+            return false;
+        }
         recordTransaction(order,
                 event.providerName(),
                 event.providerTransactionId(),
@@ -193,43 +206,45 @@ public class PaymentService {
 
         // Track the attempt before calling the provider — guards against double-payout
         // if the process crashes after the provider accepts the request but before we save
+        LocalDateTime now = LocalDateTime.now();
         order.setPayoutAttempts(order.getPayoutAttempts() + 1);
-        order.setLastPayoutAttemptAt(LocalDateTime.now());
+        order.setLastPayoutAttemptAt(now);
         orderRepository.save(order);
 
         PayoutResult result = provider.payoutSeller(order);
 
         if (result.requiresManualProcessing()) {
-            order.setPayoutStatus(Order.PayoutStatus.MANUAL_REQUIRED);
-            order.setPayoutFailureReason(result.errorMessage());
-            orderRepository.save(order);
-            emailService.sendPayoutStatusEmail(order);
+            orderStateMachine.apply(order, OrderEvent.PAYOUT_MANUAL_REQUIRED, o -> {
+                o.setPayoutFailureReason(result.errorMessage());
+                o.setNextPayoutRetryAt(null);
+            });
+            outboxService.email(OrderEmail.PAYOUT_STATUS, order);
             log.info("Order {} payout set to MANUAL_REQUIRED — provider {} does not support auto-payouts",
                     order.getOrderNumber(), provider.getProviderName());
 
         } else if (result.success()) {
-            order.setPayoutStatus(Order.PayoutStatus.COMPLETED);
-            order.setPayoutDate(LocalDateTime.now());
-            order.setPayoutFailureReason(null);
-            orderRepository.save(order);
+            orderStateMachine.apply(order, OrderEvent.PAYOUT_COMPLETED);
             ledgerService.postPayout(order);
-            emailService.sendPayoutStatusEmail(order);
+            outboxService.email(OrderEmail.PAYOUT_STATUS, order);
             log.info("Payout completed for order {} via {} — ref: {}",
                     order.getOrderNumber(), provider.getProviderName(), result.providerReference());
 
         } else {
-            order.setPayoutStatus(Order.PayoutStatus.FAILED);
-            order.setPayoutFailureReason(result.errorMessage());
-            orderRepository.save(order);
-            emailService.sendPayoutStatusEmail(order);
-            int remaining = 3 - order.getPayoutAttempts();
+            // Backoff is fixed at failure time so the retry queue is a plain indexed range scan
+            orderStateMachine.apply(order, OrderEvent.PAYOUT_FAILED, o -> {
+                o.setPayoutFailureReason(result.errorMessage());
+                o.setNextPayoutRetryAt(PayoutRetryPolicy.nextRetryAt(o.getPayoutAttempts(), now));
+            });
+            outboxService.email(OrderEmail.PAYOUT_STATUS, order);
+            int remaining = PayoutRetryPolicy.MAX_ATTEMPTS - order.getPayoutAttempts();
             if (remaining > 0) {
-                log.warn("Payout failed for order {} via {} (attempt {}/3, {} retry/retries remaining): {}",
-                        order.getOrderNumber(), provider.getProviderName(),
-                        order.getPayoutAttempts(), remaining, result.errorMessage());
+                log.warn("Payout failed for order {} via {} (attempt {}/{}, {} retry/retries remaining, next at {}): {}",
+                        order.getOrderNumber(), provider.getProviderName(), order.getPayoutAttempts(),
+                        PayoutRetryPolicy.MAX_ATTEMPTS, remaining, order.getNextPayoutRetryAt(), result.errorMessage());
             } else {
-                log.error("Payout EXHAUSTED for order {} via {} — all 3 attempts failed, admin intervention required: {}",
-                        order.getOrderNumber(), provider.getProviderName(), result.errorMessage());
+                log.error("Payout EXHAUSTED for order {} via {} — all {} attempts failed, admin intervention required: {}",
+                        order.getOrderNumber(), provider.getProviderName(), PayoutRetryPolicy.MAX_ATTEMPTS,
+                        result.errorMessage());
             }
         }
 
@@ -254,72 +269,72 @@ public class PaymentService {
      * duplicate field writes when holdFunds also sets CAPTURED.
      */
     private void handlePaymentConfirmed(Order order) {
-        if (order.getPaymentStatus() == Order.PaymentStatus.CAPTURED) {
-            log.info("Order {} already CAPTURED — skipping duplicate payment confirmed event",
+        if (!applied(order, OrderEvent.PAYMENT_CAPTURED)) {
+            log.info("Order {} already CAPTURED or no longer payable — skipping payment confirmed event",
                     order.getOrderNumber());
             return;
         }
-        order.setPaymentStatus(Order.PaymentStatus.CAPTURED);
-        orderRepository.save(order);
         log.info("Payment confirmed for order {} via {}", order.getOrderNumber(), order.getPaymentMethod());
     }
 
     private void handlePaymentFailed(Order order) {
-        order.setPaymentStatus(Order.PaymentStatus.FAILED);
-        order.setOrderStatus(Order.OrderStatus.CANCELLED);
-        orderRepository.save(order);
-        fcmService.send(
+        if (!applied(order, OrderEvent.PAYMENT_FAILED)) return;
+        outboxService.push(
                 order.getBuyer().getFcmToken(),
                 "Payment Failed",
                 "Your payment for order " + order.getOrderNumber() + " could not be processed. Please try again."
         );
-        emailService.sendPaymentFailedEmail(order);
+        outboxService.email(OrderEmail.PAYMENT_FAILED, order);
         log.warn("Payment failed for order {}", order.getOrderNumber());
     }
 
     private void handlePaymentCancelled(Order order) {
-        order.setPaymentStatus(Order.PaymentStatus.FAILED);
-        order.setOrderStatus(Order.OrderStatus.CANCELLED);
-        orderRepository.save(order);
-        emailService.sendOrderCancellationEmail(order, "Payment was cancelled");
+        if (!applied(order, OrderEvent.PAYMENT_FAILED)) return;
+        outboxService.email(OrderEmail.ORDER_CANCELLATION, order, "Payment was cancelled");
         log.info("Payment cancelled for order {}", order.getOrderNumber());
     }
 
     private void handleRefundCompleted(Order order) {
-        order.setPaymentStatus(Order.PaymentStatus.REFUNDED);
-        order.setOrderStatus(Order.OrderStatus.REFUNDED);
-        order.setEscrowStatus(Order.EscrowStatus.REFUNDED_TO_BUYER);
-        orderRepository.save(order);
-        emailService.sendRefundEmail(order);
+        if (!applied(order, OrderEvent.PROVIDER_REFUNDED)) return;
+        outboxService.email(OrderEmail.REFUND, order);
         log.info("Refund completed (webhook confirmation) for order {}", order.getOrderNumber());
     }
 
     private void handlePayoutCompleted(Order order) {
-        if (order.getPayoutStatus() == Order.PayoutStatus.COMPLETED) {
+        if (!applied(order, OrderEvent.PAYOUT_COMPLETED)) {
             return; // already recorded via payoutSeller()
         }
-        order.setPayoutStatus(Order.PayoutStatus.COMPLETED);
-        order.setPayoutDate(LocalDateTime.now());
-        orderRepository.save(order);
-        emailService.sendPayoutStatusEmail(order);
+        outboxService.email(OrderEmail.PAYOUT_STATUS, order);
         log.info("Payout completed (webhook confirmation) for order {}", order.getOrderNumber());
     }
 
     private void handlePayoutFailed(Order order) {
-        order.setPayoutStatus(Order.PayoutStatus.FAILED);
-        orderRepository.save(order);
-        emailService.sendPayoutStatusEmail(order);
+        if (!applied(order, OrderEvent.PAYOUT_FAILED)) return;
+        outboxService.email(OrderEmail.PAYOUT_STATUS, order);
         log.error("Payout failed (webhook notification) for order {}", order.getOrderNumber());
     }
 
+    /**
+     * Webhook events that do not fit the order's state (duplicates, late or out-of-order
+     * deliveries) are recorded in the audit log above but change nothing.
+     */
+    private boolean applied(Order order, OrderEvent event) {
+        return orderStateMachine.tryApply(order, event) == OrderStateMachine.Result.APPLIED;
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // Provider resolution
     // ─────────────────────────────────────────────────────────────────────────
 
-    private PaymentProvider resolveProvider(Order.PaymentMethod paymentMethod) {
-        String name = (paymentMethod != null)
+    /** Name of the provider that handles orders paid with {@code paymentMethod}, e.g. {@code TRADESAFE}. */
+    public String providerNameFor(Order.PaymentMethod paymentMethod) {
+        return (paymentMethod != null)
                 ? paymentMethod.name().toUpperCase()
                 : paymentConfig.getDefaultProvider().toUpperCase();
+    }
+
+    private PaymentProvider resolveProvider(Order.PaymentMethod paymentMethod) {
+        String name = providerNameFor(paymentMethod);
 
         PaymentProvider provider = providersByName.get(name);
         if (provider == null) {
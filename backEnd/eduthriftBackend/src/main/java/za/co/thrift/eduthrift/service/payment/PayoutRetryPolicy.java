@@ -0,0 +1,37 @@
+package za.co.thrift.eduthrift.service.payment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When a failed seller payout is tried again: at most {@value #MAX_ATTEMPTS} attempts,
+ * the second about an hour after the first and the third about four hours after that.
+ * Each wait is jittered by ±20 % so payouts that failed together (a provider outage)
+ * do not all retry in the same minute.
+ */
+public final class PayoutRetryPolicy {
+
+    public static final int MAX_ATTEMPTS = 3;
+
+    /** Backoff by attempt number (1-indexed). */
+    private static final Duration[] BACKOFF = {
+            Duration.ZERO,           // placeholder for index 0
+            Duration.ofHours(1),     // after attempt 1 → wait 1h
+            Duration.ofHours(4),     // after attempt 2 → wait 4h
+    };
+
+    private PayoutRetryPolicy() {
+    }
+
+    /**
+     * @param attempts attempts made so far, including the one that just failed
+     * @return when to try again, or null once the attempts are used up
+     */
+    public static LocalDateTime nextRetryAt(int attempts, LocalDateTime failedAt) {
+        if (attempts >= MAX_ATTEMPTS) return null;
+        Duration wait = attempts < BACKOFF.length ? BACKOFF[attempts] : Duration.ofHours(24);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return failedAt.plus(Duration.ofMillis((long) (wait.toMillis() * jitter)));
+    }
+}
@@ -0,0 +1,181 @@
+package za.co.thrift.eduthrift.service.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
+import za.co.thrift.eduthrift.repository.ScheduledActionRepository;
+import za.co.thrift.eduthrift.service.EscrowAutoReleaseService;
+import za.co.thrift.eduthrift.service.ShipmentBookingService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link ScheduledAction}s when they fall due, on a pool of
+ * {@code scheduler.workers} threads.
+ *
+ * <p>After each drain the dispatcher arms a one-shot timer for the earliest pending
+ * due time, and newly scheduled actions pull that timer forward after their
+ * transaction commits, so an action normally runs within milliseconds of its due
+ * time. A slow poll picks up actions scheduled by other instances and claims that
+ * have lapsed. Each drain claims batches with {@code SKIP LOCKED} (see
+ * {@link ScheduledActionService#claimDue}), so instances never run the same action
+ * concurrently.
+ *
+ * <p>An action that throws is retried with exponential backoff, capped at an hour, for
+ * as long as it keeps failing — these move money, so they are never dropped. How late
+ * actions start is published as {@code scheduled_actions.lag}, outcomes as
+ * {@code scheduled_actions.runs{result=done|retry}}.
+ */
+@Service
+public class ScheduledActionDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledActionDispatcher.class);
+
+    private static final Duration BASE_BACKOFF = Duration.ofMinutes(1);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+    private final ScheduledActionService actionService;
+    private final ScheduledActionRepository actionRepository;
+    private final EscrowAutoReleaseService escrowAutoReleaseService;
+    private final ShipmentBookingService shipmentBookingService;
+
+    private final int batchSize;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "scheduled-actions-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The armed wake-up and when it fires; guarded by this
+    private ScheduledFuture<?> nextWake;
+    private LocalDateTime nextWakeAt;
+
+    private final Timer lag;
+    private final Counter done;
+    private final Counter retried;
+
+    public ScheduledActionDispatcher(ScheduledActionService actionService,
+                                     ScheduledActionRepository actionRepository,
+                                     EscrowAutoReleaseService escrowAutoReleaseService,
+                                     ShipmentBookingService shipmentBookingService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${scheduler.workers:4}") int workerCount) {
+        this.actionService = actionService;
+        this.actionRepository = actionRepository;
+        this.escrowAutoReleaseService = escrowAutoReleaseService;
+        this.shipmentBookingService = shipmentBookingService;
+        this.batchSize = workerCount * 4;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread thread = new Thread(r, "scheduled-actions-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lag = Timer.builder("scheduled_actions.lag")
+                .description("How long after its due time a scheduled action started")
+                .register(meterRegistry);
+        this.done = counter(meterRegistry, "done");
+        this.retried = counter(meterRegistry, "retry");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduled(ScheduledActionService.Scheduled event) {
+        wakeAt(event.dueAt());
+    }
+
+    @Scheduled(fixedDelay = 30_000)
+    public void poll() {
+        wakeAt(LocalDateTime.now());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        workers.shutdown();
+    }
+
+    /** Arms the timer for {@code dueAt} unless it is already set to go off sooner. */
+    private synchronized void wakeAt(LocalDateTime dueAt) {
+        if (nextWake != null && !nextWake.isDone() && !nextWakeAt.isAfter(dueAt)) return;
+        if (nextWake != null) nextWake.cancel(false);
+        long delay = Math.max(0, Duration.between(LocalDateTime.now(), dueAt).toMillis());
+        try {
+            nextWake = dispatcher.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+            nextWakeAt = dueAt;
+        } catch (RejectedExecutionException e) {
+            nextWake = null; // shutting down
+        }
+    }
+
+    private void drain() {
+        synchronized (this) {
+            nextWake = null;
+        }
+        try {
+            List<ScheduledAction> batch;
+            do {
+                batch = actionService.claimDue(batchSize);
+                List<Future<?>> runs = new ArrayList<>(batch.size());
+                for (ScheduledAction action : batch) {
+                    runs.add(workers.submit(() -> run(action)));
+                }
+                for (Future<?> run : runs) {
+                    run.get();
+                }
+            } while (batch.size() == batchSize);
+            actionRepository.findNextDueAt().ifPresent(this::wakeAt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Scheduled action drain failed: {}", e.getMessage());
+        }
+    }
+
+    private void run(ScheduledAction action) {
+        lag.record(Duration.between(action.getDueAt(), LocalDateTime.now()));
+        try {
+            switch (action.getKind()) {
+                case ESCROW_AUTO_RELEASE -> escrowAutoReleaseService.autoRelease(action.getOrderId());
+                case BOOK_SHIPMENT       -> shipmentBookingService.bookShipment(action.getOrderId());
+            }
+            actionService.complete(action);
+            done.increment();
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            if (error.length() > 500) error = error.substring(0, 500);
+            Duration delay = backoff(action.getAttempts());
+            actionService.retry(action, LocalDateTime.now().plus(delay), error);
+            retried.increment();
+            log.error("{} for order {} failed (attempt {}), retrying in {}s: {}",
+                    action.getKind(), action.getOrderId(), action.getAttempts(), delay.toSeconds(), error);
+        }
+    }
+
+    /** 1 min, 2 min, 4 min, … capped at an hour, ±20 % so actions that failed together spread out. */
+    static Duration backoff(int attempts) {
+        long millis = Math.min(BASE_BACKOFF.toMillis() << Math.min(attempts - 1, 20), MAX_BACKOFF.toMillis());
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofMillis((long) (millis * jitter));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("scheduled_actions.runs")
+                .tag("result", result)
+                .description("Scheduled actions run, by outcome")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,92 @@
+package za.co.thrift.eduthrift.service.scheduling;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
+import za.co.thrift.eduthrift.repository.ScheduledActionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Schedules, moves and cancels {@link ScheduledAction}s.
+ *
+ * <p>Every method joins the caller's transaction, so an action is scheduled exactly
+ * when the order change that called for it commits; {@link ScheduledActionDispatcher}
+ * is woken after the commit if the action is due sooner than anything it is waiting on.
+ */
+@Service
+public class ScheduledActionService {
+
+    /** How long a claimed action is hidden from other dispatchers while it runs. */
+    static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+
+    /** Published when an action is (re)scheduled; the dispatcher picks it up after commit. */
+    record Scheduled(LocalDateTime dueAt) {}
+
+    private final ScheduledActionRepository actionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ScheduledActionService(ScheduledActionRepository actionRepository,
+                                  ApplicationEventPublisher eventPublisher) {
+        this.actionRepository = actionRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Makes sure the order has a {@code kind} action due at {@code dueAt}, creating it or
+     * moving an existing one. A no-op if it is already due then.
+     */
+    @Transactional
+    public void schedule(ScheduledAction.Kind kind, Long orderId, LocalDateTime dueAt) {
+        // Second precision, so the same deadline read back from the database compares equal
+        LocalDateTime due = dueAt.truncatedTo(ChronoUnit.SECONDS);
+        ScheduledAction action = actionRepository.findByKindAndOrderId(kind, orderId).orElseGet(() -> {
+            ScheduledAction created = new ScheduledAction();
+            created.setKind(kind);
+            created.setOrderId(orderId);
+            return created;
+        });
+        if (due.equals(action.getDueAt())) return;
+        action.setDueAt(due);
+        action.setAttempts(0);
+        action.setLastError(null);
+        actionRepository.save(action);
+        eventPublisher.publishEvent(new Scheduled(due));
+    }
+
+    @Transactional
+    public void cancel(ScheduledAction.Kind kind, Long orderId) {
+        actionRepository.deleteByKindAndOrderId(kind, orderId);
+    }
+
+    /**
+     * Claims up to {@code limit} due actions: each is leased for {@link #CLAIM_LEASE}
+     * and its attempt counted, so a dispatcher that dies mid-run only delays it.
+     */
+    @Transactional
+    public List<ScheduledAction> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScheduledAction> due = actionRepository.findDueForUpdate(now, PageRequest.of(0, limit));
+        for (ScheduledAction action : due) {
+            action.setAttempts(action.getAttempts() + 1);
+            action.setClaimedUntil(now.plus(CLAIM_LEASE));
+        }
+        return due;
+    }
+
+    /** Removes a finished action; one rescheduled while it ran is released to run again. */
+    void complete(ScheduledAction action) {
+        if (actionRepository.deleteIfDueAt(action.getId(), action.getDueAt()) == 0) {
+            actionRepository.unclaim(action.getId(), action.getDueAt(), action.getDueAt(), null);
+        }
+    }
+
+    void retry(ScheduledAction action, LocalDateTime retryAt, String error) {
+        actionRepository.unclaim(action.getId(), action.getDueAt(), retryAt.truncatedTo(ChronoUnit.SECONDS), error);
+    }
+}
@@ -0,0 +1,83 @@
+package za.co.thrift.eduthrift.service.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.repository.SchedulerLockRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Makes sure a {@code @Scheduled} job runs on only one instance per tick, using a row
+ * per job in {@code scheduler_locks} as a lease.
+ *
+ * <p>A job takes its lock for {@code lockAtMost} before running and gives it back
+ * afterwards, but never sooner than {@code lockAtLeast} after it started. The minimum
+ * covers instances whose ticks do not line up: cron jobs fire within clock skew of each
+ * other, {@code fixedDelay} jobs anywhere in the interval, so for those it should be
+ * most of the interval. The maximum bounds how long a crashed instance blocks the job;
+ * keep it above the job's longest run, or a second instance may start alongside it.
+ *
+ * <p>Jobs whose work is already claimed row by row with {@code SKIP LOCKED} (outbox,
+ * scheduled actions) and per-instance housekeeping do not need a lock.
+ */
+@Service
+public class SchedulerLockService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerLockService.class);
+
+    private final SchedulerLockRepository lockRepository;
+    private final String holder = ManagementFactory.getRuntimeMXBean().getName();
+
+    public SchedulerLockService(SchedulerLockRepository lockRepository) {
+        this.lockRepository = lockRepository;
+    }
+
+    /**
+     * Runs {@code job} if no other instance holds the lock {@code name}.
+     *
+     * @return true if the job ran here, false if it was skipped
+     */
+    public boolean runExclusively(String name, Duration lockAtMost, Duration lockAtLeast, Runnable job) {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        if (!acquire(name, lockedAt, lockedAt.plus(lockAtMost))) {
+            log.debug("Skipping {}: locked by another instance", name);
+            return false;
+        }
+        try {
+            job.run();
+            return true;
+        } finally {
+            LocalDateTime earliest = lockedAt.plus(lockAtLeast);
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                lockRepository.release(name, holder, now.isAfter(earliest) ? now : earliest);
+            } catch (Exception e) {
+                // The lease runs out by itself at lockAtMost
+                log.warn("Failed to release scheduler lock {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /** The name other instances see as the holder, e.g. in the admin console. */
+    public String getHolder() {
+        return holder;
+    }
+
+    private boolean acquire(String name, LocalDateTime now, LocalDateTime lockUntil) {
+        try {
+            if (lockRepository.claim(name, holder, lockUntil, now) == 1) return true;
+            if (lockRepository.existsById(name)) return false;
+            lockRepository.insert(name, holder, lockUntil, now);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false; // Another instance created it first
+        } catch (Exception e) {
+            log.warn("Could not take scheduler lock {}, skipping this run: {}", name, e.getMessage());
+            return false;
+        }
+    }
+}
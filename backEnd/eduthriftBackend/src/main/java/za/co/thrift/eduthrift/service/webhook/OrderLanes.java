@@ -0,0 +1,62 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.*;
+
+/**
+ * A fixed set of single-threaded lanes. Work is assigned to a lane by hashing its key,
+ * so tasks with the same key run one at a time in submission order, while tasks with
+ * different keys spread over all lanes and run in parallel.
+ *
+ * <p>The ordering holds within this JVM only: another instance with its own lanes may
+ * run a task for the same key at the same time.
+ *
+ * <p>Each lane's backlog is published as {@code <name>.lane.depth{lane}}.
+ */
+class OrderLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    OrderLanes(String name, int laneCount, MeterRegistry meterRegistry) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = name + "-lane-" + i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            lanes[i] = lane;
+            Gauge.builder(name + ".lane.depth", lane, l -> l.getQueue().size() + l.getActiveCount())
+                    .tag("lane", String.valueOf(i))
+                    .description("Tasks queued or running on the lane")
+                    .register(meterRegistry);
+        }
+    }
+
+    Future<?> submit(String key, Runnable task) {
+        return lanes[laneOf(key)].submit(task);
+    }
+
+    /** Tasks queued or running on the lane {@code key} maps to. */
+    int depth(String key) {
+        ThreadPoolExecutor lane = lanes[laneOf(key)];
+        return lane.getQueue().size() + lane.getActiveCount();
+    }
+
+    int laneOf(String key) {
+        // Spread the hash so keys that differ only in their last characters don't cluster
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h * 0x9E3779B9, lanes.length);
+    }
+
+    void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.EscrowService;
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Applies PUDO locker events received on {@code /webhooks/pudo}.
+ *
+ * <p>When the buyer collects from the locker we confirm delivery, which calls TradeSafe
+ * allocationAcceptDelivery and so releases funds to the seller.
+ */
+@Service
+public class PudoEventProcessor implements WebhookProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(PudoEventProcessor.class);
+
+    private final OrderRepository orderRepository;
+    private final EscrowService escrowService;
+    private final OrderStateMachine orderStateMachine;
+
+    public PudoEventProcessor(OrderRepository orderRepository, EscrowService escrowService,
+                              OrderStateMachine orderStateMachine) {
+        this.orderRepository = orderRepository;
+        this.escrowService = escrowService;
+        this.orderStateMachine = orderStateMachine;
+    }
+
+    public static String trackingNumber(Map<String, Object> payload) {
+        return WebhookPayloads.field(payload, "waybill_number", "tracking_number", "parcel_number", "reference");
+    }
+
+    public static String status(Map<String, Object> payload) {
+        return WebhookPayloads.field(payload, "status", "event", "event_type", "parcel_status");
+    }
+
+    @Override
+    public InboundWebhookEvent.Source source() {
+        return InboundWebhookEvent.Source.PUDO;
+    }
+
+    @Override
+    public String orderNumber(Map<String, Object> payload) {
+        String trackingNumber = trackingNumber(payload);
+        return trackingNumber != null ? orderRepository.findOrderNumberByTrackingNumber(trackingNumber).orElse(null) : null;
+    }
+
+    @Override
+    public String eventKey(Map<String, Object> payload) {
+        String trackingNumber = trackingNumber(payload);
+        String status = status(payload);
+        return trackingNumber != null && status != null ? trackingNumber + ":" + status.toUpperCase() : null;
+    }
+
+    @Override
+    public void process(Map<String, Object> payload) {
+        String trackingNumber = trackingNumber(payload);
+        String status = status(payload);
+        if (trackingNumber == null || status == null) return;
+
+        Optional<Order> orderOpt = orderRepository.findByTrackingNumber(trackingNumber);
+        if (orderOpt.isEmpty()) {
+            log.info("PUDO event {} for unknown tracking number {} ignored", status, trackingNumber);
+            return;
+        }
+        Order order = orderOpt.get();
+
+        switch (status.toUpperCase()) {
+            case "COLLECTED", "DELIVERED", "PARCEL_COLLECTED", "COLLECTION_COMPLETED" -> {
+                // Buyer collected from locker — run the full escrow release state machine
+                if (escrowService.tryConfirmDelivery(order) == OrderStateMachine.Result.REJECTED) {
+                    log.info("PUDO collection for order {} not applied", order.getOrderNumber());
+                }
+            }
+            case "AT_LOCKER", "READY_FOR_COLLECTION" -> {
+                // Item arrived at locker — update status, reset the 72h window from now,
+                // and email the buyer so they know to collect.
+                if (applied(order, OrderEvent.ARRIVED_AT_LOCKER)) {
+                    escrowService.sendItemReadyForCollectionEmail(order);
+                }
+            }
+            // Item en route — update status, leave timer unchanged
+            case "IN_TRANSIT", "PARCEL_RECEIVED" -> applied(order, OrderEvent.SHIPPED);
+            // Unrecognised event — nothing to do
+            default -> { }
+        }
+    }
+
+    /** Courier events can arrive late or twice; those leave the order as it is. */
+    private boolean applied(Order order, OrderEvent event) {
+        return orderStateMachine.tryApply(order, event) == OrderStateMachine.Result.APPLIED;
+    }
+}
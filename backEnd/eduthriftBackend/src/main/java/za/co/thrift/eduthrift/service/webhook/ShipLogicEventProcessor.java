@@ -0,0 +1,117 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.EscrowService;
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Applies ShipLogic (TCG/CourierGuy) tracking events received on {@code /webhooks/shiplogic}.
+ *
+ * <p>On delivery confirmation we call TradeSafe allocationAcceptDelivery to release funds
+ * to the seller — mirroring what {@link PudoEventProcessor} does for locker orders.
+ */
+@Service
+public class ShipLogicEventProcessor implements WebhookProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ShipLogicEventProcessor.class);
+
+    private final OrderRepository orderRepository;
+    private final EscrowService escrowService;
+    private final OrderStateMachine orderStateMachine;
+
+    public ShipLogicEventProcessor(OrderRepository orderRepository, EscrowService escrowService,
+                                   OrderStateMachine orderStateMachine) {
+        this.orderRepository = orderRepository;
+        this.escrowService = escrowService;
+        this.orderStateMachine = orderStateMachine;
+    }
+
+    public static String shipmentId(Map<String, Object> payload) {
+        return WebhookPayloads.field(payload, "id", "shipment_id");
+    }
+
+    public static String trackingRef(Map<String, Object> payload) {
+        return WebhookPayloads.field(payload, "short_tracking_reference", "tracking_reference", "customer_reference");
+    }
+
+    public static String status(Map<String, Object> payload) {
+        return WebhookPayloads.field(payload, "status", "event", "event_type");
+    }
+
+    @Override
+    public InboundWebhookEvent.Source source() {
+        return InboundWebhookEvent.Source.SHIPLOGIC;
+    }
+
+    @Override
+    public String orderNumber(Map<String, Object> payload) {
+        String shipmentId = shipmentId(payload);
+        String trackingRef = trackingRef(payload);
+        Optional<String> orderNumber = Optional.empty();
+        if (shipmentId != null) {
+            orderNumber = orderRepository.findOrderNumberByTcgShipmentId(shipmentId);
+        }
+        if (orderNumber.isEmpty() && trackingRef != null) {
+            orderNumber = orderRepository.findOrderNumberByTrackingNumber(trackingRef)
+                    .or(() -> Optional.of(trackingRef)); // customer_reference is our order number
+        }
+        return orderNumber.orElse(null);
+    }
+
+    @Override
+    public String eventKey(Map<String, Object> payload) {
+        String shipment = shipmentId(payload) != null ? shipmentId(payload) : trackingRef(payload);
+        String status = status(payload);
+        return shipment != null && status != null ? shipment + ":" + status.toLowerCase() : null;
+    }
+
+    @Override
+    public void process(Map<String, Object> payload) {
+        String shipmentId = shipmentId(payload);
+        String trackingRef = trackingRef(payload);
+        String status = status(payload);
+        if (status == null) return;
+
+        // Locate the order by TCG shipment ID first, then by tracking number or order number
+        Optional<Order> orderOpt = Optional.empty();
+        if (shipmentId != null) {
+            orderOpt = orderRepository.findByTcgShipmentId(shipmentId);
+        }
+        if (orderOpt.isEmpty() && trackingRef != null) {
+            orderOpt = orderRepository.findByTrackingNumber(trackingRef);
+            if (orderOpt.isEmpty()) {
+                orderOpt = orderRepository.findByOrderNumber(trackingRef);
+            }
+        }
+        if (orderOpt.isEmpty()) {
+            log.info("ShipLogic event {} for unknown shipment {} / {} ignored", status, shipmentId, trackingRef);
+            return;
+        }
+        Order order = orderOpt.get();
+
+        switch (status.toLowerCase()) {
+            case "delivered", "delivery-confirmed" -> {
+                if (escrowService.tryConfirmDelivery(order) == OrderStateMachine.Result.REJECTED) {
+                    log.info("ShipLogic delivery for order {} not applied", order.getOrderNumber());
+                }
+            }
+            case "in-transit", "out-for-delivery", "collected", "collection-assigned" -> applied(order, OrderEvent.SHIPPED);
+            case "ready-for-pickup" -> applied(order, OrderEvent.ARRIVED);
+            default -> { }
+        }
+    }
+
+    /** Courier events can arrive late or twice; those leave the order as it is. */
+    private boolean applied(Order order, OrderEvent event) {
+        return orderStateMachine.tryApply(order, event) == OrderStateMachine.Result.APPLIED;
+    }
+}
@@ -0,0 +1,177 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.ScheduledAction;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.OrderExpiryService;
+import za.co.thrift.eduthrift.service.ShipmentBookingService;
+import za.co.thrift.eduthrift.service.order.OrderEvent;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+import za.co.thrift.eduthrift.service.scheduling.ScheduledActionService;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Applies TradeSafe transaction state changes (funds received, delivery accepted, …)
+ * received on {@code /tradesafe/callback}.
+ *
+ * <p>FUNDS_RECEIVED schedules a BOOK_SHIPMENT action in the same transaction as the
+ * order update rather than calling TCG and TradeSafe here: this transaction is retried
+ * on failure, and a retry must not book a second shipment (see
+ * {@link ShipmentBookingService}). Notifications are queued in the same transaction as
+ * the order update.
+ */
+@Service
+public class TradeSafeCallbackProcessor implements WebhookProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeSafeCallbackProcessor.class);
+
+    private final ShipmentBookingService shipmentBookingService;
+    private final ScheduledActionService scheduledActionService;
+    private final OrderRepository orderRepository;
+    private final OutboxService outboxService;
+    private final OrderExpiryService orderExpiryService;
+    private final OrderStateMachine orderStateMachine;
+
+    public TradeSafeCallbackProcessor(ShipmentBookingService shipmentBookingService,
+                                      ScheduledActionService scheduledActionService,
+                                      OrderRepository orderRepository,
+                                      OutboxService outboxService,
+                                      OrderExpiryService orderExpiryService,
+                                      OrderStateMachine orderStateMachine) {
+        this.shipmentBookingService = shipmentBookingService;
+        this.scheduledActionService = scheduledActionService;
+        this.orderRepository = orderRepository;
+        this.outboxService = outboxService;
+        this.orderExpiryService = orderExpiryService;
+        this.orderStateMachine = orderStateMachine;
+    }
+
+    /**
+     * TradeSafe wraps the transaction data under a "data" key:
+     * { "url": "...", "data": { "id": "...", "state": "...", "reference": "..." } }
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> transactionData(Map<String, Object> payload) {
+        return payload.get("data") instanceof Map
+                ? (Map<String, Object>) payload.get("data")
+                : payload; // fall back to top-level for forward-compatibility
+    }
+
+    @Override
+    public InboundWebhookEvent.Source source() {
+        return InboundWebhookEvent.Source.TRADESAFE;
+    }
+
+    @Override
+    public String orderNumber(Map<String, Object> payload) {
+        Map<String, Object> data = transactionData(payload);
+        return orderRepository.findOrderNumberByTradeSafeTransactionId((String) data.get("id"))
+                .orElse(data.get("reference") instanceof String reference ? reference : null);
+    }
+
+    @Override
+    public String eventKey(Map<String, Object> payload) {
+        Map<String, Object> data = transactionData(payload);
+        return data.get("id") instanceof String id && data.get("state") instanceof String state
+                ? id + ":" + state : null;
+    }
+
+    @Override
+    @Transactional
+    public void process(Map<String, Object> payload) {
+        Map<String, Object> data = transactionData(payload);
+        String transactionId = (String) data.get("id");
+        String state = (String) data.get("state");
+        String reference = (String) data.get("reference");
+
+        // Look up order by TradeSafe transaction ID first, then fall back to reference
+        Optional<Order> orderOpt = orderRepository.findByTradeSafeTransactionId(transactionId);
+        if (orderOpt.isEmpty() && reference != null) {
+            orderOpt = orderRepository.findByOrderNumber(reference);
+        }
+        if (orderOpt.isEmpty()) {
+            log.info("TradeSafe callback for unknown transaction {} ignored", transactionId);
+            return;
+        }
+
+        Order order = orderOpt.get();
+        OrderEvent event = switch (state) {
+            case "FUNDS_RECEIVED"        -> OrderEvent.PROVIDER_FUNDS_HELD;
+            case "DELIVERY_ACCEPTED"     -> OrderEvent.DELIVERY_CONFIRMED;
+            case "COMPLETED"             -> OrderEvent.PROVIDER_RELEASED;
+            case "DISPUTED"              -> OrderEvent.DISPUTE_OPENED;
+            case "CANCELLED", "DECLINED" -> OrderEvent.PAYMENT_FAILED;
+            case "REFUNDED"              -> OrderEvent.PROVIDER_REFUNDED;
+            default -> null; // Unknown state — ignore
+        };
+        if (event == null) return;
+        if (event == OrderEvent.PAYMENT_FAILED) {
+            orderExpiryService.cancelOrderAndRestoreItem(order, "Payment was cancelled or declined via TradeSafe");
+            return;
+        }
+        // Redelivered or out-of-order states are acknowledged without side effects
+        if (orderStateMachine.tryApply(order, event) != OrderStateMachine.Result.APPLIED) return;
+
+        switch (event) {
+            case PROVIDER_FUNDS_HELD -> fundsHeld(order);
+            case DELIVERY_CONFIRMED -> {
+                outboxService.push(
+                        order.getSeller().getFcmToken(),
+                        "Delivery Confirmed",
+                        "The buyer has confirmed receipt of order " + order.getOrderNumber() + ". Funds will be released to you shortly."
+                );
+            }
+            case PROVIDER_RELEASED -> {
+                outboxService.push(
+                        order.getSeller().getFcmToken(),
+                        "Payment Released",
+                        "Funds for order " + order.getOrderNumber() + " have been released to your account."
+                );
+            }
+            case DISPUTE_OPENED -> {
+                outboxService.push(
+                        order.getBuyer().getFcmToken(),
+                        "Dispute Opened",
+                        "A dispute has been opened for order " + order.getOrderNumber() + ". Our team will review within 24 hours."
+                );
+                outboxService.push(
+                        order.getSeller().getFcmToken(),
+                        "Dispute Opened",
+                        "A dispute has been opened for order " + order.getOrderNumber() + ". Funds remain frozen until resolved."
+                );
+            }
+            case PROVIDER_REFUNDED -> {
+                outboxService.push(
+                        order.getBuyer().getFcmToken(),
+                        "Refund Processed",
+                        "Your refund for order " + order.getOrderNumber() + " has been processed."
+                );
+            }
+            default -> { }
+        }
+    }
+
+    private void fundsHeld(Order order) {
+        outboxService.push(
+                order.getBuyer().getFcmToken(),
+                "Payment Received",
+                "Your payment for order " + order.getOrderNumber() + " is held in escrow. The seller will ship your item shortly."
+        );
+
+        // Book the TCG shipment outside this retried transaction; the seller hears once it is booked
+        if (ShipmentBookingService.needsShipment(order)) {
+            scheduledActionService.schedule(ScheduledAction.Kind.BOOK_SHIPMENT, order.getId(), LocalDateTime.now());
+        } else {
+            shipmentBookingService.notifySeller(order, null);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.repository.InboundWebhookEventRepository;
+import za.co.thrift.eduthrift.service.IdempotencyService;
+import za.co.thrift.eduthrift.service.WebhookLogService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Processes queued {@link InboundWebhookEvent}s, handing each to the
+ * {@link WebhookProcessor} for its source.
+ *
+ * <p>Events run on {@code webhooks.workers} single-threaded lanes chosen by hashing the
+ * event's order number (see {@link OrderLanes}). A TradeSafe callback and a courier
+ * event for the same order therefore never load and save the order at the same time,
+ * and run in the order they were received, while different orders run in parallel.
+ * Events that match no order are spread by id.
+ *
+ * <p>A drain starts as soon as a webhook has been accepted, and every few seconds to
+ * pick up retries and events accepted by other instances. Up to
+ * {@value #EVENTS_PER_LANE} events per lane are in flight at once; a drain claims more
+ * whenever any of them finishes rather than waiting for a whole batch. An event that
+ * lands on a lane already holding that many takes no slot, so a slow or stuck lane
+ * cannot use up the window and hold up the others. Claims use {@code SKIP LOCKED} (see
+ * {@link WebhookInbox#claimDue}), so instances never process the same event concurrently.
+ *
+ * <p>The lanes only serialize an order's events within this JVM. Two instances can
+ * each claim an event for the same order and apply them at the same time or out of
+ * order; the order row's own locking and the state machine's transition checks are
+ * what keep that safe. Strict per-order ordering across instances would need the claim
+ * query to skip events with an earlier one for the same order still pending.
+ *
+ * <p>An event whose {@linkplain WebhookProcessor#eventKey key} was already processed,
+ * typically a redelivery queued before the first copy finished, is skipped. The key is
+ * recorded with {@link IdempotencyService} in the same transaction the processor
+ * applies the event in, so the two commit or roll back together.
+ *
+ * <p>A failed event is retried with exponential backoff and jitter; after
+ * {@value #MAX_ATTEMPTS} attempts it is parked as DEAD for an admin to look at. Counts
+ * are published as {@code webhooks.inbound{source, result=processed|duplicate|retry|dead}} and
+ * the time from receipt to processing as {@code webhooks.inbound.lag}. The outcome is
+ * also recorded on the request's {@code WebhookLog}.
+ */
+@Service
+public class WebhookDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+    static final int MAX_ATTEMPTS = 10;
+    static final int EVENTS_PER_LANE = 4;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(15);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    private final WebhookInbox inbox;
+    private final InboundWebhookEventRepository eventRepository;
+    private final WebhookLogService webhookLogService;
+    private final IdempotencyService idempotencyService;
+    private final SchedulerLockService schedulerLock;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<InboundWebhookEvent.Source, WebhookProcessor> processors =
+            new EnumMap<>(InboundWebhookEvent.Source.class);
+
+    private final int batchSize;
+    /** One permit per event that may be claimed but not yet finished. */
+    private final Semaphore inFlight;
+    private final OrderLanes lanes;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "webhook-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final Timer lag;
+
+    /** What became of a webhook handed to {@link #replay}. */
+    public enum Outcome { PROCESSED, DUPLICATE }
+
+    public WebhookDispatcher(WebhookInbox inbox,
+                             InboundWebhookEventRepository eventRepository,
+                             List<WebhookProcessor> processors,
+                             WebhookLogService webhookLogService,
+                             IdempotencyService idempotencyService,
+                             SchedulerLockService schedulerLock,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${webhooks.workers:4}") int laneCount) {
+        this.inbox = inbox;
+        this.eventRepository = eventRepository;
+        this.webhookLogService = webhookLogService;
+        this.idempotencyService = idempotencyService;
+        this.schedulerLock = schedulerLock;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        for (WebhookProcessor processor : processors) {
+            this.processors.put(processor.source(), processor);
+        }
+        this.batchSize = laneCount * EVENTS_PER_LANE;
+        this.inFlight = new Semaphore(batchSize);
+        this.lanes = new OrderLanes("webhooks", laneCount, meterRegistry);
+        this.lag = Timer.builder("webhooks.inbound.lag")
+                .description("Time from receiving a webhook to processing it")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReceived(WebhookInbox.Received event) {
+        wake();
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    public void poll() {
+        wake();
+    }
+
+    // Daily at 03:40 — processed events are only kept for troubleshooting
+    @Scheduled(cron = "0 40 3 * * *")
+    public void purgeProcessed() {
+        schedulerLock.runExclusively("webhook-purge", Duration.ofMinutes(10), Duration.ofMinutes(5), () -> {
+            int deleted = eventRepository.deleteProcessedBefore(LocalDateTime.now().minus(RETENTION));
+            if (deleted > 0) log.info("Purged {} processed inbound webhooks", deleted);
+        });
+    }
+
+    /**
+     * Runs a webhook through the same lane, duplicate check and processor as a queued
+     * event, for {@link WebhookReplayService}. Completes exceptionally if processing
+     * fails; nothing is retried.
+     *
+     * @param fallbackLaneKey lane key to use if the webhook matches no order
+     */
+    public CompletableFuture<Outcome> replay(InboundWebhookEvent.Source source, Map<String, Object> payload,
+                                             String fallbackLaneKey) {
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        lanes.submit(laneKey(source, payload, fallbackLaneKey), () -> {
+            try {
+                result.complete(apply(source, payload));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown();
+        lanes.shutdown();
+    }
+
+    /** Coalesces wake-ups: at most one drain is queued behind the one running. */
+    private void wake() {
+        if (!drainScheduled.compareAndSet(false, true)) return;
+        try {
+            dispatcher.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            drainScheduled.set(false); // shutting down
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        try {
+            int free;
+            List<InboundWebhookEvent> batch;
+            do {
+                // Wait for one event to finish, then claim as many as there are free slots
+                inFlight.acquire();
+                free = 1 + inFlight.drainPermits();
+                try {
+                    batch = inbox.claimDue(free);
+                } finally {
+                    inFlight.release(free);
+                }
+                // Claimed in arrival order, so each lane gets its order's events in arrival order
+                for (InboundWebhookEvent event : batch) {
+                    String key = laneKey(event);
+                    // Behind a full lane it waits anyway; holding a slot there would starve the other lanes
+                    boolean slotted = lanes.depth(key) < EVENTS_PER_LANE;
+                    if (slotted) inFlight.acquire();
+                    try {
+                        lanes.submit(key, () -> {
+                            try {
+                                process(event);
+                            } finally {
+                                if (slotted) inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        if (slotted) inFlight.release(); // shutting down; the claim lease expires and it is retried
+                        return;
+                    }
+                }
+            } while (batch.size() == free);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Webhook drain failed: {}", e.getMessage());
+        }
+    }
+
+    private String laneKey(InboundWebhookEvent event) {
+        try {
+            return laneKey(event.getSource(), inbox.readPayload(event), "event-" + event.getId());
+        } catch (Exception e) {
+            return "event-" + event.getId(); // unreadable payload — process() reports it
+        }
+    }
+
+    private String laneKey(InboundWebhookEvent.Source source, Map<String, Object> payload, String fallback) {
+        try {
+            WebhookProcessor processor = processors.get(source);
+            String orderNumber = processor != null ? processor.orderNumber(payload) : null;
+            if (orderNumber != null) return orderNumber;
+        } catch (Exception e) {
+            // Lookup failure — processing reports it
+        }
+        return fallback;
+    }
+
+    private void process(InboundWebhookEvent event) {
+        try {
+            Outcome outcome = apply(event.getSource(), inbox.readPayload(event));
+            eventRepository.markProcessed(event.getId(), LocalDateTime.now());
+            webhookLogService.markProcessed(event.getAuditRequestId());
+            count(event, outcome == Outcome.DUPLICATE ? "duplicate" : "processed");
+            lag.record(Duration.between(event.getReceivedAt(), LocalDateTime.now()));
+        } catch (Exception e) {
+            fail(event, e);
+        }
+    }
+
+    private Outcome apply(InboundWebhookEvent.Source source, Map<String, Object> payload) {
+        WebhookProcessor processor = processors.get(source);
+        if (processor == null) {
+            throw new IllegalStateException("No processor for " + source + " webhooks");
+        }
+        String eventKey = processor.eventKey(payload);
+        if (eventKey != null && idempotencyService.isDuplicate(source.name(), eventKey)) {
+            return Outcome.DUPLICATE;
+        }
+        // Claim the key, then apply; a failure or crash before commit forgets both
+        return transactionTemplate.execute(status -> {
+            if (eventKey != null && !idempotencyService.markProcessed(source.name(), eventKey)) {
+                return Outcome.DUPLICATE; // a concurrent copy committed first
+            }
+            processor.process(payload);
+            return Outcome.PROCESSED;
+        });
+    }
+
+    private void fail(InboundWebhookEvent event, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (error.length() > 500) error = error.substring(0, 500);
+        if (event.getAttempts() >= MAX_ATTEMPTS) {
+            eventRepository.markDead(event.getId(), error);
+            webhookLogService.markFailed(event.getAuditRequestId(), error);
+            count(event, "dead");
+            log.error("Inbound {} webhook {} gave up after {} attempts: {}",
+                    event.getSource(), event.getId(), event.getAttempts(), error);
+        } else {
+            Duration delay = backoff(event.getAttempts());
+            eventRepository.markForRetry(event.getId(), LocalDateTime.now().plus(delay), error);
+            count(event, "retry");
+            log.warn("Inbound {} webhook {} attempt {} failed, retrying in {}s: {}",
+                    event.getSource(), event.getId(), event.getAttempts(), delay.toSeconds(), error);
+        }
+    }
+
+    /** 15 s, 30 s, 1 min, … capped at an hour, ±20 % so events that failed together spread out. */
+    static Duration backoff(int attempts) {
+        long millis = Math.min(BASE_BACKOFF.toMillis() << Math.min(attempts - 1, 20), MAX_BACKOFF.toMillis());
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofMillis((long) (millis * jitter));
+    }
+
+    private void count(InboundWebhookEvent event, String result) {
+        Counter.builder("webhooks.inbound")
+                .tag("source", event.getSource().name())
+                .tag("result", result)
+                .description("Inbound webhooks processed by outcome")
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,105 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.repository.InboundWebhookEventRepository;
+import za.co.thrift.eduthrift.service.IdempotencyService;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ingestion side of the webhook pipeline: stores verified webhooks as
+ * {@link InboundWebhookEvent} rows so the controller can acknowledge the sender
+ * straight away. {@link WebhookDispatcher} processes them after the insert commits.
+ * Redeliveries of events already processed are recognised up front and not queued.
+ */
+@Service
+public class WebhookInbox {
+
+    /** How long a claimed event is hidden from other dispatchers while it is processed. */
+    static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+
+    /** Published on accept; the dispatcher starts processing once the transaction commits. */
+    record Received() {}
+
+    private final InboundWebhookEventRepository eventRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IdempotencyService idempotencyService;
+    private final Map<InboundWebhookEvent.Source, WebhookProcessor> processors =
+            new EnumMap<>(InboundWebhookEvent.Source.class);
+
+    public WebhookInbox(InboundWebhookEventRepository eventRepository,
+                        ObjectMapper objectMapper,
+                        ApplicationEventPublisher eventPublisher,
+                        IdempotencyService idempotencyService,
+                        List<WebhookProcessor> processors) {
+        this.eventRepository = eventRepository;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.idempotencyService = idempotencyService;
+        for (WebhookProcessor processor : processors) {
+            this.processors.put(processor.source(), processor);
+        }
+    }
+
+    /**
+     * Whether the webhook repeats one that has already been processed, so the sender can
+     * be acknowledged without queueing it again. Usually answered from memory.
+     */
+    public boolean isDuplicate(InboundWebhookEvent.Source source, Map<String, Object> payload) {
+        WebhookProcessor processor = processors.get(source);
+        String eventKey = processor != null ? processor.eventKey(payload) : null;
+        return eventKey != null && idempotencyService.isDuplicate(source.name(), eventKey);
+    }
+
+    /**
+     * Queues a verified webhook body for processing and returns the event's id.
+     * {@code auditRequestId} links it to its {@code WebhookLog}, which is resolved when
+     * processing finishes.
+     */
+    @Transactional
+    public Long accept(InboundWebhookEvent.Source source, String rawBody, String auditRequestId) {
+        InboundWebhookEvent event = new InboundWebhookEvent();
+        event.setSource(source);
+        event.setPayload(rawBody);
+        event.setAuditRequestId(auditRequestId);
+        eventRepository.save(event);
+        eventPublisher.publishEvent(new Received());
+        return event.getId();
+    }
+
+    /**
+     * Claims up to {@code limit} due events: each is pushed {@link #CLAIM_LEASE} into the
+     * future and its attempt counted, so a dispatcher that dies mid-run only delays it.
+     */
+    @Transactional
+    public List<InboundWebhookEvent> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<InboundWebhookEvent> due = eventRepository.findDueForUpdate(now, PageRequest.of(0, limit));
+        for (InboundWebhookEvent event : due) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plus(CLAIM_LEASE));
+        }
+        return due;
+    }
+
+    Map<String, Object> readPayload(InboundWebhookEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import java.util.Map;
+
+/** Field lookups shared by the webhook controllers and processors. */
+public final class WebhookPayloads {
+
+    private WebhookPayloads() {}
+
+    /**
+     * Tries each key in order on both the top-level payload and a nested "data" object;
+     * senders nest fields differently across API versions.
+     */
+    @SuppressWarnings("unchecked")
+    public static String field(Map<String, Object> payload, String... keys) {
+        for (String key : keys) {
+            Object val = payload.get(key);
+            if (val instanceof String s && !s.isBlank()) return s;
+        }
+        Object nested = payload.get("data");
+        if (nested instanceof Map<?, ?> dataMap) {
+            for (String key : keys) {
+                Object val = ((Map<String, Object>) dataMap).get(key);
+                if (val instanceof String s && !s.isBlank()) return s;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.service.IdempotencyService;
+
+import java.util.Map;
+
+/**
+ * Applies a queued webhook from one {@link InboundWebhookEvent.Source} to its order.
+ *
+ * <p>Called by {@link WebhookDispatcher} off the request thread, inside the transaction
+ * that records the event's key with {@link IdempotencyService}. Throw to have the event
+ * retried; that rolls the key back too. An exception caught after it crossed a
+ * {@code @Transactional} boundary still marks that transaction rollback-only, so use
+ * non-throwing variants for outcomes the processor means to ignore.
+ */
+public interface WebhookProcessor {
+
+    InboundWebhookEvent.Source source();
+
+    /**
+     * The order number the event is for, or null if no order matches. Events for the
+     * same order are processed one at a time, in the order they were received.
+     */
+    String orderNumber(Map<String, Object> payload);
+
+    /**
+     * What identifies this event across redeliveries, such as a transaction id and the
+     * state it reports, or null if the payload has nothing to go on. Events already
+     * processed under the same key are acknowledged without being applied again.
+     */
+    String eventKey(Map<String, Object> payload);
+
+    void process(Map<String, Object> payload);
+}
@@ -0,0 +1,370 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.entity.WebhookLog;
+import za.co.thrift.eduthrift.repository.InboundWebhookEventRepository;
+import za.co.thrift.eduthrift.repository.WebhookLogRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays webhooks that were verified but never processed — ones that failed before
+ * the inbox existed, or were parked DEAD by {@link WebhookDispatcher} — so an admin can
+ * recover them once the cause is fixed.
+ *
+ * <p>A run streams matching {@link WebhookLog} rows in id-ordered pages of
+ * {@value #PAGE_SIZE} and hands each payload to {@link WebhookDispatcher#replay}, which
+ * uses the same order lanes, duplicate check and processors as live traffic. Up to
+ * {@code concurrency} replays are in flight at once, started no faster than
+ * {@code ratePerSecond}, so a large backlog cannot crowd out live webhooks. Rows whose
+ * event is still queued for a retry are left alone.
+ *
+ * <p>A replayed row is marked processed (a duplicate counts: its effect is already
+ * there) and its DEAD inbound event closed; a failure is recorded as the row's failure
+ * reason and the row stays eligible for the next run. A dry run only reports what would
+ * happen. Outcomes are counted in {@code webhooks.replay{source, result}}.
+ *
+ * <p>One run at a time per instance; start runs from one instance only.
+ */
+@Service
+public class WebhookReplayService {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookReplayService.class);
+
+    static final int PAGE_SIZE = 200;
+    private static final int DEFAULT_RATE = 20;
+    private static final int MAX_RATE = 500;
+    private static final int MAX_CONCURRENCY = 64;
+    private static final int MAX_FAILURES_SHOWN = 20;
+    // Default end of the window — younger webhooks may still be on their way through
+    private static final Duration DEFAULT_MIN_AGE = Duration.ofMinutes(10);
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    public enum Status { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    /** Which rows to replay and how fast; null fields take their defaults. */
+    public record Options(String provider, LocalDateTime from, LocalDateTime to, boolean dryRun,
+                          Integer ratePerSecond, Integer concurrency, Integer limit) {}
+
+    private final WebhookLogRepository webhookLogRepository;
+    private final InboundWebhookEventRepository eventRepository;
+    private final WebhookDispatcher dispatcher;
+    private final WebhookInbox inbox;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int defaultConcurrency;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "webhook-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<Run> latest = new AtomicReference<>();
+
+    public WebhookReplayService(WebhookLogRepository webhookLogRepository,
+                                InboundWebhookEventRepository eventRepository,
+                                WebhookDispatcher dispatcher,
+                                WebhookInbox inbox,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${webhooks.workers:4}") int laneCount) {
+        this.webhookLogRepository = webhookLogRepository;
+        this.eventRepository = eventRepository;
+        this.dispatcher = dispatcher;
+        this.inbox = inbox;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.defaultConcurrency = laneCount;
+    }
+
+    /**
+     * Starts a run in the background and returns its initial state.
+     *
+     * @throws IllegalArgumentException if the provider is not one webhooks come from
+     * @throws IllegalStateException    if a run is already in progress
+     */
+    public Map<String, Object> start(Options options) {
+        String provider = options.provider() != null && !options.provider().isBlank()
+                ? options.provider().trim().toUpperCase() : null;
+        if (provider != null && source(provider) == null) {
+            throw new IllegalArgumentException("Unknown webhook provider: " + provider);
+        }
+        LocalDateTime from = options.from() != null ? options.from() : EARLIEST;
+        LocalDateTime to = options.to() != null ? options.to() : LocalDateTime.now().minus(DEFAULT_MIN_AGE);
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        Run run = new Run(provider, from, to, options.dryRun(),
+                clamp(options.ratePerSecond(), DEFAULT_RATE, MAX_RATE),
+                clamp(options.concurrency(), defaultConcurrency, MAX_CONCURRENCY),
+                options.limit() != null && options.limit() > 0 ? options.limit() : 0);
+
+        Run previous = latest.get();
+        if (previous != null && previous.status == Status.RUNNING || !latest.compareAndSet(previous, run)) {
+            throw new IllegalStateException("A webhook replay is already running");
+        }
+        runner.execute(() -> execute(run));
+        return run.snapshot();
+    }
+
+    /** The running or most recent run, or null if there has been none since startup. */
+    public Map<String, Object> latest() {
+        Run run = latest.get();
+        return run != null ? run.snapshot() : null;
+    }
+
+    /** Stops the running run after the replays in flight finish; false if none is running. */
+    public boolean cancel() {
+        Run run = latest.get();
+        if (run == null || run.status != Status.RUNNING) return false;
+        run.cancelled = true;
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancel();
+        runner.shutdown();
+    }
+
+    private void execute(Run run) {
+        log.info("Webhook replay {} started: provider={}, from={}, to={}, dryRun={}, rate={}/s, concurrency={}",
+                run.id, run.provider, run.from, run.to, run.dryRun, run.ratePerSecond, run.concurrency);
+        Semaphore inFlight = new Semaphore(run.concurrency);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / run.ratePerSecond;
+        long nextStart = System.nanoTime();
+        try {
+            long afterId = 0;
+            List<WebhookLog> page;
+            scan:
+            do {
+                page = webhookLogRepository.findStuckAfter(afterId, run.provider, run.from, run.to,
+                        PageRequest.of(0, PAGE_SIZE));
+                for (WebhookLog row : page) {
+                    if (run.cancelled || run.limit > 0 && run.scanned.get() >= run.limit) break scan;
+                    afterId = row.getId();
+                    run.scanned.incrementAndGet();
+                    if (run.dryRun) {
+                        inspect(run, row);
+                        continue;
+                    }
+                    inFlight.acquire();
+                    // Pace starts evenly; a slow stretch does not earn a burst afterwards
+                    long wait = nextStart - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                    nextStart = Math.max(nextStart, System.nanoTime()) + intervalNanos;
+                    if (!replay(run, row, inFlight)) inFlight.release();
+                }
+            } while (page.size() == PAGE_SIZE);
+            inFlight.acquire(run.concurrency); // wait for the last replays
+            run.finish(run.cancelled ? Status.CANCELLED : Status.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish(Status.CANCELLED, "Interrupted");
+        } catch (Exception e) {
+            log.error("Webhook replay {} failed: {}", run.id, e.getMessage(), e);
+            run.finish(Status.FAILED, e.getMessage());
+        }
+        log.info("Webhook replay {} {} after {} rows: {}", run.id, run.status.name().toLowerCase(),
+                run.scanned.get(), run.counts());
+    }
+
+    /** Dry run: what a replay of this row would do, without doing it. */
+    private void inspect(Run run, WebhookLog row) {
+        InboundWebhookEvent.Source source = source(row.getProvider());
+        if (source == null) {
+            run.count(row, "unsupported");
+            return;
+        }
+        try {
+            run.count(row, inbox.isDuplicate(source, readPayload(row)) ? "duplicate" : "processed");
+        } catch (Exception e) {
+            run.failed(row, reason(e));
+        }
+    }
+
+    /** Starts one replay; returns false if nothing was started, so the caller frees its slot. */
+    private boolean replay(Run run, WebhookLog row, Semaphore inFlight) {
+        InboundWebhookEvent.Source source = source(row.getProvider());
+        if (source == null) {
+            run.count(row, "unsupported");
+            return false;
+        }
+        Map<String, Object> payload;
+        try {
+            payload = readPayload(row);
+        } catch (Exception e) {
+            recordFailure(run, row, e);
+            return false;
+        }
+        dispatcher.replay(source, payload, "replay-" + row.getId()).whenComplete((outcome, error) -> {
+            try {
+                if (error != null) {
+                    recordFailure(run, row, error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    LocalDateTime now = LocalDateTime.now();
+                    webhookLogRepository.markReplayed(row.getId(), now);
+                    if (row.getRequestId() != null) eventRepository.markDeadProcessed(row.getRequestId(), now);
+                    run.count(row, outcome == WebhookDispatcher.Outcome.DUPLICATE ? "duplicate" : "processed");
+                }
+            } catch (Exception e) {
+                log.warn("Could not record replay of webhook log {}: {}", row.getId(), e.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        });
+        return true;
+    }
+
+    private void recordFailure(Run run, WebhookLog row, Throwable error) {
+        String reason = reason(error);
+        run.failed(row, reason);
+        String stored = "Replay failed: " + reason;
+        webhookLogRepository.markReplayFailed(row.getId(),
+                stored.length() > 500 ? stored.substring(0, 500) : stored, LocalDateTime.now());
+    }
+
+    private Map<String, Object> readPayload(WebhookLog row) {
+        try {
+            return objectMapper.readValue(row.getRawPayload(), new TypeReference<>() {});
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid JSON payload");
+        }
+    }
+
+    private static InboundWebhookEvent.Source source(String provider) {
+        for (InboundWebhookEvent.Source source : InboundWebhookEvent.Source.values()) {
+            if (source.name().equals(provider)) return source;
+        }
+        return null; // e.g. rows from payment providers no longer in use
+    }
+
+    private static String reason(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static int clamp(Integer value, int defaultValue, int max) {
+        return value == null || value < 1 ? defaultValue : Math.min(value, max);
+    }
+
+    /** Progress of one run; counters are updated from the lanes while the runner scans. */
+    private final class Run {
+
+        private final String id = UUID.randomUUID().toString().substring(0, 8);
+        private final String provider;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final boolean dryRun;
+        private final int ratePerSecond;
+        private final int concurrency;
+        private final int limit;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+
+        private final AtomicLong scanned = new AtomicLong();
+        private final Map<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+        private final Deque<Map<String, Object>> failures = new ConcurrentLinkedDeque<>();
+
+        private volatile boolean cancelled;
+        private volatile Status status = Status.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile long finishedNanos;
+        private volatile String error;
+
+        Run(String provider, LocalDateTime from, LocalDateTime to, boolean dryRun,
+            int ratePerSecond, int concurrency, int limit) {
+            this.provider = provider;
+            this.from = from;
+            this.to = to;
+            this.dryRun = dryRun;
+            this.ratePerSecond = ratePerSecond;
+            this.concurrency = concurrency;
+            this.limit = limit;
+            for (String outcome : List.of("processed", "duplicate", "failed", "unsupported")) {
+                outcomes.put(outcome, new AtomicLong());
+            }
+        }
+
+        void count(WebhookLog row, String outcome) {
+            outcomes.get(outcome).incrementAndGet();
+            if (!dryRun) {
+                Counter.builder("webhooks.replay")
+                        .tag("source", row.getProvider())
+                        .tag("result", outcome)
+                        .description("Replayed webhooks by outcome")
+                        .register(meterRegistry)
+                        .increment();
+            }
+        }
+
+        void failed(WebhookLog row, String reason) {
+            count(row, "failed");
+            if (failures.size() < MAX_FAILURES_SHOWN) {
+                Map<String, Object> failure = new LinkedHashMap<>();
+                failure.put("logId", row.getId());
+                failure.put("provider", row.getProvider());
+                failure.put("orderNumber", row.getOrderNumber());
+                failure.put("receivedAt", row.getCreatedAt());
+                failure.put("reason", reason);
+                failures.add(failure);
+            }
+        }
+
+        void finish(Status status, String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.finishedNanos = System.nanoTime();
+            this.status = status;
+        }
+
+        Map<String, Long> counts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (String outcome : List.of("processed", "duplicate", "failed", "unsupported")) {
+                counts.put(outcome, outcomes.get(outcome).get());
+            }
+            return counts;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Long> counts = counts();
+            long done = counts.values().stream().mapToLong(Long::longValue).sum();
+            double seconds = ((status == Status.RUNNING ? System.nanoTime() : finishedNanos) - startedNanos) / 1e9;
+
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", id);
+            m.put("status", status.name());
+            m.put("dryRun", dryRun);
+            m.put("provider", provider);
+            m.put("from", from);
+            m.put("to", to);
+            m.put("ratePerSecond", ratePerSecond);
+            m.put("concurrency", concurrency);
+            m.put("limit", limit > 0 ? limit : null);
+            m.put("startedAt", startedAt);
+            m.put("finishedAt", finishedAt);
+            m.put("elapsedSeconds", Math.round(seconds * 10) / 10.0);
+            m.put("scanned", scanned.get());
+            m.put("outcomes", counts);
+            m.put("perSecond", seconds > 0 ? Math.round(done / seconds * 10) / 10.0 : 0.0);
+            m.put("failures", new ArrayList<>(failures));
+            m.put("error", error);
+            return m;
+        }
+    }
+}
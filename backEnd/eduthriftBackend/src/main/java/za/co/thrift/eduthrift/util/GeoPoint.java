@@ -0,0 +1,49 @@
+package za.co.thrift.eduthrift.util;
+
+/**
+ * A WGS84 coordinate in decimal degrees.
+ */
+public record GeoPoint(double latitude, double longitude) {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    public GeoPoint {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Coordinate out of range: " + latitude + "," + longitude);
+        }
+    }
+
+    /**
+     * Parses {@code "lat,lng"}.
+     *
+     * @throws IllegalArgumentException if the value is malformed or out of range
+     */
+    public static GeoPoint parse(String value) {
+        if (value == null) throw new IllegalArgumentException("Missing coordinate");
+        int comma = value.indexOf(',');
+        if (comma <= 0) throw new IllegalArgumentException("Expected lat,lng");
+        try {
+            return new GeoPoint(
+                    Double.parseDouble(value.substring(0, comma).trim()),
+                    Double.parseDouble(value.substring(comma + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected lat,lng", e);
+        }
+    }
+
+    /** Great-circle (haversine) distance in kilometres. */
+    public double distanceKm(GeoPoint other) {
+        double dLat = Math.toRadians(other.latitude - latitude);
+        double dLng = Math.toRadians(other.longitude - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(other.latitude))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /** This point snapped to {@code decimals} places, e.g. 2 → about 1 km. */
+    public GeoPoint rounded(int decimals) {
+        double scale = Math.pow(10, decimals);
+        return new GeoPoint(Math.round(latitude * scale) / scale, Math.round(longitude * scale) / scale);
+    }
+}
@@ -0,0 +1,171 @@
+package za.co.thrift.eduthrift.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel for large numbers of coarse deadlines (minutes to hours away,
+ * accurate to one tick).
+ *
+ * <p>The wheel is a ring of {@code wheelSize} buckets, one per tick. A timeout lands in
+ * the bucket its deadline falls in, together with how many full turns of the wheel are
+ * left before it is due. A single worker thread advances one bucket per tick and fires
+ * whatever is due there, so scheduling and cancelling are O(1) and each tick only
+ * touches the timeouts sharing that bucket — nothing ever scans the whole set.
+ *
+ * <p>Due tasks are handed to the supplied {@link Executor} so a slow task never delays
+ * the ticks. Cancelled timeouts are dropped the next time the worker passes their bucket.
+ */
+public class HashedWheelTimer {
+
+    /** Handle to a scheduled task. */
+    public interface Timeout {
+        /** @return true if the task was still pending and will now never run */
+        boolean cancel();
+    }
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final class Entry implements Timeout {
+        final long deadline;
+        final Runnable task;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        long remainingRounds;
+
+        Entry(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+            size.decrementAndGet();
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    /** Only touched by the worker thread. */
+    private final List<List<Entry>> wheel;
+    /** Scheduled but not yet placed in a bucket; drained by the worker each tick. */
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicLong size = new AtomicLong();
+    private final Executor executor;
+    private final Thread worker;
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running = true;
+    /** Ticks completed so far; only written by the worker. */
+    private long tick = 0;
+
+    /**
+     * @param name      worker thread name
+     * @param tick      resolution — a timeout fires at most one tick after its deadline
+     * @param wheelSize number of buckets, rounded up to a power of two; pick roughly the
+     *                  typical delay divided by the tick so most timeouts need a single turn
+     * @param executor  runs due tasks
+     */
+    public HashedWheelTimer(String name, Duration tick, int wheelSize, Executor executor) {
+        if (tick.isNegative() || tick.isZero()) throw new IllegalArgumentException("tick must be positive");
+        this.tickNanos = tick.toNanos();
+        int buckets = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = buckets - 1;
+        this.wheel = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) wheel.add(new ArrayList<>());
+        this.executor = executor;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Runs {@code task} once {@code delay} has elapsed; a zero or negative delay fires on the next tick. */
+    public Timeout schedule(Runnable task, Duration delay) {
+        long deadline = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        Entry entry = new Entry(deadline, task);
+        size.incrementAndGet();
+        incoming.add(entry);
+        return entry;
+    }
+
+    /** Timeouts scheduled and neither fired nor cancelled. */
+    public long size() {
+        return size.get();
+    }
+
+    /** Stops the worker; pending timeouts are abandoned. */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long wakeAt = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while (running && (sleepNanos = wakeAt - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                }
+            }
+            if (!running) return;
+            placeIncoming();
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    private void placeIncoming() {
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            if (entry.isCancelled()) continue;
+            long due = entry.deadline / tickNanos;
+            // Overdue entries go in the current bucket and fire on this tick
+            long slot = Math.max(due, tick);
+            entry.remainingRounds = (slot - tick) / wheel.size();
+            wheel.get((int) (slot & mask)).add(entry);
+        }
+    }
+
+    private void expire(List<Entry> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Entry entry = bucket.get(i);
+            if (entry.isCancelled()) continue;
+            if (entry.remainingRounds > 0) {
+                entry.remainingRounds--;
+                bucket.set(kept++, entry);
+                continue;
+            }
+            if (entry.state.compareAndSet(PENDING, EXPIRED)) {
+                size.decrementAndGet();
+                try {
+                    executor.execute(entry.task);
+                } catch (RuntimeException e) {
+                    // A rejecting (e.g. shut down) executor must not kill the wheel; the task is dropped
+                }
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+}
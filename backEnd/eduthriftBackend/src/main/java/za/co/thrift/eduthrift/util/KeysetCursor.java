@@ -0,0 +1,44 @@
+package za.co.thrift.eduthrift.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset ("seek") pagination over rows ordered by
+ * {@code (created_at DESC, id DESC)}.
+ *
+ * <p>The cursor points at the last row of the previous page. The next page is
+ * every row strictly after it in that order, so page N costs the same as page 1
+ * regardless of how deep the client has scrolled — unlike OFFSET, which makes
+ * MySQL walk and discard all earlier rows.
+ *
+ * <p>Clients must treat the encoded value as opaque. It is base64url so it can
+ * be passed as a query parameter without escaping.
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value was not produced by {@link #encode()}
+     */
+    public static KeysetCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf(SEPARATOR);
+            if (sep <= 0) throw new IllegalArgumentException("Malformed cursor");
+            return new KeysetCursor(
+                    LocalDateTime.parse(raw.substring(0, sep)),
+                    Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
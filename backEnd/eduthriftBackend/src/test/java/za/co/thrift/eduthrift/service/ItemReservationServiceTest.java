@@ -0,0 +1,204 @@
+package za.co.thrift.eduthrift.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import za.co.thrift.eduthrift.entity.Item;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.User;
+import za.co.thrift.eduthrift.repository.ItemRepository;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Races several hundred checkouts from {@value #THREADS} threads against the same
+ * listings on an in-memory database and checks that no unit is ever sold twice. Runs
+ * without a test transaction so every reservation commits and competes for real row
+ * locks; the connection pool matches the thread count so every thread is in the race.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservations;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.hikari.maximum-pool-size=" + ItemReservationServiceTest.THREADS
+})
+@Import(ItemReservationService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ItemReservationServiceTest {
+
+    private static final int CHECKOUTS = 500;
+    static final int THREADS = 32;
+
+    @Autowired
+    private ItemReservationService reservationService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private User seller;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+        seller = new User();
+        seller.setEmail("seller@example.com");
+        seller.setPasswordHash("x");
+        seller.setFirstName("Sam");
+        seller.setLastName("Seller");
+        seller = userRepository.save(seller);
+    }
+
+    @Test
+    void singleListingIsSoldExactlyOnce() throws Exception {
+        Item blazer = listing("Blazer", 1);
+
+        int sold = race(CHECKOUTS, () -> reservationService.reserve(List.of(blazer.getId())));
+
+        assertEquals(1, sold);
+        Item after = itemRepository.findById(blazer.getId()).orElseThrow();
+        assertEquals(Item.ItemStatus.RESERVED, after.getStatus());
+        assertEquals(1, after.getQuantity());
+    }
+
+    @Test
+    void multiQuantityListingNeverOversells() throws Exception {
+        Item socks = listing("Socks", 100);
+
+        int sold = race(CHECKOUTS, () -> reservationService.reserve(List.of(socks.getId())));
+
+        assertEquals(100, sold);
+        Item after = itemRepository.findById(socks.getId()).orElseThrow();
+        assertEquals(Item.ItemStatus.RESERVED, after.getStatus());
+        assertEquals(1, after.getQuantity());
+    }
+
+    @Test
+    void overlappingBundlesAreAllOrNothing() throws Exception {
+        Item tie = listing("Tie", 1);
+        Item shirt = listing("Shirt", 1);
+        Item hat = listing("Hat", 1);
+
+        // Half the buyers want tie + shirt, the other half shirt + hat: only one bundle can win
+        AtomicInteger turn = new AtomicInteger();
+        int sold = race(CHECKOUTS, () -> reservationService.reserve(turn.getAndIncrement() % 2 == 0
+                ? List.of(tie.getId(), shirt.getId())
+                : List.of(shirt.getId(), hat.getId())));
+
+        assertEquals(1, sold);
+        long reserved = itemRepository.findAllById(List.of(tie.getId(), shirt.getId(), hat.getId())).stream()
+                .filter(i -> i.getStatus() == Item.ItemStatus.RESERVED)
+                .count();
+        assertEquals(2, reserved);
+    }
+
+    @Test
+    void releaseReturnsEveryUnitOfABundle() {
+        Item blazer = listing("Blazer", 1);
+        Item socks = listing("Socks", 3);
+        Item tie = listing("Tie", 1);
+        Order order = reservationService.reserveAndPlace(
+                order(), List.of(blazer.getId(), socks.getId(), socks.getId(), tie.getId()));
+
+        // Sold meanwhile, so there is nothing to give back
+        itemRepository.findById(tie.getId()).ifPresent(t -> {
+            t.setStatus(Item.ItemStatus.SOLD);
+            itemRepository.save(t);
+        });
+
+        List<Item> restored = reservationService.release(order);
+
+        assertEquals(List.of(blazer.getId(), socks.getId()), restored.stream().map(Item::getId).toList());
+        assertEquals(Item.ItemStatus.AVAILABLE, itemRepository.findById(blazer.getId()).orElseThrow().getStatus());
+        assertEquals(3, itemRepository.findById(socks.getId()).orElseThrow().getQuantity());
+        assertEquals(Item.ItemStatus.SOLD, itemRepository.findById(tie.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void failedBundleLeavesStockUntouched() {
+        Item tie = listing("Tie", 2);
+        Item shirt = listing("Shirt", 1);
+        reservationService.reserve(List.of(shirt.getId()));
+
+        assertThrows(ItemReservationService.ItemUnavailableException.class,
+                () -> reservationService.reserve(List.of(tie.getId(), shirt.getId())));
+
+        Item after = itemRepository.findById(tie.getId()).orElseThrow();
+        assertEquals(Item.ItemStatus.AVAILABLE, after.getStatus());
+        assertEquals(2, after.getQuantity());
+    }
+
+    private Order order() {
+        User buyer = new User();
+        buyer.setEmail("buyer@example.com");
+        buyer.setPasswordHash("x");
+        buyer.setFirstName("Bea");
+        buyer.setLastName("Buyer");
+        Order order = new Order();
+        order.setOrderNumber("ORD-1");
+        order.setBuyer(userRepository.save(buyer));
+        order.setQuantity(4);
+        order.setItemPrice(BigDecimal.valueOf(400));
+        order.setShippingCost(BigDecimal.ZERO);
+        order.setTotalAmount(BigDecimal.valueOf(400));
+        return order;
+    }
+
+    private Item listing(String name, int quantity) {
+        Item item = new Item();
+        item.setUser(seller);
+        item.setItemName(name);
+        item.setPrice(BigDecimal.valueOf(100));
+        item.setQuantity(quantity);
+        return itemRepository.save(item);
+    }
+
+    /** Runs {@code attempts} checkouts from {@link #THREADS} threads at once; returns how many succeeded. */
+    private int race(int attempts, Runnable checkout) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(attempts);
+        try {
+            for (int i = 0; i < attempts; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        checkout.run();
+                        succeeded.incrementAndGet();
+                    } catch (ItemReservationService.ItemUnavailableException e) {
+                        // lost the race
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return succeeded.get();
+    }
+}
@@ -0,0 +1,65 @@
+package za.co.thrift.eduthrift.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine;
+import za.co.thrift.eduthrift.service.order.PaymentSettledEvent;
+import za.co.thrift.eduthrift.service.outbox.OutboxService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class OrderExpiryServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OrderExpiryService service = new OrderExpiryService(mock(OrderRepository.class),
+            mock(ItemReservationService.class), mock(OutboxService.class), mock(OrderStateMachine.class),
+            mock(TransactionTemplate.class), mock(SchedulerLockService.class), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void settledOrdersNoLongerCountAsPendingTimeouts() {
+        for (long id = 1; id <= 3; id++) {
+            service.schedulePaymentTimeout(order(id));
+        }
+        assertEquals(3.0, pending());
+
+        service.onPaymentSettled(new PaymentSettledEvent(2L));
+        assertEquals(2.0, pending());
+
+        // Settling again, or an order that never had a timer, changes nothing
+        service.onPaymentSettled(new PaymentSettledEvent(2L));
+        service.onPaymentSettled(new PaymentSettledEvent(99L));
+        assertEquals(2.0, pending());
+    }
+
+    @Test
+    void reschedulingAnOrderReplacesItsTimer() {
+        service.schedulePaymentTimeout(order(1L));
+        service.schedulePaymentTimeout(order(1L));
+
+        assertEquals(1.0, pending());
+    }
+
+    private double pending() {
+        return meterRegistry.get("orders.payment_timeouts.pending").gauge().value();
+    }
+
+    private static Order order(long id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setCreatedAt(LocalDateTime.now());
+        return order;
+    }
+}
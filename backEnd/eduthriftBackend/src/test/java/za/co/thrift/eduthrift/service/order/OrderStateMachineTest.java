@@ -0,0 +1,198 @@
+package za.co.thrift.eduthrift.service.order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.context.ApplicationEventPublisher;
+import za.co.thrift.eduthrift.entity.Order;
+import za.co.thrift.eduthrift.entity.Order.DisputeStatus;
+import za.co.thrift.eduthrift.entity.Order.EscrowStatus;
+import za.co.thrift.eduthrift.entity.Order.OrderStatus;
+import za.co.thrift.eduthrift.entity.Order.PaymentStatus;
+import za.co.thrift.eduthrift.entity.Order.PayoutStatus;
+import za.co.thrift.eduthrift.repository.OrderRepository;
+import za.co.thrift.eduthrift.service.ItemReservationService;
+import za.co.thrift.eduthrift.service.order.OrderStateMachine.Result;
+import za.co.thrift.eduthrift.service.scheduling.ScheduledActionService;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Fires every event at a state it may take, a state it already reached and a state it
+ * must refuse, and checks the outcome, the write and the stock release that go with it.
+ */
+class OrderStateMachineTest {
+
+    private static final Set<OrderEvent> RELEASES_STOCK = EnumSet.of(OrderEvent.CANCELLED, OrderEvent.PAYMENT_FAILED);
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final ItemReservationService itemReservationService = mock(ItemReservationService.class);
+    private final OrderStateMachine stateMachine = new OrderStateMachine(orderRepository,
+            mock(ScheduledActionService.class), itemReservationService, mock(ApplicationEventPublisher.class),
+            new SimpleMeterRegistry());
+
+    static Stream<Arguments> transitions() {
+        return Stream.of(
+                // Payment
+                row(OrderEvent.PAYMENT_CAPTURED, Result.APPLIED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.PAYMENT_CAPTURED, Result.UNCHANGED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.CAPTURED, EscrowStatus.PENDING)),
+                row(OrderEvent.PAYMENT_CAPTURED, Result.REJECTED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.FUNDS_HELD, Result.APPLIED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.FUNDS_HELD, Result.UNCHANGED, order(OrderStatus.PAYMENT_CONFIRMED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.FUNDS_HELD, Result.REJECTED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.PROVIDER_FUNDS_HELD, Result.APPLIED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.PROVIDER_FUNDS_HELD, Result.UNCHANGED, order(OrderStatus.PAYMENT_CONFIRMED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.PROVIDER_FUNDS_HELD, Result.REJECTED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.PAYMENT_FAILED, Result.APPLIED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.PAYMENT_FAILED, Result.UNCHANGED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.PAYMENT_FAILED, Result.REJECTED, order(OrderStatus.PAYMENT_CONFIRMED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.CANCELLED, Result.APPLIED, order(OrderStatus.PROCESSING, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.CANCELLED, Result.UNCHANGED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.CANCELLED, Result.REJECTED, order(OrderStatus.SHIPPED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+
+                // Delivery
+                row(OrderEvent.SHIPPED, Result.APPLIED, order(OrderStatus.PAYMENT_CONFIRMED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.SHIPPED, Result.UNCHANGED, order(OrderStatus.SHIPPED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.SHIPPED, Result.REJECTED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.ARRIVED, Result.APPLIED, order(OrderStatus.SHIPPED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.ARRIVED, Result.UNCHANGED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.ARRIVED, Result.REJECTED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.ARRIVED_AT_LOCKER, Result.APPLIED, order(OrderStatus.SHIPPED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.ARRIVED_AT_LOCKER, Result.UNCHANGED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.ARRIVED_AT_LOCKER, Result.REJECTED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                // A courier marking it DELIVERED does not count as the buyer confirming
+                row(OrderEvent.DELIVERY_CONFIRMED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.DELIVERY_CONFIRMED, Result.UNCHANGED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD,
+                        o -> o.setDeliveryConfirmed(true))),
+                row(OrderEvent.DELIVERY_CONFIRMED, Result.REJECTED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+
+                // Escrow
+                row(OrderEvent.ESCROW_RELEASED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.ESCROW_RELEASED, Result.UNCHANGED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER)),
+                row(OrderEvent.ESCROW_RELEASED, Result.REJECTED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.PROVIDER_RELEASED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.PROVIDER_RELEASED, Result.UNCHANGED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER,
+                        o -> o.setPayoutStatus(PayoutStatus.COMPLETED))),
+                row(OrderEvent.PROVIDER_RELEASED, Result.REJECTED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.REFUNDED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.REFUNDED, Result.UNCHANGED, order(OrderStatus.REFUNDED, PaymentStatus.REFUNDED, EscrowStatus.REFUNDED_TO_BUYER,
+                        o -> o.setPayoutStatus(PayoutStatus.FAILED))),
+                row(OrderEvent.REFUNDED, Result.REJECTED, order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING)),
+                row(OrderEvent.PROVIDER_REFUNDED, Result.APPLIED, order(OrderStatus.CANCELLED, PaymentStatus.FAILED, EscrowStatus.PENDING)),
+                row(OrderEvent.PROVIDER_REFUNDED, Result.UNCHANGED, order(OrderStatus.REFUNDED, PaymentStatus.REFUNDED, EscrowStatus.REFUNDED_TO_BUYER)),
+                row(OrderEvent.PROVIDER_REFUNDED, Result.REJECTED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER)),
+
+                // Disputes
+                row(OrderEvent.DISPUTE_OPENED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.DISPUTE_OPENED, Result.UNCHANGED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD,
+                        o -> o.setDisputeStatus(DisputeStatus.OPEN))),
+                row(OrderEvent.DISPUTE_OPENED, Result.REJECTED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER)),
+                row(OrderEvent.DISPUTE_REFUNDED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD,
+                        o -> o.setDisputeStatus(DisputeStatus.OPEN))),
+                row(OrderEvent.DISPUTE_REFUNDED, Result.UNCHANGED, order(OrderStatus.REFUNDED, PaymentStatus.REFUNDED, EscrowStatus.REFUNDED_TO_BUYER,
+                        o -> {
+                            o.setPayoutStatus(PayoutStatus.FAILED);
+                            o.setDisputeStatus(DisputeStatus.RESOLVED_REFUND);
+                        })),
+                row(OrderEvent.DISPUTE_REFUNDED, Result.REJECTED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+                row(OrderEvent.DISPUTE_RELEASED, Result.APPLIED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD,
+                        o -> o.setDisputeStatus(DisputeStatus.OPEN))),
+                row(OrderEvent.DISPUTE_RELEASED, Result.UNCHANGED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER,
+                        o -> o.setDisputeStatus(DisputeStatus.RESOLVED_RELEASE))),
+                row(OrderEvent.DISPUTE_RELEASED, Result.REJECTED, order(OrderStatus.DELIVERED, PaymentStatus.CAPTURED, EscrowStatus.HELD)),
+
+                // Payouts: every payout status but the target is a source, so there is no
+                // REJECTED case for COMPLETED, and FAILED / MANUAL_REQUIRED repeat rather than
+                // report UNCHANGED
+                row(OrderEvent.PAYOUT_COMPLETED, Result.APPLIED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER)),
+                row(OrderEvent.PAYOUT_COMPLETED, Result.UNCHANGED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER,
+                        o -> o.setPayoutStatus(PayoutStatus.COMPLETED))),
+                row(OrderEvent.PAYOUT_FAILED, Result.APPLIED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER,
+                        o -> o.setPayoutStatus(PayoutStatus.FAILED))),
+                row(OrderEvent.PAYOUT_FAILED, Result.REJECTED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER,
+                        o -> o.setPayoutStatus(PayoutStatus.COMPLETED))),
+                row(OrderEvent.PAYOUT_MANUAL_REQUIRED, Result.APPLIED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER)),
+                row(OrderEvent.PAYOUT_MANUAL_REQUIRED, Result.REJECTED, order(OrderStatus.COMPLETED, PaymentStatus.CAPTURED, EscrowStatus.RELEASED_TO_SELLER,
+                        o -> o.setPayoutStatus(PayoutStatus.COMPLETED)))
+        );
+    }
+
+    @ParameterizedTest(name = "{0} from {2} -> {1}")
+    @MethodSource("transitions")
+    void eventHasTheExpectedOutcome(OrderEvent event, Result expected, Order order) {
+        String before = statuses(order);
+
+        assertEquals(expected, stateMachine.tryApply(order, event));
+
+        boolean applied = expected == Result.APPLIED;
+        if (!applied) assertEquals(before, statuses(order), "a refused or repeated event must not touch the order");
+        verify(orderRepository, times(applied ? 1 : 0)).save(order);
+        verify(itemReservationService, times(applied && RELEASES_STOCK.contains(event) ? 1 : 0)).release(order);
+    }
+
+    @Test
+    void everyEventIsCovered() {
+        Set<OrderEvent> covered = transitions()
+                .map(args -> (OrderEvent) args.get()[0])
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(OrderEvent.class)));
+
+        assertEquals(EnumSet.allOf(OrderEvent.class), covered);
+    }
+
+    @Test
+    void applyThrowsOnARejectedEvent() {
+        Order shipped = order(OrderStatus.SHIPPED, PaymentStatus.CAPTURED, EscrowStatus.HELD);
+
+        OrderStateMachine.IllegalTransitionException e = assertThrows(OrderStateMachine.IllegalTransitionException.class,
+                () -> stateMachine.apply(shipped, OrderEvent.CANCELLED));
+
+        assertEquals(OrderEvent.CANCELLED, e.getEvent());
+        verifyNoInteractions(orderRepository, itemReservationService);
+    }
+
+    @Test
+    void cancellingAgainNeverReleasesTheStockTwice() {
+        Order order = order(OrderStatus.PENDING_PAYMENT, PaymentStatus.PENDING, EscrowStatus.PENDING);
+
+        assertTrue(stateMachine.apply(order, OrderEvent.CANCELLED));
+        assertFalse(stateMachine.apply(order, OrderEvent.CANCELLED));
+        // A late payment failure finds the order cancelled by someone else and must not release again
+        assertEquals(Result.REJECTED, stateMachine.tryApply(order, OrderEvent.PAYMENT_FAILED));
+
+        verify(itemReservationService, times(1)).release(order);
+    }
+
+    private static Arguments row(OrderEvent event, Result expected, Order order) {
+        return Arguments.of(event, expected, order);
+    }
+
+    private static Order order(OrderStatus status, PaymentStatus payment, EscrowStatus escrow) {
+        return order(status, payment, escrow, o -> { });
+    }
+
+    private static Order order(OrderStatus status, PaymentStatus payment, EscrowStatus escrow, Consumer<Order> more) {
+        Order order = new Order();
+        order.setId(1L);
+        order.setOrderNumber("ORD-1");
+        order.setOrderStatus(status);
+        order.setPaymentStatus(payment);
+        order.setEscrowStatus(escrow);
+        more.accept(order);
+        return order;
+    }
+
+    private static String statuses(Order o) {
+        return List.of(o.getOrderStatus(), o.getPaymentStatus(), o.getEscrowStatus(), o.getPayoutStatus(),
+                o.getDisputeStatus(), o.getDeliveryConfirmed()).toString();
+    }
+}
@@ -0,0 +1,251 @@
+package za.co.thrift.eduthrift.service.webhook;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import za.co.thrift.eduthrift.entity.InboundWebhookEvent;
+import za.co.thrift.eduthrift.repository.InboundWebhookEventRepository;
+import za.co.thrift.eduthrift.service.IdempotencyService;
+import za.co.thrift.eduthrift.service.WebhookLogService;
+import za.co.thrift.eduthrift.service.scheduling.SchedulerLockService;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Fires interleaved TradeSafe, PUDO and ShipLogic callbacks for a few hundred orders
+ * through {@link WebhookDispatcher} and checks that each order's events ran one at a
+ * time and in arrival order, while different orders ran in parallel. The processors
+ * do an unsynchronised read-modify-write per order, so any overlap shows up as a lost
+ * update.
+ */
+class WebhookDispatcherStressTest {
+
+    private static final int ORDERS = 300;
+    private static final int EVENTS_PER_ORDER = 12;
+    private static final int LANES = 8;
+
+    private static final InboundWebhookEvent.Source[] SOURCES = InboundWebhookEvent.Source.values();
+
+    /** Per order: how many events have been applied (deliberately not atomic) and in what order. */
+    private final Map<String, int[]> applied = new ConcurrentHashMap<>();
+    private final Map<String, List<Integer>> sequence = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger overlaps = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(ORDERS * EVENTS_PER_ORDER);
+    /** Events for this order wait on {@link #blockUntil}; events on other lanes are counted. */
+    private volatile String blockOrder;
+    private volatile CountDownLatch blockUntil;
+    private final AtomicInteger processedOtherLanes = new AtomicInteger();
+
+    @Test
+    void eventsForOneOrderRunInSequenceAndOrdersRunInParallel() throws Exception {
+        List<InboundWebhookEvent> events = interleavedEvents();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WebhookDispatcher dispatcher = dispatcher(events, meterRegistry);
+        try {
+            long started = System.nanoTime();
+            dispatcher.poll();
+            assertTrue(done.await(60, TimeUnit.SECONDS), "only " + (events.size() - done.getCount()) + " events processed");
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertEquals(0, overlaps.get(), "events for the same order ran concurrently");
+            for (int o = 0; o < ORDERS; o++) {
+                String order = orderNumber(o);
+                assertEquals(EVENTS_PER_ORDER, applied.get(order)[0], "lost update on " + order);
+                List<Integer> seen = sequence.get(order);
+                for (int i = 0; i < seen.size(); i++) {
+                    assertEquals(i, seen.get(i), order + " events ran out of order: " + seen);
+                }
+            }
+            assertTrue(maxRunning.get() > 1, "orders never ran in parallel");
+            assertTrue(maxRunning.get() <= LANES, maxRunning.get() + " events ran at once on " + LANES + " lanes");
+            // Generous for a slow CI box; the processors' sleeps alone add up to under a second
+            assertTrue(millis < 20_000, events.size() + " events took " + millis + " ms");
+
+            Collection<Gauge> depths = meterRegistry.find("webhooks.lane.depth").gauges();
+            assertEquals(LANES, depths.size());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void aSlowLaneDoesNotHoldUpTheOthers() throws Exception {
+        // The first event blocks its lane; everything else, several claims' worth, must still finish
+        List<InboundWebhookEvent> events = interleavedEvents();
+        String stuckOrder = events.get(0).getPayload().split(":")[0];
+        CountDownLatch release = new CountDownLatch(1);
+        blockOrder = stuckOrder;
+        blockUntil = release;
+        long blockedEvents = events.stream().filter(e -> e.getPayload().startsWith(stuckOrder + ":")).count();
+
+        WebhookDispatcher dispatcher = dispatcher(events, new SimpleMeterRegistry());
+        try {
+            dispatcher.poll();
+            // Other orders that hash to the stuck lane wait behind it, so leave those out
+            long expected = events.size() - blockedEvents - sameLaneAsStuck(events, stuckOrder);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (processedOtherLanes.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(expected, processedOtherLanes.get(),
+                    "events on free lanes were held up by the blocked one");
+        } finally {
+            release.countDown();
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void sameKeyAlwaysMapsToTheSameLaneAndKeysSpreadOverAllLanes() {
+        OrderLanes lanes = new OrderLanes("test", LANES, new SimpleMeterRegistry());
+        try {
+            int[] perLane = new int[LANES];
+            for (int o = 0; o < 10_000; o++) {
+                String key = orderNumber(o);
+                assertEquals(lanes.laneOf(key), lanes.laneOf(new String(key.toCharArray())));
+                perLane[lanes.laneOf(key)]++;
+            }
+            for (int count : perLane) {
+                assertTrue(count > 10_000 / LANES / 2, "uneven lanes: " + Arrays.toString(perLane));
+            }
+        } finally {
+            lanes.shutdown();
+        }
+    }
+
+    private WebhookDispatcher dispatcher(List<InboundWebhookEvent> events, SimpleMeterRegistry meterRegistry) {
+        // Hands out due events up to the requested limit, as the real claim query does
+        Deque<InboundWebhookEvent> due = new ArrayDeque<>(events);
+        WebhookInbox inbox = mock(WebhookInbox.class);
+        when(inbox.claimDue(anyInt())).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(0);
+            List<InboundWebhookEvent> batch = new ArrayList<>(limit);
+            synchronized (due) {
+                while (batch.size() < limit && !due.isEmpty()) batch.add(due.poll());
+            }
+            return batch;
+        });
+        when(inbox.readPayload(any())).thenAnswer(invocation -> {
+            InboundWebhookEvent event = invocation.getArgument(0);
+            String[] parts = event.getPayload().split(":");
+            return Map.of("order", parts[0], "seq", Integer.parseInt(parts[1]));
+        });
+
+        IdempotencyService idempotencyService = mock(IdempotencyService.class);
+        when(idempotencyService.markProcessed(any(), any())).thenReturn(true);
+
+        List<WebhookProcessor> processors = Arrays.stream(SOURCES).map(this::processor).toList();
+        return new WebhookDispatcher(inbox, mock(InboundWebhookEventRepository.class),
+                processors, mock(WebhookLogService.class), idempotencyService, mock(SchedulerLockService.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry, LANES);
+    }
+
+    private long sameLaneAsStuck(List<InboundWebhookEvent> events, String stuckOrder) {
+        OrderLanes lanes = new OrderLanes("probe", LANES, new SimpleMeterRegistry());
+        try {
+            int stuckLane = lanes.laneOf(stuckOrder);
+            return events.stream()
+                    .map(e -> e.getPayload().split(":")[0])
+                    .filter(order -> !order.equals(stuckOrder) && lanes.laneOf(order) == stuckLane)
+                    .count();
+        } finally {
+            lanes.shutdown();
+        }
+    }
+
+    /** Each order gets EVENTS_PER_ORDER events from rotating sources, interleaved with every other order's. */
+    private static List<InboundWebhookEvent> interleavedEvents() {
+        List<InboundWebhookEvent> events = new ArrayList<>();
+        Random random = new Random(42);
+        int[] next = new int[ORDERS];
+        AtomicLong ids = new AtomicLong();
+        while (events.size() < ORDERS * EVENTS_PER_ORDER) {
+            int o = random.nextInt(ORDERS);
+            if (next[o] == EVENTS_PER_ORDER) continue;
+            int seq = next[o]++;
+            InboundWebhookEvent event = new InboundWebhookEvent();
+            event.setId(ids.incrementAndGet());
+            event.setSource(SOURCES[(o + seq) % SOURCES.length]);
+            event.setPayload(orderNumber(o) + ":" + seq);
+            event.setAttempts(1);
+            event.setReceivedAt(LocalDateTime.now());
+            events.add(event);
+        }
+        return events;
+    }
+
+    private WebhookProcessor processor(InboundWebhookEvent.Source source) {
+        return new WebhookProcessor() {
+            @Override
+            public InboundWebhookEvent.Source source() {
+                return source;
+            }
+
+            @Override
+            public String orderNumber(Map<String, Object> payload) {
+                return (String) payload.get("order");
+            }
+
+            @Override
+            public String eventKey(Map<String, Object> payload) {
+                return payload.get("order") + ":" + payload.get("seq");
+            }
+
+            @Override
+            public void process(Map<String, Object> payload) {
+                String order = (String) payload.get("order");
+                if (blockUntil != null) {
+                    blockedOrOther(order);
+                    return;
+                }
+                AtomicInteger orderInFlight = inFlight.computeIfAbsent(order, k -> new AtomicInteger());
+                if (orderInFlight.incrementAndGet() > 1) overlaps.incrementAndGet();
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    // Load, mutate, save — with a gap for another thread to interleave
+                    int[] counter = applied.computeIfAbsent(order, k -> new int[1]);
+                    int loaded = counter[0];
+                    Thread.sleep(0, 200_000);
+                    counter[0] = loaded + 1;
+                    sequence.computeIfAbsent(order, k -> Collections.synchronizedList(new ArrayList<>()))
+                            .add((Integer) payload.get("seq"));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    orderInFlight.decrementAndGet();
+                    done.countDown();
+                }
+            }
+        };
+    }
+
+    private void blockedOrOther(String order) {
+        if (order.equals(blockOrder)) {
+            try {
+                blockUntil.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            processedOtherLanes.incrementAndGet();
+        }
+    }
+
+    private static String orderNumber(int o) {
+        return "ORD-" + (1_000_000 + o);
+    }
+}
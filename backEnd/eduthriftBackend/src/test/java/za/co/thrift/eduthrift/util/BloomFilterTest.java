@@ -0,0 +1,60 @@
+package za.co.thrift.eduthrift.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    private static final int KEYS = 200_000;
+    private static final int THREADS = 8;
+
+    @Test
+    void neverMissesAKeyPutFromAnyThread() throws Exception {
+        BloomFilter filter = new BloomFilter(KEYS, 0.01);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> puts = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                puts.add(pool.submit(() -> {
+                    for (int i = thread; i < KEYS; i += THREADS) filter.put(key(i));
+                }));
+            }
+            for (Future<?> put : puts) put.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mightContain(key(i)), "missed " + key(i));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(KEYS, 0.01);
+        for (int i = 0; i < KEYS; i++) filter.put(key(i));
+
+        int falsePositives = 0;
+        for (int i = KEYS; i < 2 * KEYS; i++) {
+            if (filter.mightContain(key(i))) falsePositives++;
+        }
+        double rate = (double) falsePositives / KEYS;
+        assertTrue(rate < 0.015, "false positive rate " + rate);
+        assertEquals(7, filter.hashCount());
+    }
+
+    @Test
+    void rejectsNonsenseSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 1.0));
+    }
+
+    private static String key(int i) {
+        return "TRADESAFE|" + Integer.toHexString(i * 0x9E3779B1) + ":FUNDS_RECEIVED";
+    }
+}
@@ -0,0 +1,102 @@
+package za.co.thrift.eduthrift.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    private static final Duration TICK = Duration.ofMillis(10);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Eight buckets, so timeouts further out than 80 ms need more than one turn
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-wheel", TICK, 8, executor);
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void firesEachTimeoutOnceAfterItsDeadline() throws Exception {
+        int[] delaysMs = {0, 15, 40, 95, 250};
+        CountDownLatch fired = new CountDownLatch(delaysMs.length);
+        Set<Integer> late = ConcurrentHashMap.newKeySet();
+        Set<Integer> early = ConcurrentHashMap.newKeySet();
+        long start = System.nanoTime();
+        for (int delay : delaysMs) {
+            timer.schedule(() -> {
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsedMs < delay) early.add(delay);
+                if (elapsedMs > delay + 1000) late.add(delay);
+                fired.countDown();
+            }, Duration.ofMillis(delay));
+        }
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS), fired.getCount() + " timeouts never fired");
+        assertTrue(early.isEmpty(), "fired before the deadline: " + early);
+        assertTrue(late.isEmpty(), "fired far past the deadline: " + late);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void cancelledTimeoutNeverRunsAndLeavesTheCount() throws Exception {
+        CountDownLatch kept = new CountDownLatch(1);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        HashedWheelTimer.Timeout cancelled = timer.schedule(() -> ran.add("cancelled"), Duration.ofMillis(50));
+        timer.schedule(() -> {
+            ran.add("kept");
+            kept.countDown();
+        }, Duration.ofMillis(100));
+        assertEquals(2, timer.size());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel(), "a second cancel must report nothing to do");
+        assertEquals(1, timer.size());
+
+        assertTrue(kept.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("kept"), ran);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void cancelAfterFiringReportsFalse() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.schedule(fired::countDown, Duration.ZERO);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    void sizeTracksManyTimeoutsScheduledAndCancelledFromSeveralThreads() throws Exception {
+        int perThread = 5_000;
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> work = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                work.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        HashedWheelTimer.Timeout timeout = timer.schedule(() -> { }, Duration.ofHours(2));
+                        // Every other one is settled before it is due, as a paid order would be
+                        if (i % 2 == 0) assertTrue(timeout.cancel());
+                    }
+                }));
+            }
+            for (Future<?> f : work) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * perThread / 2, timer.size());
+    }
+}
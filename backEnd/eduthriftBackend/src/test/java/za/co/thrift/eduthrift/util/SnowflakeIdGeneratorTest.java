@@ -0,0 +1,95 @@
+package za.co.thrift.eduthrift.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 250_000;
+
+    @Test
+    void idsAreUniqueAcrossThreadsAboveOneHundredThousandPerSecond() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    start.await();
+                    for (int i = 0; i < ids.length; i++) ids[i] = generator.nextId();
+                    return ids;
+                }));
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            long[] all = new long[THREADS * IDS_PER_THREAD];
+            int n = 0;
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get(60, TimeUnit.SECONDS);
+                for (int i = 1; i < ids.length; i++) {
+                    assertTrue(ids[i] > ids[i - 1], "ids from one thread must increase");
+                }
+                System.arraycopy(ids, 0, all, n, ids.length);
+                n += ids.length;
+            }
+            double seconds = (System.nanoTime() - began) / 1e9;
+
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertNotEquals(all[i - 1], all[i], "duplicate id");
+            }
+            double perSecond = all.length / seconds;
+            assertTrue(perSecond > 100_000, "only " + (long) perSecond + " ids/sec");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void sequenceOverflowWithinOneMillisecondStaysUnique() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> SnowflakeIdGenerator.EPOCH_MILLIS + 1000);
+        long previous = -1;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void clockGoingBackwardsNeverRepeatsAnId() {
+        AtomicLong now = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 5_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, now::get);
+        long before = generator.nextId();
+        now.addAndGet(-2_000);
+        long after = generator.nextId();
+        assertTrue(after > before);
+    }
+
+    @Test
+    void nodesNeverCollideAtTheSameInstant() {
+        long instant = SnowflakeIdGenerator.EPOCH_MILLIS + 42;
+        SnowflakeIdGenerator a = new SnowflakeIdGenerator(1, () -> instant);
+        SnowflakeIdGenerator b = new SnowflakeIdGenerator(2, () -> instant);
+        for (int i = 0; i < 5_000; i++) {
+            assertNotEquals(a.nextId(), b.nextId());
+        }
+        assertEquals(2, (b.nextId() >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void rejectsNodeIdsOutsideTenBits() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+}